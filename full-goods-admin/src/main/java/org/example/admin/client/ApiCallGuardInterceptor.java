@@ -0,0 +1,82 @@
+package org.example.admin.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.admin.config.ApiClientProperties;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API调用保护拦截器
+ * 每个路由单独限制并发调用数，并在连续失败后熔断，
+ * 避免API模块变慢时占满管理后台的请求线程。
+ */
+@Slf4j
+public class ApiCallGuardInterceptor implements ClientHttpRequestInterceptor {
+
+    private final ApiClientProperties properties;
+
+    private final ConcurrentMap<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public ApiCallGuardInterceptor(ApiClientProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        ApiClientProperties.Route route = properties.resolveRoute(request.getURI().getPath());
+        CircuitBreaker breaker = breakers.computeIfAbsent(route.getName(),
+                k -> new CircuitBreaker(properties.getFailureThreshold(), properties.getOpenMillis()));
+
+        // 先取得并发许可再询问熔断器，半开时放行的试探调用一定会执行并记录结果
+        Semaphore bulkhead = bulkheads.computeIfAbsent(route.getName(), k -> new Semaphore(route.getMaxConcurrent()));
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(properties.getMaxWait(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("等待API调用许可被中断: " + route.getName());
+        }
+        if (!acquired) {
+            // 并发已满不计为失败，不影响熔断
+            throw new ResourceAccessException("API调用并发已满: " + route.getName());
+        }
+        if (!breaker.allowRequest()) {
+            bulkhead.release();
+            throw new ResourceAccessException("API调用已熔断: " + route.getName());
+        }
+
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().is5xxServerError()) {
+                onFailure(breaker, route);
+            } else {
+                breaker.recordSuccess();
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            onFailure(breaker, route);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void onFailure(CircuitBreaker breaker, ApiClientProperties.Route route) {
+        boolean wasOpen = breaker.isOpen();
+        breaker.recordFailure();
+        if (!wasOpen && breaker.isOpen()) {
+            log.warn("API调用连续失败，路由 {} 熔断 {} 毫秒", route.getName(), properties.getOpenMillis());
+        }
+    }
+}
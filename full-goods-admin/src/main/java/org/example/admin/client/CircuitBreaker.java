@@ -0,0 +1,66 @@
+package org.example.admin.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 熔断器
+ * 连续失败达到阈值后熔断，熔断期间直接拒绝调用；
+ * 熔断时间过后只放行一次试探调用，成功则恢复，失败则重新熔断。
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    // 熔断截止时间，0表示未熔断
+    private final AtomicLong openUntil = new AtomicLong();
+
+    // 是否已有试探调用在进行
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * @param failureThreshold 连续失败阈值
+     * @param openMillis 熔断持续时间（毫秒）
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许本次调用
+     */
+    public boolean allowRequest() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < until) {
+            return false;
+        }
+        // 半开：只放行一个试探调用
+        return probing.compareAndSet(false, true);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        openUntil.set(0);
+        probing.set(false);
+    }
+
+    public void recordFailure() {
+        if (probing.get() || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(System.currentTimeMillis() + openMillis);
+            probing.set(false);
+        }
+    }
+
+    public boolean isOpen() {
+        return openUntil.get() != 0;
+    }
+}
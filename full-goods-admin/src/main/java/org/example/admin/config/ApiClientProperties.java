@@ -0,0 +1,121 @@
+package org.example.admin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 调用API模块的HTTP客户端配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "api-client")
+public class ApiClientProperties {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    // 连接池最大连接数
+    private int maxTotal = 200;
+
+    // 每个目标主机的最大连接数
+    private int maxPerRoute = 100;
+
+    // 建立连接超时（毫秒）
+    private int connectTimeout = 2000;
+
+    // 从连接池获取连接超时（毫秒）
+    private int connectionRequestTimeout = 1000;
+
+    // 默认读取超时（毫秒）
+    private int readTimeout = 5000;
+
+    // 空闲连接保持时间（毫秒），服务端未声明Keep-Alive时使用
+    private long keepAlive = 30000;
+
+    // 默认每个路由的最大并发调用数
+    private int maxConcurrent = 50;
+
+    // 并发已满时等待的最长时间（毫秒）
+    private long maxWait = 200;
+
+    // 连续失败多少次后熔断
+    private int failureThreshold = 5;
+
+    // 熔断持续时间（毫秒），之后放行一次试探调用
+    private long openMillis = 10000;
+
+    // 调用并行查询的线程数
+    private int fanOutThreads = 16;
+
+    // 内部调用令牌，通过 X-Internal-Token 请求头发送，API模块据此跳过限流
+    private String internalToken;
+
+    /**
+     * 路由配置，按顺序匹配第一个，未匹配的请求使用默认路由
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    private final Route defaultRoute = new Route();
+
+    /**
+     * 未配置的路由参数使用默认值
+     */
+    @PostConstruct
+    public void init() {
+        defaultRoute.setName("default");
+        defaultRoute.setPattern("/**");
+        defaultRoute.setReadTimeout(readTimeout);
+        defaultRoute.setMaxConcurrent(maxConcurrent);
+        for (Route route : routes) {
+            if (route.getReadTimeout() <= 0) {
+                route.setReadTimeout(readTimeout);
+            }
+            if (route.getMaxConcurrent() <= 0) {
+                route.setMaxConcurrent(maxConcurrent);
+            }
+        }
+    }
+
+    /**
+     * 根据请求路径匹配路由
+     *
+     * @param path 请求路径，如 /api/training/statistics
+     * @return 路由配置
+     */
+    public Route resolveRoute(String path) {
+        for (Route route : routes) {
+            if (PATH_MATCHER.match(route.getPattern(), path)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    /**
+     * 路由配置
+     */
+    @Data
+    public static class Route {
+
+        /**
+         * 路由名称，用于隔离并发和熔断
+         */
+        private String name;
+
+        /**
+         * 路径模式（含context-path），如 /api/training/**
+         */
+        private String pattern;
+
+        // 读取超时（毫秒）
+        private int readTimeout;
+
+        // 最大并发调用数
+        private int maxConcurrent;
+    }
+}
@@ -1,17 +1,119 @@
 package org.example.admin.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.example.admin.client.ApiCallGuardInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * RestTemplate配置类
+ * 使用连接池复用到API模块的连接，按路由设置读取超时，并限制并发和熔断
  */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
 
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient apiHttpClient(ApiClientProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        // 复用空闲超过1秒的连接前先检查是否已被服务端关闭
+        connectionManager.setValidateAfterInactivity(1000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .build();
+
+        log.info("API客户端连接池初始化，最大连接数: {}, 每主机连接数: {}", properties.getMaxTotal(), properties.getMaxPerRoute());
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : properties.getKeepAlive();
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getKeepAlive(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient apiHttpClient, ApiClientProperties properties) {
+        RestTemplate restTemplate = new RestTemplate(new RouteAwareRequestFactory(apiHttpClient, properties));
+        if (StringUtils.hasText(properties.getInternalToken())) {
+            restTemplate.getInterceptors().add((request, body, execution) -> {
+                request.getHeaders().set("X-Internal-Token", properties.getInternalToken());
+                return execution.execute(request, body);
+            });
+        }
+        restTemplate.getInterceptors().add(new ApiCallGuardInterceptor(properties));
+        return restTemplate;
+    }
+
+    /**
+     * 并行调用API模块的执行器
+     */
+    @Bean("apiCallExecutor")
+    public Executor apiCallExecutor(ApiClientProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getFanOutThreads());
+        executor.setMaxPoolSize(properties.getFanOutThreads());
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("api-call-");
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        // 队列已满时由调用线程执行，退化为串行调用
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 按请求路径匹配路由的读取超时
+     */
+    private static class RouteAwareRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final ApiClientProperties properties;
+
+        RouteAwareRequestFactory(CloseableHttpClient httpClient, ApiClientProperties properties) {
+            super(httpClient);
+            this.properties = properties;
+        }
+
+        @Override
+        protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+            int readTimeout = properties.resolveRoute(uri.getPath()).getReadTimeout();
+            if (readTimeout == properties.getReadTimeout()) {
+                // 使用客户端默认配置
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(properties.getConnectTimeout())
+                    .setConnectionRequestTimeout(properties.getConnectionRequestTimeout())
+                    .setSocketTimeout(readTimeout)
+                    .build());
+            return context;
+        }
     }
-}
\ No newline at end of file
+}
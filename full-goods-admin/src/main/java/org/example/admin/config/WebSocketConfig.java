@@ -1,5 +1,7 @@
 package org.example.admin.config;
 
+import org.example.api.service.WebSocketRelayService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -13,6 +15,9 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private WebSocketRelayService webSocketRelayService;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // 启用简单的消息代理，并设置消息代理的前缀
@@ -21,6 +26,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setApplicationDestinationPrefixes("/app");
         // 设置用户目标前缀
         config.setUserDestinationPrefix("/user");
+        // 发往代理的消息转发给其他节点
+        config.configureBrokerChannel().interceptors(webSocketRelayService);
     }
 
     @Override
@@ -5,11 +5,15 @@ import org.example.admin.service.AdminProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @RestController
 @RequestMapping("/admin/dashboard")
@@ -24,6 +28,10 @@ public class DashboardController {
     @Autowired
     private AdminProductService adminProductService;
 
+    @Autowired
+    @Qualifier("apiCallExecutor")
+    private Executor apiCallExecutor;
+
     /**
      * 获取仪表盘统计数据
      */
@@ -32,14 +40,19 @@ public class DashboardController {
         try {
             Map<String, Object> statistics = new HashMap<>();
             
-            // 获取订单统计数据
-            Map<String, Object> orderStats = adminOrderService.getOrderStatistics();
+            // 各项统计互不依赖，并行调用API模块
+            CompletableFuture<Map<String, Object>> orderStatsFuture =
+                    CompletableFuture.supplyAsync(adminOrderService::getOrderStatistics, apiCallExecutor);
+            CompletableFuture<BigDecimal> todayRevenueFuture =
+                    CompletableFuture.supplyAsync(adminOrderService::getTodayRevenue, apiCallExecutor);
+            CompletableFuture<Long> lowStockFuture =
+                    CompletableFuture.supplyAsync(adminProductService::getLowStockCount, apiCallExecutor);
             
-            // 获取商品统计数据
-            Map<String, Object> productStats = adminProductService.getProductStatistics();
+            // 获取订单统计数据
+            Map<String, Object> orderStats = orderStatsFuture.join();
             
             // 今日销售额
-            BigDecimal todayRevenue = adminOrderService.getTodayRevenue();
+            BigDecimal todayRevenue = todayRevenueFuture.join();
             statistics.put("todayRevenue", todayRevenue);
             
             // 订单总量
@@ -51,7 +64,7 @@ public class DashboardController {
             statistics.put("pendingOrders", pendingOrders != null ? pendingOrders : 0);
             
             // 库存不足商品
-            Long lowStockProducts = adminProductService.getLowStockCount();
+            Long lowStockProducts = lowStockFuture.join();
             statistics.put("lowStockProducts", lowStockProducts);
             
             Map<String, Object> result = new HashMap<>();
@@ -61,10 +74,11 @@ public class DashboardController {
             
             return ResponseEntity.ok(result);
         } catch (Exception e) {
-            log.error("获取仪表盘统计数据失败", e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("获取仪表盘统计数据失败", cause);
             Map<String, Object> result = new HashMap<>();
             result.put("code", 500);
-            result.put("message", "获取统计数据失败: " + e.getMessage());
+            result.put("message", "获取统计数据失败: " + cause.getMessage());
             return ResponseEntity.ok(result);
         }
     }
@@ -2,6 +2,7 @@ package org.example.admin.service.impl;
 
 import org.example.admin.mapper.AdminBannerMapper;
 import org.example.admin.service.AdminBannerService;
+import org.example.api.service.HomeSnapshotService;
 import org.example.common.entity.Banner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -21,6 +22,9 @@ public class AdminBannerServiceImpl implements AdminBannerService {
     @Autowired
     private AdminBannerMapper adminBannerMapper;
 
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
     @Override
     public Map<String, Object> getBannerList(int page, int size, String search) {
         // 计算偏移量
@@ -57,7 +61,7 @@ public class AdminBannerServiceImpl implements AdminBannerService {
         if (!StringUtils.hasText(banner.getUpdateBy())) {
             banner.setUpdateBy("admin");
         }
-        return adminBannerMapper.insert(banner) > 0;
+        return changed(adminBannerMapper.insert(banner) > 0);
     }
 
     @Override
@@ -66,12 +70,12 @@ public class AdminBannerServiceImpl implements AdminBannerService {
         if (!StringUtils.hasText(banner.getUpdateBy())) {
             banner.setUpdateBy("admin");
         }
-        return adminBannerMapper.update(banner) > 0;
+        return changed(adminBannerMapper.update(banner) > 0);
     }
 
     @Override
     public boolean deleteBanner(Long id) {
-        return adminBannerMapper.deleteById(id) > 0;
+        return changed(adminBannerMapper.deleteById(id) > 0);
     }
 
     @Override
@@ -79,7 +83,9 @@ public class AdminBannerServiceImpl implements AdminBannerService {
         if (ids == null || ids.isEmpty()) {
             return 0;
         }
-        return adminBannerMapper.batchDeleteByIds(ids);
+        int deleted = adminBannerMapper.batchDeleteByIds(ids);
+        changed(deleted > 0);
+        return deleted;
     }
 
     @Override
@@ -95,7 +101,7 @@ public class AdminBannerServiceImpl implements AdminBannerService {
         banner.setUpdateTime(new Date());
         banner.setUpdateBy("admin");
         
-        return adminBannerMapper.update(banner) > 0;
+        return changed(adminBannerMapper.update(banner) > 0);
     }
 
     @Override
@@ -112,4 +118,14 @@ public class AdminBannerServiceImpl implements AdminBannerService {
         }
         return updatedCount;
     }
-}
\ No newline at end of file
+
+    /**
+     * 写入成功时使首页数据失效
+     */
+    private boolean changed(boolean success) {
+        if (success) {
+            homeSnapshotService.invalidate();
+        }
+        return success;
+    }
+}
@@ -29,6 +29,8 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
 
     private static final String API_BASE_URL = "http://localhost:8080/api/messages";
 
+    private static final String CAMPAIGN_BASE_URL = API_BASE_URL + "/campaigns";
+
     @Override
     public Result<Boolean> sendSystemMessage(Map<String, Object> messageData) {
         try {
@@ -86,12 +88,13 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
     @Override
     public Result<Boolean> sendBatchMessage(Map<String, Object> messageData) {
         try {
+            // 创建群发活动，API服务在后台分批发送，不等待发送完成
             HttpHeaders headers = new HttpHeaders();
             headers.set("Content-Type", "application/json");
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(messageData, headers);
 
             ResponseEntity<Result> response = restTemplate.exchange(
-                API_BASE_URL + "/send/batch",
+                CAMPAIGN_BASE_URL,
                 HttpMethod.POST,
                 entity,
                 new ParameterizedTypeReference<Result>() {}
@@ -99,14 +102,14 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
 
             Result result = response.getBody();
             if (result != null && result.getCode() == 200) {
+                log.info("群发活动已创建：{}", result.getData());
                 return Result.success(true);
             } else {
-                return Result.failed("发送批量消息失败");
+                return Result.failed(result != null ? result.getMessage() : "发送批量消息失败");
             }
         } catch (Exception e) {
             log.error("发送批量消息失败", e);
-            // 返回模拟成功结果
-            return Result.success(true);
+            return Result.failed("发送批量消息失败: " + e.getMessage());
         }
     }
 
@@ -415,14 +418,19 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
     @Override
     public Result<Map<String, Object>> getQueueStatus() {
         try {
-            // 返回模拟队列状态
-            Map<String, Object> status = new HashMap<>();
-            status.put("queueSize", 25);
-            status.put("processing", 3);
-            status.put("failed", 2);
-            status.put("completed", 1200);
-            status.put("isPaused", false);
-            return Result.success(status);
+            ResponseEntity<Result> response = restTemplate.exchange(
+                CAMPAIGN_BASE_URL + "/status",
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<Result>() {}
+            );
+
+            Result result = response.getBody();
+            if (result != null && result.getCode() == 200) {
+                return Result.success((Map<String, Object>) result.getData());
+            } else {
+                return Result.failed("获取消息队列状态失败");
+            }
         } catch (Exception e) {
             log.error("获取消息队列状态失败", e);
             return Result.failed("获取消息队列状态失败");
@@ -431,35 +439,18 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
 
     @Override
     public Result<Boolean> clearQueue() {
-        try {
-            // 模拟清空队列
-            return Result.success(true);
-        } catch (Exception e) {
-            log.error("清空消息队列失败", e);
-            return Result.failed("清空消息队列失败");
-        }
+        // 取消全部未结束的群发活动，已发送的消息保留
+        return postCampaignAction("/cancel", "清空消息队列失败");
     }
 
     @Override
     public Result<Boolean> pauseSending() {
-        try {
-            // 模拟暂停发送
-            return Result.success(true);
-        } catch (Exception e) {
-            log.error("暂停消息发送失败", e);
-            return Result.failed("暂停消息发送失败");
-        }
+        return postCampaignAction("/pause", "暂停消息发送失败");
     }
 
     @Override
     public Result<Boolean> resumeSending() {
-        try {
-            // 模拟恢复发送
-            return Result.success(true);
-        } catch (Exception e) {
-            log.error("恢复消息发送失败", e);
-            return Result.failed("恢复消息发送失败");
-        }
+        return postCampaignAction("/resume", "恢复消息发送失败");
     }
 
     @Override
@@ -505,6 +496,31 @@ public class AdminMessageSendingServiceImpl implements AdminMessageSendingServic
     }
 
     // 私有方法：获取模拟发送历史
+    /**
+     * 对全部群发活动执行暂停、恢复或取消
+     */
+    private Result<Boolean> postCampaignAction(String path, String errorMessage) {
+        try {
+            ResponseEntity<Result> response = restTemplate.exchange(
+                CAMPAIGN_BASE_URL + path,
+                HttpMethod.POST,
+                null,
+                new ParameterizedTypeReference<Result>() {}
+            );
+
+            Result result = response.getBody();
+            if (result != null && result.getCode() == 200) {
+                log.info("群发活动操作完成：{}，影响活动数：{}", path, result.getData());
+                return Result.success(true);
+            } else {
+                return Result.failed(errorMessage);
+            }
+        } catch (Exception e) {
+            log.error(errorMessage, e);
+            return Result.failed(errorMessage);
+        }
+    }
+
     private Result<Map<String, Object>> getMockSendingHistory(Integer page, Integer size) {
         Map<String, Object> result = new HashMap<>();
         
@@ -3,6 +3,7 @@ package org.example.admin.service.impl;
 import org.example.common.entity.FruitCategory;
 import org.example.admin.mapper.CategoryMapper;
 import org.example.admin.service.CategoryService;
+import org.example.api.service.HomeSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.github.pagehelper.PageHelper;
@@ -22,6 +23,9 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CategoryMapper categoryMapper;
 
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Override
@@ -94,7 +98,11 @@ public class CategoryServiceImpl implements CategoryService {
                 category.setStatus(1); // 默认启用
             }
             int result = categoryMapper.insert(category);
-            return result > 0 ? category : null;
+            if (result > 0) {
+                homeSnapshotService.invalidate();
+                return category;
+            }
+            return null;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -106,7 +114,11 @@ public class CategoryServiceImpl implements CategoryService {
         try {
             category.setUpdateTime(new Date());
             int result = categoryMapper.update(category);
-            return result > 0 ? categoryMapper.selectById(category.getId()) : null;
+            if (result > 0) {
+                homeSnapshotService.invalidate();
+                return categoryMapper.selectById(category.getId());
+            }
+            return null;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -117,6 +129,9 @@ public class CategoryServiceImpl implements CategoryService {
     public boolean deleteCategory(Long id) {
         try {
             int result = categoryMapper.deleteById(id);
+            if (result > 0) {
+                homeSnapshotService.invalidate();
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -127,7 +142,11 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public int batchDeleteCategories(List<Long> ids) {
         try {
-            return categoryMapper.batchDelete(ids);
+            int result = categoryMapper.batchDelete(ids);
+            if (result > 0) {
+                homeSnapshotService.invalidate();
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -143,6 +162,7 @@ public class CategoryServiceImpl implements CategoryService {
                 int newStatus = category.getStatus() == 1 ? 0 : 1;
                 int result = categoryMapper.updateStatus(id, newStatus);
                 if (result > 0) {
+                    homeSnapshotService.invalidate();
                     category.setStatus(newStatus);
                     category.setUpdateTime(new Date());
                     return category;
@@ -159,7 +179,11 @@ public class CategoryServiceImpl implements CategoryService {
     public int batchToggleCategoryStatus(List<Long> ids) {
         try {
             // 这里简化处理，统一设置为启用状态
-            return categoryMapper.batchUpdateStatus(ids, 1);
+            int result = categoryMapper.batchUpdateStatus(ids, 1);
+            if (result > 0) {
+                homeSnapshotService.invalidate();
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -0,0 +1,553 @@
+package org.example.admin.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 训练好的NLP模型的紧凑二进制格式
+ * 文件只读映射到内存，词表以开放寻址哈希表的形式存放在文件中，查词时直接比较映射区的UTF-8字节，
+ * 大词表不占用堆内存；概率等数值按基本类型数组存放，加载时不需要反序列化。
+ * 映射区只使用绝对位置读取，同一模型可被多个线程同时使用。
+ * 每次写入生成新版本的文件 model-{版本}.bin，不覆盖已映射的旧文件。
+ */
+public abstract class CompactModel {
+
+    // 文件头 "FGM1"
+    private static final int MAGIC = 0x46474D31;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int KIND_NAIVE_BAYES = 1;
+
+    private static final int KIND_FRUIT_RECOMMENDATION = 2;
+
+    // 文件头长度：magic、格式版本、模型种类、模型版本
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+    private static final String FILE_PREFIX = "model-";
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    // 版本化文件名之前写入的模型文件，视为最旧的版本
+    private static final String UNVERSIONED_FILE = "model.bin";
+
+    // 没有偏好记录的用户使用的默认评分，与 FruitRecommendationClassifier 一致
+    private static final double DEFAULT_USER_SCORE = 5.0;
+
+    protected final ByteBuffer buffer;
+
+    private final long version;
+
+    CompactModel(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.version = buffer.getLong(12);
+    }
+
+    /**
+     * 模型版本，与文件名中的版本相同，取生成时间且比目录中已有的版本大
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 模型文件大小
+     */
+    public long getSizeInBytes() {
+        return buffer.capacity();
+    }
+
+    public abstract String getModelType();
+
+    /**
+     * 映射模型文件
+     */
+    public static CompactModel open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("模型文件过大: " + path);
+            }
+            // 关闭通道后映射仍然有效，映射区在对象被回收时释放
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的模型文件: " + path);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("不支持的模型文件版本: " + buffer.getInt(4));
+        }
+        int kind = buffer.getInt(8);
+        if (kind == KIND_NAIVE_BAYES) {
+            return new NaiveBayes(buffer);
+        } else if (kind == KIND_FRUIT_RECOMMENDATION) {
+            return new FruitRecommendation(buffer);
+        }
+        throw new IOException("不支持的模型种类: " + kind);
+    }
+
+    /**
+     * 目录中最新版本的模型文件，没有模型文件时返回null
+     */
+    public static Path latest(Path modelDir) throws IOException {
+        Path latest = null;
+        long latestVersion = -1;
+        for (Path path : listModelFiles(modelDir)) {
+            long version = versionOf(path);
+            if (version > latestVersion) {
+                latest = path;
+                latestVersion = version;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 写入朴素贝叶斯模型，预先计算好平滑后的对数概率
+     *
+     * @param vocabulary 词到序号的映射，序号从0开始连续
+     * @param wordCounts 各类别的词频，数组长度可以小于词表大小
+     * @return 新写入的模型文件
+     */
+    public static Path writeNaiveBayes(Path modelDir, String[] labels, int[] docCounts, Map<String, Integer> vocabulary,
+                                       int[][] wordCounts, long[] totalWords) throws IOException {
+        String[] terms = new String[vocabulary.size()];
+        vocabulary.forEach((term, id) -> terms[id] = term);
+        int totalDocs = Arrays.stream(docCounts).sum();
+
+        return write(modelDir, KIND_NAIVE_BAYES, out -> {
+            writeStringTable(out, Arrays.asList(labels));
+            for (int label = 0; label < labels.length; label++) {
+                // 没有样本的类别不参与预测
+                out.writeDouble(docCounts[label] == 0 ? Double.NaN : Math.log((double) docCounts[label] / totalDocs));
+            }
+            writeStringTable(out, Arrays.asList(terms));
+            // 按词排列，一个词所有类别的概率相邻
+            for (int term = 0; term < terms.length; term++) {
+                for (int label = 0; label < labels.length; label++) {
+                    int[] counts = wordCounts[label];
+                    int count = term < counts.length ? counts[term] : 0;
+                    // 拉普拉斯平滑
+                    out.writeDouble(Math.log((count + 1.0) / (totalWords[label] + terms.length)));
+                }
+            }
+        });
+    }
+
+    /**
+     * 写入旧版本序列化格式中的朴素贝叶斯模型，旧格式保存的是平滑后的概率
+     * 词在某类别中没有概率时记为0，与旧分类器跳过该词的结果一致
+     *
+     * @param classProbabilities 类别的先验概率
+     * @param featureProbabilities 各类别中词的条件概率
+     * @return 新写入的模型文件
+     */
+    public static Path writeLegacyNaiveBayes(Path modelDir, Map<String, Double> classProbabilities,
+                                             Map<String, Map<String, Double>> featureProbabilities,
+                                             Collection<String> vocabulary) throws IOException {
+        String[] labels = classProbabilities.keySet().toArray(new String[0]);
+        List<String> terms = new ArrayList<>(vocabulary);
+
+        return write(modelDir, KIND_NAIVE_BAYES, out -> {
+            writeStringTable(out, Arrays.asList(labels));
+            for (String label : labels) {
+                out.writeDouble(Math.log(classProbabilities.get(label)));
+            }
+            writeStringTable(out, terms);
+            for (String term : terms) {
+                for (String label : labels) {
+                    Map<String, Double> wordProbs = featureProbabilities.getOrDefault(label, Collections.emptyMap());
+                    Double probability = wordProbs.get(term);
+                    out.writeDouble(probability == null ? 0.0 : Math.log(probability));
+                }
+            }
+        });
+    }
+
+    /**
+     * 写入水果推荐模型，水果评分和特征合并为每个水果两个数值，用户偏好按用户连续存放
+     *
+     * @return 新写入的模型文件
+     */
+    public static Path writeFruitRecommendation(Path modelDir, Map<String, Double> fruitScores,
+                                                Map<String, Map<String, Double>> userPreferences,
+                                                Map<String, Map<String, Double>> fruitFeatures) throws IOException {
+        List<String> fruits = new ArrayList<>(fruitScores.keySet());
+        Map<String, Integer> fruitIndex = new HashMap<>(fruits.size() * 2);
+        for (int i = 0; i < fruits.size(); i++) {
+            fruitIndex.put(fruits.get(i), i);
+        }
+        List<String> users = new ArrayList<>(userPreferences.keySet());
+
+        return write(modelDir, KIND_FRUIT_RECOMMENDATION, out -> {
+            writeStringTable(out, fruits);
+            for (String fruit : fruits) {
+                out.writeDouble(fruitScores.get(fruit) * 0.4);
+            }
+            for (String fruit : fruits) {
+                Map<String, Double> features = fruitFeatures.get(fruit);
+                double featureScore = features == null ? 0.0
+                        : features.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+                out.writeDouble(featureScore * 0.2);
+            }
+
+            writeStringTable(out, users);
+            List<Integer> prefFruits = new ArrayList<>();
+            List<Double> prefScores = new ArrayList<>();
+            out.writeInt(0);
+            for (String user : users) {
+                userPreferences.get(user).forEach((fruit, score) -> {
+                    Integer index = fruitIndex.get(fruit);
+                    if (index != null) {
+                        prefFruits.add(index);
+                        prefScores.add(score);
+                    }
+                });
+                out.writeInt(prefFruits.size());
+            }
+            for (Integer fruit : prefFruits) {
+                out.writeInt(fruit);
+            }
+            for (Double score : prefScores) {
+                out.writeDouble(score);
+            }
+        });
+    }
+
+    /**
+     * 先写临时文件再改名为新版本的文件，不替换已存在的文件：
+     * Windows上不能替换仍被映射的文件，已映射旧文件的读者也不受影响。
+     * 写入后删除旧版本，仍被映射而删除失败的旧文件在下次写入时再删除。
+     */
+    private static Path write(Path modelDir, int kind, BodyWriter body) throws IOException {
+        Files.createDirectories(modelDir);
+        Path previous = latest(modelDir);
+        long version = Math.max(System.currentTimeMillis(), previous == null ? 0 : versionOf(previous) + 1);
+        Path path = modelDir.resolve(FILE_PREFIX + version + FILE_SUFFIX);
+        Path temp = modelDir.resolve(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(kind);
+            out.writeLong(version);
+            body.write(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path old : listModelFiles(modelDir)) {
+            if (versionOf(old) < version) {
+                try {
+                    Files.deleteIfExists(old);
+                } catch (IOException e) {
+                    // 旧文件仍被映射（Windows），保留到下次写入
+                }
+            }
+        }
+        return path;
+    }
+
+    private static List<Path> listModelFiles(Path modelDir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(modelDir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(modelDir, "model*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                if (versionOf(path) >= 0) {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 文件名中的版本，不是模型文件时返回-1
+     */
+    private static long versionOf(Path path) {
+        String name = path.getFileName().toString();
+        if (UNVERSIONED_FILE.equals(name)) {
+            return 0;
+        }
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 字符串表：个数、槽数、槽（序号+1，0为空）、各字符串的起始位置、UTF-8字节
+     */
+    private static void writeStringTable(DataOutputStream out, List<String> strings) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        int slotCount = Integer.highestOneBit(Math.max(2, encoded.length * 2 - 1)) << 1;
+        int[] slots = new int[slotCount];
+        for (int i = 0; i < encoded.length; i++) {
+            int slot = hash(encoded[i]) & (slotCount - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = i + 1;
+        }
+
+        out.writeInt(encoded.length);
+        out.writeInt(slotCount);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            out.writeInt(offset);
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * FNV-1a
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 映射区中的字符串表
+     */
+    static final class StringTable {
+        private final ByteBuffer buffer;
+        private final int size;
+        private final int slotCount;
+        private final int slotsOffset;
+        private final int offsetsOffset;
+        private final int bytesOffset;
+        private final int end;
+
+        StringTable(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.size = buffer.getInt(offset);
+            this.slotCount = buffer.getInt(offset + 4);
+            this.slotsOffset = offset + 8;
+            this.offsetsOffset = slotsOffset + slotCount * 4;
+            this.bytesOffset = offsetsOffset + (size + 1) * 4;
+            this.end = bytesOffset + buffer.getInt(offsetsOffset + size * 4);
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * 表之后下一段数据的起始位置
+         */
+        int end() {
+            return end;
+        }
+
+        /**
+         * 查找字符串的序号，不存在时返回-1
+         */
+        int indexOf(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int slot = hash(bytes) & (slotCount - 1);
+            while (true) {
+                int entry = buffer.getInt(slotsOffset + slot * 4);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (matches(entry - 1, bytes)) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+        }
+
+        String get(int index) {
+            int from = bytesOffset + buffer.getInt(offsetsOffset + index * 4);
+            byte[] bytes = new byte[bytesOffset + buffer.getInt(offsetsOffset + (index + 1) * 4) - from];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(from + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] toArray() {
+            String[] values = new String[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = get(i);
+            }
+            return values;
+        }
+
+        private boolean matches(int index, byte[] bytes) {
+            int from = bytesOffset + buffer.getInt(offsetsOffset + index * 4);
+            int to = bytesOffset + buffer.getInt(offsetsOffset + (index + 1) * 4);
+            if (to - from != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (buffer.get(from + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 朴素贝叶斯模型
+     */
+    public static final class NaiveBayes extends CompactModel {
+        // 类别数量少，解码到堆上
+        private final String[] labels;
+        private final int priorsOffset;
+        private final StringTable vocabulary;
+        private final int likelihoodsOffset;
+
+        NaiveBayes(ByteBuffer buffer) {
+            super(buffer);
+            StringTable labelTable = new StringTable(buffer, HEADER_BYTES);
+            this.labels = labelTable.toArray();
+            this.priorsOffset = labelTable.end();
+            this.vocabulary = new StringTable(buffer, priorsOffset + labels.length * 8);
+            this.likelihoodsOffset = vocabulary.end();
+        }
+
+        @Override
+        public String getModelType() {
+            return "text_classification";
+        }
+
+        /**
+         * 各类别的对数概率，与 NLPTrainingEngine.NaiveBayesClassifier#predict 结果一致
+         */
+        public Map<String, Double> predict(List<String> tokens) {
+            int[] terms = new int[tokens.size()];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = vocabulary.indexOf(tokens.get(i));
+            }
+            Map<String, Double> scores = new HashMap<>();
+            for (int label = 0; label < labels.length; label++) {
+                double score = buffer.getDouble(priorsOffset + label * 8);
+                if (Double.isNaN(score)) {
+                    continue;
+                }
+                for (int term : terms) {
+                    if (term >= 0) {
+                        score += buffer.getDouble(likelihoodsOffset + (term * labels.length + label) * 8);
+                    }
+                }
+                scores.put(labels[label], score);
+            }
+            return scores;
+        }
+
+        public String classify(Map<String, Double> scores) {
+            return scores.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse("unknown");
+        }
+    }
+
+    /**
+     * 水果推荐模型
+     */
+    public static final class FruitRecommendation extends CompactModel {
+        private final String[] fruits;
+        private final int baseScoresOffset;
+        private final int featureScoresOffset;
+        private final StringTable users;
+        private final int prefOffsetsOffset;
+        private final int prefFruitsOffset;
+        private final int prefScoresOffset;
+
+        FruitRecommendation(ByteBuffer buffer) {
+            super(buffer);
+            StringTable fruitTable = new StringTable(buffer, HEADER_BYTES);
+            this.fruits = fruitTable.toArray();
+            this.baseScoresOffset = fruitTable.end();
+            this.featureScoresOffset = baseScoresOffset + fruits.length * 8;
+            this.users = new StringTable(buffer, featureScoresOffset + fruits.length * 8);
+            this.prefOffsetsOffset = users.end();
+            int prefCount = buffer.getInt(prefOffsetsOffset + users.size() * 4);
+            this.prefFruitsOffset = prefOffsetsOffset + (users.size() + 1) * 4;
+            this.prefScoresOffset = prefFruitsOffset + prefCount * 4;
+        }
+
+        @Override
+        public String getModelType() {
+            return "fruit_recommendation";
+        }
+
+        /**
+         * 推荐得分最高的水果，评分方式与 NLPTrainingEngine.FruitRecommendationClassifier#recommend 一致
+         */
+        public List<String> recommend(String userId, int topK) {
+            double[] userScores = new double[fruits.length];
+            Arrays.fill(userScores, DEFAULT_USER_SCORE);
+            int user = userId == null ? -1 : users.indexOf(userId);
+            if (user >= 0) {
+                int from = buffer.getInt(prefOffsetsOffset + user * 4);
+                int to = buffer.getInt(prefOffsetsOffset + (user + 1) * 4);
+                for (int i = from; i < to; i++) {
+                    userScores[buffer.getInt(prefFruitsOffset + i * 4)] = buffer.getDouble(prefScoresOffset + i * 8);
+                }
+            }
+
+            Map<String, Double> scores = new LinkedHashMap<>(fruits.length * 2);
+            for (int fruit = 0; fruit < fruits.length; fruit++) {
+                double score = (buffer.getDouble(baseScoresOffset + fruit * 8) + userScores[fruit] * 0.4
+                        + buffer.getDouble(featureScoresOffset + fruit * 8)) / 3.0;
+                scores.put(fruits[fruit], score);
+            }
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+            List<String> result = new ArrayList<>(Math.min(topK, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < topK; i++) {
+                result.add(ranked.get(i).getKey());
+            }
+            return result;
+        }
+    }
+}
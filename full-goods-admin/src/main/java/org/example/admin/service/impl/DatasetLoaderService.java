@@ -8,10 +8,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * 数据集加载服务
- * 负责从CSV文件加载训练数据
+ * 负责从CSV文件加载训练数据，训练时按行流式读取
  */
 @Slf4j
 @Service
@@ -24,15 +26,7 @@ public class DatasetLoaderService {
         NLPTrainingEngine.Dataset dataset = new NLPTrainingEngine.Dataset();
         
         try {
-            // 加载主要的水果推荐数据集
-            loadCsvFile("fruit_recommendation_dataset.csv", dataset);
-            
-            // 加载用户行为数据集
-            loadCsvFile("user_behavior_dataset.csv", dataset);
-            
-            // 加载水果特征数据集
-            loadCsvFile("fruit_features_dataset.csv", dataset);
-            
+            dataset = NLPTrainingEngine.Dataset.copyOf(fruitRecommendationSource());
             log.info("成功加载水果推荐数据集，总样本数: {}", dataset.getSamples().size());
             
         } catch (Exception e) {
@@ -43,45 +37,69 @@ public class DatasetLoaderService {
         
         return dataset;
     }
-    
+
     /**
-     * 从CSV文件加载数据
+     * 水果推荐数据集的流式来源：水果推荐、用户行为、水果特征三个CSV文件依次读取
      */
-    private void loadCsvFile(String filename, NLPTrainingEngine.Dataset dataset) throws IOException {
-        Path filePath = Paths.get(filename);
-        
-        if (!Files.exists(filePath)) {
-            log.warn("文件不存在: {}", filename);
-            return;
+    public NLPTrainingEngine.SampleSource fruitRecommendationSource() {
+        Map<Path, Function<String, NLPTrainingEngine.TextSample>> files = new LinkedHashMap<>();
+        files.put(Paths.get("fruit_recommendation_dataset.csv"), this::parseFruitRecommendationLine);
+        files.put(Paths.get("user_behavior_dataset.csv"), this::parseUserBehaviorLine);
+        files.put(Paths.get("fruit_features_dataset.csv"), this::parseFruitFeaturesLine);
+        return new CsvSampleSource(files);
+    }
+
+    /**
+     * 上传的数据集文件的流式来源
+     *
+     * @param filePath 文件路径
+     * @param dataType 数据类型：text_classification 或 fruit_recommendation
+     */
+    public NLPTrainingEngine.SampleSource openDatasetSource(String filePath, String dataType) throws FileNotFoundException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("数据集文件不存在: " + filePath);
         }
-        
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-            boolean isFirstLine = true;
-            
-            while ((line = reader.readLine()) != null) {
-                // 跳过标题行
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
-                }
-                
-                // 解析CSV行并添加到数据集
-                if (filename.contains("fruit_recommendation")) {
-                    parseFruitRecommendationLine(line, dataset);
-                } else if (filename.contains("user_behavior")) {
-                    parseUserBehaviorLine(line, dataset);
-                } else if (filename.contains("fruit_features")) {
-                    parseFruitFeaturesLine(line, dataset);
-                }
-            }
+
+        Function<String, NLPTrainingEngine.TextSample> parser;
+        if ("text_classification".equals(dataType)) {
+            parser = this::parseTextClassificationLine;
+        } else if ("fruit_recommendation".equals(dataType)) {
+            parser = this::parseUploadedFruitLine;
+        } else {
+            log.warn("不支持的数据类型: {}，数据集为空", dataType);
+            parser = line -> null;
         }
+        return new CsvSampleSource(Collections.singletonMap(path, parser));
+    }
+
+    /**
+     * 解析文本分类数据行，格式: text,label
+     */
+    private NLPTrainingEngine.TextSample parseTextClassificationLine(String line) {
+        String[] parts = line.split(",", 2);
+        if (parts.length == 2) {
+            return new NLPTrainingEngine.TextSample(parts[0].trim(), parts[1].trim());
+        }
+        return null;
+    }
+
+    /**
+     * 解析上传的水果推荐数据行，整行作为文本，水果名称作为标签
+     * 格式: userId,age,gender,season,weather,history,fruitName,sweetness,acidity,texture,color,size,price,nutritionScore,recommendationScore
+     */
+    private NLPTrainingEngine.TextSample parseUploadedFruitLine(String line) {
+        String[] parts = line.split(",");
+        if (parts.length >= 15) {
+            return new NLPTrainingEngine.TextSample(line, parts[6].trim());
+        }
+        return null;
     }
     
     /**
      * 解析水果推荐数据行
      */
-    private void parseFruitRecommendationLine(String line, NLPTrainingEngine.Dataset dataset) {
+    private NLPTrainingEngine.TextSample parseFruitRecommendationLine(String line) {
         String[] parts = line.split(",");
         if (parts.length >= 15) {
             // 构建特征文本
@@ -96,14 +114,15 @@ public class DatasetLoaderService {
             // 推荐评分作为标签
             String label = parts[parts.length - 1].trim();
             
-            dataset.addSample(featureText.toString(), label);
+            return new NLPTrainingEngine.TextSample(featureText.toString(), label);
         }
+        return null;
     }
     
     /**
      * 解析用户行为数据行
      */
-    private void parseUserBehaviorLine(String line, NLPTrainingEngine.Dataset dataset) {
+    private NLPTrainingEngine.TextSample parseUserBehaviorLine(String line) {
         String[] parts = line.split(",");
         if (parts.length >= 10) {
             // 构建用户行为特征文本
@@ -112,14 +131,15 @@ public class DatasetLoaderService {
             // 使用行为类型作为标签
             String label = parts[2].trim(); // 行为类型
             
-            dataset.addSample(featureText, label);
+            return new NLPTrainingEngine.TextSample(featureText, label);
         }
+        return null;
     }
     
     /**
      * 解析水果特征数据行
      */
-    private void parseFruitFeaturesLine(String line, NLPTrainingEngine.Dataset dataset) {
+    private NLPTrainingEngine.TextSample parseFruitFeaturesLine(String line) {
         String[] parts = line.split(",");
         if (parts.length >= 12) {
             // 构建水果特征文本
@@ -128,8 +148,9 @@ public class DatasetLoaderService {
             // 使用受欢迎程度作为标签
             String label = parts[parts.length - 1].trim();
             
-            dataset.addSample(featureText, label);
+            return new NLPTrainingEngine.TextSample(featureText, label);
         }
+        return null;
     }
     
     /**
@@ -192,11 +213,80 @@ public class DatasetLoaderService {
             return 0;
         }
         
-        try {
-            return (int) Files.lines(filePath).count() - 1; // 减去标题行
+        try (Stream<String> lines = Files.lines(filePath)) {
+            return (int) lines.count() - 1; // 减去标题行
         } catch (IOException e) {
             log.error("统计文件行数失败: {}", filename, e);
             return 0;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 按行读取的CSV样本来源，每个文件跳过标题行，解析失败的行跳过
+     */
+    private class CsvSampleSource implements NLPTrainingEngine.SampleSource {
+        private final Map<Path, Function<String, NLPTrainingEngine.TextSample>> files = new LinkedHashMap<>();
+
+        CsvSampleSource(Map<Path, Function<String, NLPTrainingEngine.TextSample>> files) {
+            files.forEach((path, parser) -> {
+                if (Files.exists(path)) {
+                    this.files.put(path, parser);
+                } else {
+                    log.warn("文件不存在: {}", path);
+                }
+            });
+        }
+
+        @Override
+        public NLPTrainingEngine.SampleReader open() {
+            Iterator<Map.Entry<Path, Function<String, NLPTrainingEngine.TextSample>>> iterator =
+                    files.entrySet().iterator();
+            return new NLPTrainingEngine.SampleReader() {
+                private BufferedReader reader;
+                private Function<String, NLPTrainingEngine.TextSample> parser;
+
+                @Override
+                public NLPTrainingEngine.TextSample next() throws IOException {
+                    while (true) {
+                        if (reader == null) {
+                            if (!iterator.hasNext()) {
+                                return null;
+                            }
+                            Map.Entry<Path, Function<String, NLPTrainingEngine.TextSample>> file = iterator.next();
+                            reader = Files.newBufferedReader(file.getKey());
+                            parser = file.getValue();
+                            // 跳过标题行
+                            reader.readLine();
+                        }
+                        String line = reader.readLine();
+                        if (line == null) {
+                            reader.close();
+                            reader = null;
+                            continue;
+                        }
+                        NLPTrainingEngine.TextSample sample = parser.apply(line);
+                        if (sample != null) {
+                            return sample;
+                        }
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public long estimateSize() {
+            long total = 0;
+            for (Path path : files.keySet()) {
+                total += Math.max(countLinesInFile(path.toString()), 0);
+            }
+            return total;
+        }
+    }
+}
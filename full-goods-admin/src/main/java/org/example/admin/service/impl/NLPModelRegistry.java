@@ -0,0 +1,178 @@
+package org.example.admin.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 模型注册表
+ * 加载过的模型按任务ID缓存在内存中，超过上限时按模型文件大小淘汰最久未使用的模型；同一模型同时只加载一次。
+ * 重新训练后调用 {@link #invalidate(Long)}，缓存的旧版本失效，正在进行的旧版本加载结果也不会被缓存。
+ * 部署的模型单独保存、不参与淘汰，重新部署时整体替换，预测请求要么用旧模型，要么用新模型。
+ */
+@Slf4j
+@Component
+public class NLPModelRegistry {
+
+    // 缓存模型文件总大小上限（MB），模型文件是内存映射的，主要占用页缓存而不是堆内存
+    @Value("${nlp.model.cache-max-size:256}")
+    private long cacheMaxSize;
+
+    // 按访问顺序排列，最久未访问的在最前，访问需持有锁
+    private final LinkedHashMap<Long, CompactModel> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    private final ConcurrentMap<Long, CompletableFuture<CompactModel>> loading = new ConcurrentHashMap<>();
+
+    // 每次重新训练加1，加载开始和结束时版本不同则不缓存
+    private final ConcurrentMap<Long, Long> generations = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Deployment> deployments = new ConcurrentHashMap<>();
+
+    /**
+     * 获取模型，已部署的优先使用部署版本
+     *
+     * @param loader 从模型文件加载
+     */
+    public CompactModel get(Long taskId, Callable<CompactModel> loader) throws Exception {
+        Deployment deployment = deployments.get(taskId);
+        if (deployment != null) {
+            return deployment.getModel();
+        }
+        return getCached(taskId, loader);
+    }
+
+    /**
+     * 部署模型，加载完成后才替换当前部署
+     */
+    public Deployment deploy(Long taskId, String deploymentId, Callable<CompactModel> loader) throws Exception {
+        Deployment deployment = new Deployment(deploymentId, getCached(taskId, loader), System.currentTimeMillis());
+        Deployment previous = deployments.put(taskId, deployment);
+        if (previous != null && previous.getModel().getVersion() != deployment.getModel().getVersion()) {
+            log.info("模型部署已切换，任务ID: {}, 版本: {} -> {}", taskId,
+                    previous.getModel().getVersion(), deployment.getModel().getVersion());
+        }
+        return deployment;
+    }
+
+    public Deployment getDeployment(Long taskId) {
+        return deployments.get(taskId);
+    }
+
+    /**
+     * 模型重新训练后调用，清除缓存的旧版本，已部署的版本保持不变
+     */
+    public void invalidate(Long taskId) {
+        generations.merge(taskId, 1L, Long::sum);
+        loading.remove(taskId);
+        synchronized (entries) {
+            CompactModel removed = entries.remove(taskId);
+            if (removed != null) {
+                totalBytes -= removed.getSizeInBytes();
+            }
+        }
+    }
+
+    private CompactModel getCached(Long taskId, Callable<CompactModel> loader) throws Exception {
+        CompactModel model;
+        synchronized (entries) {
+            model = entries.get(taskId);
+        }
+        if (model != null) {
+            return model;
+        }
+
+        CompletableFuture<CompactModel> future = new CompletableFuture<>();
+        CompletableFuture<CompactModel> inFlight = loading.putIfAbsent(taskId, future);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        long generation = generations.getOrDefault(taskId, 0L);
+        try {
+            long startTime = System.currentTimeMillis();
+            model = loader.call();
+            if (generations.getOrDefault(taskId, 0L) == generation) {
+                put(taskId, model);
+            }
+            log.info("模型已加载，任务ID: {}, 版本: {}, 大小: {} bytes, 耗时: {}ms", taskId, model.getVersion(),
+                    model.getSizeInBytes(), System.currentTimeMillis() - startTime);
+            future.complete(model);
+            return model;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(taskId, future);
+        }
+    }
+
+    private void put(Long taskId, CompactModel model) {
+        long maxBytes = cacheMaxSize * 1024 * 1024;
+        synchronized (entries) {
+            CompactModel previous = entries.put(taskId, model);
+            if (previous != null) {
+                totalBytes -= previous.getSizeInBytes();
+            }
+            totalBytes += model.getSizeInBytes();
+
+            // 淘汰最久未使用的模型，至少保留刚加载的一个；映射区在模型对象被回收后释放
+            Iterator<Map.Entry<Long, CompactModel>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+                Map.Entry<Long, CompactModel> eldest = iterator.next();
+                if (eldest.getValue() == model) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.getValue().getSizeInBytes();
+                log.debug("模型已从缓存淘汰，任务ID: {}", eldest.getKey());
+            }
+        }
+    }
+
+    private static CompactModel await(CompletableFuture<CompactModel> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * 当前部署
+     */
+    public static class Deployment {
+
+        private final String deploymentId;
+        private final CompactModel model;
+        private final long deployTime;
+
+        Deployment(String deploymentId, CompactModel model, long deployTime) {
+            this.deploymentId = deploymentId;
+            this.model = model;
+            this.deployTime = deployTime;
+        }
+
+        public String getDeploymentId() {
+            return deploymentId;
+        }
+
+        public CompactModel getModel() {
+            return model;
+        }
+
+        public long getDeployTime() {
+            return deployTime;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package org.example.admin.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -18,10 +22,28 @@ import java.util.stream.Collectors;
 public class NLPTrainingEngine implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private static final Pattern TEXT_CLEAN_PATTERN = Pattern.compile("[^\\u4e00-\\u9fa5a-zA-Z0-9\\s]");
+
+    // 每个分片的样本数，读取时只保留正在计算的分片
+    private static final int CHUNK_SIZE = 4096;
+
+    // 分片内继续拆分的阈值
+    private static final int SPLIT_THRESHOLD = 512;
+
+    // 每隔多少个样本取1个作为验证集
+    private static final int VALIDATION_INTERVAL = 5;
+
+    // 紧凑二进制格式的模型文件名
+
     private final ExecutorService trainingExecutor = Executors.newFixedThreadPool(2);
+    private final ForkJoinPool countingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
     private final Map<Long, TrainingTask> runningTasks = new ConcurrentHashMap<>();
-    private final Map<String, Integer> vocabulary = new ConcurrentHashMap<>();
-    private final Pattern textCleanPattern = Pattern.compile("[^\\u4e00-\\u9fa5a-zA-Z0-9\\s]");
+
+    // 同时在计算中的分片数上限
+    private final int maxChunksInFlight = countingPool.getParallelism() * 2;
+
+    @Autowired
+    private NLPModelRegistry modelRegistry;
 
     /**
      * 训练任务类
@@ -100,10 +122,38 @@ public class NLPTrainingEngine implements Serializable {
         }
     }
 
+    /**
+     * 样本读取器，读完返回null
+     */
+    public interface SampleReader extends Closeable {
+
+        TextSample next() throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * 可重复读取的样本来源，训练时顺序流式读取，不要求样本全部驻留内存
+     */
+    public interface SampleSource {
+
+        /**
+         * 从头开始一次顺序读取
+         */
+        SampleReader open() throws IOException;
+
+        /**
+         * 样本数估计，用于计算进度，未知时返回-1
+         */
+        long estimateSize();
+    }
+
     /**
      * 数据集类
      */
-    public static class Dataset {
+    public static class Dataset implements SampleSource {
         private List<TextSample> samples;
         private Set<String> labels;
         private Map<String, Integer> labelToIndex;
@@ -130,6 +180,31 @@ public class NLPTrainingEngine implements Serializable {
         public Set<String> getLabels() { return labels; }
         public Map<String, Integer> getLabelToIndex() { return labelToIndex; }
         public int getNumClasses() { return labels.size(); }
+
+        @Override
+        public SampleReader open() {
+            Iterator<TextSample> iterator = samples.iterator();
+            return () -> iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return samples.size();
+        }
+
+        /**
+         * 把样本来源全部读入内存
+         */
+        public static Dataset copyOf(SampleSource source) throws IOException {
+            Dataset dataset = new Dataset();
+            try (SampleReader reader = source.open()) {
+                TextSample sample;
+                while ((sample = reader.next()) != null) {
+                    dataset.addSample(sample.getText(), sample.getLabel());
+                }
+            }
+            return dataset;
+        }
     }
 
     /**
@@ -158,7 +233,7 @@ public class NLPTrainingEngine implements Serializable {
     /**
      * 水果推荐分类器
      */
-    public static class FruitRecommendationClassifier {
+    public static class FruitRecommendationClassifier implements TrainingCounts<FruitRecommendationClassifier> {
         private Map<String, Double> fruitScores;
         private Map<String, Map<String, Double>> userPreferences;
         private Map<String, Map<String, Double>> fruitFeatures;
@@ -172,29 +247,43 @@ public class NLPTrainingEngine implements Serializable {
         public void train(Dataset dataset) {
             // 训练水果推荐模型
             for (TextSample sample : dataset.getSamples()) {
-                String[] parts = sample.getText().split(",");
-                if (parts.length >= 15) {
-                    String userId = parts[0];
-                    String fruitName = parts[6];
-                    double recommendationScore = Double.parseDouble(parts[14]);
-                    
-                    // 更新水果评分
-                    fruitScores.put(fruitName, fruitScores.getOrDefault(fruitName, 0.0) + recommendationScore);
-                    
-                    // 更新用户偏好
-                    userPreferences.computeIfAbsent(userId, k -> new HashMap<>())
-                        .put(fruitName, recommendationScore);
-                    
-                    // 更新水果特征
-                    Map<String, Double> features = new HashMap<>();
-                    features.put("sweetness", Double.parseDouble(parts[7]));
-                    features.put("acidity", Double.parseDouble(parts[8]));
-                    features.put("price", Double.parseDouble(parts[11]));
-                    features.put("nutrition", Double.parseDouble(parts[12]));
-                    fruitFeatures.put(fruitName, features);
-                }
+                add(sample);
+            }
+        }
+
+        @Override
+        public void add(TextSample sample) {
+            String[] parts = sample.getText().split(",");
+            if (parts.length >= 15) {
+                String userId = parts[0];
+                String fruitName = parts[6];
+                double recommendationScore = Double.parseDouble(parts[14]);
+
+                // 更新水果评分
+                fruitScores.merge(fruitName, recommendationScore, Double::sum);
+
+                // 更新用户偏好
+                userPreferences.computeIfAbsent(userId, k -> new HashMap<>())
+                    .put(fruitName, recommendationScore);
+
+                // 更新水果特征
+                Map<String, Double> features = new HashMap<>();
+                features.put("sweetness", Double.parseDouble(parts[7]));
+                features.put("acidity", Double.parseDouble(parts[8]));
+                features.put("price", Double.parseDouble(parts[11]));
+                features.put("nutrition", Double.parseDouble(parts[12]));
+                fruitFeatures.put(fruitName, features);
             }
         }
+
+        @Override
+        public void merge(FruitRecommendationClassifier other) {
+            // 评分累加，偏好和特征以后出现的样本为准
+            other.fruitScores.forEach((fruit, score) -> fruitScores.merge(fruit, score, Double::sum));
+            other.userPreferences.forEach((userId, prefs) ->
+                userPreferences.computeIfAbsent(userId, k -> new HashMap<>()).putAll(prefs));
+            fruitFeatures.putAll(other.fruitFeatures);
+        }
         
         public List<String> recommend(String userId, int topK) {
             Map<String, Double> scores = new HashMap<>();
@@ -226,75 +315,175 @@ public class NLPTrainingEngine implements Serializable {
         }
     }
     
+    /**
+     * 词或类别到连续int序号的映射，多个分片共享同一份，计数数组直接按序号下标访问
+     */
+    static final class TermIndex {
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        int idOf(String term) {
+            Integer id = ids.get(term);
+            return id != null ? id : ids.computeIfAbsent(term, k -> nextId.getAndIncrement());
+        }
+
+        int size() {
+            return nextId.get();
+        }
+
+        /**
+         * 按序号排列的词
+         */
+        String[] terms() {
+            String[] terms = new String[size()];
+            ids.forEach((term, id) -> terms[id] = term);
+            return terms;
+        }
+    }
+
+    /**
+     * 可分片累加、按分片顺序合并的训练计数
+     */
+    interface TrainingCounts<C extends TrainingCounts<C>> {
+
+        void add(TextSample sample);
+
+        void merge(C other);
+    }
+
+    /**
+     * 朴素贝叶斯的词频计数，一次遍历得到所有类别的计数
+     */
+    static final class NaiveBayesCounts implements TrainingCounts<NaiveBayesCounts> {
+        private final TermIndex terms;
+        private final TermIndex labels;
+        private int[] docCounts = new int[0];
+        private long[] totalWords = new long[0];
+        private int[][] wordCounts = new int[0][];
+
+        NaiveBayesCounts(TermIndex terms, TermIndex labels) {
+            this.terms = terms;
+            this.labels = labels;
+        }
+
+        @Override
+        public void add(TextSample sample) {
+            int label = labels.idOf(sample.getLabel());
+            ensureLabels(label + 1);
+            docCounts[label]++;
+            for (String token : splitTokens(sample.getText())) {
+                int term = terms.idOf(token);
+                int[] counts = wordCounts[label];
+                if (term >= counts.length) {
+                    counts = wordCounts[label] = Arrays.copyOf(counts, Math.max(term + 1, counts.length * 2));
+                }
+                counts[term]++;
+                totalWords[label]++;
+            }
+        }
+
+        @Override
+        public void merge(NaiveBayesCounts other) {
+            ensureLabels(other.docCounts.length);
+            for (int label = 0; label < other.docCounts.length; label++) {
+                docCounts[label] += other.docCounts[label];
+                totalWords[label] += other.totalWords[label];
+                int[] source = other.wordCounts[label];
+                int[] target = wordCounts[label];
+                if (target.length < source.length) {
+                    target = wordCounts[label] = Arrays.copyOf(target, source.length);
+                }
+                for (int term = 0; term < source.length; term++) {
+                    target[term] += source[term];
+                }
+            }
+        }
+
+        private void ensureLabels(int size) {
+            if (docCounts.length >= size) {
+                return;
+            }
+            int oldSize = docCounts.length;
+            docCounts = Arrays.copyOf(docCounts, size);
+            totalWords = Arrays.copyOf(totalWords, size);
+            wordCounts = Arrays.copyOf(wordCounts, size);
+            for (int label = oldSize; label < size; label++) {
+                wordCounts[label] = new int[16];
+            }
+        }
+    }
+
     /**
      * 朴素贝叶斯分类器
+     * 只保存计数，预测时按拉普拉斯平滑计算概率
      */
     public static class NaiveBayesClassifier {
-        private Map<String, Double> classProbabilities;
-        private Map<String, Map<String, Double>> featureProbabilities;
-        private Set<String> vocabulary;
-        
+        private String[] labels;
+        private int[] docCounts;
+        private Map<String, Integer> vocabulary;
+        private int[][] wordCounts;
+        private long[] totalWords;
+        private int totalDocs;
+
         public NaiveBayesClassifier() {
-            this.classProbabilities = new HashMap<>();
-            this.featureProbabilities = new HashMap<>();
-            this.vocabulary = new HashSet<>();
+            this.labels = new String[0];
+            this.docCounts = new int[0];
+            this.vocabulary = new HashMap<>();
+            this.wordCounts = new int[0][];
+            this.totalWords = new long[0];
         }
-        
+
+        NaiveBayesClassifier(NaiveBayesCounts counts) {
+            init(counts);
+        }
+
         public void train(Dataset dataset) {
-            // 计算类别概率
-            Map<String, Integer> classCounts = new HashMap<>();
+            NaiveBayesCounts counts = new NaiveBayesCounts(new TermIndex(), new TermIndex());
             for (TextSample sample : dataset.getSamples()) {
-                classCounts.merge(sample.getLabel(), 1, Integer::sum);
-                vocabulary.addAll(sample.getTokens());
+                counts.add(sample);
             }
-            
-            int totalSamples = dataset.getSamples().size();
-            for (Map.Entry<String, Integer> entry : classCounts.entrySet()) {
-                classProbabilities.put(entry.getKey(), (double) entry.getValue() / totalSamples);
-            }
-            
-            // 计算特征概率
-            for (String label : dataset.getLabels()) {
-                Map<String, Double> wordCounts = new HashMap<>();
-                int totalWords = 0;
-                
-                for (TextSample sample : dataset.getSamples()) {
-                    if (sample.getLabel().equals(label)) {
-                        for (String token : sample.getTokens()) {
-                            wordCounts.merge(token, 1.0, Double::sum);
-                            totalWords++;
-                        }
-                    }
-                }
-                
-                Map<String, Double> wordProbs = new HashMap<>();
-                for (String word : vocabulary) {
-                    // 拉普拉斯平滑
-                    double count = wordCounts.getOrDefault(word, 0.0);
-                    wordProbs.put(word, (count + 1.0) / (totalWords + vocabulary.size()));
-                }
-                featureProbabilities.put(label, wordProbs);
+            init(counts);
+        }
+
+        private void init(NaiveBayesCounts counts) {
+            this.labels = counts.labels.terms();
+            this.docCounts = Arrays.copyOf(counts.docCounts, labels.length);
+            this.totalWords = Arrays.copyOf(counts.totalWords, labels.length);
+            this.wordCounts = Arrays.copyOf(counts.wordCounts, labels.length);
+            String[] terms = counts.terms.terms();
+            this.vocabulary = new HashMap<>(terms.length * 2);
+            for (int i = 0; i < terms.length; i++) {
+                vocabulary.put(terms[i], i);
             }
+            this.totalDocs = Arrays.stream(docCounts).sum();
         }
-        
+
         public Map<String, Double> predict(List<String> tokens) {
             Map<String, Double> scores = new HashMap<>();
-            
-            for (String label : classProbabilities.keySet()) {
-                double score = Math.log(classProbabilities.get(label));
-                Map<String, Double> wordProbs = featureProbabilities.get(label);
-                
+            int vocabularySize = vocabulary.size();
+
+            for (int label = 0; label < labels.length; label++) {
+                if (docCounts[label] == 0) {
+                    continue;
+                }
+                double score = Math.log((double) docCounts[label] / totalDocs);
+                int[] counts = wordCounts[label];
+                double denominator = totalWords[label] + vocabularySize;
+
                 for (String token : tokens) {
-                    if (wordProbs.containsKey(token)) {
-                        score += Math.log(wordProbs.get(token));
+                    Integer term = vocabulary.get(token);
+                    if (term != null) {
+                        // 拉普拉斯平滑
+                        int count = term < counts.length ? counts[term] : 0;
+                        score += Math.log((count + 1.0) / denominator);
                     }
                 }
-                scores.put(label, score);
+                scores.put(labels[label], score);
             }
-            
+
             return scores;
         }
-        
+
         public String classify(List<String> tokens) {
             Map<String, Double> scores = predict(tokens);
             return scores.entrySet().stream()
@@ -302,28 +491,139 @@ public class NLPTrainingEngine implements Serializable {
                 .map(Map.Entry::getKey)
                 .orElse("unknown");
         }
+
+        /**
+         * 各词在训练集中的出现次数
+         */
+        public Map<String, Integer> termFrequencies() {
+            Map<String, Integer> frequencies = new HashMap<>(vocabulary.size() * 2);
+            vocabulary.forEach((term, id) -> {
+                int count = 0;
+                for (int[] counts : wordCounts) {
+                    count += id < counts.length ? counts[id] : 0;
+                }
+                frequencies.put(term, count);
+            });
+            return frequencies;
+        }
+    }
+
+    /**
+     * 最初版本序列化格式的朴素贝叶斯模型，只用于转换为二进制格式
+     */
+    static class LegacyNaiveBayesModel {
+        final Map<String, Double> classProbabilities;
+        final Map<String, Map<String, Double>> featureProbabilities;
+        final Set<String> vocabulary;
+
+        LegacyNaiveBayesModel(Map<String, Double> classProbabilities,
+                              Map<String, Map<String, Double>> featureProbabilities, Set<String> vocabulary) {
+            this.classProbabilities = classProbabilities;
+            this.featureProbabilities = featureProbabilities;
+            this.vocabulary = vocabulary;
+        }
+    }
+
+    /**
+     * 验证集上的命中计数
+     */
+    private static final class AccuracyCounts implements TrainingCounts<AccuracyCounts> {
+        private final Predicate<TextSample> isCorrect;
+        private long correct;
+        private long total;
+
+        AccuracyCounts(Predicate<TextSample> isCorrect) {
+            this.isCorrect = isCorrect;
+        }
+
+        @Override
+        public void add(TextSample sample) {
+            total++;
+            if (isCorrect.test(sample)) {
+                correct++;
+            }
+        }
+
+        @Override
+        public void merge(AccuracyCounts other) {
+            correct += other.correct;
+            total += other.total;
+        }
+
+        double accuracy() {
+            return total > 0 ? (double) correct / total : 0.0;
+        }
+    }
+
+    /**
+     * 对一个分片计数，超过阈值时对半拆分并行计算，按顺序合并
+     */
+    private static final class CountTask<C extends TrainingCounts<C>> extends RecursiveTask<C> {
+        private final List<TextSample> samples;
+        private final int from;
+        private final int to;
+        private final Supplier<C> factory;
+
+        CountTask(List<TextSample> samples, int from, int to, Supplier<C> factory) {
+            this.samples = samples;
+            this.from = from;
+            this.to = to;
+            this.factory = factory;
+        }
+
+        @Override
+        protected C compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                C counts = factory.get();
+                for (int i = from; i < to; i++) {
+                    counts.add(samples.get(i));
+                }
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask<C> right = new CountTask<>(samples, mid, to, factory);
+            right.fork();
+            C counts = new CountTask<>(samples, from, mid, factory).compute();
+            counts.merge(right.join());
+            return counts;
+        }
+    }
+
+    /**
+     * 训练被停止
+     */
+    private static class TrainingStoppedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
     }
 
     /**
      * 开始训练任务
      */
     public TrainingTask startTraining(Long taskId, String taskName, String modelType, 
-                                    Dataset dataset, Map<String, Object> config) {
+                                    SampleSource source, Map<String, Object> config) {
         
         int epochs = (Integer) config.getOrDefault("epochs", 10);
         int batchSize = (Integer) config.getOrDefault("batchSize", 32);
         double learningRate = (Double) config.getOrDefault("learningRate", 0.001);
         
-        TrainingTask task = new TrainingTask(taskId, taskName, modelType, epochs);
+        // 计数模型遍历一次即完成训练
+        TrainingTask task = new TrainingTask(taskId, taskName, modelType, 1);
         runningTasks.put(taskId, task);
         
         task.addLog("INFO", "开始训练任务: " + taskName);
         task.addLog("INFO", String.format("配置: epochs=%d, batchSize=%d, learningRate=%.4f", 
                                          epochs, batchSize, learningRate));
+        if (epochs > 1) {
+            task.addLog("INFO", "计数模型一次遍历即完成训练，忽略epochs配置");
+        }
         
         Future<?> future = trainingExecutor.submit(() -> {
             try {
-                executeTraining(task, dataset, config);
+                executeTraining(task, source);
+            } catch (TrainingStoppedException e) {
+                task.setStatus("stopped");
+                task.setEndTime(System.currentTimeMillis());
+                task.addLog("INFO", "训练已停止");
             } catch (Exception e) {
                 task.setStatus("failed");
                 task.setEndTime(System.currentTimeMillis());
@@ -340,84 +640,112 @@ public class NLPTrainingEngine implements Serializable {
 
     /**
      * 执行训练过程
+     * 第一遍流式读取训练样本并分片并行计数，第二遍在验证样本上评估
      */
-    private void executeTraining(TrainingTask task, Dataset dataset, Map<String, Object> config) {
-        task.addLog("INFO", "开始数据预处理...");
-        
-        // 数据预处理
-        preprocessDataset(dataset);
-        task.addLog("INFO", String.format("数据预处理完成，共%d个样本，%d个类别", 
-                                         dataset.getSamples().size(), dataset.getNumClasses()));
-        
-        // 划分训练集和验证集
-        List<TextSample> samples = new ArrayList<>(dataset.getSamples());
-        Collections.shuffle(samples);
-        int trainSize = (int) (samples.size() * 0.8);
-        List<TextSample> trainSamples = samples.subList(0, trainSize);
-        List<TextSample> validSamples = samples.subList(trainSize, samples.size());
-        
-        task.addLog("INFO", String.format("数据划分完成，训练集%d个样本，验证集%d个样本", 
-                                         trainSamples.size(), validSamples.size()));
-        
-        // 根据模型类型创建分类器
+    private void executeTraining(TrainingTask task, SampleSource source) throws IOException {
+        task.addLog("INFO", String.format("开始训练，每%d个样本取1个作为验证集", VALIDATION_INTERVAL));
+        task.setCurrentEpoch(1);
+
         Object classifier;
+        Predicate<TextSample> isCorrect;
         if ("fruit_recommendation".equals(task.getModelType())) {
-            classifier = new FruitRecommendationClassifier();
+            FruitRecommendationClassifier fruitClassifier = runPass(task, source, false,
+                    FruitRecommendationClassifier::new, 0, 80);
+            classifier = fruitClassifier;
+            isCorrect = sample -> isRecommended(fruitClassifier, sample);
         } else {
-            classifier = new NaiveBayesClassifier();
+            TermIndex terms = new TermIndex();
+            TermIndex labels = new TermIndex();
+            NaiveBayesClassifier nbClassifier = new NaiveBayesClassifier(runPass(task, source, false,
+                    () -> new NaiveBayesCounts(terms, labels), 0, 80));
+            classifier = nbClassifier;
+            isCorrect = sample -> nbClassifier.classify(splitTokens(sample.getText())).equals(sample.getLabel());
         }
-        
-        // 模拟训练过程
-        for (int epoch = 1; epoch <= task.getTotalEpochs(); epoch++) {
-            if (task.getStatus().equals("stopped")) {
-                task.setEndTime(System.currentTimeMillis());
-                task.addLog("INFO", "训练已停止");
-                return;
+
+        AccuracyCounts evaluation = runPass(task, source, true, () -> new AccuracyCounts(isCorrect), 80, 100);
+        double accuracy = evaluation.accuracy();
+        double loss = 1.0 - accuracy; // 简化的损失计算
+
+        task.setCurrentAccuracy(accuracy);
+        task.setCurrentLoss(loss);
+        task.addLog("INFO", String.format("Epoch 1/1 - Loss: %.4f, Accuracy: %.4f", loss, accuracy));
+
+        // 模型保存失败时任务失败，不能标记为完成后继续使用旧模型
+        saveModel(task, classifier);
+
+        task.setStatus("completed");
+        task.setProgress(100);
+        task.setEndTime(System.currentTimeMillis());
+        task.addLog("INFO", "训练完成！");
+    }
+
+    /**
+     * 顺序读取样本来源，按分片提交到fork/join线程池计数，再按分片顺序合并
+     *
+     * @param validation true只处理验证样本，false只处理训练样本
+     * @param progressFrom 本轮开始时的进度
+     * @param progressTo 本轮结束时的进度
+     */
+    private <C extends TrainingCounts<C>> C runPass(TrainingTask task, SampleSource source, boolean validation,
+                                                    Supplier<C> factory, int progressFrom, int progressTo)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        long estimate = source.estimateSize();
+        C result = factory.get();
+        Deque<ForkJoinTask<C>> inFlight = new ArrayDeque<>();
+        long index = 0;
+        long selected = 0;
+
+        try (SampleReader reader = source.open()) {
+            List<TextSample> chunk = new ArrayList<>(CHUNK_SIZE);
+            TextSample sample;
+            while ((sample = reader.next()) != null) {
+                if ((index++ % VALIDATION_INTERVAL == VALIDATION_INTERVAL - 1) == validation) {
+                    chunk.add(sample);
+                }
+                if (chunk.size() < CHUNK_SIZE) {
+                    continue;
+                }
+                checkStopped(task);
+                selected += chunk.size();
+                inFlight.addLast(countingPool.submit(new CountTask<>(chunk, 0, chunk.size(), factory)));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                if (inFlight.size() >= maxChunksInFlight) {
+                    result.merge(inFlight.removeFirst().join());
+                }
+                updateProgress(task, index, estimate, progressFrom, progressTo);
             }
-            
-            task.setCurrentEpoch(epoch);
-            task.setProgress((int) ((double) epoch / task.getTotalEpochs() * 100));
-            
-            // 训练分类器
-            Dataset trainDataset = new Dataset();
-            for (TextSample sample : trainSamples) {
-                trainDataset.addSample(sample.getText(), sample.getLabel());
+            if (!chunk.isEmpty()) {
+                selected += chunk.size();
+                inFlight.addLast(countingPool.submit(new CountTask<>(chunk, 0, chunk.size(), factory)));
             }
-            trainDataset.buildLabelIndex();
-            
-            double accuracy;
-            if (classifier instanceof FruitRecommendationClassifier) {
-                ((FruitRecommendationClassifier) classifier).train(trainDataset);
-                accuracy = evaluateFruitRecommendationClassifier((FruitRecommendationClassifier) classifier, validSamples);
-            } else {
-                ((NaiveBayesClassifier) classifier).train(trainDataset);
-                accuracy = evaluateClassifier((NaiveBayesClassifier) classifier, validSamples);
+            while (!inFlight.isEmpty()) {
+                result.merge(inFlight.removeFirst().join());
             }
-            double loss = 1.0 - accuracy; // 简化的损失计算
-            
-            task.setCurrentAccuracy(accuracy);
-            task.setCurrentLoss(loss);
-            
-            task.addLog("INFO", String.format("Epoch %d/%d - Loss: %.4f, Accuracy: %.4f", 
-                                             epoch, task.getTotalEpochs(), loss, accuracy));
-            
-            // 模拟训练时间
-            try {
-                Thread.sleep(2000); // 每个epoch等待2秒
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                task.setStatus("stopped");
-                return;
+        } finally {
+            for (ForkJoinTask<C> pending : inFlight) {
+                pending.cancel(true);
             }
         }
-        
-        task.setStatus("completed");
-        task.setProgress(100);
-        task.setEndTime(System.currentTimeMillis());
-        task.addLog("INFO", "训练完成！");
-        
-        // 保存模型（模拟）
-        saveModel(task, classifier);
+
+        task.setProgress(progressTo);
+        task.addLog("INFO", String.format("%s完成，共%d个样本，耗时%dms", validation ? "验证" : "训练",
+                selected, System.currentTimeMillis() - startTime));
+        return result;
+    }
+
+    private void checkStopped(TrainingTask task) {
+        if ("stopped".equals(task.getStatus()) || Thread.currentThread().isInterrupted()) {
+            throw new TrainingStoppedException();
+        }
+    }
+
+    private void updateProgress(TrainingTask task, long processed, long estimate, int progressFrom, int progressTo) {
+        if (estimate <= 0) {
+            return;
+        }
+        long progress = progressFrom + (progressTo - progressFrom) * Math.min(processed, estimate) / estimate;
+        task.setProgress((int) Math.min(progress, progressTo - 1));
     }
 
     /**
@@ -427,81 +755,34 @@ public class NLPTrainingEngine implements Serializable {
      * @return 分词结果
      */
     public List<String> tokenize(String text) {
+        return splitTokens(text);
+    }
+
+    private static List<String> splitTokens(String text) {
         // 文本清理
-        String cleanText = textCleanPattern.matcher(text).replaceAll(" ");
+        String cleanText = TEXT_CLEAN_PATTERN.matcher(text).replaceAll(" ");
         
         // 简单分词（按空格分割）
-        List<String> tokens = Arrays.stream(cleanText.toLowerCase().split("\\s+"))
+        return Arrays.stream(cleanText.toLowerCase().split("\\s+"))
             .filter(token -> !token.trim().isEmpty())
             .filter(token -> token.length() > 1) // 过滤单字符
             .collect(Collectors.toList());
-            
-        return tokens;
-    }
-    
-    /**
-     * 数据预处理
-     */
-    private void preprocessDataset(Dataset dataset) {
-        for (TextSample sample : dataset.getSamples()) {
-            // 文本清理
-            String cleanText = textCleanPattern.matcher(sample.getText()).replaceAll(" ");
-            
-            // 简单分词（按空格分割）
-            List<String> tokens = Arrays.stream(cleanText.toLowerCase().split("\\s+"))
-                .filter(token -> !token.trim().isEmpty())
-                .filter(token -> token.length() > 1) // 过滤单字符
-                .collect(Collectors.toList());
-            
-            sample.setTokens(tokens);
-            
-            // 构建词汇表
-            for (String token : tokens) {
-                vocabulary.merge(token, 1, Integer::sum);
-            }
-        }
-        
-        dataset.buildLabelIndex();
     }
 
     /**
-     * 评估分类器
+     * 样本中的实际水果是否在推荐的前5个之内
      */
-    private double evaluateClassifier(NaiveBayesClassifier classifier, List<TextSample> samples) {
-        int correct = 0;
-        for (TextSample sample : samples) {
-            String predicted = classifier.classify(sample.getTokens());
-            if (predicted.equals(sample.getLabel())) {
-                correct++;
-            }
-        }
-        return (double) correct / samples.size();
-    }
-
-    /**
-     * 评估水果推荐分类器性能
-     */
-    private double evaluateFruitRecommendationClassifier(FruitRecommendationClassifier classifier, List<TextSample> samples) {
-        int correct = 0;
-        for (TextSample sample : samples) {
-            String[] parts = sample.getText().split(",");
-            if (parts.length >= 15) {
-                String userId = parts[0];
-                String actualFruit = parts[6];
-                
-                List<String> recommendations = classifier.recommend(userId, 5);
-                if (recommendations.contains(actualFruit)) {
-                    correct++;
-                }
-            }
-        }
-        return samples.size() > 0 ? (double) correct / samples.size() : 0.0;
+    private static boolean isRecommended(FruitRecommendationClassifier classifier, TextSample sample) {
+        String[] parts = sample.getText().split(",");
+        return parts.length >= 15 && classifier.recommend(parts[0], 5).contains(parts[6]);
     }
 
     /**
-     * 保存训练好的模型到文件系统
+     * 保存训练好的模型到文件系统，失败时异常抛给训练任务
      */
-    private void saveModel(TrainingTask task, Object classifier) {
+    private void saveModel(TrainingTask task, Object classifier) throws IOException {
+        Map<String, Integer> vocabulary = classifier instanceof NaiveBayesClassifier
+                ? ((NaiveBayesClassifier) classifier).termFrequencies() : new HashMap<>();
         try {
             // 创建模型目录
             Path modelDir = Paths.get("models", "task_" + task.getId());
@@ -525,24 +806,14 @@ public class NLPTrainingEngine implements Serializable {
                     writer.println("User Preferences Count: " + fruitClassifier.userPreferences.size());
                     
                     // 保存水果推荐模型数据
-                    Path fruitDataPath = modelDir.resolve("fruit_data.ser");
-                    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(fruitDataPath))) {
-                        oos.writeObject(fruitClassifier.fruitScores);
-                        oos.writeObject(fruitClassifier.userPreferences);
-                        oos.writeObject(fruitClassifier.fruitFeatures);
-                    }
+                    writeCompactModel(modelDir, fruitClassifier);
                 } else if (classifier instanceof NaiveBayesClassifier) {
                     NaiveBayesClassifier nbClassifier = (NaiveBayesClassifier) classifier;
                     writer.println("Classifier Type: NaiveBayesClassifier");
-                    writer.println("Class Probabilities Count: " + nbClassifier.classProbabilities.size());
+                    writer.println("Class Probabilities Count: " + nbClassifier.labels.length);
                     
-                    // 保存朴素贝叶斯模型数据
-                    Path nbDataPath = modelDir.resolve("nb_data.ser");
-                    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(nbDataPath))) {
-                        oos.writeObject(nbClassifier.classProbabilities);
-                        oos.writeObject(nbClassifier.featureProbabilities);
-                        oos.writeObject(nbClassifier.vocabulary);
-                    }
+                    // 保存朴素贝叶斯模型数据（对数概率）
+                    writeCompactModel(modelDir, nbClassifier);
                 }
             }
             
@@ -552,77 +823,133 @@ public class NLPTrainingEngine implements Serializable {
                 oos.writeObject(vocabulary);
             }
             
+            // 缓存中的旧版本失效，已部署的版本需重新部署才会切换
+            modelRegistry.invalidate(task.getId());
             task.addLog("INFO", "模型已保存到: " + modelDir.toString());
             
         } catch (IOException e) {
             task.addLog("ERROR", "保存模型失败: " + e.getMessage());
             log.error("Failed to save model for task {}", task.getId(), e);
+            throw e;
         }
     }
     
     /**
-     * 从文件系统加载训练好的模型
+     * 将分类器写成紧凑二进制格式
+     *
+     * @return 新写入的模型文件
+     */
+    static Path writeCompactModel(Path modelDir, Object classifier) throws IOException {
+        if (classifier instanceof FruitRecommendationClassifier) {
+            FruitRecommendationClassifier fruitClassifier = (FruitRecommendationClassifier) classifier;
+            return CompactModel.writeFruitRecommendation(modelDir, fruitClassifier.fruitScores,
+                    fruitClassifier.userPreferences, fruitClassifier.fruitFeatures);
+        } else if (classifier instanceof LegacyNaiveBayesModel) {
+            LegacyNaiveBayesModel legacy = (LegacyNaiveBayesModel) classifier;
+            return CompactModel.writeLegacyNaiveBayes(modelDir, legacy.classProbabilities,
+                    legacy.featureProbabilities, legacy.vocabulary);
+        }
+        NaiveBayesClassifier nbClassifier = (NaiveBayesClassifier) classifier;
+        return CompactModel.writeNaiveBayes(modelDir, nbClassifier.labels, nbClassifier.docCounts,
+                nbClassifier.vocabulary, nbClassifier.wordCounts, nbClassifier.totalWords);
+    }
+
+    /**
+     * 映射最新版本的模型文件，旧版本只有序列化文件的模型先转换为二进制格式
+     */
+    private CompactModel openModel(Long taskId) throws IOException {
+        Path modelDir = Paths.get("models", "task_" + taskId);
+        Path modelPath = CompactModel.latest(modelDir);
+        if (modelPath == null) {
+            log.info("模型为旧版本格式，转换为二进制格式，任务ID: {}", taskId);
+            modelPath = writeCompactModel(modelDir, loadModel(taskId));
+        }
+        return CompactModel.open(modelPath);
+    }
+
+    /**
+     * 从文件系统加载旧版本序列化格式的模型
      */
     public Object loadModel(Long taskId) {
         try {
-            Path modelDir = Paths.get("models", "task_" + taskId);
-            if (!Files.exists(modelDir)) {
-                throw new FileNotFoundException("模型目录不存在: " + modelDir.toString());
+            return readSerializedModel(Paths.get("models", "task_" + taskId));
+        } catch (Exception e) {
+            log.error("加载模型失败，任务ID: {}", taskId, e);
+            throw new RuntimeException("加载模型失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取序列化格式的模型
+     * 朴素贝叶斯模型有两种格式：最初版本保存平滑后的概率（类别概率Map、词条件概率Map、词表Set），
+     * 之后的版本保存类别、文档数和词频，按第一个对象的类型区分
+     */
+    @SuppressWarnings("unchecked")
+    static Object readSerializedModel(Path modelDir) throws IOException, ClassNotFoundException {
+        if (!Files.exists(modelDir)) {
+            throw new FileNotFoundException("模型目录不存在: " + modelDir.toString());
+        }
+        
+        // 读取模型信息
+        Path modelInfoPath = modelDir.resolve("model_info.txt");
+        List<String> lines = Files.readAllLines(modelInfoPath);
+        
+        String modelType = null;
+        for (String line : lines) {
+            if (line.startsWith("Model Type: ")) {
+                modelType = line.substring("Model Type: ".length()).trim();
+                break;
+            }
+        }
+        
+        if (modelType == null) {
+            throw new RuntimeException("无法确定模型类型");
+        }
+        
+        // 根据模型类型加载相应的模型数据
+        if ("fruit_recommendation".equals(modelType)) {
+            Path fruitDataPath = modelDir.resolve("fruit_data.ser");
+            if (!Files.exists(fruitDataPath)) {
+                throw new FileNotFoundException("水果推荐模型数据文件不存在: " + fruitDataPath.toString());
             }
             
-            // 读取模型信息
-            Path modelInfoPath = modelDir.resolve("model_info.txt");
-            List<String> lines = Files.readAllLines(modelInfoPath);
-            
-            String modelType = null;
-            for (String line : lines) {
-                if (line.startsWith("Model Type: ")) {
-                    modelType = line.substring("Model Type: ".length()).trim();
-                    break;
-                }
+            FruitRecommendationClassifier classifier = new FruitRecommendationClassifier();
+            try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(fruitDataPath))) {
+                classifier.fruitScores = (Map<String, Double>) ois.readObject();
+                classifier.userPreferences = (Map<String, Map<String, Double>>) ois.readObject();
+                classifier.fruitFeatures = (Map<String, Map<String, Double>>) ois.readObject();
             }
             
-            if (modelType == null) {
-                throw new RuntimeException("无法确定模型类型");
+            return classifier;
+        } else if ("text_classification".equals(modelType)) {
+            Path nbDataPath = modelDir.resolve("nb_data.ser");
+            if (!Files.exists(nbDataPath)) {
+                throw new FileNotFoundException("朴素贝叶斯模型数据文件不存在: " + nbDataPath.toString());
             }
             
-            // 根据模型类型加载相应的模型数据
-            if ("fruit_recommendation".equals(modelType)) {
-                Path fruitDataPath = modelDir.resolve("fruit_data.ser");
-                if (!Files.exists(fruitDataPath)) {
-                    throw new FileNotFoundException("水果推荐模型数据文件不存在: " + fruitDataPath.toString());
-                }
-                
-                FruitRecommendationClassifier classifier = new FruitRecommendationClassifier();
-                try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(fruitDataPath))) {
-                    classifier.fruitScores = (Map<String, Double>) ois.readObject();
-                    classifier.userPreferences = (Map<String, Map<String, Double>>) ois.readObject();
-                    classifier.fruitFeatures = (Map<String, Map<String, Double>>) ois.readObject();
+            try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(nbDataPath))) {
+                Object first = ois.readObject();
+                if (first instanceof Map) {
+                    return new LegacyNaiveBayesModel((Map<String, Double>) first,
+                            (Map<String, Map<String, Double>>) ois.readObject(),
+                            (Set<String>) ois.readObject());
                 }
-                
-                return classifier;
-            } else if ("text_classification".equals(modelType)) {
-                Path nbDataPath = modelDir.resolve("nb_data.ser");
-                if (!Files.exists(nbDataPath)) {
-                    throw new FileNotFoundException("朴素贝叶斯模型数据文件不存在: " + nbDataPath.toString());
+                if (!(first instanceof String[])) {
+                    throw new IOException("无法识别的朴素贝叶斯模型数据格式: "
+                            + (first == null ? "null" : first.getClass().getName()));
                 }
-                
                 NaiveBayesClassifier classifier = new NaiveBayesClassifier();
-                try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(nbDataPath))) {
-                    classifier.classProbabilities = (Map<String, Double>) ois.readObject();
-                    classifier.featureProbabilities = (Map<String, Map<String, Double>>) ois.readObject();
-                    classifier.vocabulary = (Set<String>) ois.readObject();
-                }
-                
+                classifier.labels = (String[]) first;
+                classifier.docCounts = (int[]) ois.readObject();
+                classifier.vocabulary = (Map<String, Integer>) ois.readObject();
+                classifier.wordCounts = (int[][]) ois.readObject();
+                classifier.totalWords = (long[]) ois.readObject();
+                classifier.totalDocs = Arrays.stream(classifier.docCounts).sum();
                 return classifier;
             }
-            
-            throw new RuntimeException("不支持的模型类型: " + modelType);
-            
-        } catch (Exception e) {
-            log.error("加载模型失败，任务ID: {}", taskId, e);
-            throw new RuntimeException("加载模型失败: " + e.getMessage(), e);
         }
+        
+        throw new RuntimeException("不支持的模型类型: " + modelType);
     }
     
     /**
@@ -638,30 +965,33 @@ public class NLPTrainingEngine implements Serializable {
             throw new RuntimeException("模型尚未训练完成");
         }
         
-        // 加载模型
-        Object model = loadModel(taskId);
-        if (model == null) {
-            throw new RuntimeException("模型加载失败");
+        // 从模型注册表获取模型，首次使用时加载
+        CompactModel model;
+        try {
+            model = modelRegistry.get(taskId, () -> openModel(taskId));
+        } catch (Exception e) {
+            log.error("加载模型失败，任务ID: {}", taskId, e);
+            throw new RuntimeException("模型加载失败: " + e.getMessage(), e);
         }
         
         // 根据模型类型进行预测
         Map<String, Object> result = new HashMap<>();
         String text = (String) input.get("text");
         
-        if (model instanceof FruitRecommendationClassifier) {
+        if (model instanceof CompactModel.FruitRecommendation) {
             // 水果推荐预测
-            FruitRecommendationClassifier classifier = (FruitRecommendationClassifier) model;
+            CompactModel.FruitRecommendation classifier = (CompactModel.FruitRecommendation) model;
             List<String> recommendations = classifier.recommend(text, 5); // 推荐前5个水果
             
             result.put("type", "fruit_recommendation");
             result.put("recommendations", recommendations);
             result.put("input", text);
             
-        } else if (model instanceof NaiveBayesClassifier) {
+        } else if (model instanceof CompactModel.NaiveBayes) {
             // 文本分类预测
-            NaiveBayesClassifier classifier = (NaiveBayesClassifier) model;
+            CompactModel.NaiveBayes classifier = (CompactModel.NaiveBayes) model;
             Map<String, Double> scores = classifier.predict(tokenize(text));
-            String predictedClass = classifier.classify(tokenize(text));
+            String predictedClass = classifier.classify(scores);
             
             result.put("type", "text_classification");
             result.put("predictedClass", predictedClass);
@@ -671,6 +1001,7 @@ public class NLPTrainingEngine implements Serializable {
         } else {
             throw new RuntimeException("不支持的模型类型");
         }
+        result.put("modelVersion", model.getVersion());
         
         return result;
     }
@@ -715,9 +1046,6 @@ public class NLPTrainingEngine implements Serializable {
         
         Map<String, Object> evaluation = new HashMap<>();
         
-        // 预处理测试数据
-        preprocessDataset(testDataset);
-        
         // 创建分类器进行评估
         NaiveBayesClassifier classifier = new NaiveBayesClassifier();
         classifier.train(testDataset);
@@ -729,7 +1057,7 @@ public class NLPTrainingEngine implements Serializable {
         Map<String, Integer> confusionMatrix = new HashMap<>();
         
         for (TextSample sample : testDataset.getSamples()) {
-            String predicted = classifier.classify(sample.getTokens());
+            String predicted = classifier.classify(tokenize(sample.getText()));
             String actual = sample.getLabel();
             
             if (predicted.equals(actual)) {
@@ -773,27 +1101,27 @@ public class NLPTrainingEngine implements Serializable {
         // 生成部署ID
         String deploymentId = "deploy_" + System.currentTimeMillis();
         
-        // 模拟部署过程
+        // 加载完成后整体替换当前部署，部署期间的预测继续使用旧版本
+        NLPModelRegistry.Deployment deployed;
         try {
-            Thread.sleep(2000); // 模拟部署时间
-            
-            deployment.put("deploymentId", deploymentId);
-            deployment.put("deploymentName", deploymentName);
-            deployment.put("deploymentType", deploymentType);
-            deployment.put("status", "deployed");
-            deployment.put("endpoint", "http://localhost:8080/api/model/predict/" + deploymentId);
-            deployment.put("deploymentTime", new Date());
-            deployment.put("modelVersion", "v1.0");
-            
-            // 更新任务状态
-            task.setStatus("deployed");
-            task.addLog("INFO", String.format("模型已部署: %s (ID: %s)", deploymentName, deploymentId));
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("部署过程被中断", e);
+            deployed = modelRegistry.deploy(taskId, deploymentId, () -> openModel(taskId));
+        } catch (Exception e) {
+            log.error("部署模型失败，任务ID: {}", taskId, e);
+            throw new RuntimeException("部署模型失败: " + e.getMessage(), e);
         }
         
+        deployment.put("deploymentId", deploymentId);
+        deployment.put("deploymentName", deploymentName);
+        deployment.put("deploymentType", deploymentType);
+        deployment.put("status", "deployed");
+        deployment.put("endpoint", "http://localhost:8080/api/model/predict/" + deploymentId);
+        deployment.put("deploymentTime", new Date(deployed.getDeployTime()));
+        deployment.put("modelVersion", deployed.getModel().getVersion());
+        
+        // 任务状态保持completed，部署后仍可预测、评估和导出
+        task.addLog("INFO", String.format("模型已部署: %s (ID: %s, 版本: %d)",
+                deploymentName, deploymentId, deployed.getModel().getVersion()));
+        
         return deployment;
      }
      
@@ -833,71 +1161,6 @@ public class NLPTrainingEngine implements Serializable {
         return runningTasks.values();
     }
 
-    /**
-     * 训练水果推荐模型
-     */
-    private void trainFruitRecommendationModel(TrainingTask task, String datasetPath) {
-        try {
-            // 加载水果推荐数据集
-            Dataset dataset = loadDatasetFromFile(datasetPath, "fruit_recommendation");
-            
-            // 创建水果推荐分类器
-            FruitRecommendationClassifier classifier = new FruitRecommendationClassifier();
-            
-            // 训练模型
-            classifier.train(dataset);
-            
-            // 保存模型
-            saveModel(task, classifier);
-            
-            task.addLog("INFO", "水果推荐模型训练完成");
-            
-        } catch (Exception e) {
-            task.addLog("ERROR", "水果推荐模型训练失败: " + e.getMessage());
-            throw new RuntimeException("训练失败", e);
-        }
-    }
-    
-    /**
-     * 加载数据集
-     */
-    public Dataset loadDatasetFromFile(String filePath, String dataType) throws IOException {
-        Dataset dataset = new Dataset();
-        Path path = Paths.get(filePath);
-        
-        if (!Files.exists(path)) {
-            throw new FileNotFoundException("数据集文件不存在: " + filePath);
-        }
-        
-        List<String> lines = Files.readAllLines(path);
-        
-        // 根据数据类型解析文件
-        if ("text_classification".equals(dataType)) {
-            // 假设CSV格式: text,label
-            for (int i = 1; i < lines.size(); i++) { // 跳过标题行
-                String line = lines.get(i);
-                String[] parts = line.split(",", 2);
-                if (parts.length == 2) {
-                    dataset.addSample(parts[0].trim(), parts[1].trim());
-                }
-            }
-        } else if ("fruit_recommendation".equals(dataType)) {
-            // 水果推荐数据集格式: userId,age,gender,season,weather,history,fruitName,sweetness,acidity,texture,color,size,price,nutritionScore,recommendationScore
-            for (int i = 1; i < lines.size(); i++) { // 跳过标题行
-                String line = lines.get(i);
-                String[] parts = line.split(",");
-                if (parts.length >= 15) {
-                    // 将整行作为文本，水果名称作为标签
-                    String text = line;
-                    String label = parts[6].trim(); // 水果名称
-                    dataset.addSample(text, label);
-                }
-            }
-        }
-        
-        return dataset;
-    }
-
     /**
      * 创建示例数据集
      */
@@ -921,6 +1184,7 @@ public class NLPTrainingEngine implements Serializable {
      * 关闭训练引擎
      */
     public void shutdown() {
+        countingPool.shutdown();
         trainingExecutor.shutdown();
         try {
             if (!trainingExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
@@ -32,6 +32,9 @@ public class TrainingServiceImpl implements TrainingService {
     @Autowired
     private NLPTrainingEngine trainingEngine;
 
+    @Autowired
+    private DatasetLoaderService datasetLoaderService;
+
     private static final String TRAINING_API_BASE_URL = "http://localhost:8080/api/training";
     private static final String UPLOAD_DIR = "uploads/datasets";
     private static final String DATASETS_PERSISTENCE_FILE = "datasets.dat";
@@ -250,10 +253,10 @@ public class TrainingServiceImpl implements TrainingService {
                 return Result.failed("数据集不存在");
             }
             
-            // 加载数据集
-            NLPTrainingEngine.Dataset dataset;
+            // 打开数据集，训练时流式读取
+            NLPTrainingEngine.SampleSource dataset;
             if (Files.exists(Paths.get(datasetInfo.getFilePath()))) {
-                dataset = trainingEngine.loadDatasetFromFile(datasetInfo.getFilePath(), datasetInfo.getDataType());
+                dataset = datasetLoaderService.openDatasetSource(datasetInfo.getFilePath(), datasetInfo.getDataType());
             } else {
                 // 如果文件不存在，使用示例数据集
                 dataset = trainingEngine.createSampleDataset();
@@ -729,7 +732,8 @@ public class TrainingServiceImpl implements TrainingService {
             // 加载测试数据集
             NLPTrainingEngine.Dataset testDataset;
             if (Files.exists(Paths.get(testDatasetInfo.getFilePath()))) {
-                testDataset = trainingEngine.loadDatasetFromFile(testDatasetInfo.getFilePath(), testDatasetInfo.getDataType());
+                testDataset = NLPTrainingEngine.Dataset.copyOf(
+                    datasetLoaderService.openDatasetSource(testDatasetInfo.getFilePath(), testDatasetInfo.getDataType()));
             } else {
                 // 如果文件不存在，使用示例数据集
                 testDataset = trainingEngine.createSampleDataset();
@@ -756,13 +760,9 @@ public class TrainingServiceImpl implements TrainingService {
                 return Result.failed("模型不存在或尚未训练完成");
             }
             
-            // 创建部署信息
-            Map<String, Object> deployment = new HashMap<>();
+            // 加载模型并替换当前部署
+            Map<String, Object> deployment = trainingEngine.deployModel(taskId, deploymentName, deploymentType);
             deployment.put("taskId", taskId);
-            deployment.put("deploymentName", deploymentName);
-            deployment.put("deploymentType", deploymentType);
-            deployment.put("deploymentTime", new Date());
-            deployment.put("status", "success");
             
             log.info("模型部署完成，任务ID: {}, 部署名称: {}", taskId, deploymentName);
             return Result.success(deployment);
@@ -0,0 +1,94 @@
+package org.example.admin.client;
+
+import org.example.admin.config.ApiClientProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * API调用保护拦截器单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ApiCallGuardInterceptorTest {
+
+    @Mock
+    private HttpRequest request;
+
+    @Mock
+    private ClientHttpRequestExecution execution;
+
+    @Mock
+    private ClientHttpResponse response;
+
+    private ApiCallGuardInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        ApiClientProperties properties = new ApiClientProperties();
+        properties.setMaxConcurrent(1);
+        properties.setMaxWait(0);
+        properties.setFailureThreshold(1);
+        properties.setOpenMillis(20);
+        properties.init();
+        interceptor = new ApiCallGuardInterceptor(properties);
+        when(request.getURI()).thenReturn(URI.create("http://localhost:8080/api/training/statistics"));
+    }
+
+    @Test
+    void testRejectedProbeDoesNotBlockRecovery() throws Exception {
+        when(execution.execute(any(), any())).thenThrow(new IOException("connection refused"));
+        assertThrows(IOException.class, () -> interceptor.intercept(request, new byte[0], execution));
+        assertThrows(ResourceAccessException.class, () -> interceptor.intercept(request, new byte[0], execution));
+        Thread.sleep(40);
+
+        // 半开时并发已满，本次调用被拒绝，不能占用试探名额
+        Semaphore bulkhead = bulkhead("default");
+        bulkhead.acquire();
+        ResourceAccessException rejected = assertThrows(ResourceAccessException.class,
+                () -> interceptor.intercept(request, new byte[0], execution));
+        assertTrue(rejected.getMessage().contains("并发已满"));
+        bulkhead.release();
+
+        // 许可释放后试探调用正常放行，成功后恢复
+        reset(execution);
+        when(execution.execute(any(), any())).thenReturn(response);
+        when(response.getStatusCode()).thenReturn(HttpStatus.OK);
+        assertSame(response, interceptor.intercept(request, new byte[0], execution));
+        assertSame(response, interceptor.intercept(request, new byte[0], execution));
+        assertEquals(1, bulkhead.availablePermits());
+    }
+
+    @Test
+    void testOpenBreakerReleasesBulkhead() throws Exception {
+        when(execution.execute(any(), any())).thenThrow(new IOException("connection refused"));
+        assertThrows(IOException.class, () -> interceptor.intercept(request, new byte[0], execution));
+
+        ResourceAccessException rejected = assertThrows(ResourceAccessException.class,
+                () -> interceptor.intercept(request, new byte[0], execution));
+        assertTrue(rejected.getMessage().contains("熔断"));
+        assertEquals(1, bulkhead("default").availablePermits());
+        verify(execution, times(1)).execute(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Semaphore bulkhead(String route) {
+        return ((Map<String, Semaphore>) ReflectionTestUtils.getField(interceptor, "bulkheads")).get(route);
+    }
+}
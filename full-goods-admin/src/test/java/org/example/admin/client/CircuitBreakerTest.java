@@ -0,0 +1,78 @@
+package org.example.admin.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器状态转换单元测试
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void testHalfOpenAllowsSingleProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20);
+        breaker.recordFailure();
+        Thread.sleep(40);
+
+        assertTrue(breaker.allowRequest());
+        // 试探调用未结束前其余调用仍被拒绝
+        assertFalse(breaker.allowRequest());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    void testProbeSuccessCloses() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20);
+        breaker.recordFailure();
+        Thread.sleep(40);
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void testProbeFailureReopens() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(5, 20);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure();
+        }
+        Thread.sleep(40);
+
+        assertTrue(breaker.allowRequest());
+        // 试探失败立即重新熔断，不需要再累计到阈值
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(40);
+        assertTrue(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.admin.service.impl;
+
+import org.example.admin.service.impl.NLPTrainingEngine.Dataset;
+import org.example.admin.service.impl.NLPTrainingEngine.FruitRecommendationClassifier;
+import org.example.admin.service.impl.NLPTrainingEngine.NaiveBayesClassifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 紧凑模型格式的写入、读取以及与训练时分类器的结果一致性测试
+ */
+class CompactModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testNaiveBayesRoundTripMatchesClassifier() throws IOException {
+        Dataset dataset = new Dataset();
+        dataset.addSample("apple sweet crisp fresh", "positive");
+        dataset.addSample("banana soft sweet ripe", "positive");
+        dataset.addSample("orange sour rotten bad", "negative");
+        dataset.addSample("grape rotten moldy bad", "negative");
+        dataset.addSample("melon ordinary plain", "neutral");
+        // 大词表，覆盖哈希表冲突
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("word").append(i).append(' ');
+        }
+        dataset.addSample(text.toString(), "neutral");
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier();
+        classifier.train(dataset);
+
+        CompactModel model = CompactModel.open(NLPTrainingEngine.writeCompactModel(tempDir, classifier));
+
+        assertTrue(model instanceof CompactModel.NaiveBayes);
+        assertEquals("text_classification", model.getModelType());
+        assertTrue(model.getVersion() > 0);
+        CompactModel.NaiveBayes naiveBayes = (CompactModel.NaiveBayes) model;
+        List<List<String>> queries = Arrays.asList(
+                Arrays.asList("sweet", "fresh"),
+                Arrays.asList("rotten", "bad", "unknown"),
+                Arrays.asList("word0", "word1999", "plain"),
+                Arrays.asList("unknown"));
+        for (List<String> tokens : queries) {
+            Map<String, Double> expected = classifier.predict(tokens);
+            Map<String, Double> actual = naiveBayes.predict(tokens);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, Double> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-9, "tokens: " + tokens);
+            }
+            assertEquals(classifier.classify(tokens), naiveBayes.classify(actual));
+        }
+    }
+
+    @Test
+    void testFruitRecommendationRoundTripMatchesClassifier() throws IOException {
+        Dataset dataset = new Dataset();
+        dataset.addSample(fruitSample("1001", "苹果", 4.5, 3.0, 8.5, 85, 4.8), "recommend");
+        dataset.addSample(fruitSample("1001", "香蕉", 8.5, 1.0, 9.0, 89, 3.1), "recommend");
+        dataset.addSample(fruitSample("1002", "草莓", 7.5, 3.5, 7.5, 91, 4.9), "recommend");
+        dataset.addSample(fruitSample("1002", "苹果", 4.5, 3.0, 8.5, 85, 2.2), "recommend");
+        dataset.addSample(fruitSample("1003", "西瓜", 6.5, 1.0, 9.5, 92, 3.7), "recommend");
+        FruitRecommendationClassifier classifier = new FruitRecommendationClassifier();
+        classifier.train(dataset);
+
+        CompactModel model = CompactModel.open(NLPTrainingEngine.writeCompactModel(tempDir, classifier));
+
+        assertTrue(model instanceof CompactModel.FruitRecommendation);
+        assertEquals("fruit_recommendation", model.getModelType());
+        CompactModel.FruitRecommendation fruitModel = (CompactModel.FruitRecommendation) model;
+        for (String userId : Arrays.asList("1001", "1002", "1003", "9999", null)) {
+            assertEquals(classifier.recommend(userId, 3), fruitModel.recommend(userId, 3), "userId: " + userId);
+        }
+        assertEquals(4, fruitModel.recommend("1001", 10).size());
+    }
+
+    @Test
+    void testRewriteWritesNewVersion() throws IOException {
+        Dataset first = new Dataset();
+        first.addSample("sweet fresh", "positive");
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier();
+        classifier.train(first);
+        Path beforePath = NLPTrainingEngine.writeCompactModel(tempDir, classifier);
+        CompactModel before = CompactModel.open(beforePath);
+
+        Dataset second = new Dataset();
+        second.addSample("rotten bad", "negative");
+        classifier.train(second);
+        Path afterPath = NLPTrainingEngine.writeCompactModel(tempDir, classifier);
+        CompactModel after = CompactModel.open(afterPath);
+
+        // 新版本写到新文件，不替换已映射的旧文件
+        assertNotEquals(beforePath, afterPath);
+        assertEquals(afterPath, CompactModel.latest(tempDir));
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(Collections.singleton("positive"),
+                ((CompactModel.NaiveBayes) before).predict(Arrays.asList("sweet")).keySet());
+        assertEquals(Collections.singleton("negative"),
+                ((CompactModel.NaiveBayes) after).predict(Arrays.asList("sweet")).keySet());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void testUnversionedFileSupersededByNewVersion() throws IOException {
+        assertNull(CompactModel.latest(tempDir));
+
+        Dataset dataset = new Dataset();
+        dataset.addSample("sweet fresh", "positive");
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier();
+        classifier.train(dataset);
+        Path written = NLPTrainingEngine.writeCompactModel(tempDir, classifier);
+        Path unversioned = tempDir.resolve("model.bin");
+        Files.move(written, unversioned);
+        assertEquals(unversioned, CompactModel.latest(tempDir));
+
+        Path rewritten = NLPTrainingEngine.writeCompactModel(tempDir, classifier);
+        assertEquals(rewritten, CompactModel.latest(tempDir));
+    }
+
+    @Test
+    void testLegacySerializedNaiveBayesConverted() throws Exception {
+        // 最初版本保存的格式：类别概率、各类别词的条件概率（已平滑）、词表
+        Map<String, Double> classProbabilities = new HashMap<>();
+        classProbabilities.put("positive", 0.6);
+        classProbabilities.put("negative", 0.4);
+        Map<String, Map<String, Double>> featureProbabilities = new HashMap<>();
+        Map<String, Double> positive = new HashMap<>();
+        positive.put("sweet", 0.5);
+        positive.put("fresh", 0.3);
+        positive.put("rotten", 0.2);
+        featureProbabilities.put("positive", positive);
+        Map<String, Double> negative = new HashMap<>();
+        negative.put("sweet", 0.1);
+        negative.put("fresh", 0.2);
+        negative.put("rotten", 0.7);
+        featureProbabilities.put("negative", negative);
+        Set<String> vocabulary = new HashSet<>(Arrays.asList("sweet", "fresh", "rotten"));
+
+        Files.write(tempDir.resolve("model_info.txt"),
+                Arrays.asList("Model Type: text_classification", "Classifier Type: NaiveBayesClassifier"));
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tempDir.resolve("nb_data.ser")))) {
+            oos.writeObject(classProbabilities);
+            oos.writeObject(featureProbabilities);
+            oos.writeObject(vocabulary);
+        }
+
+        Object legacy = NLPTrainingEngine.readSerializedModel(tempDir);
+        CompactModel model = CompactModel.open(NLPTrainingEngine.writeCompactModel(tempDir, legacy));
+
+        assertTrue(model instanceof CompactModel.NaiveBayes);
+        Map<String, Double> scores = ((CompactModel.NaiveBayes) model).predict(Arrays.asList("sweet", "rotten", "unknown"));
+        // 与最初版本分类器的计算方式一致：类别对数概率加上已知词的对数条件概率
+        assertEquals(Math.log(0.6) + Math.log(0.5) + Math.log(0.2), scores.get("positive"), 1e-9);
+        assertEquals(Math.log(0.4) + Math.log(0.1) + Math.log(0.7), scores.get("negative"), 1e-9);
+        assertEquals("positive", ((CompactModel.NaiveBayes) model).classify(scores));
+    }
+
+    @Test
+    void testOpenRejectsInvalidFile() throws IOException {
+        Path path = tempDir.resolve("broken.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+        assertThrows(IOException.class, () -> CompactModel.open(path));
+
+        Path empty = tempDir.resolve("empty.bin");
+        Files.write(empty, new byte[0]);
+        assertThrows(IOException.class, () -> CompactModel.open(empty));
+    }
+
+    /**
+     * 训练数据格式：用户ID在第1列，水果名称第7列，甜度、酸度第8、9列，价格、营养第12、13列，推荐分第15列
+     */
+    private static String fruitSample(String userId, String fruit, double sweetness, double acidity,
+                                      double price, double nutrition, double score) {
+        return String.join(",", userId, "", "", "", "", "", fruit, String.valueOf(sweetness),
+                String.valueOf(acidity), "", "", String.valueOf(price), String.valueOf(nutrition), "",
+                String.valueOf(score));
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.admin.service.impl;
+
+import org.example.admin.service.impl.NLPTrainingEngine.Dataset;
+import org.example.admin.service.impl.NLPTrainingEngine.NaiveBayesClassifier;
+import org.example.admin.service.impl.NLPTrainingEngine.NaiveBayesCounts;
+import org.example.admin.service.impl.NLPTrainingEngine.TermIndex;
+import org.example.admin.service.impl.NLPTrainingEngine.TextSample;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 朴素贝叶斯计数测试
+ */
+class NaiveBayesCountsTest {
+
+    private static final String[][] SAMPLES = {
+            {"apple sweet crisp fresh", "positive"},
+            {"banana soft sweet ripe", "positive"},
+            {"orange sour rotten bad", "negative"},
+            {"grape rotten moldy bad", "negative"},
+            {"mango juicy sweet fresh", "positive"},
+            {"pear bruised soft bad", "negative"},
+            {"peach sweet juicy", "positive"},
+            {"melon ordinary plain", "neutral"}
+    };
+
+    @Test
+    void testMergedShardsMatchSequentialTraining() {
+        Dataset dataset = new Dataset();
+        for (String[] sample : SAMPLES) {
+            dataset.addSample(sample[0], sample[1]);
+        }
+        NaiveBayesClassifier sequential = new NaiveBayesClassifier();
+        sequential.train(dataset);
+
+        // 两个分片共享词表，第二个分片才出现neutral类别
+        TermIndex terms = new TermIndex();
+        TermIndex labels = new TermIndex();
+        NaiveBayesCounts first = new NaiveBayesCounts(terms, labels);
+        NaiveBayesCounts second = new NaiveBayesCounts(terms, labels);
+        for (int i = 0; i < SAMPLES.length; i++) {
+            (i < 3 ? first : second).add(new TextSample(SAMPLES[i][0], SAMPLES[i][1]));
+        }
+        first.merge(second);
+        NaiveBayesClassifier merged = new NaiveBayesClassifier(first);
+
+        assertEquals(sequential.termFrequencies(), merged.termFrequencies());
+        List<String> tokens = Arrays.asList("sweet", "fresh", "bad", "plain");
+        Map<String, Double> expected = sequential.predict(tokens);
+        Map<String, Double> actual = merged.predict(tokens);
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-9);
+        }
+    }
+
+    @Test
+    void testCountsGrowBeyondInitialCapacity() {
+        NaiveBayesCounts counts = new NaiveBayesCounts(new TermIndex(), new TermIndex());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("term").append(i).append(' ');
+        }
+        counts.add(new TextSample(text.toString(), "positive"));
+        counts.add(new TextSample("term39 term39", "positive"));
+
+        Map<String, Integer> frequencies = new NaiveBayesClassifier(counts).termFrequencies();
+        assertEquals(40, frequencies.size());
+        assertEquals(1, frequencies.get("term0"));
+        assertEquals(3, frequencies.get("term39"));
+    }
+
+    @Test
+    void testClassifyUsesLabelCounts() {
+        Dataset dataset = new Dataset();
+        for (String[] sample : SAMPLES) {
+            dataset.addSample(sample[0], sample[1]);
+        }
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier();
+        classifier.train(dataset);
+
+        assertEquals("positive", classifier.classify(Arrays.asList("sweet", "fresh")));
+        assertEquals("negative", classifier.classify(Arrays.asList("rotten", "bad")));
+        // 没有已知词时按类别先验判断
+        assertEquals("positive", classifier.classify(Arrays.asList("unknown")));
+    }
+}
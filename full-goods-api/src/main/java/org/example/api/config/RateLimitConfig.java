@@ -0,0 +1,30 @@
+package org.example.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.ratelimit.LocalRateLimiter;
+import org.example.common.ratelimit.RateLimiter;
+import org.example.common.ratelimit.RedisRateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 限流器配置
+ */
+@Slf4j
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties, ObjectProvider<StringRedisTemplate> redisTemplate) {
+        LocalRateLimiter localRateLimiter = new LocalRateLimiter();
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if ("redis".equalsIgnoreCase(properties.getMode()) && template != null) {
+            log.info("接口限流使用Redis共享额度，策略数: {}", properties.getPolicies().size());
+            return new RedisRateLimiter(template, localRateLimiter);
+        }
+        log.info("接口限流使用本地限流，策略数: {}", properties.getPolicies().size());
+        return localRateLimiter;
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.api.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.common.ratelimit.RateLimitRule;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 接口限流配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * local：单节点限流；redis：多节点共享额度
+     */
+    private String mode = "redis";
+
+    /**
+     * 可信代理网段（CIDR，如 172.20.0.0/16，单个地址可省略掩码），
+     * 只有来自这些地址的请求才读取X-Forwarded-For、X-Real-IP
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+
+    /**
+     * 内部服务调用令牌，请求头 X-Internal-Token 与之相同时不限流，为空表示不开启
+     */
+    private String internalToken;
+
+    /**
+     * 限流策略，请求匹配的所有策略都要通过
+     */
+    private List<Policy> policies = new ArrayList<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<IpRange> trustedRanges = new ArrayList<>();
+
+    /**
+     * 启动时校验策略并生成限流规则
+     */
+    @PostConstruct
+    public void init() {
+        List<IpRange> ranges = new ArrayList<>();
+        for (String cidr : trustedProxies) {
+            ranges.add(IpRange.parse(cidr));
+        }
+        trustedRanges = ranges;
+        for (Policy policy : policies) {
+            policy.setRule(policy.getAlgorithm() == RateLimitRule.Algorithm.TOKEN_BUCKET
+                    ? RateLimitRule.tokenBucket(policy.getCapacity(), policy.getRefillRate())
+                    : RateLimitRule.slidingWindow(policy.getWindowSeconds(), policy.getLimit()));
+        }
+    }
+
+    /**
+     * 地址是否属于可信代理网段
+     */
+    public boolean isTrustedProxy(String address) {
+        byte[] bytes = IpRange.toBytes(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (IpRange range : trustedRanges) {
+            if (range.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 限流维度
+     */
+    public enum Dimension {
+        // 按登录用户，未登录或token无效时按IP
+        USER,
+        // 按客户端IP
+        IP,
+        // 所有请求共享
+        GLOBAL
+    }
+
+    /**
+     * 限流策略
+     */
+    @Data
+    public static class Policy {
+
+        /**
+         * 策略名称，作为限流键前缀
+         */
+        private String name;
+
+        /**
+         * 路径模式（不含context-path），如 /order/**
+         */
+        private String pattern;
+
+        /**
+         * 限定的HTTP方法，为空表示所有方法
+         */
+        private List<String> methods = new ArrayList<>();
+
+        private Dimension dimension = Dimension.USER;
+
+        private RateLimitRule.Algorithm algorithm = RateLimitRule.Algorithm.TOKEN_BUCKET;
+
+        // 令牌桶容量
+        private int capacity;
+
+        // 令牌生成速率（每秒）
+        private int refillRate;
+
+        // 滑动窗口大小（秒）
+        private int windowSeconds;
+
+        // 滑动窗口内限制次数
+        private int limit;
+
+        private RateLimitRule rule;
+
+        public boolean matches(String method, String path, AntPathMatcher pathMatcher) {
+            if (!methods.isEmpty() && methods.stream().noneMatch(method::equalsIgnoreCase)) {
+                return false;
+            }
+            return pathMatcher.match(pattern, path);
+        }
+    }
+
+    /**
+     * IP网段，IPv4和IPv6分别按字节比较前缀
+     */
+    static class IpRange {
+
+        private final byte[] network;
+
+        private final int prefixLength;
+
+        private IpRange(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        static IpRange parse(String cidr) {
+            String value = cidr.trim();
+            int slash = value.indexOf('/');
+            byte[] network = toBytes(slash < 0 ? value : value.substring(0, slash));
+            if (network == null) {
+                throw new IllegalArgumentException("可信代理地址格式错误: " + cidr);
+            }
+            int prefixLength = network.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(value.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("可信代理地址格式错误: " + cidr);
+                }
+                if (prefixLength < 0 || prefixLength > network.length * 8) {
+                    throw new IllegalArgumentException("可信代理地址掩码错误: " + cidr);
+                }
+            }
+            return new IpRange(network, prefixLength);
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+
+        /**
+         * 只解析IP字面量，不做域名解析；IPv4映射的IPv6地址按IPv4处理
+         */
+        static byte[] toBytes(String address) {
+            if (address == null || address.isEmpty() || (address.indexOf('.') < 0 && address.indexOf(':') < 0)) {
+                return null;
+            }
+            for (int i = 0; i < address.length(); i++) {
+                char c = address.charAt(i);
+                if (Character.digit(c, 16) < 0 && c != '.' && c != ':') {
+                    return null;
+                }
+            }
+            try {
+                return InetAddress.getByName(address).getAddress();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+    }
+}
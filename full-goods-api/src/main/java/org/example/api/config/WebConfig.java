@@ -1,10 +1,11 @@
 package org.example.api.config;
 
 import org.example.api.interceptor.AuthInterceptor;
-import org.example.api.interceptor.AuthInterceptor;
+import org.example.api.interceptor.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -23,8 +24,17 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private AuthInterceptor authInterceptor;
 
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 限流拦截器放在最前面，被拒绝的请求不再做认证等处理
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/**")
+                .excludePathPatterns("/health/**", "/static/**", "/druid/**")
+                .order(Ordered.HIGHEST_PRECEDENCE);
+
         // 添加认证拦截器
         registry.addInterceptor(authInterceptor)
                 .addPathPatterns("/messages/**") // 只对消息相关接口进行认证
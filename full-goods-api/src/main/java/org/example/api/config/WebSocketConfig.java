@@ -1,6 +1,10 @@
 package org.example.api.config;
 
+import org.example.api.interceptor.WebSocketAuthInterceptor;
+import org.example.api.service.WebSocketRelayService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -13,6 +17,12 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private WebSocketRelayService webSocketRelayService;
+
+    @Autowired
+    private WebSocketAuthInterceptor webSocketAuthInterceptor;
+
     /**
      * 配置消息代理
      */
@@ -24,6 +34,16 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setApplicationDestinationPrefixes("/app");
         // 设置用户目标前缀
         config.setUserDestinationPrefix("/user");
+        // 发往代理的消息转发给其他节点
+        config.configureBrokerChannel().interceptors(webSocketRelayService);
+    }
+
+    /**
+     * 客户端连接时根据token绑定用户
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(webSocketAuthInterceptor);
     }
 
     /**
@@ -10,6 +10,7 @@ import io.swagger.annotations.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.dto.FruitRecommendDTO;
 import org.example.api.mapper.FruitMapper;
+import org.example.api.service.FlashSaleService;
 import org.example.api.service.FruitService;
 import org.example.api.service.UserService;
 import org.example.api.vo.CategoryVO;
@@ -53,6 +54,9 @@ public class FruitController {
     @Autowired
     private FruitMapper fruitMapper;
 
+    @Autowired
+    private FlashSaleService flashSaleService;
+
     @GetMapping("/list")
     @ApiOperation(value = "查询水果列表", notes = "支持按关键词、分类、状态筛选水果")
     @ApiResponses({
@@ -224,6 +228,12 @@ public class FruitController {
         return Result.success(voList);
     }
     
+    @GetMapping("/home")
+    @ApiOperation("获取首页数据")
+    public Result<HomeVO> getHomeData() {
+        return Result.success(fruitService.getHomeData());
+    }
+    
     @GetMapping("/categories")
     @ApiOperation("获取所有水果分类")
     public Result<List<CategoryVO>> getCategories() {
@@ -293,6 +303,7 @@ public class FruitController {
             
             int result = fruitMapper.insert(fruit);
             if (result > 0) {
+                fruitService.onFruitChanged(fruit.getId());
                 return Result.success("商品添加成功");
             } else {
                 return Result.failed("商品添加失败");
@@ -317,6 +328,7 @@ public class FruitController {
             
             int result = fruitMapper.update(fruit);
             if (result > 0) {
+                fruitService.onFruitChanged(id);
                 return Result.success("商品更新成功");
             } else {
                 return Result.failed("商品更新失败");
@@ -333,6 +345,7 @@ public class FruitController {
         try {
             int result = fruitMapper.deleteById(id);
             if (result > 0) {
+                fruitService.onFruitChanged(id);
                 return Result.success("商品删除成功");
             } else {
                 return Result.failed("商品删除失败，商品不存在");
@@ -359,6 +372,7 @@ public class FruitController {
             
             int result = fruitMapper.update(fruit);
             if (result > 0) {
+                fruitService.onFruitChanged(id);
                 return Result.success("商品状态更新成功");
             } else {
                 return Result.failed("商品状态更新失败");
@@ -435,6 +449,7 @@ public class FruitController {
             Boolean recommended = (Boolean) request.get("recommended");
             int result = fruitMapper.updateRecommended(id, recommended ? 1 : 0);
             if (result > 0) {
+                fruitService.onFruitChanged(id);
                 return Result.success("推荐状态设置成功");
             } else {
                 return Result.failed("商品不存在或推荐状态设置失败");
@@ -465,6 +480,7 @@ public class FruitController {
             
             int result = fruitMapper.batchUpdateRecommended(ids, recommended ? 1 : 0);
             if (result > 0) {
+                fruitService.onFruitChanged(null);
                 return Result.success("批量设置推荐状态成功");
             } else {
                 return Result.failed("批量设置推荐状态失败");
@@ -490,6 +506,7 @@ public class FruitController {
 
             // 先删除已有的限时特惠
             fruitMapper.deleteFlashSaleByFruitId(id);
+            flashSaleService.removeFruitLedger(id);
 
             // 创建新的限时特惠
              FlashSale flashSale = new FlashSale();
@@ -521,6 +538,7 @@ public class FruitController {
     public Result<String> cancelFlashSale(@PathVariable Long id) {
         try {
             int result = fruitMapper.deleteFlashSaleByFruitId(id);
+            flashSaleService.removeFruitLedger(id);
             if (result > 0) {
                 return Result.success("取消限时特惠成功");
             } else {
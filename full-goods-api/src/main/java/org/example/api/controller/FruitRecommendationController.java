@@ -2,6 +2,7 @@ package org.example.api.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.service.FruitRecommendationService;
+import org.example.api.service.ModelPredictionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,6 +21,9 @@ public class FruitRecommendationController {
     @Autowired
     private FruitRecommendationService fruitRecommendationService;
 
+    @Autowired
+    private ModelPredictionService modelPredictionService;
+
     /**
      * 获取用户水果推荐
      */
@@ -186,6 +190,32 @@ public class FruitRecommendationController {
         return result;
     }
     
+    /**
+     * 部署水果推荐模型（管理端）
+     * 请求体为模型数据，包含fruitScores、userPreferences、fruitFeatures
+     */
+    @PostMapping("/admin/model/deploy")
+    public Map<String, Object> deployRecommendationModel(@RequestBody Map<String, Object> model) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            modelPredictionService.deployFruitRecommendationModel(model);
+
+            result.put("success", true);
+            result.put("message", "模型部署成功");
+
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("部署水果推荐模型失败", e);
+            result.put("success", false);
+            result.put("message", "模型部署失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * 获取当前季节
      */
@@ -3,6 +3,7 @@ package org.example.api.controller;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
+import org.example.common.cache.TwoLevelCacheManager;
 import org.example.common.response.Result;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -30,6 +31,9 @@ public class HealthController {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired(required = false)
+    private TwoLevelCacheManager cacheManager;
+
     @ApiOperation("系统健康检查")
     @GetMapping
     public Result<Map<String, Object>> health() {
@@ -96,6 +100,15 @@ public class HealthController {
         }
     }
 
+    @ApiOperation("二级缓存统计")
+    @GetMapping("/cache")
+    public Result<Map<String, Object>> cacheStatistics() {
+        if (cacheManager == null) {
+            return Result.failed("二级缓存未启用");
+        }
+        return Result.success(cacheManager.getStatistics());
+    }
+
     @ApiOperation("简单健康检查")
     @GetMapping("/simple")
     public Result<String> simpleHealth() {
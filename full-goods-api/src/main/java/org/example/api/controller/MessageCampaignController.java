@@ -0,0 +1,108 @@
+package org.example.api.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.service.MessageCampaignService;
+import org.example.common.entity.MessageCampaign;
+import org.example.common.response.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 消息群发活动控制器
+ * 提供群发活动的创建、进度查询以及暂停、恢复、取消接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/messages/campaigns")
+@Tag(name = "消息群发", description = "向全部或指定用户分批发送消息，支持暂停、恢复和断点续发")
+public class MessageCampaignController {
+
+    @Autowired
+    private MessageCampaignService messageCampaignService;
+
+    /**
+     * 创建群发活动
+     */
+    @PostMapping
+    @Operation(summary = "创建群发活动", description = "创建后立即在后台分批发送，不等待发送完成")
+    public Result<MessageCampaign> createCampaign(@RequestBody Map<String, Object> request) {
+        return messageCampaignService.createCampaign(request);
+    }
+
+    /**
+     * 群发队列状态
+     */
+    @GetMapping("/status")
+    @Operation(summary = "群发队列状态", description = "未发送消息数、发送中和已暂停的活动")
+    public Result<Map<String, Object>> getQueueStatus() {
+        return messageCampaignService.getQueueStatus();
+    }
+
+    /**
+     * 暂停全部发送中的活动
+     */
+    @PostMapping("/pause")
+    @Operation(summary = "暂停全部群发活动")
+    public Result<Integer> pauseAll() {
+        return messageCampaignService.pauseAll();
+    }
+
+    /**
+     * 恢复全部已暂停的活动
+     */
+    @PostMapping("/resume")
+    @Operation(summary = "恢复全部群发活动")
+    public Result<Integer> resumeAll() {
+        return messageCampaignService.resumeAll();
+    }
+
+    /**
+     * 取消全部未结束的活动
+     */
+    @PostMapping("/cancel")
+    @Operation(summary = "取消全部群发活动", description = "已发送的消息保留")
+    public Result<Integer> cancelAll() {
+        return messageCampaignService.cancelAll();
+    }
+
+    /**
+     * 查询群发活动
+     */
+    @GetMapping("/{id}")
+    @Operation(summary = "查询群发活动", description = "活动信息和发送进度")
+    public Result<MessageCampaign> getCampaign(@Parameter(description = "活动ID") @PathVariable Long id) {
+        return messageCampaignService.getCampaign(id);
+    }
+
+    /**
+     * 暂停群发活动
+     */
+    @PostMapping("/{id}/pause")
+    @Operation(summary = "暂停群发活动")
+    public Result<Boolean> pauseCampaign(@Parameter(description = "活动ID") @PathVariable Long id) {
+        return messageCampaignService.pauseCampaign(id);
+    }
+
+    /**
+     * 恢复群发活动
+     */
+    @PostMapping("/{id}/resume")
+    @Operation(summary = "恢复群发活动", description = "从上次的进度继续发送已暂停或失败的活动")
+    public Result<Boolean> resumeCampaign(@Parameter(description = "活动ID") @PathVariable Long id) {
+        return messageCampaignService.resumeCampaign(id);
+    }
+
+    /**
+     * 取消群发活动
+     */
+    @PostMapping("/{id}/cancel")
+    @Operation(summary = "取消群发活动")
+    public Result<Boolean> cancelCampaign(@Parameter(description = "活动ID") @PathVariable Long id) {
+        return messageCampaignService.cancelCampaign(id);
+    }
+}
@@ -164,6 +164,18 @@ public class MessageTemplateController {
         return messageTemplateService.renderTemplate(code, params);
     }
 
+    /**
+     * 根据模板批量渲染消息内容
+     */
+    @PostMapping("/render/{code}/batch")
+    @ApiOperation("根据模板批量渲染消息内容")
+    public Result<List<Map<String, String>>> renderTemplates(
+            @ApiParam("模板编码") @PathVariable String code,
+            @RequestBody List<Map<String, Object>> paramsList) {
+        log.info("批量渲染模板请求，编码：{}，数量：{}", code, paramsList.size());
+        return messageTemplateService.renderTemplates(code, paramsList);
+    }
+
     /**
      * 验证模板参数
      */
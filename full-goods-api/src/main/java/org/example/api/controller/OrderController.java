@@ -13,27 +13,27 @@ import org.example.api.mapper.OrderItemMapper;
 import org.example.api.mapper.OrderMapper;
 import org.example.api.mapper.FruitMapper;
 import org.example.api.service.OrderService;
+import org.example.api.service.OrderStatisticsService;
 import org.example.api.service.UserService;
 import org.example.api.service.MessageService;
-import org.example.api.vo.OrderItemVO;
+import org.example.api.util.OrderVOConverter;
 import org.example.api.vo.OrderVO;
 import org.example.common.entity.Order;
+import org.example.common.entity.OrderDailyStats;
 import org.example.common.entity.OrderItem;
 import org.example.common.entity.User;
+import org.example.common.exception.BusinessException;
 import org.example.common.response.Result;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Collections;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Calendar;
 import java.util.stream.Collectors;
 
 /**
@@ -45,6 +45,12 @@ import java.util.stream.Collectors;
 @Api(tags = "订单接口")
 public class OrderController {
 
+    // 用户订单列表默认每页数量
+    private static final int DEFAULT_ORDER_PAGE_SIZE = 20;
+
+    // 用户订单列表每页最大数量
+    private static final int MAX_ORDER_PAGE_SIZE = 100;
+
     @Autowired
     private OrderService orderService;
 
@@ -63,6 +69,9 @@ public class OrderController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private OrderStatisticsService orderStatisticsService;
+
     @PostMapping("/create")
     @ApiOperation(value = "创建订单", notes = "用户创建新订单，支持购物车结算和立即购买")
     @ApiResponses({
@@ -86,28 +95,9 @@ public class OrderController {
             // 创建订单
             Order order = orderService.createOrder(user.getId(), createOrderDTO.getAddressId(), createOrderDTO.getCartIds(), createOrderDTO.getBuyNowItems());
             
-            // 转换为VO
-            OrderVO orderVO = new OrderVO();
-            BeanUtils.copyProperties(order, orderVO);
-            // 设置状态描述
-            orderVO.setStatusDesc(orderVO.getStatusDesc());
-            
-            // 获取订单项列表
+            // 转换为VO，并填充订单项
             List<OrderItem> orderItems = orderItemMapper.selectByOrderId(order.getId());
-            List<OrderItemVO> orderItemVOList = orderItems.stream().map(item -> {
-                OrderItemVO itemVO = new OrderItemVO();
-                BeanUtils.copyProperties(item, itemVO);
-                return itemVO;
-            }).collect(Collectors.toList());
-            orderVO.setItems(orderItemVOList);
-            
-            // 计算商品总数量
-            Integer totalQuantity = orderItems.stream()
-                .mapToInt(OrderItem::getQuantity)
-                .sum();
-            orderVO.setTotalQuantity(totalQuantity);
-            
-            return Result.success(orderVO);
+            return Result.success(OrderVOConverter.toVO(order, orderItems));
         } catch (Exception e) {
             log.error("创建订单失败", e);
             return Result.failed(e.getMessage());
@@ -119,6 +109,10 @@ public class OrderController {
     public Result<List<OrderVO>> getOrderList(@RequestBody java.util.Map<String, Object> request) {
         String token = (String) request.get("token");
         Integer status = request.get("status") != null ? Integer.valueOf(request.get("status").toString()) : null;
+        // 游标分页：lastId为上一页最后一个订单ID，首页不传
+        Long lastId = request.get("lastId") != null ? Long.valueOf(request.get("lastId").toString()) : null;
+        int size = request.get("size") != null ? Integer.parseInt(request.get("size").toString()) : DEFAULT_ORDER_PAGE_SIZE;
+        size = Math.max(1, Math.min(size, MAX_ORDER_PAGE_SIZE));
         try {
             // 验证token获取用户信息
             if (StringUtils.isEmpty(token)) {
@@ -130,35 +124,10 @@ public class OrderController {
                 return Result.failed("用户不存在或token已过期");
             }
 
-            // 获取订单列表
-            List<Order> orderList = orderService.getOrderListByStatus(user.getId(), status);
+            // 获取一页订单
+            List<Order> orderList = orderService.getOrderPageByStatus(user.getId(), status, lastId, size);
             
-            // 转换为VO列表
-            List<OrderVO> orderVOList = orderList.stream().map(order -> {
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(order, orderVO);
-                // 设置状态描述
-                orderVO.setStatusDesc(orderVO.getStatusDesc());
-                
-                // 获取订单项列表
-                List<OrderItem> orderItems = orderItemMapper.selectByOrderId(order.getId());
-                List<OrderItemVO> orderItemVOList = orderItems.stream().map(item -> {
-                    OrderItemVO itemVO = new OrderItemVO();
-                    BeanUtils.copyProperties(item, itemVO);
-                    return itemVO;
-                }).collect(Collectors.toList());
-                orderVO.setItems(orderItemVOList);
-                
-                // 计算商品总数量
-                Integer totalQuantity = orderItems.stream()
-                    .mapToInt(OrderItem::getQuantity)
-                    .sum();
-                orderVO.setTotalQuantity(totalQuantity);
-                
-                return orderVO;
-            }).collect(Collectors.toList());
-            
-            return Result.success(orderVOList);
+            return Result.success(assembleOrderVOs(orderList));
         } catch (Exception e) {
             log.error("获取订单列表失败", e);
             return Result.failed("获取订单列表失败");
@@ -191,12 +160,7 @@ public class OrderController {
             }
             
             // 转换为VO
-            OrderVO orderVO = new OrderVO();
-            BeanUtils.copyProperties(order, orderVO);
-            // 设置状态描述
-            orderVO.setStatusDesc(orderVO.getStatusDesc());
-            
-            return Result.success(orderVO);
+            return Result.success(OrderVOConverter.toVO(order));
         } catch (Exception e) {
             log.error("获取订单详情失败", e);
             return Result.failed("获取订单详情失败");
@@ -230,26 +194,9 @@ public class OrderController {
                 return Result.failed("无权访问该订单");
             }
 
-            // 转换为VO
-            OrderVO orderVO = new OrderVO();
-            BeanUtils.copyProperties(order, orderVO);
-
-            // 获取订单项列表
+            // 转换为VO，并填充订单项
             List<OrderItem> orderItems = orderItemMapper.selectByOrderNo(orderNo);
-            List<OrderItemVO> orderItemVOList = orderItems.stream().map(item -> {
-                OrderItemVO itemVO = new OrderItemVO();
-                BeanUtils.copyProperties(item, itemVO);
-                return itemVO;
-            }).collect(Collectors.toList());
-            orderVO.setItems(orderItemVOList);
-
-            // 计算商品总数量
-            Integer totalQuantity = orderItems.stream()
-                .mapToInt(OrderItem::getQuantity)
-                .sum();
-            orderVO.setTotalQuantity(totalQuantity);
-
-            return Result.success(orderVO);
+            return Result.success(OrderVOConverter.toVO(order, orderItems));
         } catch (Exception e) {
             log.error("获取订单详情失败", e);
             return Result.failed("获取订单详情失败");
@@ -513,28 +460,8 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
             total = orderMapper.countTotal();
         }
 
-        // 转换为VO并获取订单项
-        List<OrderVO> orderVOList = orders.stream().map(order -> {
-            OrderVO orderVO = new OrderVO();
-            BeanUtils.copyProperties(order, orderVO);
-
-            // 获取订单项列表
-            List<OrderItem> orderItems = orderItemMapper.selectByOrderId(order.getId());
-            List<OrderItemVO> orderItemVOList = orderItems.stream().map(item -> {
-                OrderItemVO itemVO = new OrderItemVO();
-                BeanUtils.copyProperties(item, itemVO);
-                return itemVO;
-            }).collect(Collectors.toList());
-            orderVO.setItems(orderItemVOList);
-
-            // 计算商品总数量
-            Integer totalQuantity = orderItems.stream()
-                    .mapToInt(OrderItem::getQuantity)
-                    .sum();
-            orderVO.setTotalQuantity(totalQuantity);
-
-            return orderVO;
-        }).collect(Collectors.toList());
+        // 转换为VO，订单项一次批量查询
+        List<OrderVO> orderVOList = assembleOrderVOs(orders);
 
         // 创建分页信息
         PageInfo<OrderVO> pageInfo = new PageInfo<>(orderVOList);
@@ -555,25 +482,9 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
                 return Result.failed("订单不存在");
             }
             
-            OrderVO orderVO = new OrderVO();
-            BeanUtils.copyProperties(order, orderVO);
-            
-            // 获取订单项列表
+            // 转换为VO，并填充订单项
             List<OrderItem> orderItems = orderItemMapper.selectByOrderId(orderId);
-            List<OrderItemVO> orderItemVOList = orderItems.stream().map(item -> {
-                OrderItemVO itemVO = new OrderItemVO();
-                BeanUtils.copyProperties(item, itemVO);
-                return itemVO;
-            }).collect(Collectors.toList());
-            orderVO.setItems(orderItemVOList);
-            
-            // 计算商品总数量
-            Integer totalQuantity = orderItems.stream()
-                .mapToInt(OrderItem::getQuantity)
-                .sum();
-            orderVO.setTotalQuantity(totalQuantity);
-            
-            return Result.success(orderVO);
+            return Result.success(OrderVOConverter.toVO(order, orderItems));
         } catch (Exception e) {
             log.error("获取订单详情失败", e);
             return Result.failed("获取订单详情失败");
@@ -589,15 +500,14 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
                 return Result.failed("状态不能为空");
             }
             
-            Order order = orderMapper.selectByPrimaryKey(orderId);
+            Order order = orderService.updateOrderStatus(orderId, status);
             if (order == null) {
                 return Result.failed("订单不存在");
             }
             
-            order.setStatus(status);
-            int result = orderMapper.updateByPrimaryKey(order);
-            
-            return result > 0 ? Result.success(true) : Result.failed("更新失败");
+            return Result.success(true);
+        } catch (BusinessException e) {
+            return Result.failed(e.getMessage());
         } catch (Exception e) {
             log.error("更新订单状态失败", e);
             return Result.failed("更新订单状态失败");
@@ -618,33 +528,23 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
                 return Result.failed("快递公司不能为空");
             }
             
-            Order order = orderMapper.selectByPrimaryKey(orderId);
+            Order order = orderService.shipOrder(orderId, trackingNumber, courier);
             if (order == null) {
                 return Result.failed("订单不存在");
             }
             
-            if (order.getStatus() != 1) {
-                return Result.failed("只有待发货订单才能发货");
-            }
-            
-            // 更新订单状态为已发货
-            order.setStatus(2);
-            order.setTrackingNumber(trackingNumber);
-            order.setCourier(courier);
-            int result = orderMapper.updateByPrimaryKey(order);
-            
             // 发送物流通知给用户
-            if (result > 0) {
-                try {
-                    String content = String.format("您的订单%s已发货，快递公司：%s，快递单号：%s，预计1-3天送达。", 
-                        order.getOrderNo(), courier, trackingNumber);
-                    messageService.sendLogisticsNotification(order.getUserId(), order.getOrderNo(), "已发货", content);
-                } catch (Exception e) {
-                    log.error("发送物流通知失败，订单ID: {}", orderId, e);
-                }
+            try {
+                String content = String.format("您的订单%s已发货，快递公司：%s，快递单号：%s，预计1-3天送达。", 
+                    order.getOrderNo(), courier, trackingNumber);
+                messageService.sendLogisticsNotification(order.getUserId(), order.getOrderNo(), "已发货", content);
+            } catch (Exception e) {
+                log.error("发送物流通知失败，订单ID: {}", orderId, e);
             }
             
-            return result > 0 ? Result.success(true) : Result.failed("发货失败");
+            return Result.success(true);
+        } catch (BusinessException e) {
+            return Result.failed(e.getMessage());
         } catch (Exception e) {
             log.error("订单发货失败", e);
             return Result.failed("订单发货失败");
@@ -655,12 +555,8 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
     @ApiOperation("管理员删除订单")
     public Result<Boolean> deleteOrder(@PathVariable Long orderId) {
         try {
-            // 先删除订单项
-            orderItemMapper.deleteByOrderId(orderId);
-            // 再删除订单
-            int result = orderMapper.deleteByPrimaryKey(orderId);
-            
-            return result > 0 ? Result.success(true) : Result.failed("删除失败");
+            // 订单、订单项和汇总统计在同一事务中删除
+            return orderService.deleteOrder(orderId) ? Result.success(true) : Result.failed("删除失败");
         } catch (Exception e) {
             log.error("删除订单失败", e);
             return Result.failed("删除订单失败");
@@ -671,41 +567,13 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
     @ApiOperation("管理员获取订单统计数据")
     public Result<java.util.Map<String, Object>> getOrderStatistics() {
         try {
-            java.util.Map<String, Object> statistics = new java.util.HashMap<>();
-            
-            // 订单总数
-            Long totalOrders = orderMapper.countTotal();
-            statistics.put("totalOrders", totalOrders);
-            
-            // 今日订单数
-            Long todayOrders = orderMapper.countTodayOrders();
-            statistics.put("todayOrders", todayOrders);
-            
-            // 今日销售额
-            BigDecimal todayRevenue = orderMapper.sumTodayRevenue();
-            statistics.put("todayRevenue", todayRevenue != null ? todayRevenue : BigDecimal.ZERO);
-            
-            // 各状态订单数
-            Long pendingOrders = orderMapper.countByStatus(0); // 待支付
-            Long paidOrders = orderMapper.countByStatus(1); // 已支付
-            Long shippedOrders = orderMapper.countByStatus(2); // 已发货
-            Long completedOrders = orderMapper.countByStatus(3); // 已完成
-            Long cancelledOrders = orderMapper.countByStatus(4); // 已取消
-            
-            statistics.put("pendingOrders", pendingOrders);
-            statistics.put("paidOrders", paidOrders);
-            statistics.put("shippedOrders", shippedOrders);
-            statistics.put("completedOrders", completedOrders);
-            statistics.put("cancelledOrders", cancelledOrders);
+            // 订单数据来自按日汇总，不再扫描订单表
+            java.util.Map<String, Object> statistics = orderStatisticsService.getOrderSummary();
             
             // 库存不足商品数（库存小于等于10）
             Long lowStockProducts = fruitMapper.countLowStock(10);
             statistics.put("lowStockProducts", lowStockProducts);
             
-            // 月增长率
-            Double monthlyGrowth = orderMapper.calculateMonthlyGrowth();
-            statistics.put("monthlyGrowth", monthlyGrowth);
-            
             return Result.success(statistics);
         } catch (Exception e) {
             log.error("获取订单统计数据失败", e);
@@ -720,8 +588,7 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
             java.util.Map<String, Object> result = new java.util.HashMap<>();
             
             // 今日销售额
-            BigDecimal todayRevenue = orderMapper.sumTodayRevenue();
-            result.put("todayRevenue", todayRevenue != null ? todayRevenue : BigDecimal.ZERO);
+            result.put("todayRevenue", orderStatisticsService.getTodayRevenue());
             
             return Result.success(result);
         } catch (Exception e) {
@@ -737,37 +604,8 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
     @ApiOperation("获取销售趋势数据")
     public Result<Map<String, Object>> getSalesTrend(@RequestParam(defaultValue = "7") int days) {
         try {
-            Map<String, Object> trendData = new HashMap<>();
-            
-            // 计算日期范围
-            List<String> dates = new ArrayList<>();
-            List<BigDecimal> sales = new ArrayList<>();
-            List<Integer> orders = new ArrayList<>();
-            
-            Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.DAY_OF_YEAR, -(days - 1));
-            
-            for (int i = 0; i < days; i++) {
-                // 格式化日期
-                String dateStr = String.format("%tY-%tm-%td", calendar, calendar, calendar);
-                dates.add(dateStr);
-                
-                // 获取该日期的销售数据
-                Date startDate = calendar.getTime();
-                calendar.add(Calendar.DAY_OF_YEAR, 1);
-                Date endDate = calendar.getTime();
-                
-                // 查询该日期的订单数量和销售总额
-                Integer orderCount = orderMapper.countByDateRange(startDate, endDate);
-                BigDecimal totalSales = orderMapper.sumSalesByDateRange(startDate, endDate);
-                
-                orders.add(orderCount != null ? orderCount : 0);
-                sales.add(totalSales != null ? totalSales : BigDecimal.ZERO);
-            }
-            
-            trendData.put("dates", dates);
-            trendData.put("sales", sales);
-            trendData.put("orders", orders);
+            // 每天一行汇总数据，热副本优先
+            Map<String, Object> trendData = orderStatisticsService.getSalesTrend(days);
             
             return Result.success(trendData);
         } catch (Exception e) {
@@ -775,4 +613,46 @@ public Result<PageInfo<OrderVO>> getOrderListForAdmin(
             return Result.failed("获取销售趋势数据失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 获取分类销售统计
+     */
+    @GetMapping("/admin/category-sales")
+    @ApiOperation("管理员获取分类销售统计")
+    public Result<List<OrderDailyStats>> getCategorySales(@RequestParam(defaultValue = "30") int days) {
+        try {
+            return Result.success(orderStatisticsService.getCategorySales(days));
+        } catch (Exception e) {
+            log.error("获取分类销售统计失败", e);
+            return Result.failed("获取分类销售统计失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 从订单历史重建汇总统计
+     */
+    @PostMapping("/admin/statistics/rebuild")
+    @ApiOperation("管理员重建订单汇总统计")
+    public Result<Integer> rebuildStatistics(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            return Result.success(orderStatisticsService.rebuild(startDate, endDate));
+        } catch (Exception e) {
+            log.error("重建订单汇总统计失败", e);
+            return Result.failed("重建订单汇总统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量转换订单VO，所有订单项一次查询
+     */
+    private List<OrderVO> assembleOrderVOs(List<Order> orders) {
+        if (orders == null || orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        List<OrderItem> orderItems = orderItemMapper.selectByOrderIds(orderIds);
+        return OrderVOConverter.toVOList(orders, orderItems);
+    }
+}
@@ -269,6 +269,10 @@ public class UserController {
             Integer newStatus = user.getStatus() == 1 ? 0 : 1;
             user.setStatus(newStatus);
             userMapper.updateByPrimaryKey(user);
+            if (newStatus == 0) {
+                // 禁用后已登录的token立即失效
+                userService.invalidateTokens(id);
+            }
             
             return Result.success("用户状态更新成功");
         } catch (Exception e) {
@@ -283,6 +287,7 @@ public class UserController {
         try {
             int result = userMapper.deleteByPrimaryKey(id);
             if (result > 0) {
+                userService.invalidateTokens(id);
                 return Result.success("用户删除成功");
             } else {
                 return Result.failed("用户删除失败，用户不存在");
@@ -1,6 +1,7 @@
 package org.example.api.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.api.service.CustomerServiceSessionService;
 import org.example.api.service.WebSocketMessageService;
 import org.example.api.service.MessageService;
 import org.example.common.entity.Message;
@@ -30,6 +31,9 @@ public class WebSocketController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private CustomerServiceSessionService customerServiceSessionService;
+
     /**
      * 处理客户端发送的消息
      *
@@ -203,6 +207,8 @@ public class WebSocketController {
             Result<Boolean> result = messageService.sendMessage(replyMessage);
             if (result.getCode() != 200) {
                 log.error("保存客服回复消息失败: {}", result.getMessage());
+            } else {
+                customerServiceSessionService.recordServiceReply(userId);
             }
             
             // 通过WebSocket发送给用户
@@ -0,0 +1,156 @@
+package org.example.api.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.config.RateLimitProperties;
+import org.example.api.service.UserService;
+import org.example.common.entity.User;
+import org.example.common.ratelimit.RateLimiter;
+import org.example.common.response.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 限流拦截器
+ * 按配置的路由策略限流，每个策略按用户、IP或全局计数
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    public static final String INTERNAL_TOKEN_HEADER = "X-Internal-Token";
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private RateLimitProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!properties.isEnabled() || "OPTIONS".equalsIgnoreCase(request.getMethod()) || isInternalCall(request)) {
+            return true;
+        }
+
+        String method = request.getMethod();
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RateLimitProperties.Policy policy : properties.getPolicies()) {
+            if (!policy.matches(method, path, pathMatcher)) {
+                continue;
+            }
+            String key = policy.getName() + ":" + resolveSubject(policy.getDimension(), request);
+            if (!rateLimiter.tryAcquire(key, policy.getRule())) {
+                log.debug("请求被限流，策略: {}, 键: {}, URI: {}", policy.getName(), key, path);
+                reject(response);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 限流对象：登录用户按用户ID，同一用户的多个token共享额度；未登录的请求按IP
+     */
+    private String resolveSubject(RateLimitProperties.Dimension dimension, HttpServletRequest request) {
+        if (dimension == RateLimitProperties.Dimension.GLOBAL) {
+            return "all";
+        }
+        if (dimension == RateLimitProperties.Dimension.USER) {
+            String token = getTokenFromRequest(request);
+            if (StringUtils.hasText(token)) {
+                // 用户信息有本地缓存，大部分请求不访问Redis
+                User user = userService.getByToken(token);
+                if (user != null && user.getId() != null) {
+                    return "user:" + user.getId();
+                }
+            }
+        }
+        return "ip:" + getClientIpAddress(request);
+    }
+
+    /**
+     * 管理后台等内部服务的调用都来自同一地址，携带内部令牌时不计入限流
+     */
+    private boolean isInternalCall(HttpServletRequest request) {
+        String expected = properties.getInternalToken();
+        String actual = request.getHeader(INTERNAL_TOKEN_HEADER);
+        if (!StringUtils.hasText(expected) || !StringUtils.hasText(actual)) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void reject(HttpServletResponse response) throws Exception {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(
+                Result.failed("请求过于频繁，请稍后再试", HttpStatus.TOO_MANY_REQUESTS.value())));
+    }
+
+    /**
+     * 从请求中获取token，与认证拦截器的来源一致
+     */
+    private String getTokenFromRequest(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+
+        String tokenParam = request.getParameter("token");
+        if (StringUtils.hasText(tokenParam)) {
+            return tokenParam;
+        }
+
+        return request.getHeader("X-Auth-Token");
+    }
+
+    /**
+     * 获取客户端IP地址
+     * 转发头可以由客户端伪造，只有直连地址是可信代理时才读取，
+     * X-Forwarded-For从右往左跳过可信代理，取第一个不可信的地址
+     */
+    private String getClientIpAddress(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!properties.isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (StringUtils.hasText(xForwardedFor)) {
+            String[] addresses = xForwardedFor.split(",");
+            for (int i = addresses.length - 1; i >= 0; i--) {
+                String address = addresses[i].trim();
+                if (StringUtils.hasText(address) && !"unknown".equalsIgnoreCase(address)
+                        && !properties.isTrustedProxy(address)) {
+                    return address;
+                }
+            }
+        }
+
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (StringUtils.hasText(xRealIp) && !"unknown".equalsIgnoreCase(xRealIp)) {
+            return xRealIp;
+        }
+
+        return remoteAddr;
+    }
+}
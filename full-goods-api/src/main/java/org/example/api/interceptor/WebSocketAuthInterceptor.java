@@ -0,0 +1,88 @@
+package org.example.api.interceptor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.service.UserService;
+import org.example.common.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.security.Principal;
+
+/**
+ * WebSocket认证拦截器
+ * STOMP CONNECT时从头中获取token，解析出用户后以用户ID作为会话的Principal，
+ * 发往 /user/{userId}/** 的消息投递给该用户订阅了 /user/queue/** 的会话。
+ * 没有token或token无效的连接不绑定用户，只能接收 /topic/** 广播。
+ */
+@Slf4j
+@Component
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String token = getToken(accessor);
+        if (StringUtils.hasText(token)) {
+            User user = userService.getByToken(token);
+            if (user != null && user.getId() != null) {
+                accessor.setUser(new UserPrincipal(user.getId()));
+                log.debug("WebSocket连接认证成功，用户ID: {}", user.getId());
+            } else {
+                log.warn("WebSocket连接token无效或已过期");
+            }
+        }
+        return message;
+    }
+
+    /**
+     * 从STOMP CONNECT头中获取token，与HTTP接口的来源一致
+     */
+    private String getToken(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+
+        String token = accessor.getFirstNativeHeader("token");
+        if (StringUtils.hasText(token)) {
+            return token;
+        }
+
+        return accessor.getFirstNativeHeader("X-Auth-Token");
+    }
+
+    /**
+     * 以用户ID为名称的Principal
+     */
+    public static final class UserPrincipal implements Principal {
+
+        private final Long userId;
+
+        public UserPrincipal(Long userId) {
+            this.userId = userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        @Override
+        public String getName() {
+            return String.valueOf(userId);
+        }
+    }
+}
@@ -28,6 +28,14 @@ public interface CartMapper {
      */
     Cart selectById(Long id);
 
+    /**
+     * 根据ID列表批量查询购物车
+     *
+     * @param ids 购物车ID列表
+     * @return 购物车列表
+     */
+    List<Cart> selectByIds(@Param("ids") List<Long> ids);
+
     /**
      * 根据用户ID和水果ID查询购物车
      *
@@ -61,6 +69,14 @@ public interface CartMapper {
      */
     int deleteById(Long id);
 
+    /**
+     * 根据ID列表批量删除购物车
+     *
+     * @param ids 购物车ID列表
+     * @return 影响行数
+     */
+    int deleteByIds(@Param("ids") List<Long> ids);
+
     /**
      * 根据用户ID和水果ID删除购物车
      *
@@ -132,4 +132,58 @@ public interface CustomerStatisticsMapper {
      */
     CustomerStatistics selectOverallStatistics(@Param("startDate") Date startDate, 
                                                @Param("endDate") Date endDate);
+
+    /**
+     * 查询日期范围内的统计
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 统计列表，按日期、客服ID升序
+     */
+    List<CustomerStatistics> selectByDateRange(@Param("startDate") Date startDate,
+                                               @Param("endDate") Date endDate);
+
+    /**
+     * 按客服、日期累加计数，当天没有统计时新增
+     *
+     * @param deltas 计数增量，使用 statisticsDate、serviceId、dialogCount、messageCount、resolvedCount
+     * @return 影响行数
+     */
+    int upsertCounters(@Param("list") List<CustomerStatistics> deltas);
+
+    /**
+     * 将日期范围内由会话和消息计算的字段清零，人工维护的满意度、在线时长等字段保留
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param serviceId 客服ID，为空表示全部客服
+     * @return 影响行数
+     */
+    int resetCounters(@Param("startDate") Date startDate, @Param("endDate") Date endDate,
+                      @Param("serviceId") Long serviceId);
+
+    /**
+     * 从会话表和消息表重新计算日期范围内的接待对话数、消息数、解决数和平均响应时间
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param serviceId 客服ID，为空表示全部客服
+     * @return 影响行数
+     */
+    int rebuildCounters(@Param("startDate") Date startDate, @Param("endDate") Date endDate,
+                        @Param("serviceId") Long serviceId);
+
+    /**
+     * 查询最早的已分配客服的会话日期
+     *
+     * @return 最早会话日期，无会话时为null
+     */
+    Date selectEarliestSessionDate();
+
+    /**
+     * 查询最早的统计日期
+     *
+     * @return 最早统计日期，统计表为空时为null
+     */
+    Date selectEarliestStatisticsDate();
 }
\ No newline at end of file
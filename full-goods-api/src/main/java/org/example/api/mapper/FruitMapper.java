@@ -7,7 +7,9 @@ import org.example.api.vo.FruitVO;
 import org.example.common.entity.Fruit;
 import org.example.common.entity.FlashSale;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -58,6 +60,22 @@ public interface FruitMapper {
      */
     Fruit selectById(@Param("id") Long id);
 
+    /**
+     * 根据ID列表批量查询水果
+     *
+     * @param ids 水果ID列表
+     * @return 水果列表
+     */
+    List<Fruit> selectByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 根据ID列表批量查询水果并加行锁（按ID升序加锁，避免并发下单死锁）
+     *
+     * @param ids 水果ID列表
+     * @return 水果列表
+     */
+    List<Fruit> selectByIdsForUpdate(@Param("ids") Collection<Long> ids);
+
     /**
      * 根据分类查询水果
      *
@@ -109,6 +127,14 @@ public interface FruitMapper {
   //  @Select("SELECT * FROM t_fruit WHERE name = #{name} AND status = 1")
     Fruit selectByName(@Param("name") String name);
 
+    /**
+     * 根据水果名称列表批量查询上架水果
+     *
+     * @param names 水果名称列表
+     * @return 水果列表
+     */
+    List<Fruit> selectByNames(@Param("names") Collection<String> names);
+
     /**
      * 新增水果
      *
@@ -159,6 +185,22 @@ public interface FruitMapper {
      * @return 影响行数
      */
     int increaseStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    /**
+     * 批量扣减库存，仅在所有商品库存充足时逐行扣减
+     *
+     * @param stockMap 水果ID -> 扣减数量
+     * @return 影响行数，小于商品数说明存在库存不足的商品
+     */
+    int batchDecreaseStock(@Param("stockMap") Map<Long, Integer> stockMap);
+
+    /**
+     * 批量增加库存
+     *
+     * @param stockMap 水果ID -> 增加数量
+     * @return 影响行数
+     */
+    int batchIncreaseStock(@Param("stockMap") Map<Long, Integer> stockMap);
     
     // ==================== Admin统计相关方法 ====================
     
@@ -0,0 +1,125 @@
+package org.example.api.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.common.entity.MessageCampaign;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息群发活动Mapper接口
+ * 状态变更都带条件更新，返回0表示状态已被其他请求或节点修改
+ */
+@Mapper
+public interface MessageCampaignMapper {
+
+    /**
+     * 新增活动
+     *
+     * @param campaign 活动信息
+     * @return 影响行数
+     */
+    int insert(MessageCampaign campaign);
+
+    /**
+     * 根据ID查询活动（含指定用户和参数）
+     *
+     * @param id 活动ID
+     * @return 活动信息
+     */
+    MessageCampaign selectById(Long id);
+
+    /**
+     * 按状态查询活动概要，不含指定用户和参数
+     *
+     * @param statuses 状态列表
+     * @return 活动列表，按ID升序
+     */
+    List<MessageCampaign> selectByStatuses(@Param("statuses") Collection<Integer> statuses);
+
+    /**
+     * 按状态统计活动数和已发送消息数
+     *
+     * @return status、count、sentCount
+     */
+    List<Map<String, Object>> countGroupByStatus();
+
+    /**
+     * 查询发送中但心跳已超时的活动，发送节点可能已宕机
+     *
+     * @param staleSeconds 心跳超过该秒数未刷新视为超时，按数据库时间计算
+     * @return 活动ID列表
+     */
+    List<Long> selectStalledIds(@Param("staleSeconds") long staleSeconds);
+
+    /**
+     * 接管心跳超时的活动
+     *
+     * @param id 活动ID
+     * @param nodeId 接管节点
+     * @param staleSeconds 心跳超过该秒数未刷新才能接管
+     * @return 影响行数，0表示已被其他节点接管或状态已变化
+     */
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("staleSeconds") long staleSeconds);
+
+    /**
+     * 推进发送进度并刷新心跳
+     *
+     * @param id 活动ID
+     * @param nodeId 发送节点
+     * @param fromUserId 本批之前的进度
+     * @param toUserId 本批最后一个用户ID
+     * @param count 本批发送消息数
+     * @return 影响行数，0表示活动已暂停、取消或被其他节点接管
+     */
+    int advance(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("fromUserId") Long fromUserId,
+                @Param("toUserId") Long toUserId, @Param("count") int count);
+
+    /**
+     * 发送结束（完成或失败）
+     *
+     * @param id 活动ID
+     * @param nodeId 发送节点
+     * @param status 结束状态
+     * @param errorMessage 失败原因
+     * @return 影响行数
+     */
+    int finish(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("status") Integer status,
+               @Param("errorMessage") String errorMessage);
+
+    /**
+     * 暂停发送中的活动
+     *
+     * @param id 活动ID
+     * @return 影响行数
+     */
+    int pause(Long id);
+
+    /**
+     * 恢复已暂停或失败的活动，由指定节点继续发送
+     *
+     * @param id 活动ID
+     * @param nodeId 发送节点
+     * @return 影响行数
+     */
+    int resume(@Param("id") Long id, @Param("nodeId") String nodeId);
+
+    /**
+     * 取消未结束的活动
+     *
+     * @param id 活动ID
+     * @return 影响行数
+     */
+    int cancel(Long id);
+
+    /**
+     * 节点关闭时放弃发送中的活动，清空心跳以便其他节点立即接管
+     *
+     * @param id 活动ID
+     * @param nodeId 发送节点
+     * @return 影响行数
+     */
+    int release(@Param("id") Long id, @Param("nodeId") String nodeId);
+}
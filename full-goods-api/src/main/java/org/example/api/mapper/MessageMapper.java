@@ -63,6 +63,22 @@ public interface MessageMapper {
      */
     Message selectById(Long id);
 
+    /**
+     * 根据ID列表查询消息
+     *
+     * @param ids 消息ID列表
+     * @return 消息列表
+     */
+    List<Message> selectByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按消息类型和状态分组统计用户消息数量
+     *
+     * @param userId 用户ID
+     * @return 每组的 messageType、status、count
+     */
+    List<Map<String, Object>> countByUserIdGroupByTypeAndStatus(Long userId);
+
     /**
      * 新增消息
      *
@@ -20,6 +20,14 @@ public interface OrderItemMapper {
      */
     List<OrderItem> selectByOrderId(Long orderId);
 
+    /**
+     * 根据订单ID列表批量查询订单项
+     *
+     * @param orderIds 订单ID列表
+     * @return 订单项列表
+     */
+    List<OrderItem> selectByOrderIds(@Param("orderIds") List<Long> orderIds);
+
     /**
      * 根据订单编号查询订单项列表
      *
@@ -47,6 +47,18 @@ public interface OrderMapper {
      */
     List<Order> selectByUserIdAndStatus(Long userId, Integer status);
 
+    /**
+     * 按订单ID倒序游标分页查询用户订单
+     *
+     * @param userId 用户ID
+     * @param status 订单状态（null表示所有状态）
+     * @param lastId 上一页最后一个订单ID（null表示第一页）
+     * @param limit 查询数量
+     * @return 订单列表
+     */
+    List<Order> selectByUserIdBeforeId(@Param("userId") Long userId, @Param("status") Integer status,
+                                       @Param("lastId") Long lastId, @Param("limit") int limit);
+
     /**
      * 根据订单编号查询订单
      *
@@ -79,6 +91,15 @@ public interface OrderMapper {
      */
     int update(Order order);
 
+    /**
+     * 仅当订单仍处于原状态时修改订单
+     *
+     * @param order 订单信息
+     * @param fromStatus 原状态
+     * @return 影响行数，0表示状态已被其他操作改变
+     */
+    int updateIfStatus(@Param("order") Order order, @Param("fromStatus") Integer fromStatus);
+
     /**
      * 删除订单
      *
@@ -151,6 +172,14 @@ public interface OrderMapper {
      */
     Order selectByPrimaryKey(@Param("id") Long id);
 
+    /**
+     * 根据主键查询订单并加行锁
+     *
+     * @param id 订单ID
+     * @return 订单信息
+     */
+    Order selectByIdForUpdate(@Param("id") Long id);
+
     /**
      * 根据主键更新订单
      *
@@ -174,4 +203,32 @@ public interface OrderMapper {
      * @return 未付款订单列表
      */
     List<Order> findUnpaidOrdersBeforeTime(@Param("beforeTime") Date beforeTime);
-}
\ No newline at end of file
+
+    /**
+     * 按ID游标分页查询待付款订单（仅返回id和create_time）
+     *
+     * @param lastId 上一页最后一个订单ID
+     * @param limit 每页数量
+     * @return 待付款订单列表
+     */
+    List<Order> selectUnpaidAfterId(@Param("lastId") Long lastId, @Param("limit") Integer limit);
+
+    /**
+     * 根据ID列表查询仍为待付款的订单并加行锁
+     *
+     * @param ids 订单ID列表
+     * @return 待付款订单列表
+     */
+    List<Order> selectUnpaidByIdsForUpdate(@Param("ids") List<Long> ids);
+
+    /**
+     * 批量更新仍处于原状态的订单
+     *
+     * @param ids 订单ID列表
+     * @param fromStatus 原状态
+     * @param status 订单状态
+     * @return 影响行数
+     */
+    int batchUpdateStatus(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus,
+                          @Param("status") Integer status);
+}
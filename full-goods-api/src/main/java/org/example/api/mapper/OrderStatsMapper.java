@@ -0,0 +1,99 @@
+package org.example.api.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.common.entity.OrderDailyStats;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 订单汇总统计Mapper接口
+ */
+@Mapper
+public interface OrderStatsMapper {
+
+    /**
+     * 按订单当前数据累加按日汇总计数
+     *
+     * @param orderIds 订单ID列表
+     * @param status 计入的订单状态
+     * @param delta 1为计入，-1为扣除
+     * @return 影响行数
+     */
+    int applyOrderDelta(@Param("orderIds") Collection<Long> orderIds, @Param("status") Integer status,
+                        @Param("delta") int delta);
+
+    /**
+     * 按订单项累加按日分类汇总计数
+     *
+     * @param orderIds 订单ID列表
+     * @param status 计入的订单状态
+     * @param delta 1为计入，-1为扣除
+     * @return 影响行数
+     */
+    int applyCategoryDelta(@Param("orderIds") Collection<Long> orderIds, @Param("status") Integer status,
+                           @Param("delta") int delta);
+
+    /**
+     * 查询日期范围内每天各状态的订单数和金额
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 按日期、状态聚合的统计
+     */
+    List<OrderDailyStats> selectDailyStats(@Param("startDate") LocalDate startDate,
+                                           @Param("endDate") LocalDate endDate);
+
+    /**
+     * 查询全部订单各状态的订单数和金额
+     *
+     * @return 按状态聚合的统计
+     */
+    List<OrderDailyStats> selectStatusTotals();
+
+    /**
+     * 查询日期范围内各分类的有效销售（已支付、已发货、已完成）
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 按分类聚合的统计，按金额降序
+     */
+    List<OrderDailyStats> selectCategorySales(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+
+    /**
+     * 查询最早的下单日期
+     *
+     * @return 最早下单日期，无订单时为null
+     */
+    LocalDate selectEarliestOrderDate();
+
+    /**
+     * 查询最早的汇总日期
+     *
+     * @return 最早汇总日期，汇总表为空时为null
+     */
+    LocalDate selectEarliestStatDate();
+
+    /**
+     * 删除日期范围内的按日汇总
+     */
+    int deleteDailyStats(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 删除日期范围内的按日分类汇总
+     */
+    int deleteCategoryStats(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 从订单表重建日期范围内的按日汇总
+     */
+    int rebuildDailyStats(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 从订单表和订单项表重建日期范围内的按日分类汇总
+     */
+    int rebuildCategoryStats(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+}
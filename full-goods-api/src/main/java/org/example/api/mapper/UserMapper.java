@@ -133,6 +133,17 @@ public interface UserMapper {
      * @return 用户数量
      */
     Long countByStatus(@Param("status") Integer status);
+
+    /**
+     * 按ID顺序查询指定状态的用户ID，从上一页最后一个ID之后开始（键集分页）
+     *
+     * @param status  用户状态
+     * @param afterId 上一页最后一个用户ID，第一页传0
+     * @param limit   每页数量
+     * @return 用户ID列表，按ID升序
+     */
+    List<Long> selectIdsByStatusAfter(@Param("status") Integer status, @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
     
     /**
      * 计算月增长率
@@ -73,6 +73,13 @@ public interface CustomerServiceSessionService {
      */
     Result<Boolean> updateLastMessage(Long sessionId, String lastMessageContent);
 
+    /**
+     * 记录人工客服的一条回复，计入客服统计
+     * 机器人自动回复和用户消息不计入
+     * @param userId 接收回复的用户ID
+     */
+    void recordServiceReply(Long userId);
+
     /**
      * 增加未读消息数
      * @param sessionId 会话ID
@@ -0,0 +1,189 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.CustomerStatisticsMapper;
+import org.example.common.entity.CustomerStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客服统计聚合器
+ * 会话分配、客服回复、会话结束时在内存中累加每个客服每天的计数，定时批量累加到统计表，
+ * 替代原来按天逐个客服生成统计的方式，写入后刷新当天的Redis排行。
+ * 未写入的计数在节点宕机时丢失，可通过回填从会话表和消息表重新计算。
+ */
+@Slf4j
+@Service
+public class CustomerStatisticsAggregator {
+
+    @Autowired
+    private CustomerStatisticsMapper customerStatisticsMapper;
+
+    @Autowired
+    private CustomerStatisticsRankingService customerStatisticsRankingService;
+
+    @Value("${customer-statistics.batch-size:500}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<CounterKey, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 会话分配给客服，转接时原客服传-1
+     *
+     * @param serviceId 客服ID
+     * @param startTime 会话开始时间，计入会话开始当天
+     * @param delta 增量
+     */
+    public void recordDialog(Long serviceId, Date startTime, int delta) {
+        LocalDate date = startTime != null ? CustomerStatisticsRankingService.toLocalDate(startTime) : LocalDate.now();
+        add(new CounterKey(date, serviceId), delta, 0, 0);
+    }
+
+    /**
+     * 客服回复一条消息
+     */
+    public void recordMessage(Long serviceId) {
+        add(new CounterKey(LocalDate.now(), serviceId), 0, 1, 0);
+    }
+
+    /**
+     * 客服结束会话
+     */
+    public void recordResolved(Long serviceId) {
+        add(new CounterKey(LocalDate.now(), serviceId), 0, 0, 1);
+    }
+
+    private void add(CounterKey key, long dialogs, long messages, long resolved) {
+        if (key.serviceId == null) {
+            return;
+        }
+        counters.compute(key, (k, c) -> (c != null ? c : new Counters()).add(dialogs, messages, resolved));
+    }
+
+    /**
+     * 将内存中的计数写入统计表
+     *
+     * @return 写入的客服日统计条数
+     */
+    @Scheduled(fixedDelayString = "${customer-statistics.flush-interval-ms:5000}")
+    public synchronized int flush() {
+        if (counters.isEmpty()) {
+            return 0;
+        }
+
+        // 逐个取出，取出后的新计数进入新条目，不会丢失
+        List<CustomerStatistics> deltas = new ArrayList<>();
+        for (CounterKey key : new ArrayList<>(counters.keySet())) {
+            Counters c = counters.remove(key);
+            if (c != null && !c.isEmpty()) {
+                deltas.add(toDelta(key, c));
+            }
+        }
+
+        Set<LocalDate> dates = new HashSet<>();
+        int written = 0;
+        try {
+            for (int i = 0; i < deltas.size(); i += batchSize) {
+                List<CustomerStatistics> batch = deltas.subList(i, Math.min(i + batchSize, deltas.size()));
+                customerStatisticsMapper.upsertCounters(batch);
+                for (CustomerStatistics delta : batch) {
+                    dates.add(CustomerStatisticsRankingService.toLocalDate(delta.getStatisticsDate()));
+                }
+                written += batch.size();
+            }
+        } catch (Exception e) {
+            // 未写入的计数放回内存，下次继续写入
+            log.error("写入客服统计失败，{} 条计数等待下次写入", deltas.size() - written, e);
+            for (CustomerStatistics delta : deltas.subList(written, deltas.size())) {
+                CounterKey key = new CounterKey(CustomerStatisticsRankingService.toLocalDate(delta.getStatisticsDate()), delta.getServiceId());
+                add(key, delta.getDialogCount(), delta.getMessageCount(), delta.getResolvedCount());
+            }
+        }
+
+        if (!dates.isEmpty()) {
+            customerStatisticsRankingService.rebuild(dates);
+        }
+        log.debug("写入客服统计 {} 条，涉及 {} 天", written, dates.size());
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static CustomerStatistics toDelta(CounterKey key, Counters c) {
+        CustomerStatistics delta = new CustomerStatistics();
+        delta.setStatisticsDate(Date.from(key.date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        delta.setServiceId(key.serviceId);
+        delta.setDialogCount((int) c.dialogs);
+        delta.setMessageCount((int) c.messages);
+        delta.setResolvedCount((int) c.resolved);
+        return delta;
+    }
+
+    private static final class CounterKey {
+
+        private final LocalDate date;
+
+        private final Long serviceId;
+
+        private CounterKey(LocalDate date, Long serviceId) {
+            this.date = date;
+            this.serviceId = serviceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey other = (CounterKey) o;
+            return date.equals(other.date) && Objects.equals(serviceId, other.serviceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(date, serviceId);
+        }
+    }
+
+    /**
+     * 只在 ConcurrentHashMap.compute 内修改
+     */
+    private static final class Counters {
+
+        private long dialogs;
+
+        private long messages;
+
+        private long resolved;
+
+        private Counters add(long dialogs, long messages, long resolved) {
+            this.dialogs += dialogs;
+            this.messages += messages;
+            this.resolved += resolved;
+            return this;
+        }
+
+        private boolean isEmpty() {
+            return dialogs == 0 && messages == 0 && resolved == 0;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.CustomerStatisticsMapper;
+import org.example.common.entity.CustomerStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客服排行服务
+ * 每天每个客服的接待对话数、消息数和满意度各存一个Redis有序集合，由按日统计行生成；
+ * 统计行变化后重新生成当天的有序集合，查询日期范围的排行时合并范围内每天的有序集合，不再扫描统计表。
+ * 某天的有序集合未生成或已过期时，先从统计表生成再查询。
+ */
+@Slf4j
+@Service
+public class CustomerStatisticsRankingService {
+
+    @Autowired
+    private CustomerStatisticsMapper customerStatisticsMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private static final String DIALOGS_KEY_PREFIX = "cs:stats:rank:dialogs:";
+    private static final String MESSAGES_KEY_PREFIX = "cs:stats:rank:messages:";
+    private static final String SATISFACTION_KEY_PREFIX = "cs:stats:rank:satisfaction:";
+
+    // 当天的有序集合已生成，统计行为空的日期也有标记
+    private static final String READY_KEY_PREFIX = "cs:stats:rank:ready:";
+
+    // 客服ID -> 客服名称
+    private static final String NAMES_KEY = "cs:stats:agent:names";
+
+    private static final long EXPIRE_SECONDS = 7 * 24 * 3600;
+
+    // 超过该天数的范围直接查询统计表
+    public static final int MAX_RANGE_DAYS = 366;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    /**
+     * 从统计表重新生成这些天的排行
+     *
+     * @return 是否生成成功
+     */
+    public boolean rebuild(Collection<LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return true;
+        }
+        TreeSet<LocalDate> days = new TreeSet<>(dates);
+        try {
+            Map<LocalDate, List<CustomerStatistics>> rows = new HashMap<>();
+            for (CustomerStatistics row : customerStatisticsMapper.selectByDateRange(toDate(days.first()), toDate(days.last()))) {
+                LocalDate date = toLocalDate(row.getStatisticsDate());
+                if (days.contains(date)) {
+                    rows.computeIfAbsent(date, d -> new ArrayList<>()).add(row);
+                }
+            }
+            write(days, rows);
+            return true;
+        } catch (Exception e) {
+            // 生成失败时删除就绪标记，下次查询重新生成
+            log.warn("生成客服排行失败 - 日期: {} ~ {}", days.first(), days.last(), e);
+            evict(days);
+            return false;
+        }
+    }
+
+    /**
+     * 统计行被手工修改或删除后调用，下次查询时重新生成
+     */
+    public void evict(Collection<LocalDate> dates) {
+        List<String> keys = new ArrayList<>(dates.size() * 4);
+        for (LocalDate date : dates) {
+            String day = date.format(DATE_FORMAT);
+            keys.add(READY_KEY_PREFIX + day);
+            keys.add(DIALOGS_KEY_PREFIX + day);
+            keys.add(MESSAGES_KEY_PREFIX + day);
+            keys.add(SATISFACTION_KEY_PREFIX + day);
+        }
+        try {
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.error("删除客服排行失败 - 日期: {}", dates, e);
+        }
+    }
+
+    /**
+     * 工作量排行，按接待对话数、消息数降序
+     *
+     * @return 排行，Redis不可用时返回null
+     */
+    public List<CustomerStatistics> getWorkloadRanking(LocalDate startDate, LocalDate endDate, Integer limit) {
+        Map<Long, CustomerStatistics> merged = merge(startDate, endDate);
+        if (merged == null) {
+            return null;
+        }
+        List<CustomerStatistics> ranking = new ArrayList<>(merged.values());
+        ranking.sort(Comparator.comparing(CustomerStatistics::getDialogCount)
+                .thenComparing(CustomerStatistics::getMessageCount).reversed());
+        return limit(ranking, limit);
+    }
+
+    /**
+     * 满意度排行，按范围内每天平均满意度的平均值降序，没有评分的客服不参与
+     *
+     * @return 排行，Redis不可用时返回null
+     */
+    public List<CustomerStatistics> getSatisfactionRanking(LocalDate startDate, LocalDate endDate, Integer limit) {
+        Map<Long, CustomerStatistics> merged = merge(startDate, endDate);
+        if (merged == null) {
+            return null;
+        }
+        List<CustomerStatistics> ranking = new ArrayList<>();
+        for (CustomerStatistics stats : merged.values()) {
+            if (stats.getAvgSatisfaction() != null) {
+                ranking.add(stats);
+            }
+        }
+        ranking.sort(Comparator.comparing(CustomerStatistics::getAvgSatisfaction).reversed());
+        return limit(ranking, limit);
+    }
+
+    /**
+     * 合并范围内每天的有序集合
+     *
+     * @return 客服ID -> 范围内的合计，Redis不可用时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, CustomerStatistics> merge(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        try {
+            ensureReady(dates);
+
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (LocalDate date : dates) {
+                        String day = date.format(DATE_FORMAT);
+                        ops.opsForZSet().rangeWithScores(DIALOGS_KEY_PREFIX + day, 0, -1);
+                        ops.opsForZSet().rangeWithScores(MESSAGES_KEY_PREFIX + day, 0, -1);
+                        ops.opsForZSet().rangeWithScores(SATISFACTION_KEY_PREFIX + day, 0, -1);
+                    }
+                    return null;
+                }
+            });
+
+            Map<Long, CustomerStatistics> merged = new LinkedHashMap<>();
+            Map<Long, Integer> ratedDays = new HashMap<>();
+            for (int i = 0; i < results.size(); i += 3) {
+                for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) results.get(i)) {
+                    CustomerStatistics stats = entry(merged, tuple.getValue());
+                    stats.setDialogCount(stats.getDialogCount() + tuple.getScore().intValue());
+                }
+                for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) results.get(i + 1)) {
+                    CustomerStatistics stats = entry(merged, tuple.getValue());
+                    stats.setMessageCount(stats.getMessageCount() + tuple.getScore().intValue());
+                }
+                for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) results.get(i + 2)) {
+                    CustomerStatistics stats = entry(merged, tuple.getValue());
+                    double total = stats.getAvgSatisfaction() != null ? stats.getAvgSatisfaction() : 0;
+                    stats.setAvgSatisfaction(total + tuple.getScore());
+                    ratedDays.merge(stats.getServiceId(), 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<Long, Integer> entry : ratedDays.entrySet()) {
+                CustomerStatistics stats = merged.get(entry.getKey());
+                stats.setAvgSatisfaction(stats.getAvgSatisfaction() / entry.getValue());
+            }
+            fillNames(merged);
+            return merged;
+        } catch (Exception e) {
+            log.warn("读取客服排行失败，直接查询统计表 - 日期: {} ~ {}", startDate, endDate, e);
+            return null;
+        }
+    }
+
+    private void ensureReady(List<LocalDate> dates) {
+        List<String> readyKeys = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            readyKeys.add(READY_KEY_PREFIX + date.format(DATE_FORMAT));
+        }
+        List<String> ready = redisTemplate.opsForValue().multiGet(readyKeys);
+        List<LocalDate> missing = new ArrayList<>();
+        for (int i = 0; i < dates.size(); i++) {
+            if (ready == null || ready.get(i) == null) {
+                missing.add(dates.get(i));
+            }
+        }
+        if (!missing.isEmpty() && !rebuild(missing)) {
+            throw new IllegalStateException("生成客服排行失败");
+        }
+    }
+
+    /**
+     * 用事务整体替换这些天的有序集合，查询不会读到一半
+     */
+    @SuppressWarnings("unchecked")
+    private void write(Set<LocalDate> days, Map<LocalDate, List<CustomerStatistics>> rows) {
+        Map<String, String> names = new HashMap<>();
+        redisTemplate.execute(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                for (LocalDate date : days) {
+                    String day = date.format(DATE_FORMAT);
+                    String dialogsKey = DIALOGS_KEY_PREFIX + day;
+                    String messagesKey = MESSAGES_KEY_PREFIX + day;
+                    String satisfactionKey = SATISFACTION_KEY_PREFIX + day;
+                    ops.delete(dialogsKey);
+                    ops.delete(messagesKey);
+                    ops.delete(satisfactionKey);
+                    for (CustomerStatistics row : rows.getOrDefault(date, new ArrayList<>())) {
+                        String member = String.valueOf(row.getServiceId());
+                        ops.opsForZSet().add(dialogsKey, member, valueOf(row.getDialogCount()));
+                        ops.opsForZSet().add(messagesKey, member, valueOf(row.getMessageCount()));
+                        if (row.getAvgSatisfaction() != null) {
+                            ops.opsForZSet().add(satisfactionKey, member, row.getAvgSatisfaction());
+                        }
+                        if (row.getServiceName() != null) {
+                            names.put(member, row.getServiceName());
+                        }
+                    }
+                    ops.expire(dialogsKey, EXPIRE_SECONDS, TimeUnit.SECONDS);
+                    ops.expire(messagesKey, EXPIRE_SECONDS, TimeUnit.SECONDS);
+                    ops.expire(satisfactionKey, EXPIRE_SECONDS, TimeUnit.SECONDS);
+                    ops.opsForValue().set(READY_KEY_PREFIX + day, "1", EXPIRE_SECONDS, TimeUnit.SECONDS);
+                }
+                if (!names.isEmpty()) {
+                    ops.opsForHash().putAll(NAMES_KEY, names);
+                }
+                return ops.exec();
+            }
+        });
+    }
+
+    private void fillNames(Map<Long, CustomerStatistics> merged) {
+        if (merged.isEmpty()) {
+            return;
+        }
+        List<Object> fields = new ArrayList<>(merged.size());
+        for (Long serviceId : merged.keySet()) {
+            fields.add(String.valueOf(serviceId));
+        }
+        List<Object> names = redisTemplate.opsForHash().multiGet(NAMES_KEY, fields);
+        int i = 0;
+        for (CustomerStatistics stats : merged.values()) {
+            Object name = names.get(i++);
+            stats.setServiceName(name != null ? name.toString() : "客服" + stats.getServiceId());
+        }
+    }
+
+    private static CustomerStatistics entry(Map<Long, CustomerStatistics> merged, String member) {
+        Long serviceId = Long.valueOf(member);
+        return merged.computeIfAbsent(serviceId, id -> {
+            CustomerStatistics stats = new CustomerStatistics();
+            stats.setServiceId(id);
+            stats.setDialogCount(0);
+            stats.setMessageCount(0);
+            return stats;
+        });
+    }
+
+    private static List<CustomerStatistics> limit(List<CustomerStatistics> ranking, Integer limit) {
+        return limit != null && limit >= 0 && ranking.size() > limit ? new ArrayList<>(ranking.subList(0, limit)) : ranking;
+    }
+
+    private static double valueOf(Integer count) {
+        return count != null ? count : 0;
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static LocalDate toLocalDate(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
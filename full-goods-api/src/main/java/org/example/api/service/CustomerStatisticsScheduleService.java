@@ -0,0 +1,68 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.utils.LogUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客服统计定时任务服务
+ */
+@Slf4j
+@Service
+public class CustomerStatisticsScheduleService {
+
+    @Autowired
+    private CustomerStatisticsService customerStatisticsService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    // 回填锁，避免多个节点同时回填
+    private static final String BACKFILL_LOCK = "cs:stats:backfill:lock";
+
+    // 每次校正截至昨天的最近天数，覆盖节点宕机时未写入的计数
+    private static final int RECENT_DAYS = 2;
+
+    /**
+     * 仅当锁仍由自己持有时释放，回填超过锁过期时间时不会误删其他节点的锁
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0", Long.class);
+
+    /**
+     * 校正客服统计
+     * 启动后执行一次（统计表为空时全量回填），之后每天执行一次
+     */
+    @Scheduled(initialDelay = 30000, fixedRate = 86400000)
+    public void reconcileCustomerStatistics() {
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(BACKFILL_LOCK, lockValue, 30, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            int days = customerStatisticsService.backfillIfMissing(RECENT_DAYS);
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("客服统计校正任务", duration, true,
+                    String.format("回填了%d天的统计数据", days));
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("客服统计校正任务", duration, false,
+                    "任务执行失败: " + e.getMessage());
+            log.error("客服统计校正任务执行失败", e);
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(BACKFILL_LOCK), lockValue);
+        }
+    }
+}
@@ -145,6 +145,24 @@ public interface CustomerStatisticsService {
      */
     CustomerStatistics generateServiceDailyStatistics(Long serviceId, Date statisticsDate);
 
+    /**
+     * 从会话表和消息表重新计算日期范围内的统计，按周分段并行计算
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 回填的天数
+     */
+    int backfill(Date startDate, Date endDate);
+
+    /**
+     * 统计表为空时从最早的会话开始全量回填，否则回填最近几天以校正偏差
+     * 只回填到昨天：当天的计数还在各节点内存中累加，重算当天会与随后写入的增量重复计数
+     *
+     * @param recentDays 校正的天数（不含当天）
+     * @return 回填的天数
+     */
+    int backfillIfMissing(int recentDays);
+
     /**
      * 获取客服效率分析
      *
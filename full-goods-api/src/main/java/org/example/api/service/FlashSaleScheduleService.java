@@ -0,0 +1,65 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 限时特惠库存定时任务服务
+ */
+@Slf4j
+@Service
+public class FlashSaleScheduleService {
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    // 单批对账最大条目数
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    /**
+     * 预加载生效中的限时特惠库存到Redis
+     * 每5秒检查一次，活动开始后最多延迟5秒进入Redis预扣
+     */
+    @Scheduled(fixedRate = 5000)
+    public void preloadActiveFlashSales() {
+        try {
+            int loaded = flashSaleService.preloadActiveFlashSales();
+            if (loaded > 0) {
+                log.info("预加载限时特惠库存 {} 个", loaded);
+            }
+        } catch (Exception e) {
+            log.error("预加载限时特惠库存失败", e);
+        }
+    }
+
+    /**
+     * 将已确认的限时特惠销量批量同步到数据库
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void reconcileConfirmedSales() {
+        try {
+            // 队列积压时连续处理多批
+            while (flashSaleService.reconcileConfirmedSales(RECONCILE_BATCH_SIZE) == RECONCILE_BATCH_SIZE) {
+                log.debug("限时特惠对账队列仍有积压，继续处理");
+            }
+        } catch (Exception e) {
+            log.error("限时特惠销量对账失败", e);
+        }
+    }
+
+    /**
+     * 把已结束活动未售出的库存退回t_fruit
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void returnUnsoldStock() {
+        try {
+            while (flashSaleService.returnUnsoldStock(RECONCILE_BATCH_SIZE) == RECONCILE_BATCH_SIZE) {
+                log.debug("限时特惠退回队列仍有积压，继续处理");
+            }
+        } catch (Exception e) {
+            log.error("退回限时特惠未售库存失败", e);
+        }
+    }
+}
@@ -3,7 +3,9 @@ package org.example.api.service;
 import org.example.api.vo.FlashSaleVO;
 import org.example.common.entity.FlashSale;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 限时特惠服务接口
@@ -57,4 +59,77 @@ public interface FlashSaleService {
      * @return 是否成功
      */
     boolean updateSoldCount(Long id, Integer quantity);
-}
\ No newline at end of file
+
+    /**
+     * 将当前生效的限时特惠库存从t_fruit移到Redis
+     *
+     * @return 新加载的限时特惠数量
+     */
+    int preloadActiveFlashSales();
+
+    /**
+     * 批量查询商品当前生效的限时特惠ID（仅查询Redis中已预加载的活动）
+     *
+     * @param fruitIds 水果ID列表
+     * @return 水果ID -> 限时特惠ID
+     */
+    Map<Long, Long> getActiveFlashSaleIds(Collection<Long> fruitIds);
+
+    /**
+     * 在Redis中原子预扣限时特惠库存，并记录到订单的预扣明细
+     *
+     * @param flashSaleId 限时特惠ID
+     * @param fruitId 水果ID
+     * @param orderNo 订单编号
+     * @param quantity 购买数量
+     * @return 是否预扣成功
+     */
+    boolean reserveStock(Long flashSaleId, Long fruitId, String orderNo, Integer quantity);
+
+    /**
+     * 订单支付后确认预扣，进入异步对账队列
+     *
+     * @param orderNo 订单编号
+     * @return 确认的预扣条目数
+     */
+    int confirmReservation(String orderNo);
+
+    /**
+     * 查询订单未确认的预扣明细（不修改Redis）
+     *
+     * @param orderNo 订单编号
+     * @return 水果ID -> 预扣数量
+     */
+    Map<Long, Integer> getReservation(String orderNo);
+
+    /**
+     * 释放订单未确认的预扣库存
+     *
+     * @param orderNo 订单编号
+     * @return 水果ID -> 释放数量
+     */
+    Map<Long, Integer> releaseReservation(String orderNo);
+
+    /**
+     * 将已确认的限时特惠销量批量同步到t_flash_sale
+     *
+     * @param batchSize 单批最大条目数
+     * @return 本次入账的条目数
+     */
+    int reconcileConfirmedSales(int batchSize);
+
+    /**
+     * 结算已结束的限时特惠，把未售出的库存退回t_fruit
+     *
+     * @param batchSize 单批最大条目数
+     * @return 本次退回的条目数
+     */
+    int returnUnsoldStock(int batchSize);
+
+    /**
+     * 移除商品的限时特惠库存映射并结算已加载的活动（活动被取消或重新设置时调用）
+     *
+     * @param fruitId 水果ID
+     */
+    void removeFruitLedger(Long fruitId);
+}
@@ -0,0 +1,63 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * 商品缓存失效服务，库存变更的事务提交后按商品ID清理 fruitCache
+ */
+@Slf4j
+@Service
+public class FruitCacheService {
+
+    private static final String CACHE_NAME = "fruitCache";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * 库存变更后调用，有事务时在提交后清理
+     *
+     * @param fruitIds 库存变更的商品ID
+     */
+    public void evictStockAfterCommit(Collection<Long> fruitIds) {
+        if (fruitIds == null || fruitIds.isEmpty()) {
+            return;
+        }
+        Collection<Long> ids = new ArrayList<>(fruitIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(ids);
+                }
+            });
+        } else {
+            evict(ids);
+        }
+    }
+
+    private void evict(Collection<Long> fruitIds) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            if (cache == null) {
+                return;
+            }
+            for (Long fruitId : fruitIds) {
+                cache.evict("id:" + fruitId);
+            }
+            cache.evict("all");
+        } catch (Exception e) {
+            // 清理失败时依赖缓存过期时间兜底
+            log.error("清理商品缓存失败，商品ID: {}", fruitIds, e);
+        }
+    }
+}
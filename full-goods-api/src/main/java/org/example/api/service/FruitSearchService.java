@@ -0,0 +1,49 @@
+package org.example.api.service;
+
+import org.example.common.entity.Fruit;
+
+import java.util.List;
+
+/**
+ * 商品搜索服务接口
+ * 基于进程内倒排索引的上架商品检索，按字段权重和BM25打分排序
+ */
+public interface FruitSearchService {
+
+    /**
+     * 索引是否已构建完成，未完成时调用方应回退到数据库查询
+     *
+     * @return 是否可用
+     */
+    boolean isReady();
+
+    /**
+     * 按搜索词检索商品
+     *
+     * @param keyword 搜索词，会先分词
+     * @param limit 返回数量上限，小于等于0表示不限
+     * @return 按相关度降序的商品列表
+     */
+    List<Fruit> search(String keyword, int limit);
+
+    /**
+     * 按多个关键词检索商品
+     *
+     * @param keywords 关键词列表，每个关键词会先分词
+     * @param limit 返回数量上限，小于等于0表示不限
+     * @return 按相关度降序的商品列表
+     */
+    List<Fruit> search(List<String> keywords, int limit);
+
+    /**
+     * 商品变更后刷新索引，并通知其他节点刷新
+     *
+     * @param fruitId 商品ID，为null时全量重建
+     */
+    void refresh(Long fruitId);
+
+    /**
+     * 从数据库全量重建索引
+     */
+    void rebuild();
+}
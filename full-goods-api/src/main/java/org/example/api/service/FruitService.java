@@ -29,6 +29,13 @@ public interface FruitService {
      */
     Fruit getById(Long id);
 
+    /**
+     * 商品数据变更后调用，清理商品缓存和首页数据
+     *
+     * @param id 水果ID，批量变更时为null
+     */
+    void onFruitChanged(Long id);
+
     /**
      * 根据条件推荐水果
      *
@@ -87,6 +94,13 @@ public interface FruitService {
      */
     List<CategoryVO> getCategories();
     
+    /**
+     * 获取首页数据（轮播图、分类、推荐和新品）
+     *
+     * @return 首页数据，由所有请求共享，不能修改
+     */
+    HomeVO getHomeData();
+    
     /**
      * 根据分类获取水果列表
      *
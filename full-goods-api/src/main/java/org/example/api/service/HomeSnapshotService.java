@@ -0,0 +1,173 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.vo.HomeVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 首页数据快照
+ * 首页数据构建一次后保存在内存中，所有请求共用。快照过期或被标记失效后，先返回旧快照，
+ * 同时在后台重建；超过最长保留时间才由请求线程等待重建。同一时间只有一次重建，其他请求共用结果。
+ * 商品、轮播图、分类变更时调用 {@link #invalidate()}，通过Redis通知所有节点。
+ * 返回的首页数据由所有请求共享，调用方不能修改。
+ */
+@Slf4j
+@Service
+public class HomeSnapshotService implements MessageListener {
+
+    /**
+     * 失效广播频道，消息内容为发送节点ID
+     */
+    private static final String INVALIDATE_CHANNEL = "home:snapshot:invalidate";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 快照新鲜时间（秒），超过后后台重建
+    @Value("${home.snapshot.fresh-seconds:60}")
+    private long freshSeconds;
+
+    // 快照最长保留时间（秒），超过后请求等待重建
+    @Value("${home.snapshot.max-stale-seconds:600}")
+    private long maxStaleSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 每次失效加1，构建时记录，快照版本落后即视为失效
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicReference<CompletableFuture<Snapshot>> rebuilding = new AtomicReference<>();
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 获取首页数据
+     *
+     * @param builder 从数据库构建首页数据
+     */
+    public HomeVO get(Supplier<HomeVO> builder) {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.builtAt < TimeUnit.SECONDS.toMillis(maxStaleSeconds)) {
+            if (current.version != version.get() || now - current.builtAt >= TimeUnit.SECONDS.toMillis(freshSeconds)) {
+                rebuild(builder, true);
+            }
+            return current.data;
+        }
+
+        try {
+            return rebuild(builder, false).join().data;
+        } catch (CompletionException e) {
+            if (current != null) {
+                // 重建失败时继续使用旧快照
+                log.error("重建首页数据失败，继续使用旧数据", e.getCause());
+                return current.data;
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    /**
+     * 标记首页数据失效，并通知其他节点
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId);
+        } catch (Exception e) {
+            log.error("广播首页数据失效消息失败", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!nodeId.equals(new String(message.getBody(), StandardCharsets.UTF_8))) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 开始重建，已有重建在进行时返回该次重建
+     *
+     * @param async 是否在后台线程执行
+     */
+    private CompletableFuture<Snapshot> rebuild(Supplier<HomeVO> builder, boolean async) {
+        while (true) {
+            CompletableFuture<Snapshot> running = rebuilding.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<Snapshot> future = new CompletableFuture<>();
+            if (!rebuilding.compareAndSet(null, future)) {
+                continue;
+            }
+            Runnable task = () -> {
+                try {
+                    long buildVersion = version.get();
+                    long startTime = System.currentTimeMillis();
+                    Snapshot built = new Snapshot(builder.get(), buildVersion, startTime);
+                    snapshot = built;
+                    log.debug("首页数据已重建，耗时: {}ms", System.currentTimeMillis() - startTime);
+                    future.complete(built);
+                } catch (Throwable e) {
+                    if (async) {
+                        log.error("后台重建首页数据失败", e);
+                    }
+                    future.completeExceptionally(e);
+                } finally {
+                    rebuilding.compareAndSet(future, null);
+                }
+            };
+            if (async) {
+                taskExecutor.execute(task);
+            } else {
+                task.run();
+            }
+            return future;
+        }
+    }
+
+    private static final class Snapshot {
+        private final HomeVO data;
+        private final long version;
+        private final long builtAt;
+
+        Snapshot(HomeVO data, long version, long builtAt) {
+            this.data = data;
+            this.version = version;
+            this.builtAt = builtAt;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.api.service;
+
+import org.example.common.entity.MessageCampaign;
+import org.example.common.response.Result;
+
+import java.util.Map;
+
+/**
+ * 消息群发活动服务接口
+ */
+public interface MessageCampaignService {
+
+    /**
+     * 创建群发活动并开始发送
+     * @param request 活动参数：name、templateCode 或 title/content、messageType、iconUrl、linkUrl、
+     *                params（模板参数）、userIds（为空时发送给全部正常用户）、chunkSize、rateLimit（每秒条数）
+     * @return 创建的活动
+     */
+    Result<MessageCampaign> createCampaign(Map<String, Object> request);
+
+    /**
+     * 查询活动及发送进度
+     * @param id 活动ID
+     * @return 活动信息
+     */
+    Result<MessageCampaign> getCampaign(Long id);
+
+    /**
+     * 群发队列概况：未结束活动的剩余消息数、发送中和已暂停的活动、各状态统计
+     * @return 队列状态
+     */
+    Result<Map<String, Object>> getQueueStatus();
+
+    /**
+     * 暂停活动，当前批次写完后停止
+     * @param id 活动ID
+     * @return 操作结果
+     */
+    Result<Boolean> pauseCampaign(Long id);
+
+    /**
+     * 从上次的进度继续发送已暂停或失败的活动
+     * @param id 活动ID
+     * @return 操作结果
+     */
+    Result<Boolean> resumeCampaign(Long id);
+
+    /**
+     * 取消活动，已发送的消息保留
+     * @param id 活动ID
+     * @return 操作结果
+     */
+    Result<Boolean> cancelCampaign(Long id);
+
+    /**
+     * 暂停全部发送中的活动
+     * @return 暂停的活动数
+     */
+    Result<Integer> pauseAll();
+
+    /**
+     * 恢复全部已暂停的活动
+     * @return 恢复的活动数
+     */
+    Result<Integer> resumeAll();
+
+    /**
+     * 取消全部未结束的活动
+     * @return 取消的活动数
+     */
+    Result<Integer> cancelAll();
+}
@@ -0,0 +1,309 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.MessageMapper;
+import org.example.common.entity.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户消息计数服务
+ * 每个用户的消息总数、未读数及各类型的数量保存在一个Redis哈希中，消息写入、已读、删除时按增量修改，
+ * 读取时不访问消息表。计数不存在时从数据库分组统计一次后写入，并设置过期时间，
+ * 过期后重新统计，修正并发修改可能造成的偏差。
+ */
+@Slf4j
+@Service
+public class MessageCounterService {
+
+    private static final String KEY_PREFIX = "message:counter:";
+
+    // 计数保留时间（分钟），过期后从数据库重新统计
+    private static final long RECONCILE_MINUTES = 30;
+
+    private static final String TOTAL = "total";
+
+    private static final String UNREAD = "unread";
+
+    /**
+     * 计数存在时按增量修改，结果小于0时置0；计数不存在时不处理，下次读取时重新统计
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+            "for i = 1, #ARGV, 2 do\n" +
+            "  if redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) < 0 then\n" +
+            "    redis.call('HSET', KEYS[1], ARGV[i], 0)\n" +
+            "  end\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    /**
+     * 未读数清零：ARGV[1]为空时清零所有类型，否则只清零该类型并从未读总数中减去
+     */
+    private static final DefaultRedisScript<Long> CLEAR_UNREAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+            "if ARGV[1] == '' then\n" +
+            "  for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do\n" +
+            "    if string.sub(field, 1, 6) == 'unread' then redis.call('HSET', KEYS[1], field, 0) end\n" +
+            "  end\n" +
+            "else\n" +
+            "  local field = 'unread:' .. ARGV[1]\n" +
+            "  local count = tonumber(redis.call('HGET', KEYS[1], field) or '0')\n" +
+            "  redis.call('HSET', KEYS[1], field, 0)\n" +
+            "  if redis.call('HINCRBY', KEYS[1], 'unread', -count) < 0 then\n" +
+            "    redis.call('HSET', KEYS[1], 'unread', 0)\n" +
+            "  end\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    /**
+     * 获取用户消息计数
+     *
+     * @param userId 用户ID
+     * @return 消息计数
+     */
+    public Counters getCounters(Long userId) {
+        String key = KEY_PREFIX + userId;
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            if (!entries.isEmpty()) {
+                return Counters.fromHash(entries);
+            }
+        } catch (Exception e) {
+            log.warn("读取消息计数失败，改为查询数据库，用户ID: {}, 原因: {}", userId, e.getMessage());
+            return Counters.fromRows(messageMapper.countByUserIdGroupByTypeAndStatus(userId));
+        }
+
+        Counters counters = Counters.fromRows(messageMapper.countByUserIdGroupByTypeAndStatus(userId));
+        try {
+            redisTemplate.opsForHash().putAll(key, counters.toHash());
+            redisTemplate.expire(key, RECONCILE_MINUTES, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("写入消息计数失败，用户ID: {}, 原因: {}", userId, e.getMessage());
+        }
+        return counters;
+    }
+
+    /**
+     * 消息写入后增加计数
+     */
+    public void onInserted(Collection<Message> messages) {
+        applyAfterCommit(messages, 1, true);
+    }
+
+    /**
+     * 消息标记已读后减少未读数
+     *
+     * @param messagesBefore 标记前查询到的消息
+     */
+    public void onRead(Collection<Message> messagesBefore) {
+        List<Message> unread = new ArrayList<>();
+        for (Message message : messagesBefore) {
+            if (isUnread(message)) {
+                unread.add(message);
+            }
+        }
+        applyAfterCommit(unread, -1, false);
+    }
+
+    /**
+     * 消息删除后减少计数
+     *
+     * @param messagesBefore 删除前查询到的消息
+     */
+    public void onDeleted(Collection<Message> messagesBefore) {
+        applyAfterCommit(messagesBefore, -1, true);
+    }
+
+    /**
+     * 用户全部消息或某类型消息标记已读后清零未读数
+     *
+     * @param userId 用户ID
+     * @param messageType 消息类型，null表示全部类型
+     */
+    public void onAllRead(Long userId, Integer messageType) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.execute(CLEAR_UNREAD_SCRIPT, Collections.singletonList(KEY_PREFIX + userId),
+                        messageType != null ? String.valueOf(messageType) : "");
+            } catch (Exception e) {
+                evict(userId, e);
+            }
+        });
+    }
+
+    /**
+     * 按用户汇总增量后修改计数
+     *
+     * @param sign 1增加，-1减少
+     * @param total 是否修改消息总数
+     */
+    private void applyAfterCommit(Collection<Message> messages, int sign, boolean total) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Long>> deltasByUser = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getUserId() == null) {
+                continue;
+            }
+            Map<String, Long> deltas = deltasByUser.computeIfAbsent(message.getUserId(), k -> new HashMap<>());
+            if (total) {
+                deltas.merge(TOTAL, (long) sign, Long::sum);
+                if (message.getMessageType() != null) {
+                    deltas.merge(TOTAL + ":" + message.getMessageType(), (long) sign, Long::sum);
+                }
+            }
+            if (isUnread(message)) {
+                deltas.merge(UNREAD, (long) sign, Long::sum);
+                if (message.getMessageType() != null) {
+                    deltas.merge(UNREAD + ":" + message.getMessageType(), (long) sign, Long::sum);
+                }
+            }
+        }
+
+        afterCommit(() -> {
+            for (Map.Entry<Long, Map<String, Long>> userDeltas : deltasByUser.entrySet()) {
+                if (userDeltas.getValue().isEmpty()) {
+                    continue;
+                }
+                String[] args = new String[userDeltas.getValue().size() * 2];
+                int i = 0;
+                for (Map.Entry<String, Long> delta : userDeltas.getValue().entrySet()) {
+                    args[i++] = delta.getKey();
+                    args[i++] = String.valueOf(delta.getValue());
+                }
+                try {
+                    redisTemplate.execute(INCREMENT_SCRIPT, Collections.singletonList(KEY_PREFIX + userDeltas.getKey()),
+                            (Object[]) args);
+                } catch (Exception e) {
+                    evict(userDeltas.getKey(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 在事务提交后修改计数，事务回滚时计数不变
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 修改失败时删除计数，下次读取时重新统计
+     */
+    private void evict(Long userId, Exception cause) {
+        log.warn("修改消息计数失败，用户ID: {}, 原因: {}", userId, cause.getMessage());
+        try {
+            redisTemplate.delete(KEY_PREFIX + userId);
+        } catch (Exception e) {
+            log.debug("删除消息计数失败，用户ID: {}", userId);
+        }
+    }
+
+    private static boolean isUnread(Message message) {
+        return message.getStatus() != null && message.getStatus() == 0;
+    }
+
+    /**
+     * 用户消息计数
+     */
+    public static final class Counters {
+
+        private final Map<String, Long> values;
+
+        private Counters(Map<String, Long> values) {
+            this.values = values;
+        }
+
+        static Counters fromHash(Map<Object, Object> entries) {
+            Map<String, Long> values = new HashMap<>(entries.size() * 2);
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                values.put(String.valueOf(entry.getKey()), Long.parseLong(String.valueOf(entry.getValue())));
+            }
+            return new Counters(values);
+        }
+
+        static Counters fromRows(List<Map<String, Object>> rows) {
+            Map<String, Long> values = new HashMap<>();
+            values.put(TOTAL, 0L);
+            values.put(UNREAD, 0L);
+            for (Map<String, Object> row : rows) {
+                Object type = row.get("messageType");
+                Object status = row.get("status");
+                long count = ((Number) row.get("count")).longValue();
+                boolean unread = status != null && ((Number) status).intValue() == 0;
+
+                values.merge(TOTAL, count, Long::sum);
+                if (type != null) {
+                    values.merge(TOTAL + ":" + type, count, Long::sum);
+                }
+                if (unread) {
+                    values.merge(UNREAD, count, Long::sum);
+                    if (type != null) {
+                        values.merge(UNREAD + ":" + type, count, Long::sum);
+                    }
+                }
+            }
+            return new Counters(values);
+        }
+
+        Map<String, String> toHash() {
+            Map<String, String> hash = new HashMap<>(values.size() * 2);
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                hash.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+            return hash;
+        }
+
+        public int total() {
+            return get(TOTAL);
+        }
+
+        public int total(Integer messageType) {
+            return messageType != null ? get(TOTAL + ":" + messageType) : 0;
+        }
+
+        public int unread() {
+            return get(UNREAD);
+        }
+
+        public int unread(Integer messageType) {
+            return messageType != null ? get(UNREAD + ":" + messageType) : 0;
+        }
+
+        private int get(String field) {
+            Long value = values.get(field);
+            return value != null ? value.intValue() : 0;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.MessageMapper;
+import org.example.common.entity.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息批量写入服务
+ * 调用方在事务中时，消息暂存在当前事务，提交前在同一事务内批量写库，与业务数据一起提交或回滚，
+ * 提交后按用户合并WebSocket推送。
+ * 调用方不在事务中时，消息交给写入线程与其他请求的消息合并成一批写库，submit等到本条消息写库后才返回，
+ * 写库失败时异常抛给调用方；只有未读计数和WebSocket推送在写入线程异步完成。
+ * 每批消息用一条多行INSERT写入，失败时整批未写入，再逐条重试，不会重复写入。
+ */
+@Slf4j
+@Service
+public class MessageOutboxService {
+
+    private static final long IDLE_POLL_MS = 100;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private WebSocketMessageService webSocketMessageService;
+
+    @Autowired
+    private MessageCounterService messageCounterService;
+
+    /**
+     * 关闭时所有通知在请求线程同步写入
+     */
+    @Value("${message-outbox.enabled:true}")
+    private boolean enabled;
+
+    // 待写入队列容量
+    @Value("${message-outbox.capacity:20000}")
+    private int capacity;
+
+    // 每批最多写入的消息数
+    @Value("${message-outbox.batch-size:500}")
+    private int batchSize;
+
+    // 取到第一条消息后等待更多消息的时间（毫秒），调用方会同步等待，不宜过长
+    @Value("${message-outbox.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    // 队列已满时入队等待时间（毫秒），超时后由请求线程同步写入
+    @Value("${message-outbox.offer-timeout-ms:20}")
+    private long offerTimeoutMs;
+
+    // 应用关闭时等待队列写完的最长时间（毫秒）
+    @Value("${message-outbox.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<Entry> queue;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("消息异步写入已关闭，通知消息同步写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(this::runWriter, "message-outbox-writer");
+        writer.start();
+        log.info("消息异步写入已启动，队列容量: {}, 批次大小: {}", capacity, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("消息写入线程未在限定时间内退出，剩余消息数: {}", queue.size());
+        }
+    }
+
+    /**
+     * 提交一条消息，写库后按需推送
+     * 在事务中调用时随事务提交写库，否则与其他请求合并写库后返回，见类说明
+     *
+     * @param message 消息
+     * @param push 写库后是否通过WebSocket推送给用户
+     */
+    public void submit(Message message, boolean push) {
+        Entry entry = new Entry(message, push);
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionBuffer().add(entry);
+            return;
+        }
+        if (running) {
+            try {
+                if (queue.offer(entry, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    // 入队时写入线程可能已退出，仍在队列中则改为同步写入
+                    if (running || !queue.remove(entry)) {
+                        awaitWritten(entry);
+                        return;
+                    }
+                } else {
+                    log.debug("消息写入队列已满，请求线程同步写入，用户ID: {}", message.getUserId());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 未启用、已关闭或队列已满：同步写入，异常抛给调用方
+        messageMapper.insert(message);
+        messageCounterService.onInserted(Collections.singletonList(message));
+        if (push) {
+            pushCoalesced(Collections.singletonList(message));
+        }
+    }
+
+    /**
+     * 按用户合并推送新消息，同一用户只推送一次
+     *
+     * @param messages 已写库的消息
+     */
+    public void pushCoalesced(List<Message> messages) {
+        Map<Long, List<Message>> byUser = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getUserId() != null && message.getId() != null) {
+                byUser.computeIfAbsent(message.getUserId(), k -> new ArrayList<>()).add(message);
+            }
+        }
+
+        for (Map.Entry<Long, List<Message>> userMessages : byUser.entrySet()) {
+            List<Message> list = userMessages.getValue();
+            try {
+                if (list.size() == 1) {
+                    webSocketMessageService.sendMessageToUser(userMessages.getKey(), toPayload(list.get(0)));
+                } else {
+                    List<Map<String, Object>> payloads = new ArrayList<>(list.size());
+                    for (Message message : list) {
+                        payloads.add(toPayload(message));
+                    }
+                    Map<String, Object> wsMessage = new HashMap<>();
+                    wsMessage.put("type", "new_messages");
+                    wsMessage.put("count", list.size());
+                    wsMessage.put("messages", payloads);
+                    wsMessage.put("showNotification", true);
+                    webSocketMessageService.sendMessageToUser(userMessages.getKey(), wsMessage);
+                }
+            } catch (Exception e) {
+                // WebSocket推送失败不影响消息写入
+                log.error("WebSocket推送消息失败，用户ID: {}", userMessages.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 等待写入线程写完消息所在的批次
+     */
+    private void awaitWritten(Entry entry) {
+        try {
+            entry.written.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("消息写入失败", cause);
+        }
+    }
+
+    /**
+     * 当前事务暂存的消息，第一次提交时注册事务回调
+     * 事务挂起时（如内层REQUIRES_NEW）解绑暂存的消息，内层事务使用自己的暂存，恢复后重新绑定
+     */
+    @SuppressWarnings("unchecked")
+    private List<Entry> transactionBuffer() {
+        List<Entry> buffer = (List<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (buffer != null) {
+            return buffer;
+        }
+        List<Entry> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(MessageOutboxService.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(MessageOutboxService.this, created);
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // 在调用方事务内写库，失败时异常抛出，整个事务回滚
+                List<Message> messages = new ArrayList<>(created.size());
+                for (Entry entry : created) {
+                    messages.add(entry.message);
+                }
+                for (int i = 0; i < messages.size(); i += batchSize) {
+                    messageMapper.batchInsert(messages.subList(i, Math.min(i + batchSize, messages.size())));
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                afterWrite(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MessageOutboxService.this);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 当前等待写入的消息数
+     */
+    public int getPendingCount() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * 单条新消息的推送内容
+     */
+    public static Map<String, Object> toPayload(Message message) {
+        Map<String, Object> wsMessage = new HashMap<>();
+        wsMessage.put("type", "new_message");
+        wsMessage.put("messageId", message.getId());
+        wsMessage.put("title", message.getTitle());
+        wsMessage.put("content", message.getContent());
+        wsMessage.put("messageType", message.getMessageType());
+        wsMessage.put("createTime", message.getCreateTime());
+        wsMessage.put("showNotification", true);
+        return wsMessage;
+    }
+
+    private void runWriter() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                // 空闲时的等待时间只影响检查关闭标志的频率，消息到达后立即返回
+                Entry first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 在攒批时间内凑满一批
+                long deadline = System.nanoTime() + intervalNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                break;
+            } catch (Exception e) {
+                log.error("消息批量写入异常", e);
+                for (Entry entry : batch) {
+                    entry.written.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // 被中断时把剩余消息写完
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, batchSize);
+            flush(batch);
+            batch.clear();
+        }
+        log.info("消息写入线程已退出");
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            messages.add(entry.message);
+        }
+
+        try {
+            messageMapper.batchInsert(messages);
+            for (Entry entry : batch) {
+                entry.written.complete(null);
+            }
+        } catch (Exception e) {
+            // 多行INSERT整批失败时没有写入任何一条，逐条重试以隔离有问题的消息
+            log.warn("消息批量写入失败，改为逐条写入，数量: {}", messages.size(), e);
+            for (Entry entry : batch) {
+                try {
+                    messageMapper.insert(entry.message);
+                    entry.written.complete(null);
+                } catch (Exception ex) {
+                    // 异常交给等待的调用方处理
+                    entry.written.completeExceptionally(ex);
+                }
+            }
+        }
+
+        // 调用方已返回，计数和推送不再占用请求线程
+        try {
+            afterWrite(batch);
+        } catch (Exception e) {
+            log.error("消息写库后更新计数或推送失败，数量: {}", batch.size(), e);
+        }
+    }
+
+    /**
+     * 写库后更新未读计数并推送，跳过未写入的消息
+     */
+    private void afterWrite(List<Entry> batch) {
+        List<Message> inserted = new ArrayList<>(batch.size());
+        List<Message> toPush = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            if (entry.message.getId() == null) {
+                continue;
+            }
+            inserted.add(entry.message);
+            if (entry.push) {
+                toPush.add(entry.message);
+            }
+        }
+        messageCounterService.onInserted(inserted);
+        if (!toPush.isEmpty()) {
+            pushCoalesced(toPush);
+        }
+    }
+
+    /**
+     * 队列中的待写入消息
+     */
+    private static final class Entry {
+        private final Message message;
+        private final boolean push;
+        // 写库完成或失败，提交消息的请求线程等待它
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Entry(Message message, boolean push) {
+            this.message = message;
+            this.push = push;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.MessageTemplateMapper;
+import org.example.api.util.TextTemplate;
+import org.example.common.entity.MessageTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消息模板渲染器
+ * 模板按编码从数据库读取一次并编译后缓存，发送消息时直接渲染，不再每条消息查库、做正则替换。
+ * 模板修改、启停、删除后调用 {@link #invalidate(String)} 或 {@link #invalidateAll()}，通过Redis通知所有节点。
+ */
+@Slf4j
+@Service
+public class MessageTemplateRenderer implements MessageListener {
+
+    /**
+     * 失效广播频道，消息内容为 {节点ID}:{模板编码}，编码为空表示全部失效
+     */
+    private static final String INVALIDATE_CHANNEL = "message:template:invalidate";
+
+    @Autowired
+    private MessageTemplateMapper messageTemplateMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    // 每次失效加1，查库前后不一致时不缓存查到的模板，避免缓存旧版本
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 获取编译后的模板
+     *
+     * @return 模板不存在时返回null
+     */
+    public CompiledTemplate get(String templateCode) {
+        if (templateCode == null) {
+            return null;
+        }
+        CompiledTemplate compiled = templates.get(templateCode);
+        if (compiled != null) {
+            return compiled;
+        }
+        long loadGeneration = generation.get();
+        MessageTemplate template = messageTemplateMapper.selectByCode(templateCode);
+        if (template == null) {
+            return null;
+        }
+        compiled = new CompiledTemplate(template);
+        if (generation.get() == loadGeneration) {
+            templates.put(templateCode, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * 模板修改、启停或删除后调用
+     */
+    public void invalidate(String templateCode) {
+        evictLocal(templateCode);
+        publish(templateCode);
+    }
+
+    /**
+     * 无法确定模板编码时（按ID批量操作）清空全部缓存
+     */
+    public void invalidateAll() {
+        evictLocal(null);
+        publish(null);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator < 0 || nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        String templateCode = body.substring(separator + 1);
+        evictLocal(templateCode.isEmpty() ? null : templateCode);
+    }
+
+    private void evictLocal(String templateCode) {
+        generation.incrementAndGet();
+        if (templateCode == null) {
+            templates.clear();
+        } else {
+            templates.remove(templateCode);
+        }
+    }
+
+    private void publish(String templateCode) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + ":" + (templateCode == null ? "" : templateCode));
+        } catch (Exception e) {
+            log.error("广播消息模板失效消息失败，模板编码：{}", templateCode, e);
+        }
+    }
+
+    /**
+     * 编译后的消息模板，标题、内容和链接各自预先拆分好
+     */
+    public static class CompiledTemplate {
+
+        private final String templateCode;
+        private final Integer messageType;
+        private final Integer status;
+        private final String iconUrl;
+        // 模板版本，取模板的更新时间
+        private final long version;
+        private final TextTemplate title;
+        private final TextTemplate content;
+        private final TextTemplate link;
+
+        CompiledTemplate(MessageTemplate template) {
+            this.templateCode = template.getTemplateCode();
+            this.messageType = template.getMessageType();
+            this.status = template.getStatus();
+            this.iconUrl = template.getIconUrl();
+            this.version = template.getUpdateTime() != null ? template.getUpdateTime().getTime() : 0L;
+            this.title = TextTemplate.compile(template.getTitle());
+            this.content = TextTemplate.compile(template.getContent());
+            this.link = TextTemplate.compile(template.getLinkTemplate());
+        }
+
+        public String getTemplateCode() {
+            return templateCode;
+        }
+
+        public Integer getMessageType() {
+            return messageType;
+        }
+
+        public String getIconUrl() {
+            return iconUrl;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isEnabled() {
+            return status != null && status == 1;
+        }
+
+        /**
+         * 标题和内容中用到的变量
+         */
+        public Set<String> getRequiredParams() {
+            Set<String> params = new LinkedHashSet<>();
+            if (title != null) {
+                params.addAll(title.getVariables());
+            }
+            if (content != null) {
+                params.addAll(content.getVariables());
+            }
+            return params;
+        }
+
+        public String renderTitle(Map<String, Object> params, StringBuilder buffer) {
+            return title != null ? title.render(params, buffer) : null;
+        }
+
+        public String renderContent(Map<String, Object> params, StringBuilder buffer) {
+            return content != null ? content.render(params, buffer) : null;
+        }
+
+        public String renderLink(Map<String, Object> params, StringBuilder buffer) {
+            return link != null ? link.render(params, buffer) : null;
+        }
+
+        /**
+         * 渲染为 title、content、iconUrl、linkTemplate
+         */
+        public Map<String, String> render(Map<String, Object> params) {
+            return render(params, new StringBuilder(256));
+        }
+
+        /**
+         * 用同一个模板渲染多组参数，共用一个缓冲区
+         */
+        public List<Map<String, String>> renderAll(List<Map<String, Object>> paramsList) {
+            List<Map<String, String>> results = new ArrayList<>(paramsList.size());
+            StringBuilder buffer = new StringBuilder(256);
+            for (Map<String, Object> params : paramsList) {
+                results.add(render(params, buffer));
+            }
+            return results;
+        }
+
+        private Map<String, String> render(Map<String, Object> params, StringBuilder buffer) {
+            Map<String, String> result = new HashMap<>(8);
+            result.put("title", renderTitle(params, buffer));
+            result.put("content", renderContent(params, buffer));
+            result.put("iconUrl", iconUrl);
+            result.put("linkTemplate", renderLink(params, buffer));
+            return result;
+        }
+    }
+}
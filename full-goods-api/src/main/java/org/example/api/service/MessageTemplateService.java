@@ -109,6 +109,14 @@ public interface MessageTemplateService {
      */
     Result<Map<String, String>> renderTemplate(String templateCode, Map<String, Object> params);
 
+    /**
+     * 使用同一模板批量渲染消息内容
+     * @param templateCode 模板编码
+     * @param paramsList 每条消息的参数映射
+     * @return 渲染后的消息内容，与参数列表顺序一致
+     */
+    Result<List<Map<String, String>>> renderTemplates(String templateCode, List<Map<String, Object>> paramsList);
+
     /**
      * 验证模板参数
      * @param templateCode 模板编码
@@ -20,6 +20,13 @@ public interface ModelPredictionService {
      */
     List<Fruit> predictFruitRecommendation(String userId, String condition, int limit);
 
+    /**
+     * 部署水果推荐模型，编译完成后整体替换当前模型，并通过Redis通知其他节点加载
+     *
+     * @param model 模型数据，包含fruitScores、userPreferences、fruitFeatures
+     */
+    void deployFruitRecommendationModel(Map<String, Object> model);
+
     /**
      * 文本分类预测
      *
@@ -39,4 +39,9 @@ public interface NLPService {
      * @return 情感分析结果
      */
     String analyzeSentiment(String input);
+
+    /**
+     * 重新编译关键词词典，词典变更后调用
+     */
+    void reloadDictionaries();
 }
\ No newline at end of file
@@ -8,15 +8,25 @@ import org.example.common.entity.Order;
 import org.example.common.entity.OrderItem;
 import org.example.common.utils.LogUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * 订单定时任务服务
+ * 待付款订单按超时时间写入Redis有序集合，到期后由持有租约的节点分批取消
  */
 @Slf4j
 @Service
@@ -31,54 +41,246 @@ public class OrderScheduleService {
     @Autowired
     private FruitMapper fruitMapper;
 
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private FruitCacheService fruitCacheService;
+
+    @Autowired
+    private OrderStatisticsService orderStatisticsService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 待付款订单超时时间（毫秒）
+    private static final long UNPAID_TIMEOUT = 15 * 60 * 1000;
+
+    // 订单超时队列，member为订单ID，score为超时时间戳
+    private static final String EXPIRE_QUEUE = "order:expire:queue";
+
+    // 超时处理租约，同一时间只有一个节点处理
+    private static final String LEASE_KEY = "order:expire:lease";
+
+    // 租约有效期（毫秒），需大于单轮处理时间
+    private static final long LEASE_EXPIRE = 30_000;
+
+    // 单批取消订单数
+    private static final int BATCH_SIZE = 200;
+
+    // 单轮最多处理批数，避免积压时长时间占用数据库
+    private static final int MAX_BATCHES_PER_ROUND = 20;
+
+    // 补偿扫描每页订单数
+    private static final int SWEEP_PAGE_SIZE = 1000;
+
+    // 当前节点ID
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 获取或续约租约：无人持有时抢占，自己持有时续期
+     */
+    private static final DefaultRedisScript<Long> LEASE_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('GET', KEYS[1])\n" +
+            "if not owner then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "if owner == ARGV[1] then\n" +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    /**
+     * 登记待付款订单的超时时间
+     *
+     * @param orderId 订单ID
+     * @param createTime 下单时间
+     */
+    public void scheduleExpiry(Long orderId, Date createTime) {
+        long createdAt = createTime != null ? createTime.getTime() : System.currentTimeMillis();
+        try {
+            redisTemplate.opsForZSet().add(EXPIRE_QUEUE, String.valueOf(orderId), createdAt + UNPAID_TIMEOUT);
+        } catch (Exception e) {
+            // 登记失败由补偿扫描重新入队
+            log.error("登记订单超时失败 - 订单ID: {}", orderId, e);
+        }
+    }
+
+    /**
+     * 订单已支付或已取消时移出超时队列
+     *
+     * @param orderId 订单ID
+     */
+    public void cancelExpiry(Long orderId) {
+        try {
+            redisTemplate.opsForZSet().remove(EXPIRE_QUEUE, String.valueOf(orderId));
+        } catch (Exception e) {
+            // 未移除的订单到期时会因状态不是待付款而被跳过
+            log.warn("移出订单超时队列失败 - 订单ID: {}", orderId, e);
+        }
+    }
+
     /**
      * 自动取消超时未付款订单
-     * 每分钟执行一次，检查待付款订单是否超过15分钟未付款
+     * 每秒检查一次到期订单，分批取消并批量回退库存
      */
-    @Scheduled(fixedRate = 60000) // 每60秒执行一次
-    @Transactional(rollbackFor = Exception.class)
+    @Scheduled(fixedDelay = 1000)
     public void autoCancelUnpaidOrders() {
+        if (!acquireLease()) {
+            return;
+        }
+
         long startTime = System.currentTimeMillis();
+        int expiredCount = 0;
         int canceledCount = 0;
-        
+
         try {
-            // 查询15分钟前创建的待付款订单
-            Date fifteenMinutesAgo = new Date(System.currentTimeMillis() - 15 * 60 * 1000);
-            List<Order> unpaidOrders = orderMapper.findUnpaidOrdersBeforeTime(fifteenMinutesAgo);
-            
-            for (Order order : unpaidOrders) {
-                try {
-                    // 获取订单项，回退库存
-                    List<OrderItem> orderItems = orderItemMapper.selectByOrderId(order.getId());
-                    for (OrderItem orderItem : orderItems) {
-                        // 回退库存
-                        fruitMapper.increaseStock(orderItem.getFruitId(), orderItem.getQuantity());
-                        log.debug("回退库存 - 商品ID: {}, 数量: {}", orderItem.getFruitId(), orderItem.getQuantity());
+            for (int batch = 0; batch < MAX_BATCHES_PER_ROUND; batch++) {
+                Set<String> members = redisTemplate.opsForZSet()
+                        .rangeByScore(EXPIRE_QUEUE, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+                if (members == null || members.isEmpty()) {
+                    break;
+                }
+
+                List<Long> orderIds = new ArrayList<>(members.size());
+                for (String member : members) {
+                    orderIds.add(Long.parseLong(member));
+                }
+
+                List<Order> canceled = transactionTemplate.execute(status -> cancelExpiredOrders(orderIds));
+                // 数据库提交后再释放限时特惠预扣和出队，失败时下一轮重试
+                if (canceled != null) {
+                    for (Order order : canceled) {
+                        flashSaleService.releaseReservation(order.getOrderNo());
+                        log.info("自动取消超时订单 - 订单号: {}, 用户ID: {}, 金额: {}",
+                                order.getOrderNo(), order.getUserId(), order.getTotalAmount());
                     }
-                    
-                    // 更新订单状态为已取消
-                    order.setStatus(4); // 已取消
-                    order.setUpdateTime(new Date());
-                    orderMapper.update(order);
-                    
-                    canceledCount++;
-                    log.info("自动取消超时订单 - 订单号: {}, 用户ID: {}, 金额: {}", 
-                            order.getOrderNo(), order.getUserId(), order.getTotalAmount());
-                    
-                } catch (Exception e) {
-                    log.error("取消订单失败 - 订单ID: {}, 错误: {}", order.getId(), e.getMessage(), e);
+                    canceledCount += canceled.size();
+                }
+                redisTemplate.opsForZSet().remove(EXPIRE_QUEUE, members.toArray());
+                expiredCount += members.size();
+
+                if (members.size() < BATCH_SIZE) {
+                    break;
                 }
             }
-            
-            long duration = System.currentTimeMillis() - startTime;
-            LogUtils.scheduledTask("订单自动取消任务", duration, true, 
-                    String.format("检查了%d个超时订单，成功取消%d个", unpaidOrders.size(), canceledCount));
-            
+
+            if (expiredCount > 0) {
+                long duration = System.currentTimeMillis() - startTime;
+                LogUtils.scheduledTask("订单自动取消任务", duration, true,
+                        String.format("检查了%d个超时订单，成功取消%d个", expiredCount, canceledCount));
+            }
+
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
-            LogUtils.scheduledTask("订单自动取消任务", duration, false, 
+            LogUtils.scheduledTask("订单自动取消任务", duration, false,
                     "任务执行失败: " + e.getMessage());
             log.error("订单自动取消任务执行失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 补偿扫描：把未登记到超时队列的待付款订单重新入队
+     * 启动后执行一次，之后每30分钟执行一次
+     */
+    @Scheduled(initialDelay = 10000, fixedRate = 1800000)
+    public void enqueueUnpaidOrders() {
+        if (!acquireLease()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int enqueued = 0;
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Order> orders = orderMapper.selectUnpaidAfterId(lastId, SWEEP_PAGE_SIZE);
+                if (orders.isEmpty()) {
+                    break;
+                }
+                for (Order order : orders) {
+                    scheduleExpiry(order.getId(), order.getCreateTime());
+                }
+                enqueued += orders.size();
+                lastId = orders.get(orders.size() - 1).getId();
+                acquireLease();
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("待付款订单补偿入队任务", duration, true,
+                    String.format("入队%d个待付款订单", enqueued));
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("待付款订单补偿入队任务", duration, false,
+                    "任务执行失败: " + e.getMessage());
+            log.error("待付款订单补偿入队任务执行失败", e);
+        }
+    }
+
+    /**
+     * 在一个事务内取消一批到期订单
+     *
+     * @param orderIds 到期订单ID
+     * @return 实际取消的订单（已支付或已取消的订单被跳过）
+     */
+    private List<Order> cancelExpiredOrders(List<Long> orderIds) {
+        List<Order> orders = orderMapper.selectUnpaidByIdsForUpdate(orderIds);
+        if (orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> unpaidIds = new ArrayList<>(orders.size());
+        // 订单ID -> 限时特惠预扣明细，这部分未扣减t_fruit库存
+        Map<Long, Map<Long, Integer>> reservations = new HashMap<>();
+        for (Order order : orders) {
+            unpaidIds.add(order.getId());
+            Map<Long, Integer> reserved = flashSaleService.getReservation(order.getOrderNo());
+            if (!reserved.isEmpty()) {
+                reservations.put(order.getId(), new HashMap<>(reserved));
+            }
+        }
+
+        // 订单已加锁，影响行数与订单数不一致说明状态被其他操作改变，整批回滚后下一轮重试
+        if (orderMapper.batchUpdateStatus(unpaidIds, 0, 4) != unpaidIds.size()) { // 已取消
+            throw new IllegalStateException("批量取消超时订单失败，订单状态已改变");
+        }
+        orderStatisticsService.onStatusChanged(orders, 0, 4);
+
+        // 汇总需要回退的库存，一次批量更新
+        Map<Long, Integer> stockMap = new TreeMap<>();
+        for (OrderItem orderItem : orderItemMapper.selectByOrderIds(unpaidIds)) {
+            int quantity = orderItem.getQuantity();
+            Map<Long, Integer> reserved = reservations.get(orderItem.getOrderId());
+            if (reserved != null) {
+                int covered = Math.min(quantity, reserved.getOrDefault(orderItem.getFruitId(), 0));
+                reserved.put(orderItem.getFruitId(), reserved.getOrDefault(orderItem.getFruitId(), 0) - covered);
+                quantity -= covered;
+            }
+            if (quantity > 0) {
+                stockMap.merge(orderItem.getFruitId(), quantity, Integer::sum);
+            }
+        }
+        if (!stockMap.isEmpty()) {
+            fruitMapper.batchIncreaseStock(stockMap);
+            fruitCacheService.evictStockAfterCommit(stockMap.keySet());
+            log.debug("回退库存 - {}", stockMap);
+        }
+        return orders;
+    }
+
+    private boolean acquireLease() {
+        try {
+            Long result = redisTemplate.execute(LEASE_SCRIPT, Collections.singletonList(LEASE_KEY),
+                    nodeId, String.valueOf(LEASE_EXPIRE));
+            return result != null && result == 1;
+        } catch (Exception e) {
+            log.error("获取订单超时处理租约失败", e);
+            return false;
+        }
+    }
+}
@@ -48,6 +48,17 @@ public interface OrderService {
      */
     List<Order> getOrderListByStatus(Long userId, Integer status);
 
+    /**
+     * 按状态游标分页获取用户订单，按订单ID倒序
+     *
+     * @param userId 用户ID
+     * @param status 订单状态（null表示获取所有状态）
+     * @param lastId 上一页最后一个订单ID（null表示第一页）
+     * @param size 每页数量
+     * @return 订单列表
+     */
+    List<Order> getOrderPageByStatus(Long userId, Integer status, Long lastId, int size);
+
     /**
      * 获取订单详情
      *
@@ -83,4 +94,32 @@ public interface OrderService {
      * @return 是否成功
      */
     boolean confirmReceive(Long orderId, Long userId);
+
+    /**
+     * 管理员更新订单状态，与汇总统计在同一事务中更新
+     *
+     * @param orderId 订单ID
+     * @param status  新状态
+     * @return 更新后的订单，订单不存在时返回null
+     */
+    Order updateOrderStatus(Long orderId, Integer status);
+
+    /**
+     * 管理员发货，与汇总统计在同一事务中更新
+     *
+     * @param orderId        订单ID
+     * @param trackingNumber 快递单号
+     * @param courier        快递公司
+     * @return 发货后的订单，订单不存在时返回null
+     * @throws org.example.common.exception.BusinessException 订单不是待发货状态
+     */
+    Order shipOrder(Long orderId, String trackingNumber, String courier);
+
+    /**
+     * 管理员删除订单及订单项，与汇总统计在同一事务中扣除
+     *
+     * @param orderId 订单ID
+     * @return 是否删除成功
+     */
+    boolean deleteOrder(Long orderId);
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package org.example.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.utils.LogUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单汇总统计定时任务服务
+ */
+@Slf4j
+@Service
+public class OrderStatisticsScheduleService {
+
+    @Autowired
+    private OrderStatisticsService orderStatisticsService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    // 重建锁，避免多个节点同时重建
+    private static final String REBUILD_LOCK = "order:stats:rebuild:lock";
+
+    // 每次校正最近的天数，覆盖跨零点支付和管理员改状态等非事务写入
+    private static final int RECENT_DAYS = 3;
+
+    /**
+     * 仅当锁仍由自己持有时释放，重建超过锁过期时间时不会误删其他节点的锁
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0", Long.class);
+
+    /**
+     * 校正订单汇总统计
+     * 启动后执行一次（汇总表为空时全量重建），之后每天执行一次
+     */
+    @Scheduled(initialDelay = 20000, fixedRate = 86400000)
+    public void reconcileOrderStatistics() {
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(REBUILD_LOCK, lockValue, 30, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            int days = orderStatisticsService.rebuildIfMissing(RECENT_DAYS);
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("订单汇总统计校正任务", duration, true,
+                    String.format("重建了%d天的汇总数据", days));
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("订单汇总统计校正任务", duration, false,
+                    "任务执行失败: " + e.getMessage());
+            log.error("订单汇总统计校正任务执行失败", e);
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(REBUILD_LOCK), lockValue);
+        }
+    }
+
+    /**
+     * 全量重建订单汇总统计，修复超出每日校正范围的较早日期的偏差
+     * 每周执行一次，启动后1小时首次执行
+     */
+    @Scheduled(initialDelay = 3600000, fixedRate = 604800000)
+    public void repairOrderStatistics() {
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(REBUILD_LOCK, lockValue, 30, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            int days = orderStatisticsService.rebuildAll();
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("订单汇总统计全量修复任务", duration, true,
+                    String.format("重建了%d天的汇总数据", days));
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            LogUtils.scheduledTask("订单汇总统计全量修复任务", duration, false,
+                    "任务执行失败: " + e.getMessage());
+            log.error("订单汇总统计全量修复任务执行失败", e);
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(REBUILD_LOCK), lockValue);
+        }
+    }
+}
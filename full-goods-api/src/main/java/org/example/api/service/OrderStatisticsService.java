@@ -0,0 +1,103 @@
+package org.example.api.service;
+
+import org.example.common.entity.Order;
+import org.example.common.entity.OrderDailyStats;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单汇总统计服务接口
+ * 订单创建和状态变更时在同一事务内增量维护按日汇总，仪表盘只读取汇总数据
+ */
+public interface OrderStatisticsService {
+
+    /**
+     * 计入新创建的订单，需在订单和订单项保存之后调用
+     *
+     * @param order 订单信息
+     */
+    void onOrderCreated(Order order);
+
+    /**
+     * 订单状态变更时把计数从原状态移到新状态
+     * 只在按原状态条件更新成功（影响行数大于0）后调用，状态未实际改变时调用会重复计数
+     *
+     * @param order 订单信息
+     * @param fromStatus 原状态
+     * @param toStatus 新状态
+     */
+    void onStatusChanged(Order order, Integer fromStatus, Integer toStatus);
+
+    /**
+     * 批量订单状态变更，orders须全部已按原状态更新成功
+     *
+     * @param orders 订单列表
+     * @param fromStatus 原状态
+     * @param toStatus 新状态
+     */
+    void onStatusChanged(List<Order> orders, Integer fromStatus, Integer toStatus);
+
+    /**
+     * 扣除即将删除的订单，需在删除订单和订单项之前调用
+     *
+     * @param order 订单信息
+     */
+    void onOrderRemoved(Order order);
+
+    /**
+     * 获取订单总览：订单总数、今日订单数、今日销售额、各状态订单数、月增长率
+     *
+     * @return 统计数据
+     */
+    Map<String, Object> getOrderSummary();
+
+    /**
+     * 获取今日销售额（已支付、已发货、已完成）
+     *
+     * @return 今日销售额
+     */
+    BigDecimal getTodayRevenue();
+
+    /**
+     * 获取最近若干天的销售趋势
+     *
+     * @param days 天数
+     * @return 日期、销售额、订单数
+     */
+    Map<String, Object> getSalesTrend(int days);
+
+    /**
+     * 获取最近若干天各分类的销售统计
+     *
+     * @param days 天数
+     * @return 分类统计，按金额降序
+     */
+    List<OrderDailyStats> getCategorySales(int days);
+
+    /**
+     * 从订单历史重建日期范围内的汇总数据
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 重建的天数
+     */
+    int rebuild(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 汇总表为空时从最早的订单开始全量重建，否则重建最近几天以校正偏差
+     *
+     * @param recentDays 校正的天数
+     * @return 重建的天数
+     */
+    int rebuildIfMissing(int recentDays);
+
+    /**
+     * 从最早的订单开始全量重建，修复较早日期的偏差
+     *
+     * @return 重建的天数
+     */
+    int rebuildAll();
+}
@@ -86,6 +86,13 @@ public interface UserService {
      * @return 用户信息
      */
     User getByToken(String token);
+
+    /**
+     * 用户被禁用或删除后调用，删除该用户的token并通知所有节点清除本地缓存
+     *
+     * @param userId 用户ID
+     */
+    void invalidateTokens(Long userId);
     
     /**
      * 根据token key获取token值
@@ -0,0 +1,416 @@
+package org.example.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket跨节点转发服务
+ * 作为消息代理通道的拦截器，把本节点发出的 /topic/** 广播和 /user/{userId}/** 定向消息
+ * 通过Redis发布订阅转发给其他节点，由其他节点投递给本地连接的客户端。
+ * 每个节点按STOMP会话的Principal（用户ID）记录本地连接了哪些用户，并定期写入Redis，定向消息只转发给用户所在的节点；
+ * 找不到用户所在节点时按广播转发。待转发消息按时间窗口攒批，每个节点每批只发布一次。
+ * simple模式下不做转发，与单节点的简单代理行为一致。
+ */
+@Slf4j
+@Service
+public class WebSocketRelayService implements ChannelInterceptor {
+
+    private static final String BROADCAST_CHANNEL = "ws:relay:broadcast";
+
+    private static final String NODE_CHANNEL_PREFIX = "ws:relay:node:";
+
+    private static final String USER_NODES_PREFIX = "ws:relay:user:";
+
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    private static final String USER_PREFIX = "/user/";
+
+    // 转发来的消息带有该消息头，不再转发
+    private static final String RELAYED_HEADER = "relayed";
+
+    // 每次发布的最大消息数
+    private static final int MAX_BATCH = 500;
+
+    // 待转发队列容量，超出时丢弃并记录日志
+    private static final int MAX_PENDING = 100_000;
+
+    @Autowired
+    @Lazy
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * simple：仅本节点投递；redis：通过Redis发布订阅跨节点转发
+     */
+    @Value("${websocket.relay.mode:simple}")
+    private String mode;
+
+    // 用户所在节点的心跳间隔（秒），超过3个间隔未刷新视为离线
+    @Value("${websocket.relay.heartbeat-seconds:30}")
+    private long heartbeatSeconds;
+
+    // 攒批时间窗口（毫秒）
+    @Value("${websocket.relay.flush-millis:10}")
+    private long flushMillis;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+
+    // 本节点每个用户的连接会话数
+    private final ConcurrentMap<Long, Integer> localUsers = new ConcurrentHashMap<>();
+
+    // 会话ID -> 用户ID
+    private final ConcurrentMap<String, Long> sessionUsers = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<RelayMessage> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+
+    private volatile boolean enabled;
+
+    private final MessageListener relayListener = (message, pattern) -> onRelayed(message.getBody());
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!"redis".equalsIgnoreCase(mode)) {
+            log.info("WebSocket使用本节点简单代理，不跨节点转发");
+            return;
+        }
+        listenerContainer.addMessageListener(relayListener,
+                Arrays.asList(new ChannelTopic(BROADCAST_CHANNEL), new ChannelTopic(NODE_CHANNEL_PREFIX + nodeId)));
+
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ws-relay-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        enabled = true;
+        log.info("WebSocket跨节点转发已启动，节点ID: {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+        // 监听容器是共享的，只移除本服务的监听
+        listenerContainer.removeMessageListener(relayListener);
+        updateRegistry(new ArrayList<>(localUsers.keySet()), false);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled || message.getHeaders().containsKey(RELAYED_HEADER)) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || destination == null
+                || !(message.getPayload() instanceof byte[])) {
+            return message;
+        }
+        Long userId = parseUserId(destination);
+        if (userId == null && !destination.startsWith(TOPIC_PREFIX)) {
+            return message;
+        }
+
+        MimeType contentType = accessor.getContentType();
+        RelayMessage relayMessage = new RelayMessage();
+        relayMessage.setUserId(userId);
+        relayMessage.setDestination(destination);
+        relayMessage.setContentType(contentType != null ? contentType.toString() : null);
+        relayMessage.setPayload((byte[]) message.getPayload());
+        if (!pending.offer(relayMessage)) {
+            log.warn("WebSocket待转发消息过多，丢弃发往 {} 的消息", destination);
+        }
+        return message;
+    }
+
+    /**
+     * 记录本节点已认证的会话，用户由连接时的Principal确定，不依赖客户端订阅的目的地
+     */
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = parsePrincipal(event.getUser());
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (userId == null || sessionId == null) {
+            return;
+        }
+        if (sessionUsers.putIfAbsent(sessionId, userId) == null
+                && localUsers.merge(userId, 1, Integer::sum) == 1 && enabled) {
+            updateRegistry(Collections.singletonList(userId), true);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Long userId = sessionUsers.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        if (localUsers.computeIfPresent(userId, (k, count) -> count > 1 ? count - 1 : null) == null && enabled) {
+            updateRegistry(Collections.singletonList(userId), false);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            List<RelayMessage> batch = new ArrayList<>();
+            while (pending.drainTo(batch, MAX_BATCH * 10) > 0) {
+                flush(batch);
+                batch.clear();
+            }
+        } catch (Exception e) {
+            log.error("WebSocket消息转发失败", e);
+        }
+    }
+
+    /**
+     * 按目标频道分组后发布，广播发往所有节点，定向消息只发往用户所在的其他节点
+     */
+    private void flush(List<RelayMessage> batch) throws Exception {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (RelayMessage relayMessage : batch) {
+            if (relayMessage.getUserId() != null) {
+                userIds.add(relayMessage.getUserId());
+            }
+        }
+        Map<Long, Set<String>> userNodes = lookupNodes(new ArrayList<>(userIds));
+
+        Map<String, List<RelayMessage>> byChannel = new HashMap<>();
+        for (RelayMessage relayMessage : batch) {
+            Set<String> nodes = relayMessage.getUserId() != null ? userNodes.get(relayMessage.getUserId()) : null;
+            if (nodes == null || nodes.isEmpty()) {
+                byChannel.computeIfAbsent(BROADCAST_CHANNEL, k -> new ArrayList<>()).add(relayMessage);
+                continue;
+            }
+            for (String node : nodes) {
+                if (!node.equals(nodeId)) {
+                    byChannel.computeIfAbsent(NODE_CHANNEL_PREFIX + node, k -> new ArrayList<>()).add(relayMessage);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<RelayMessage>> entry : byChannel.entrySet()) {
+            List<RelayMessage> messages = entry.getValue();
+            for (int from = 0; from < messages.size(); from += MAX_BATCH) {
+                RelayBatch relayBatch = new RelayBatch();
+                relayBatch.setOrigin(nodeId);
+                relayBatch.setMessages(messages.subList(from, Math.min(from + MAX_BATCH, messages.size())));
+                redisTemplate.convertAndSend(entry.getKey(), objectMapper.writeValueAsString(relayBatch));
+            }
+        }
+    }
+
+    /**
+     * 投递其他节点转发来的消息
+     */
+    private void onRelayed(byte[] body) {
+        try {
+            RelayBatch relayBatch = objectMapper.readValue(body, RelayBatch.class);
+            if (nodeId.equals(relayBatch.getOrigin())) {
+                return;
+            }
+            for (RelayMessage relayMessage : relayBatch.getMessages()) {
+                SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                if (relayMessage.getContentType() != null) {
+                    headers.setContentType(MimeType.valueOf(relayMessage.getContentType()));
+                }
+                headers.setHeader(RELAYED_HEADER, Boolean.TRUE);
+                headers.setLeaveMutable(true);
+                messagingTemplate.send(relayMessage.getDestination(),
+                        MessageBuilder.createMessage(relayMessage.getPayload(), headers.getMessageHeaders()));
+            }
+        } catch (Exception e) {
+            log.error("投递转发的WebSocket消息失败", e);
+        }
+    }
+
+    /**
+     * 批量查询用户所在节点
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Set<String>> lookupNodes(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        double minScore = System.currentTimeMillis() - registryTtlMillis();
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Long userId : userIds) {
+                    ops.opsForZSet().rangeByScore(USER_NODES_PREFIX + userId, minScore, Double.MAX_VALUE);
+                }
+                return null;
+            }
+        });
+        Map<Long, Set<String>> userNodes = new HashMap<>(userIds.size() * 2);
+        for (int i = 0; i < userIds.size(); i++) {
+            userNodes.put(userIds.get(i), (Set<String>) results.get(i));
+        }
+        return userNodes;
+    }
+
+    /**
+     * 刷新本节点所有在线用户的登记
+     */
+    private void heartbeat() {
+        updateRegistry(new ArrayList<>(localUsers.keySet()), true);
+    }
+
+    /**
+     * 登记或移除用户所在节点，同时清理超时的节点
+     */
+    @SuppressWarnings("unchecked")
+    private void updateRegistry(List<Long> userIds, boolean online) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long ttlMillis = registryTtlMillis();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (Long userId : userIds) {
+                        String key = USER_NODES_PREFIX + userId;
+                        if (online) {
+                            ops.opsForZSet().add(key, nodeId, now);
+                            ops.opsForZSet().removeRangeByScore(key, 0, now - ttlMillis);
+                            ops.expire(key, ttlMillis, TimeUnit.MILLISECONDS);
+                        } else {
+                            ops.opsForZSet().remove(key, nodeId);
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("更新WebSocket用户节点登记失败: {}", e.getMessage());
+        }
+    }
+
+    private long registryTtlMillis() {
+        return TimeUnit.SECONDS.toMillis(heartbeatSeconds * 3);
+    }
+
+    /**
+     * 会话Principal的名称是用户ID
+     */
+    private static Long parsePrincipal(Principal principal) {
+        if (principal == null || principal.getName() == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(principal.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从 /user/{userId}/... 中解析用户ID
+     */
+    private static Long parseUserId(String destination) {
+        if (destination == null || !destination.startsWith(USER_PREFIX)) {
+            return null;
+        }
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        if (end <= USER_PREFIX.length()) {
+            return null;
+        }
+        String segment = destination.substring(USER_PREFIX.length(), end);
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Long.valueOf(segment);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次发布的转发消息
+     */
+    @Data
+    public static class RelayBatch {
+        private String origin;
+        private List<RelayMessage> messages;
+    }
+
+    /**
+     * 转发的单条消息，payload为已序列化的消息体
+     */
+    @Data
+    public static class RelayMessage {
+        private Long userId;
+        private String destination;
+        private String contentType;
+        private byte[] payload;
+    }
+}
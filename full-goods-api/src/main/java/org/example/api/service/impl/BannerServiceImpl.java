@@ -4,6 +4,7 @@ import org.example.api.vo.BannerVO;
 import org.example.common.entity.Banner;
 import org.example.api.mapper.BannerMapper;
 import org.example.api.service.BannerService;
+import org.example.api.service.HomeSnapshotService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,9 @@ public class BannerServiceImpl implements BannerService {
     @Autowired
     private BannerMapper bannerMapper;
 
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
     @Override
     public List<BannerVO> getAllEnabled() {
         List<Banner> bannerList = bannerMapper.selectAllEnabled();
@@ -86,17 +90,27 @@ public class BannerServiceImpl implements BannerService {
         if (banner.getStatus() == null) {
             banner.setStatus(1); // 默认启用
         }
-        return bannerMapper.insert(banner) > 0;
+        return changed(bannerMapper.insert(banner) > 0);
     }
 
     @Override
     public boolean update(Banner banner) {
         banner.setUpdateTime(new Date());
-        return bannerMapper.update(banner) > 0;
+        return changed(bannerMapper.update(banner) > 0);
     }
 
     @Override
     public boolean delete(Long id) {
-        return bannerMapper.deleteById(id) > 0;
+        return changed(bannerMapper.deleteById(id) > 0);
+    }
+
+    /**
+     * 轮播图变更后刷新首页数据
+     */
+    private boolean changed(boolean success) {
+        if (success) {
+            homeSnapshotService.invalidate();
+        }
+        return success;
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.mapper.CustomerServiceSessionMapper;
 import org.example.api.service.CustomerServiceSessionService;
+import org.example.api.service.CustomerStatisticsAggregator;
 import org.example.common.entity.CustomerServiceSession;
 import org.example.common.response.Result;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +23,9 @@ public class CustomerServiceSessionServiceImpl implements CustomerServiceSession
     @Autowired
     private CustomerServiceSessionMapper customerServiceSessionMapper;
 
+    @Autowired
+    private CustomerStatisticsAggregator customerStatisticsAggregator;
+
     @Override
     public Result<CustomerServiceSession> createSession(Long userId, String sessionType, String title) {
         try {
@@ -126,11 +130,15 @@ public class CustomerServiceSessionServiceImpl implements CustomerServiceSession
                 return Result.failed("无权操作该会话");
             }
             
+            boolean ended = Integer.valueOf(3).equals(session.getStatus());
             session.setStatus(3); // 已结束
             session.setEndTime(new Date());
             session.setUpdateTime(new Date());
             
             int result = customerServiceSessionMapper.update(session);
+            if (result > 0 && !ended && session.getServiceId() != null) {
+                customerStatisticsAggregator.recordResolved(session.getServiceId());
+            }
             return result > 0 ? Result.success(true) : Result.failed("结束会话失败");
         } catch (Exception e) {
             log.error("结束会话失败", e);
@@ -149,6 +157,19 @@ public class CustomerServiceSessionServiceImpl implements CustomerServiceSession
         }
     }
 
+    @Override
+    public void recordServiceReply(Long userId) {
+        try {
+            // 与回填一致：客服消息计入用户当前会话的客服
+            CustomerServiceSession session = customerServiceSessionMapper.selectActiveByUserId(userId);
+            if (session != null && session.getServiceId() != null) {
+                customerStatisticsAggregator.recordMessage(session.getServiceId());
+            }
+        } catch (Exception e) {
+            log.error("记录客服回复统计失败，用户ID: {}", userId, e);
+        }
+    }
+
     @Override
     public Result<Boolean> increaseUnreadCount(Long sessionId, Integer count) {
         try {
@@ -182,7 +203,13 @@ public class CustomerServiceSessionServiceImpl implements CustomerServiceSession
     @Override
     public Result<Boolean> assignService(Long sessionId, Long serviceId) {
         try {
+            CustomerServiceSession session = customerServiceSessionMapper.selectById(sessionId);
             int result = customerServiceSessionMapper.assignService(sessionId, serviceId);
+            if (result > 0 && session != null && !Objects.equals(session.getServiceId(), serviceId)) {
+                // 转接时对话从原客服移到新客服
+                customerStatisticsAggregator.recordDialog(serviceId, session.getStartTime(), 1);
+                customerStatisticsAggregator.recordDialog(session.getServiceId(), session.getStartTime(), -1);
+            }
             return result > 0 ? Result.success(true) : Result.failed("分配客服失败");
         } catch (Exception e) {
             log.error("分配客服失败", e);
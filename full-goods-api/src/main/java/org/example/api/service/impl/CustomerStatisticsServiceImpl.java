@@ -4,20 +4,37 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.mapper.CustomerStatisticsMapper;
+import org.example.api.service.CustomerStatisticsAggregator;
+import org.example.api.service.CustomerStatisticsRankingService;
 import org.example.api.service.CustomerStatisticsService;
 import org.example.common.entity.CustomerStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * 客服统计Service实现类
+ * 接待对话数、消息数和解决数由 CustomerStatisticsAggregator 根据会话事件实时累加，
+ * 回填时从会话表和消息表重新计算；排行从 CustomerStatisticsRankingService 维护的Redis有序集合读取
  */
 @Slf4j
 @Service
@@ -26,8 +43,33 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     @Autowired
     private CustomerStatisticsMapper customerStatisticsMapper;
 
+    @Autowired
+    private CustomerStatisticsAggregator customerStatisticsAggregator;
+
+    @Autowired
+    private CustomerStatisticsRankingService customerStatisticsRankingService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 回填使用读已提交，INSERT…SELECT 读取会话表和消息表时不加共享锁和间隙锁，不阻塞会话和消息写入
+    private TransactionTemplate backfillTransactionTemplate;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 回填时每段的天数，各段并行计算
+    private static final int BACKFILL_CHUNK_DAYS = 7;
+
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
+    @PostConstruct
+    public void init() {
+        backfillTransactionTemplate = new TransactionTemplate(transactionManager);
+        backfillTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
     @Override
     public PageInfo<CustomerStatistics> getAllStatistics(int page, int size) {
         PageHelper.startPage(page, size);
@@ -93,6 +135,7 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
                 statistics.setUpdateTime(new Date());
             }
             if (customerStatisticsMapper.insert(statistics) > 0) {
+                evictRanking(statistics.getStatisticsDate());
                 return statistics;
             }
             return null;
@@ -107,7 +150,12 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     public CustomerStatistics updateStatistics(CustomerStatistics statistics) {
         try {
             statistics.setUpdateTime(new Date());
+            CustomerStatistics existing = customerStatisticsMapper.selectById(statistics.getId());
             if (customerStatisticsMapper.update(statistics) > 0) {
+                if (existing != null) {
+                    evictRanking(existing.getStatisticsDate());
+                }
+                evictRanking(statistics.getStatisticsDate());
                 return statistics;
             }
             return null;
@@ -121,7 +169,14 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     @Transactional
     public boolean deleteStatistics(Long id) {
         try {
-            return customerStatisticsMapper.deleteById(id) > 0;
+            CustomerStatistics existing = customerStatisticsMapper.selectById(id);
+            if (customerStatisticsMapper.deleteById(id) > 0) {
+                if (existing != null) {
+                    evictRanking(existing.getStatisticsDate());
+                }
+                return true;
+            }
+            return false;
         } catch (Exception e) {
             log.error("删除统计失败，ID: {}", id, e);
             return false;
@@ -132,7 +187,11 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     @Transactional
     public int deleteByDateRange(Date startDate, Date endDate) {
         try {
-            return customerStatisticsMapper.deleteByDateRange(startDate, endDate);
+            int deleted = customerStatisticsMapper.deleteByDateRange(startDate, endDate);
+            if (deleted > 0 && startDate != null && endDate != null) {
+                customerStatisticsRankingService.evict(datesBetween(toLocalDate(startDate), toLocalDate(endDate)));
+            }
+            return deleted;
         } catch (Exception e) {
             log.error("根据日期范围删除统计失败，开始日期: {}, 结束日期: {}", startDate, endDate, e);
             return 0;
@@ -142,6 +201,13 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     @Override
     public List<CustomerStatistics> getWorkloadRanking(Date startDate, Date endDate, Integer limit) {
         try {
+            if (useRanking(startDate, endDate)) {
+                List<CustomerStatistics> ranking = customerStatisticsRankingService.getWorkloadRanking(
+                        toLocalDate(startDate), toLocalDate(endDate), limit);
+                if (ranking != null) {
+                    return ranking;
+                }
+            }
             return customerStatisticsMapper.selectWorkloadRanking(startDate, endDate, limit);
         } catch (Exception e) {
             log.error("获取工作量排行失败，开始日期: {}, 结束日期: {}, 限制: {}", startDate, endDate, limit, e);
@@ -152,6 +218,13 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     @Override
     public List<CustomerStatistics> getSatisfactionRanking(Date startDate, Date endDate, Integer limit) {
         try {
+            if (useRanking(startDate, endDate)) {
+                List<CustomerStatistics> ranking = customerStatisticsRankingService.getSatisfactionRanking(
+                        toLocalDate(startDate), toLocalDate(endDate), limit);
+                if (ranking != null) {
+                    return ranking;
+                }
+            }
             return customerStatisticsMapper.selectSatisfactionRanking(startDate, endDate, limit);
         } catch (Exception e) {
             log.error("获取满意度排行失败，开始日期: {}, 结束日期: {}, 限制: {}", startDate, endDate, limit, e);
@@ -170,33 +243,15 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     }
 
     @Override
-    @Transactional
     public int generateDailyStatistics(Date statisticsDate) {
         try {
             String dateStr = dateFormat.format(statisticsDate);
             log.info("开始生成日期 {} 的统计数据", dateStr);
-            
-            int generatedCount = 0;
-            // 示例逻辑：为每个客服生成统计数据
-            for (int serviceId = 1; serviceId <= 10; serviceId++) {
-                CustomerStatistics statistics = new CustomerStatistics();
-                statistics.setStatisticsDate(statisticsDate);
-                statistics.setServiceId((long) serviceId);
-                statistics.setServiceName("客服" + serviceId);
-                statistics.setDialogCount((int) (Math.random() * 50) + 10);
-                statistics.setMessageCount((int) (Math.random() * 200) + 50);
-                statistics.setAvgResponseTime((int) (Math.random() * 300) + 30);
-                statistics.setAvgSatisfaction(Math.random() * 2 + 3);
-                statistics.setResolvedCount((int) (Math.random() * 40) + 5);
-                statistics.setOnlineMinutes((int) (Math.random() * 480) + 240);
-                statistics.setEfficiencyScore(Math.random() * 20 + 80);
-                
-                if (createStatistics(statistics) != null) {
-                    generatedCount++;
-                }
-            }
-            
-            log.info("完成生成日期 {} 的统计数据，共生成 {} 条", dateStr, generatedCount);
+
+            backfill(statisticsDate, statisticsDate);
+            int generatedCount = customerStatisticsMapper.selectByDate(statisticsDate).size();
+
+            log.info("完成生成日期 {} 的统计数据，共 {} 条", dateStr, generatedCount);
             return generatedCount;
         } catch (Exception e) {
             log.error("生成日统计数据失败，日期: {}", statisticsDate, e);
@@ -205,31 +260,84 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
     }
 
     @Override
-    @Transactional
     public CustomerStatistics generateServiceDailyStatistics(Long serviceId, Date statisticsDate) {
         try {
             String dateStr = dateFormat.format(statisticsDate);
             log.info("开始生成客服 {} 在日期 {} 的统计数据", serviceId, dateStr);
-            
-            CustomerStatistics statistics = new CustomerStatistics();
-            statistics.setStatisticsDate(statisticsDate);
-            statistics.setServiceId(serviceId);
-            statistics.setServiceName("客服" + serviceId);
-            statistics.setDialogCount((int) (Math.random() * 50) + 10);
-            statistics.setMessageCount((int) (Math.random() * 200) + 50);
-            statistics.setAvgResponseTime((int) (Math.random() * 300) + 30);
-            statistics.setAvgSatisfaction(Math.random() * 2 + 3);
-            statistics.setResolvedCount((int) (Math.random() * 40) + 5);
-            statistics.setOnlineMinutes((int) (Math.random() * 480) + 240);
-            statistics.setEfficiencyScore(Math.random() * 20 + 80);
-            
-            return createStatistics(statistics);
+
+            customerStatisticsAggregator.flush();
+            backfillTransactionTemplate.executeWithoutResult(status -> {
+                customerStatisticsMapper.resetCounters(statisticsDate, statisticsDate, serviceId);
+                customerStatisticsMapper.rebuildCounters(statisticsDate, statisticsDate, serviceId);
+            });
+            customerStatisticsRankingService.rebuild(Collections.singletonList(toLocalDate(statisticsDate)));
+
+            return customerStatisticsMapper.selectByServiceIdAndDate(serviceId, statisticsDate);
         } catch (Exception e) {
             log.error("生成客服日统计数据失败，客服ID: {}, 日期: {}", serviceId, statisticsDate, e);
             return null;
         }
     }
 
+    @Override
+    public int backfill(Date startDate, Date endDate) {
+        if (startDate == null || endDate == null || startDate.after(endDate)) {
+            throw new IllegalArgumentException("回填日期范围无效");
+        }
+
+        long startTime = System.currentTimeMillis();
+        LocalDate from = toLocalDate(startDate);
+        LocalDate to = toLocalDate(endDate);
+
+        // 先写入内存中的计数，避免回填后再被累加一次
+        customerStatisticsAggregator.flush();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        LocalDate chunkStart = from;
+        while (!chunkStart.isAfter(to)) {
+            LocalDate chunkEnd = chunkStart.plusDays(BACKFILL_CHUNK_DAYS - 1);
+            if (chunkEnd.isAfter(to)) {
+                chunkEnd = to;
+            }
+            Date chunkFrom = toDate(chunkStart);
+            Date chunkTo = toDate(chunkEnd);
+            futures.add(CompletableFuture.runAsync(() -> backfillTransactionTemplate.executeWithoutResult(status -> {
+                customerStatisticsMapper.resetCounters(chunkFrom, chunkTo, null);
+                customerStatisticsMapper.rebuildCounters(chunkFrom, chunkTo, null);
+            }), taskExecutor));
+            chunkStart = chunkEnd.plusDays(1);
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+
+        List<LocalDate> dates = datesBetween(from, to);
+        customerStatisticsRankingService.rebuild(dates);
+
+        log.info("回填客服统计完成 - 日期: {} ~ {}, 天数: {}, 分段: {}, 耗时: {}ms",
+                from, to, dates.size(), futures.size(), System.currentTimeMillis() - startTime);
+        return dates.size();
+    }
+
+    @Override
+    public int backfillIfMissing(int recentDays) {
+        // 当天由实时计数累加，只校正已结束的日期
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate from;
+        if (customerStatisticsMapper.selectEarliestStatisticsDate() == null) {
+            Date earliest = customerStatisticsMapper.selectEarliestSessionDate();
+            if (earliest == null) {
+                return 0;
+            }
+            from = toLocalDate(earliest);
+        } else {
+            from = yesterday.minusDays(Math.max(recentDays, 1) - 1);
+        }
+        return from.isAfter(yesterday) ? 0 : backfill(toDate(from), toDate(yesterday));
+    }
+
     @Override
     public Map<String, Object> getEfficiencyAnalysis(Long serviceId, Date startDate, Date endDate) {
         try {
@@ -328,4 +436,34 @@ public class CustomerStatisticsServiceImpl implements CustomerStatisticsService
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 范围过大时合并有序集合不如直接查询统计表
+     */
+    private boolean useRanking(Date startDate, Date endDate) {
+        return startDate != null && endDate != null && !startDate.after(endDate)
+                && ChronoUnit.DAYS.between(toLocalDate(startDate), toLocalDate(endDate)) < CustomerStatisticsRankingService.MAX_RANGE_DAYS;
+    }
+
+    private void evictRanking(Date statisticsDate) {
+        if (statisticsDate != null) {
+            customerStatisticsRankingService.evict(Collections.singletonList(toLocalDate(statisticsDate)));
+        }
+    }
+
+    private static List<LocalDate> datesBetween(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        return dates;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return CustomerStatisticsRankingService.toLocalDate(date);
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
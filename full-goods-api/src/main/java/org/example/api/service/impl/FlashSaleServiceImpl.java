@@ -2,14 +2,32 @@ package org.example.api.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.mapper.FlashSaleMapper;
+import org.example.api.mapper.FruitMapper;
 import org.example.api.service.FlashSaleService;
+import org.example.api.service.FruitCacheService;
 import org.example.api.vo.FlashSaleVO;
 import org.example.common.entity.FlashSale;
+import org.example.common.entity.Fruit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +40,114 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     @Autowired
     private FlashSaleMapper flashSaleMapper;
 
+    @Autowired
+    private FruitMapper fruitMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private FruitCacheService fruitCacheService;
+
+    // 限时特惠剩余库存 flash_sale:stock:{flashSaleId}
+    private static final String STOCK_PREFIX = "flash_sale:stock:";
+    // 商品当前生效的限时特惠 flash_sale:fruit:{fruitId} -> flashSaleId
+    private static final String FRUIT_PREFIX = "flash_sale:fruit:";
+    // 订单预扣明细 flash_sale:order:{orderNo}，field为 flashSaleId:fruitId，value为数量
+    private static final String ORDER_PREFIX = "flash_sale:order:";
+    // 已确认待对账队列，元素为 flashSaleId:fruitId:quantity
+    private static final String RECONCILE_QUEUE = "flash_sale:reconcile";
+    // 已加载的活动，member为 flashSaleId:fruitId，score为结束时间
+    private static final String LOADED_KEY = "flash_sale:loaded";
+    // 待退回t_fruit的未售库存队列，元素为 flashSaleId:fruitId:quantity
+    private static final String RESTOCK_QUEUE = "flash_sale:restock";
+    // 对账任务锁，保证多节点同一时间只有一个节点对账
+    private static final String RECONCILE_LOCK = "flash_sale:reconcile:lock";
+
+    // 订单预扣明细保留时间（小时），需长于未付款订单的自动取消时间
+    private static final long ORDER_RESERVATION_EXPIRE = 24;
+    // 对账锁过期时间（秒）
+    private static final long RECONCILE_LOCK_EXPIRE = 30;
+
+    /**
+     * 加载活动库存并登记到已加载集合，已加载返回0，成功返回1
+     */
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+            "redis.call('SET', KEYS[1], ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2])\n" +
+            "return 1", Long.class);
+
+    /**
+     * 撤销加载（加载所在的事务未提交时）
+     */
+    private static final DefaultRedisScript<Long> UNLOAD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1])\n" +
+            "return redis.call('ZREM', KEYS[2], ARGV[1])", Long.class);
+
+    /**
+     * 结算已结束的活动：删除库存key，剩余库存放入退回队列，返回剩余库存
+     */
+    private static final DefaultRedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = tonumber(redis.call('GET', KEYS[1])) or 0\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+            "if stock > 0 then redis.call('RPUSH', KEYS[3], ARGV[1] .. ':' .. stock) end\n" +
+            "return stock", Long.class);
+
+    /**
+     * 预扣库存：库存不存在返回-1，不足返回0，成功返回1
+     */
+    private static final DefaultRedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = tonumber(redis.call('GET', KEYS[1]))\n" +
+            "if stock == nil then return -1 end\n" +
+            "local qty = tonumber(ARGV[1])\n" +
+            "if stock < qty then return 0 end\n" +
+            "redis.call('DECRBY', KEYS[1], qty)\n" +
+            "redis.call('HINCRBY', KEYS[2], ARGV[2], qty)\n" +
+            "redis.call('EXPIRE', KEYS[2], ARGV[3])\n" +
+            "return 1", Long.class);
+
+    /**
+     * 释放预扣：把明细中的数量加回对应活动库存并删除明细，返回明细
+     * 活动已结算时数量放入退回队列，归还给t_fruit
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local entries = redis.call('HGETALL', KEYS[1])\n" +
+            "for i = 1, #entries, 2 do\n" +
+            "  local flashSaleId = string.match(entries[i], '^(%d+):')\n" +
+            "  local stockKey = ARGV[1] .. flashSaleId\n" +
+            "  if redis.call('EXISTS', stockKey) == 1 then\n" +
+            "    redis.call('INCRBY', stockKey, entries[i + 1])\n" +
+            "  else\n" +
+            "    redis.call('RPUSH', KEYS[2], entries[i] .. ':' .. entries[i + 1])\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "return entries", List.class);
+
+    /**
+     * 确认预扣：把明细移入对账队列并删除明细，返回条目数
+     */
+    private static final DefaultRedisScript<Long> CONFIRM_SCRIPT = new DefaultRedisScript<>(
+            "local entries = redis.call('HGETALL', KEYS[1])\n" +
+            "for i = 1, #entries, 2 do\n" +
+            "  redis.call('RPUSH', KEYS[2], entries[i] .. ':' .. entries[i + 1])\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "return #entries / 2", Long.class);
+
+    /**
+     * 仅当锁仍由自己持有时释放
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0", Long.class);
+
     @Value("${server.servlet.context-path:}")
     private String contextPath;
     
@@ -63,6 +189,263 @@ public class FlashSaleServiceImpl implements FlashSaleService {
         return flashSaleMapper.updateSoldCount(id, quantity) > 0;
     }
 
+    @Override
+    public int preloadActiveFlashSales() {
+        int loaded = 0;
+        long now = System.currentTimeMillis();
+        for (FlashSaleVO flashSale : flashSaleMapper.selectActiveFlashSales()) {
+            if (flashSale.getEndTime() == null || flashSale.getFruitId() == null) {
+                continue;
+            }
+            long ttl = flashSale.getEndTime().getTime() - now;
+            if (ttl <= 0) {
+                continue;
+            }
+
+            // 库存只加载一次，避免覆盖已发生的预扣
+            boolean ready = Boolean.TRUE.equals(redisTemplate.hasKey(STOCK_PREFIX + flashSale.getId()));
+            if (!ready && loadStock(flashSale)) {
+                ready = true;
+                loaded++;
+            }
+            if (ready) {
+                redisTemplate.opsForValue().set(FRUIT_PREFIX + flashSale.getFruitId(),
+                        String.valueOf(flashSale.getId()), ttl, TimeUnit.MILLISECONDS);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 把活动库存从t_fruit移到Redis，普通下单不能再买到这部分库存
+     * 锁定商品行后条件扣减，多个节点同时加载时只有一个节点成功，其余回滚
+     */
+    private boolean loadStock(FlashSaleVO flashSale) {
+        Long flashSaleId = flashSale.getId();
+        Long fruitId = flashSale.getFruitId();
+        String member = flashSaleId + ":" + fruitId;
+        Boolean loaded = transactionTemplate.execute(status -> {
+            List<Fruit> fruits = fruitMapper.selectByIdsForUpdate(Collections.singletonList(fruitId));
+            int available = fruits.isEmpty() || fruits.get(0).getStock() == null ? 0 : fruits.get(0).getStock();
+            int stock = flashSale.getStock() != null ? flashSale.getStock() : 0;
+            int sold = flashSale.getSoldCount() != null ? flashSale.getSoldCount() : 0;
+            int remaining = Math.max(Math.min(stock - sold, available), 0);
+            if (remaining > 0 && fruitMapper.decreaseStock(fruitId, remaining) == 0) {
+                throw new IllegalStateException("限时特惠加载扣减库存失败");
+            }
+
+            Long result = redisTemplate.execute(LOAD_SCRIPT, Arrays.asList(STOCK_PREFIX + flashSaleId, LOADED_KEY),
+                    String.valueOf(remaining), member, String.valueOf(flashSale.getEndTime().getTime()));
+            if (result == null || result == 0) {
+                // 其他节点已加载
+                status.setRollbackOnly();
+                return false;
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int completionStatus) {
+                        if (completionStatus != STATUS_COMMITTED) {
+                            redisTemplate.execute(UNLOAD_SCRIPT,
+                                    Arrays.asList(STOCK_PREFIX + flashSaleId, LOADED_KEY), member);
+                        }
+                    }
+                });
+            }
+            if (remaining > 0) {
+                fruitCacheService.evictStockAfterCommit(Collections.singleton(fruitId));
+            }
+            log.info("限时特惠库存已预加载 - 活动ID: {}, 商品ID: {}, 库存: {}", flashSaleId, fruitId, remaining);
+            return true;
+        });
+        return Boolean.TRUE.equals(loaded);
+    }
+
+    @Override
+    public Map<Long, Long> getActiveFlashSaleIds(Collection<Long> fruitIds) {
+        if (fruitIds == null || fruitIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> idList = new ArrayList<>(fruitIds);
+        List<String> keys = new ArrayList<>(idList.size());
+        for (Long fruitId : idList) {
+            keys.add(FRUIT_PREFIX + fruitId);
+        }
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return Collections.emptyMap();
+            }
+            Map<Long, Long> result = new HashMap<>();
+            for (int i = 0; i < idList.size(); i++) {
+                String value = values.get(i);
+                if (value != null) {
+                    result.put(idList.get(i), Long.parseLong(value));
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            // Redis不可用时退回数据库扣减库存
+            log.error("查询限时特惠库存映射失败", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public boolean reserveStock(Long flashSaleId, Long fruitId, String orderNo, Integer quantity) {
+        Long result = redisTemplate.execute(RESERVE_SCRIPT,
+                Arrays.asList(STOCK_PREFIX + flashSaleId, ORDER_PREFIX + orderNo),
+                String.valueOf(quantity), flashSaleId + ":" + fruitId,
+                String.valueOf(TimeUnit.HOURS.toSeconds(ORDER_RESERVATION_EXPIRE)));
+        if (result == null || result < 0) {
+            log.warn("限时特惠库存未加载 - 活动ID: {}", flashSaleId);
+            return false;
+        }
+        return result > 0;
+    }
+
+    @Override
+    public int confirmReservation(String orderNo) {
+        Long count = redisTemplate.execute(CONFIRM_SCRIPT,
+                Arrays.asList(ORDER_PREFIX + orderNo, RECONCILE_QUEUE));
+        return count != null ? count.intValue() : 0;
+    }
+
+    @Override
+    public Map<Long, Integer> getReservation(String orderNo) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(ORDER_PREFIX + orderNo);
+        if (entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Object> flat = new ArrayList<>(entries.size() * 2);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            flat.add(entry.getKey());
+            flat.add(entry.getValue());
+        }
+        return parseReservation(flat);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Integer> releaseReservation(String orderNo) {
+        List<Object> entries = redisTemplate.execute(RELEASE_SCRIPT,
+                Arrays.asList(ORDER_PREFIX + orderNo, RESTOCK_QUEUE), STOCK_PREFIX);
+        if (entries == null || entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> released = parseReservation(entries);
+        log.info("释放限时特惠预扣库存 - 订单号: {}, 明细: {}", orderNo, released);
+        return released;
+    }
+
+    /**
+     * 解析预扣明细，entries为 field, value 交替排列，field格式为 flashSaleId:fruitId
+     */
+    private Map<Long, Integer> parseReservation(List<Object> entries) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            String field = String.valueOf(entries.get(i));
+            Long fruitId = Long.parseLong(field.substring(field.indexOf(':') + 1));
+            result.merge(fruitId, Integer.parseInt(String.valueOf(entries.get(i + 1))), Integer::sum);
+        }
+        return result;
+    }
+
+    @Override
+    public int reconcileConfirmedSales(int batchSize) {
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK, lockValue,
+                RECONCILE_LOCK_EXPIRE, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+        try {
+            List<String> entries = redisTemplate.opsForList().range(RECONCILE_QUEUE, 0, batchSize - 1);
+            if (entries == null || entries.isEmpty()) {
+                return 0;
+            }
+
+            // 库存在加载时已从t_fruit移出，这里只按活动聚合更新销量
+            Map<Long, Integer> soldByFlashSale = new TreeMap<>();
+            for (String entry : entries) {
+                String[] parts = entry.split(":");
+                soldByFlashSale.merge(Long.parseLong(parts[0]), Integer.parseInt(parts[2]), Integer::sum);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Map.Entry<Long, Integer> sold : soldByFlashSale.entrySet()) {
+                    flashSaleMapper.updateSoldCount(sold.getKey(), sold.getValue());
+                }
+            });
+
+            // 数据库提交后再出队，失败时下次重试
+            redisTemplate.opsForList().trim(RECONCILE_QUEUE, entries.size(), -1);
+            log.info("限时特惠销量对账完成 - 条目数: {}, 活动销量: {}", entries.size(), soldByFlashSale);
+            return entries.size();
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(RECONCILE_LOCK), lockValue);
+        }
+    }
+
+    @Override
+    public int returnUnsoldStock(int batchSize) {
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK, lockValue,
+                RECONCILE_LOCK_EXPIRE, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+        try {
+            // 结算已结束的活动，剩余库存进入退回队列
+            Set<String> ended = redisTemplate.opsForZSet().rangeByScore(LOADED_KEY, 0,
+                    System.currentTimeMillis(), 0, batchSize);
+            if (ended != null) {
+                for (String member : ended) {
+                    String flashSaleId = member.substring(0, member.indexOf(':'));
+                    redisTemplate.execute(SETTLE_SCRIPT,
+                            Arrays.asList(STOCK_PREFIX + flashSaleId, LOADED_KEY, RESTOCK_QUEUE), member);
+                }
+            }
+
+            List<String> entries = redisTemplate.opsForList().range(RESTOCK_QUEUE, 0, batchSize - 1);
+            if (entries == null || entries.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Integer> stockMap = new TreeMap<>();
+            for (String entry : entries) {
+                String[] parts = entry.split(":");
+                stockMap.merge(Long.parseLong(parts[1]), Integer.parseInt(parts[2]), Integer::sum);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                fruitMapper.batchIncreaseStock(stockMap);
+                fruitCacheService.evictStockAfterCommit(stockMap.keySet());
+            });
+
+            // 数据库提交后再出队，失败时下次重试
+            redisTemplate.opsForList().trim(RESTOCK_QUEUE, entries.size(), -1);
+            log.info("限时特惠未售库存已退回 - 条目数: {}, 商品库存: {}", entries.size(), stockMap);
+            return entries.size();
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(RECONCILE_LOCK), lockValue);
+        }
+    }
+
+    @Override
+    public void removeFruitLedger(Long fruitId) {
+        if (fruitId == null) {
+            return;
+        }
+        redisTemplate.delete(FRUIT_PREFIX + fruitId);
+        // 已加载的活动立即到期，由退回任务把剩余库存还给t_fruit
+        Set<String> members = redisTemplate.opsForZSet().range(LOADED_KEY, 0, -1);
+        if (members != null) {
+            for (String member : members) {
+                if (member.endsWith(":" + fruitId)) {
+                    redisTemplate.opsForZSet().add(LOADED_KEY, member, 0);
+                }
+            }
+        }
+    }
+
     /**
      * 处理图片URL
      * 为本地图片URL添加代理前缀
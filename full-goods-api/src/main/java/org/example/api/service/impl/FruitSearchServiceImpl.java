@@ -0,0 +1,487 @@
+package org.example.api.service.impl;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.common.Term;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.example.api.mapper.FruitCategoryMapper;
+import org.example.api.mapper.FruitMapper;
+import org.example.api.service.FruitSearchService;
+import org.example.api.vo.CategoryVO;
+import org.example.common.entity.Fruit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品搜索服务实现类
+ * 每个上架商品分词后缓存词频，变更时只重新分词该商品，再由缓存的词频重建不可变的索引快照并整体替换，
+ * 查询始终读取一个完整的快照
+ */
+@Slf4j
+@Service
+public class FruitSearchServiceImpl implements FruitSearchService, MessageListener {
+
+    @Autowired
+    private FruitMapper fruitMapper;
+
+    @Autowired
+    private FruitCategoryMapper fruitCategoryMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 索引刷新广播频道，消息格式：节点ID|商品ID（*表示全量重建）
+     */
+    private static final String REFRESH_CHANNEL = "fruit:index:refresh";
+
+    private static final String REBUILD_ALL = "*";
+
+    // 索引字段，顺序与权重一一对应，权重沿用原SQL打分
+    private static final int NAME = 0;
+    private static final int TASTE = 1;
+    private static final int SUITABLE_CROWD = 2;
+    private static final int NUTRITION = 3;
+    private static final int DESCRIPTION = 4;
+    private static final int ORIGIN = 5;
+    private static final int CATEGORY = 6;
+    private static final double[] FIELD_WEIGHTS = {10, 8, 6, 5, 3, 2, 1};
+    private static final int FIELD_COUNT = FIELD_WEIGHTS.length;
+
+    // BM25参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 商品ID -> 已分词的商品，写操作在本对象上加锁
+    private final Map<Long, IndexedFruit> documents = new ConcurrentHashMap<>();
+
+    // 分类ID -> 分类名称
+    private volatile Map<Long, String> categoryNames = Collections.emptyMap();
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(REFRESH_CHANNEL));
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 构建失败时搜索回退到数据库，下次商品变更时重试
+            log.error("构建商品搜索索引失败", e);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @Override
+    public List<Fruit> search(String keyword, int limit) {
+        if (StringUtils.isBlank(keyword)) {
+            return Collections.emptyList();
+        }
+        return search(Collections.singletonList(keyword), limit);
+    }
+
+    @Override
+    public List<Fruit> search(List<String> keywords, int limit) {
+        Snapshot current = snapshot;
+        if (current == null || keywords == null || keywords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 查询词只取分词结果，不拆单字，避免“樱桃”命中所有含“桃”的商品
+        Set<String> terms = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            terms.addAll(tokenize(keyword, false));
+        }
+
+        int docCount = current.fruits.length;
+        double[] scores = new double[docCount];
+        for (String term : terms) {
+            Posting posting = current.postings.get(term);
+            if (posting != null) {
+                addScores(current, posting, null, scores);
+                continue;
+            }
+            // 查询词不是任何商品的词也不是双字片段（如“富士苹”），按双字片段全部命中近似原LIKE的子串匹配
+            List<String> bigrams = bigrams(term);
+            if (bigrams.isEmpty()) {
+                continue;
+            }
+            List<Posting> parts = new ArrayList<>(bigrams.size());
+            for (String bigram : bigrams) {
+                Posting part = current.postings.get(bigram);
+                if (part == null) {
+                    parts = null;
+                    break;
+                }
+                parts.add(part);
+            }
+            if (parts == null) {
+                continue;
+            }
+            boolean[] matchesAll = intersect(parts, docCount);
+            for (Posting part : parts) {
+                addScores(current, part, matchesAll, scores);
+            }
+        }
+
+        List<Integer> matched = new ArrayList<>();
+        for (int doc = 0; doc < docCount; doc++) {
+            if (scores[doc] > 0) {
+                matched.add(doc);
+            }
+        }
+        // 与原SQL一致：得分降序，推荐优先，ID升序（快照内按ID升序排列）
+        matched.sort((a, b) -> {
+            int cmp = Double.compare(scores[b], scores[a]);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Integer.compare(recommended(current.fruits[b]), recommended(current.fruits[a]));
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+
+        int size = limit > 0 ? Math.min(limit, matched.size()) : matched.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(current.fruits[matched.get(i)].getId());
+        }
+
+        // 库存、价格、限时特惠等字段变化频繁，按主键回表取最新数据，保持排序
+        Map<Long, Fruit> latest = new HashMap<>();
+        for (Fruit fruit : fruitMapper.selectByIds(ids)) {
+            latest.put(fruit.getId(), fruit);
+        }
+        List<Fruit> result = new ArrayList<>(size);
+        for (Long id : ids) {
+            Fruit fruit = latest.get(id);
+            if (fruit != null && fruit.getStatus() != null && fruit.getStatus() == 1) {
+                result.add(fruit);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按BM25累加一个词的得分
+     *
+     * @param filter 只给为true的文档加分，为null时不过滤
+     */
+    private static void addScores(Snapshot current, Posting posting, boolean[] filter, double[] scores) {
+        int docCount = current.fruits.length;
+        double df = posting.docs.length;
+        double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        for (int i = 0; i < posting.docs.length; i++) {
+            int doc = posting.docs[i];
+            if (filter != null && !filter[doc]) {
+                continue;
+            }
+            int[] freqs = posting.freqs[i];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                int tf = freqs[field];
+                if (tf == 0) {
+                    continue;
+                }
+                double norm = 1 - B + B * current.fieldLengths[doc][field] / current.avgFieldLengths[field];
+                scores[doc] += FIELD_WEIGHTS[field] * idf * tf * (K1 + 1) / (tf + K1 * norm);
+            }
+        }
+    }
+
+    /**
+     * 同时出现在所有倒排表中的文档
+     */
+    private static boolean[] intersect(List<Posting> postings, int docCount) {
+        int[] hits = new int[docCount];
+        for (Posting posting : postings) {
+            for (int doc : posting.docs) {
+                hits[doc]++;
+            }
+        }
+        boolean[] matched = new boolean[docCount];
+        for (int doc = 0; doc < docCount; doc++) {
+            matched[doc] = hits[doc] == postings.size();
+        }
+        return matched;
+    }
+
+    @Override
+    public void refresh(Long fruitId) {
+        refreshLocal(fruitId);
+        try {
+            redisTemplate.convertAndSend(REFRESH_CHANNEL,
+                    nodeId + "|" + (fruitId != null ? fruitId : REBUILD_ALL));
+        } catch (Exception e) {
+            log.error("广播商品索引刷新消息失败，商品ID: {}", fruitId, e);
+        }
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        loadCategoryNames();
+        Map<Long, IndexedFruit> indexed = new HashMap<>();
+        for (Fruit fruit : fruitMapper.selectAll()) {
+            indexed.put(fruit.getId(), analyze(fruit));
+        }
+        documents.clear();
+        documents.putAll(indexed);
+        publishSnapshot();
+        log.info("构建商品搜索索引完成，商品数: {}, 词项数: {}, 耗时: {}ms",
+                documents.size(), snapshot.postings.size(), System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            refreshLocal(REBUILD_ALL.equals(parts[1]) ? null : Long.parseLong(parts[1]));
+        } catch (Exception e) {
+            log.error("处理商品索引刷新消息失败: {}", parts[1], e);
+        }
+    }
+
+    private synchronized void refreshLocal(Long fruitId) {
+        if (fruitId == null || snapshot == null) {
+            rebuild();
+            return;
+        }
+        Fruit fruit = fruitMapper.selectById(fruitId);
+        // 只索引上架商品
+        if (fruit == null || fruit.getStatus() == null || fruit.getStatus() != 1) {
+            if (documents.remove(fruitId) == null) {
+                return;
+            }
+        } else {
+            if (fruit.getCategoryId() != null && !categoryNames.containsKey(fruit.getCategoryId().longValue())) {
+                loadCategoryNames();
+            }
+            documents.put(fruitId, analyze(fruit));
+        }
+        publishSnapshot();
+        log.debug("刷新商品搜索索引，商品ID: {}", fruitId);
+    }
+
+    private void loadCategoryNames() {
+        Map<Long, String> names = new HashMap<>();
+        for (CategoryVO category : fruitCategoryMapper.selectAllEnabled()) {
+            names.put(category.getId(), category.getName());
+        }
+        categoryNames = names;
+    }
+
+    /**
+     * 由已分词的商品生成新快照并替换
+     */
+    private void publishSnapshot() {
+        List<IndexedFruit> sorted = new ArrayList<>(new TreeMap<>(documents).values());
+        int docCount = sorted.size();
+        Fruit[] fruits = new Fruit[docCount];
+        int[][] fieldLengths = new int[docCount][];
+        double[] avgFieldLengths = new double[FIELD_COUNT];
+
+        Map<String, List<int[]>> postingLists = new HashMap<>();
+        for (int doc = 0; doc < docCount; doc++) {
+            IndexedFruit indexed = sorted.get(doc);
+            fruits[doc] = indexed.fruit;
+            fieldLengths[doc] = indexed.fieldLengths;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                avgFieldLengths[field] += indexed.fieldLengths[field];
+            }
+            for (Map.Entry<String, int[]> entry : indexed.termFreqs.entrySet()) {
+                // 第一个元素存放文档序号，其余为各字段词频
+                int[] row = new int[FIELD_COUNT + 1];
+                row[0] = doc;
+                System.arraycopy(entry.getValue(), 0, row, 1, FIELD_COUNT);
+                postingLists.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            // 避免除零，空字段按长度1计
+            avgFieldLengths[field] = docCount == 0 ? 1 : Math.max(avgFieldLengths[field] / docCount, 1);
+        }
+
+        Map<String, Posting> postings = new HashMap<>(postingLists.size() * 2);
+        for (Map.Entry<String, List<int[]>> entry : postingLists.entrySet()) {
+            List<int[]> rows = entry.getValue();
+            int[] docs = new int[rows.size()];
+            int[][] freqs = new int[rows.size()][];
+            for (int i = 0; i < rows.size(); i++) {
+                docs[i] = rows.get(i)[0];
+                freqs[i] = Arrays.copyOfRange(rows.get(i), 1, FIELD_COUNT + 1);
+            }
+            postings.put(entry.getKey(), new Posting(docs, freqs));
+        }
+        snapshot = new Snapshot(fruits, fieldLengths, avgFieldLengths, postings);
+    }
+
+    private IndexedFruit analyze(Fruit fruit) {
+        String[] fields = new String[FIELD_COUNT];
+        fields[NAME] = fruit.getName();
+        fields[TASTE] = fruit.getTaste();
+        fields[SUITABLE_CROWD] = fruit.getSuitableCrowd();
+        fields[NUTRITION] = fruit.getNutrition();
+        fields[DESCRIPTION] = fruit.getDescription();
+        fields[ORIGIN] = fruit.getOrigin();
+        if (fruit.getCategoryId() != null) {
+            String categoryName = categoryNames.get(fruit.getCategoryId().longValue());
+            fields[CATEGORY] = fruit.getCategoryId() + (categoryName != null ? " " + categoryName : "");
+        }
+
+        Map<String, int[]> termFreqs = new HashMap<>();
+        int[] fieldLengths = new int[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            List<String> words = tokenize(fields[field], false);
+            fieldLengths[field] = words.size();
+            // 文档侧额外索引多字词中的单字和双字片段，兼容原LIKE对“甜”命中“香甜”、“富士”命中“红富士”这类查询
+            for (String token : tokenize(fields[field], true)) {
+                termFreqs.computeIfAbsent(token, k -> new int[FIELD_COUNT])[field]++;
+            }
+        }
+        return new IndexedFruit(fruit, termFreqs, fieldLengths);
+    }
+
+    /**
+     * 分词，去掉标点和空白，统一小写
+     *
+     * @param withChars 是否追加多字词中的中文单字，三字及以上的词再追加双字片段
+     */
+    private static List<String> tokenize(String text, boolean withChars) {
+        if (StringUtils.isBlank(text)) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (Term term : HanLP.segment(text)) {
+            String word = term.word.trim().toLowerCase();
+            if (word.isEmpty() || term.nature.toString().startsWith("w")) {
+                continue;
+            }
+            tokens.add(word);
+            if (withChars && word.length() > 1) {
+                for (int i = 0; i < word.length(); i++) {
+                    char c = word.charAt(i);
+                    if (isHan(c)) {
+                        tokens.add(String.valueOf(c));
+                    }
+                }
+                if (word.length() > 2) {
+                    tokens.addAll(bigrams(word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 词中相邻两个中文字组成的片段，两字及以下的词返回空
+     */
+    private static List<String> bigrams(String word) {
+        if (word.length() <= 2) {
+            return Collections.emptyList();
+        }
+        List<String> bigrams = new ArrayList<>(word.length() - 1);
+        for (int i = 0; i + 1 < word.length(); i++) {
+            if (isHan(word.charAt(i)) && isHan(word.charAt(i + 1))) {
+                bigrams.add(word.substring(i, i + 2));
+            }
+        }
+        return bigrams;
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private static int recommended(Fruit fruit) {
+        return fruit.getRecommended() != null ? fruit.getRecommended() : 0;
+    }
+
+    /**
+     * 已分词的商品
+     */
+    private static final class IndexedFruit {
+
+        private final Fruit fruit;
+
+        // 词 -> 各字段词频
+        private final Map<String, int[]> termFreqs;
+
+        // 各字段词数
+        private final int[] fieldLengths;
+
+        IndexedFruit(Fruit fruit, Map<String, int[]> termFreqs, int[] fieldLengths) {
+            this.fruit = fruit;
+            this.termFreqs = termFreqs;
+            this.fieldLengths = fieldLengths;
+        }
+    }
+
+    /**
+     * 倒排表：包含该词的文档序号及各字段词频
+     */
+    private static final class Posting {
+
+        private final int[] docs;
+
+        private final int[][] freqs;
+
+        Posting(int[] docs, int[][] freqs) {
+            this.docs = docs;
+            this.freqs = freqs;
+        }
+    }
+
+    /**
+     * 不可变索引快照，文档按商品ID升序排列
+     */
+    private static final class Snapshot {
+
+        private final Fruit[] fruits;
+
+        private final int[][] fieldLengths;
+
+        private final double[] avgFieldLengths;
+
+        private final Map<String, Posting> postings;
+
+        Snapshot(Fruit[] fruits, int[][] fieldLengths, double[] avgFieldLengths, Map<String, Posting> postings) {
+            this.fruits = fruits;
+            this.fieldLengths = fieldLengths;
+            this.avgFieldLengths = avgFieldLengths;
+            this.postings = postings;
+        }
+    }
+}
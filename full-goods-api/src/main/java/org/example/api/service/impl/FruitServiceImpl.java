@@ -10,7 +10,9 @@ import org.example.api.mapper.FruitMapper;
 import org.example.api.mapper.FruitCategoryMapper;
 import org.example.api.mapper.RecommendHistoryMapper;
 import org.example.api.service.BannerService;
+import org.example.api.service.FruitSearchService;
 import org.example.api.service.FruitService;
+import org.example.api.service.HomeSnapshotService;
 import org.example.api.service.NLPService;
 import org.example.api.service.UserService;
 import org.example.api.service.ModelPredictionService;
@@ -25,6 +27,7 @@ import org.example.common.exception.BusinessException;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
@@ -61,6 +64,15 @@ public class FruitServiceImpl implements FruitService {
     
     @Autowired
     private ModelPredictionService modelPredictionService;
+    
+    @Autowired
+    private FruitSearchService fruitSearchService;
+    
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
+    // 首页推荐和新品展示数量
+    private static final int HOME_FRUIT_LIMIT = 6;
 
     @Value("${server.servlet.context-path:}")
     private String contextPath;
@@ -69,7 +81,7 @@ public class FruitServiceImpl implements FruitService {
     private String serverPort;
     
     @Override
-    //@Cacheable(value = "fruitCache", key = "'all'")
+    @Cacheable(value = "fruitCache", key = "'all'")
     public List<Fruit> getAllFruits() {
         List<Fruit> fruits = fruitMapper.selectAll();
         // 处理图片URL
@@ -80,7 +92,7 @@ public class FruitServiceImpl implements FruitService {
     }
 
     @Override
- //   @Cacheable(value = "fruitCache", key = "'id:' + #id", unless = "#result == null")
+    @Cacheable(value = "fruitCache", key = "'id:' + #id", unless = "#result == null")
     public Fruit getById(Long id) {
         if (id == null) {
             return null;
@@ -93,6 +105,18 @@ public class FruitServiceImpl implements FruitService {
         return fruit;
     }
 
+    @Override
+    @CacheEvict(value = "fruitCache", allEntries = true)
+    public void onFruitChanged(Long id) {
+        log.info("商品数据变更，清理商品缓存，商品ID: {}", id);
+        homeSnapshotService.invalidate();
+        try {
+            fruitSearchService.refresh(id);
+        } catch (Exception e) {
+            log.error("刷新商品搜索索引失败，商品ID: {}", id, e);
+        }
+    }
+
     @Override
     public List<Fruit> recommendFruits(FruitRecommendDTO recommendDTO) {
         // 使用模型预测服务进行推荐
@@ -154,11 +178,13 @@ public class FruitServiceImpl implements FruitService {
             return allFruits;
         }
         
-        // 根据关键词查询水果
-        List<Fruit> recommendList = fruitMapper.selectByKeywords(keywords);
+        // 根据关键词查询水果，索引未就绪时回退到数据库
+        int limit = recommendDTO.getLimit() != null ? recommendDTO.getLimit() : 5;
+        List<Fruit> recommendList = fruitSearchService.isReady()
+                ? fruitSearchService.search(keywords, limit)
+                : fruitMapper.selectByKeywords(keywords);
         log.info("回退推荐水果数量: {}", recommendList.size());
         
-        int limit = recommendDTO.getLimit() != null ? recommendDTO.getLimit() : 5;
         if (recommendList.size() > limit) {
             recommendList = recommendList.subList(0, limit);
         }
@@ -276,6 +302,33 @@ public class FruitServiceImpl implements FruitService {
                 .collect(Collectors.toList());
     }
     
+    @Override
+    public HomeVO getHomeData() {
+        return homeSnapshotService.get(this::buildHomeData);
+    }
+    
+    /**
+     * 从数据库构建首页数据
+     */
+    private HomeVO buildHomeData() {
+        HomeVO home = new HomeVO();
+        home.setBanners(bannerService.getAllEnabled());
+        home.setCategories(getCategories());
+        home.setRecommendFruits(toFruitVOList(getRecommendFruits(HOME_FRUIT_LIMIT, true)));
+        home.setNewFruits(toFruitVOList(getNewFruits(HOME_FRUIT_LIMIT)));
+        return home;
+    }
+    
+    private static List<FruitVO> toFruitVOList(List<Fruit> fruits) {
+        return fruits.stream()
+                .map(fruit -> {
+                    FruitVO vo = new FruitVO();
+                    BeanUtils.copyProperties(fruit, vo);
+                    return vo;
+                })
+                .collect(Collectors.toList());
+    }
+    
     @Override
     public List<Fruit> getFruitsByCategory(String category) {
         if (StringUtils.isBlank(category)) {
@@ -294,7 +347,21 @@ public class FruitServiceImpl implements FruitService {
     
     @Override
     public List<Fruit> searchByConditions(String search, String category, Integer status) {
-        // 实现搜索逻辑
+        // 有搜索词时走索引；索引只包含上架商品，与SQL中的 status = 1 条件一致
+        if (StringUtils.isNotBlank(search) && fruitSearchService.isReady()) {
+            if (status != null && status != 1) {
+                return Collections.emptyList();
+            }
+            List<Fruit> matched = new ArrayList<>();
+            for (Fruit fruit : fruitSearchService.search(search, 0)) {
+                if (StringUtils.isBlank(category) || category.equals(String.valueOf(fruit.getCategoryId()))) {
+                    matched.add(fruit);
+                }
+            }
+            // 与SQL一致按ID升序
+            matched.sort(Comparator.comparing(Fruit::getId));
+            return matched;
+        }
         return fruitMapper.selectByConditions(search, category, status);
     }
     
@@ -303,7 +370,10 @@ public class FruitServiceImpl implements FruitService {
         if (StringUtils.isBlank(keyword)) {
             return Collections.emptyList();
         }
-        // 使用selectByGeneralKeyword替代selectByKeyword，因为它接受单个keyword参数
+        if (fruitSearchService.isReady()) {
+            return fruitSearchService.search(keyword, 0);
+        }
+        // 索引未就绪时回退到数据库查询
         return fruitMapper.selectByGeneralKeyword(keyword);
     }
     
@@ -0,0 +1,612 @@
+package org.example.api.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.MessageCampaignMapper;
+import org.example.api.mapper.MessageMapper;
+import org.example.api.mapper.UserMapper;
+import org.example.api.service.MessageCampaignService;
+import org.example.api.service.MessageCounterService;
+import org.example.api.service.MessageOutboxService;
+import org.example.api.service.MessageTemplateRenderer;
+import org.example.api.util.TextTemplate;
+import org.example.common.entity.Message;
+import org.example.common.entity.MessageCampaign;
+import org.example.common.response.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 消息群发活动服务实现类
+ * 目标用户按ID键集分页逐批读取，每批渲染后用一条多行INSERT写库，写库和推进进度在同一事务中，
+ * 写库后按用户推送WebSocket通知。内存中只保留当前一批消息，发送量不影响堆内存占用。
+ * 进度（已发送到的用户ID）保存在活动表中，暂停后恢复、节点宕机后由其他节点接管都从记录的位置继续，不会重复发送。
+ */
+@Slf4j
+@Service
+public class MessageCampaignServiceImpl implements MessageCampaignService {
+
+    public static final int STATUS_RUNNING = 1;
+    public static final int STATUS_PAUSED = 2;
+    public static final int STATUS_COMPLETED = 3;
+    public static final int STATUS_CANCELLED = 4;
+    public static final int STATUS_FAILED = 5;
+
+    // 正常状态的用户
+    private static final int USER_STATUS_NORMAL = 1;
+
+    // 默认消息类型：4-优惠
+    private static final int DEFAULT_MESSAGE_TYPE = 4;
+
+    private static final int ERROR_MESSAGE_MAX_LENGTH = 500;
+
+    @Autowired
+    private MessageCampaignMapper campaignMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private MessageTemplateRenderer messageTemplateRenderer;
+
+    @Autowired
+    private MessageOutboxService messageOutboxService;
+
+    @Autowired
+    private MessageCounterService messageCounterService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 同时发送的活动数，超出的活动排队等待
+    @Value("${message-campaign.worker-threads:2}")
+    private int workerThreads;
+
+    // 每批发送的用户数
+    @Value("${message-campaign.chunk-size:500}")
+    private int defaultChunkSize;
+
+    @Value("${message-campaign.max-chunk-size:1000}")
+    private int maxChunkSize;
+
+    // 未指定速率的活动每秒最多发送的消息数
+    @Value("${message-campaign.default-rate-limit:2000}")
+    private int defaultRateLimit;
+
+    @Value("${message-campaign.max-rate-limit:10000}")
+    private int maxRateLimit;
+
+    // 发送中的活动超过该时间未推进进度，视为发送节点已宕机，由其他节点接管
+    @Value("${message-campaign.stale-seconds:60}")
+    private long staleSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 本节点正在发送或排队等待发送的活动
+    private final Set<Long> active = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "message-campaign-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        running = true;
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("群发活动发送线程未在限定时间内退出，活动ID: {}", active);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public Result<MessageCampaign> createCampaign(Map<String, Object> request) {
+        try {
+            if (request == null) {
+                return Result.validateFailed("活动参数不能为空");
+            }
+
+            MessageCampaign campaign = new MessageCampaign();
+            campaign.setName(getString(request, "name"));
+            campaign.setTemplateCode(getString(request, "templateCode"));
+            campaign.setTitle(getString(request, "title"));
+            campaign.setContent(getString(request, "content"));
+            campaign.setIconUrl(getString(request, "iconUrl"));
+            campaign.setLinkUrl(getString(request, "linkUrl"));
+            campaign.setCreateBy(getString(request, "createBy"));
+            Long messageType = getLong(request.get("messageType"));
+            campaign.setMessageType(messageType != null ? messageType.intValue() : DEFAULT_MESSAGE_TYPE);
+
+            if (StringUtils.hasText(campaign.getTemplateCode())) {
+                MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(campaign.getTemplateCode());
+                if (template == null) {
+                    return Result.failed("消息模板不存在");
+                }
+                if (!template.isEnabled()) {
+                    return Result.failed("消息模板未启用");
+                }
+            } else if (!StringUtils.hasText(campaign.getTitle()) || !StringUtils.hasText(campaign.getContent())) {
+                return Result.validateFailed("请指定消息模板，或填写消息标题和内容");
+            }
+
+            Object params = request.get("params");
+            if (params instanceof Map) {
+                campaign.setParams(objectMapper.writeValueAsString(params));
+            }
+
+            Object userIds = request.get("userIds");
+            if (userIds instanceof Collection && !((Collection<?>) userIds).isEmpty()) {
+                TreeSet<Long> targets = new TreeSet<>();
+                for (Object userId : (Collection<?>) userIds) {
+                    Long id = getLong(userId);
+                    if (id != null && id > 0) {
+                        targets.add(id);
+                    }
+                }
+                if (targets.isEmpty()) {
+                    return Result.validateFailed("用户ID格式不正确");
+                }
+                campaign.setTargetUserIds(StringUtils.collectionToCommaDelimitedString(targets));
+                campaign.setTotalCount((long) targets.size());
+            } else {
+                Long total = userMapper.countByStatus(USER_STATUS_NORMAL);
+                campaign.setTotalCount(total != null ? total : 0L);
+            }
+
+            Long chunkSize = getLong(request.get("chunkSize"));
+            campaign.setChunkSize(chunkSize != null ? (int) Math.max(1, Math.min(chunkSize, maxChunkSize)) : defaultChunkSize);
+            Long rateLimit = getLong(request.get("rateLimit"));
+            campaign.setRateLimit(rateLimit != null ? (int) Math.max(0, Math.min(rateLimit, maxRateLimit)) : 0);
+
+            campaign.setStatus(STATUS_RUNNING);
+            campaign.setLastUserId(0L);
+            campaign.setSentCount(0L);
+            campaign.setOwnerNode(nodeId);
+            campaignMapper.insert(campaign);
+            log.info("群发活动已创建，活动ID: {}, 目标用户数: {}, 每批: {}, 速率上限: {}/s", campaign.getId(),
+                    campaign.getTotalCount(), campaign.getChunkSize(), effectiveRateLimit(campaign));
+
+            submit(campaign.getId());
+            campaign.setTargetUserIds(null);
+            return Result.success(campaign, "群发活动已开始发送");
+        } catch (Exception e) {
+            log.error("创建群发活动失败", e);
+            return Result.failed("创建群发活动失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Result<MessageCampaign> getCampaign(Long id) {
+        MessageCampaign campaign = campaignMapper.selectById(id);
+        if (campaign == null) {
+            return Result.failed("群发活动不存在");
+        }
+        // 指定用户可能很多，不随详情返回
+        campaign.setTargetUserIds(null);
+        return Result.success(campaign);
+    }
+
+    @Override
+    public Result<Map<String, Object>> getQueueStatus() {
+        try {
+            List<MessageCampaign> campaigns = campaignMapper.selectByStatuses(Arrays.asList(STATUS_RUNNING, STATUS_PAUSED));
+            long queueSize = 0;
+            int processing = 0;
+            int paused = 0;
+            for (MessageCampaign campaign : campaigns) {
+                queueSize += Math.max(0L, campaign.getTotalCount() - campaign.getSentCount());
+                if (campaign.getStatus() == STATUS_RUNNING) {
+                    processing++;
+                } else {
+                    paused++;
+                }
+            }
+
+            long failed = 0;
+            long completed = 0;
+            for (Map<String, Object> row : campaignMapper.countGroupByStatus()) {
+                int status = ((Number) row.get("status")).intValue();
+                if (status == STATUS_FAILED) {
+                    failed = ((Number) row.get("count")).longValue();
+                }
+                completed += ((Number) row.get("sentCount")).longValue();
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("queueSize", queueSize);
+            result.put("processing", processing);
+            result.put("paused", paused);
+            result.put("failed", failed);
+            result.put("completed", completed);
+            result.put("isPaused", processing == 0 && paused > 0);
+            result.put("campaigns", campaigns);
+            return Result.success(result);
+        } catch (Exception e) {
+            log.error("获取群发队列状态失败", e);
+            return Result.failed("获取群发队列状态失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Result<Boolean> pauseCampaign(Long id) {
+        // 发送线程在下一批推进进度时发现状态已变化，放弃该批并退出
+        if (campaignMapper.pause(id) > 0) {
+            log.info("群发活动已暂停，活动ID: {}", id);
+            return Result.success(true, "群发活动已暂停");
+        }
+        return Result.failed("群发活动不存在或不在发送中");
+    }
+
+    @Override
+    public Result<Boolean> resumeCampaign(Long id) {
+        if (campaignMapper.resume(id, nodeId) > 0) {
+            log.info("群发活动已恢复，活动ID: {}", id);
+            submit(id);
+            return Result.success(true, "群发活动已恢复发送");
+        }
+        return Result.failed("群发活动不存在或不能恢复");
+    }
+
+    @Override
+    public Result<Boolean> cancelCampaign(Long id) {
+        if (campaignMapper.cancel(id) > 0) {
+            log.info("群发活动已取消，活动ID: {}", id);
+            return Result.success(true, "群发活动已取消");
+        }
+        return Result.failed("群发活动不存在或已结束");
+    }
+
+    @Override
+    public Result<Integer> pauseAll() {
+        int count = 0;
+        for (MessageCampaign campaign : campaignMapper.selectByStatuses(Collections.singletonList(STATUS_RUNNING))) {
+            if (campaignMapper.pause(campaign.getId()) > 0) {
+                count++;
+            }
+        }
+        log.info("已暂停全部群发活动，数量: {}", count);
+        return Result.success(count);
+    }
+
+    @Override
+    public Result<Integer> resumeAll() {
+        int count = 0;
+        for (MessageCampaign campaign : campaignMapper.selectByStatuses(Collections.singletonList(STATUS_PAUSED))) {
+            if (campaignMapper.resume(campaign.getId(), nodeId) > 0) {
+                submit(campaign.getId());
+                count++;
+            }
+        }
+        log.info("已恢复全部群发活动，数量: {}", count);
+        return Result.success(count);
+    }
+
+    @Override
+    public Result<Integer> cancelAll() {
+        int count = 0;
+        List<MessageCampaign> campaigns = campaignMapper.selectByStatuses(
+                Arrays.asList(STATUS_RUNNING, STATUS_PAUSED, STATUS_FAILED));
+        for (MessageCampaign campaign : campaigns) {
+            if (campaignMapper.cancel(campaign.getId()) > 0) {
+                count++;
+            }
+        }
+        log.info("已取消全部未结束的群发活动，数量: {}", count);
+        return Result.success(count);
+    }
+
+    /**
+     * 接管心跳超时的活动，应用启动后第一次执行时恢复上次宕机前未发完的活动
+     */
+    @Scheduled(initialDelayString = "${message-campaign.recover-initial-delay-ms:10000}",
+            fixedDelayString = "${message-campaign.recover-interval-ms:15000}")
+    public void recoverStalled() {
+        if (!running) {
+            return;
+        }
+        try {
+            for (Long id : campaignMapper.selectStalledIds(staleSeconds)) {
+                if (active.contains(id)) {
+                    continue;
+                }
+                if (campaignMapper.claim(id, nodeId, staleSeconds) > 0) {
+                    log.warn("接管心跳超时的群发活动，活动ID: {}", id);
+                    submit(id);
+                }
+            }
+        } catch (Exception e) {
+            log.error("恢复群发活动失败", e);
+        }
+    }
+
+    private void submit(Long id) {
+        if (running && active.add(id)) {
+            executor.execute(() -> run(id));
+        }
+    }
+
+    private void run(Long id) {
+        try {
+            MessageCampaign campaign = campaignMapper.selectById(id);
+            // 排队期间可能已被暂停、取消或由其他节点接管
+            if (campaign == null || campaign.getStatus() != STATUS_RUNNING || !nodeId.equals(campaign.getOwnerNode())) {
+                return;
+            }
+            send(campaign);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(id);
+        } catch (Exception e) {
+            log.error("群发活动发送失败，活动ID: {}", id, e);
+            try {
+                campaignMapper.finish(id, nodeId, STATUS_FAILED, truncate(e.getMessage()));
+            } catch (Exception ex) {
+                // 状态仍为发送中，心跳超时后重新接管
+                log.error("更新群发活动状态失败，活动ID: {}", id, ex);
+            }
+        } finally {
+            active.remove(id);
+        }
+    }
+
+    private void send(MessageCampaign campaign) throws Exception {
+        Long id = campaign.getId();
+        CampaignContent content = compile(campaign);
+        if (content == null) {
+            campaignMapper.finish(id, nodeId, STATUS_FAILED, "消息模板不存在或未启用");
+            log.warn("群发活动的消息模板不存在或未启用，活动ID: {}, 模板编码: {}", id, campaign.getTemplateCode());
+            return;
+        }
+
+        long[] targets = parseTargets(campaign.getTargetUserIds());
+        int rateLimit = effectiveRateLimit(campaign);
+        // 每批不超过一秒的发送量，进度和心跳至少每秒推进一次
+        int chunkSize = Math.max(1, Math.min(campaign.getChunkSize(), rateLimit));
+        Map<String, Object> params = parseParams(campaign.getParams());
+        StringBuilder buffer = new StringBuilder(256);
+
+        long lastUserId = campaign.getLastUserId();
+        long sent = 0;
+        long startNanos = System.nanoTime();
+        log.info("群发活动开始发送，活动ID: {}, 起始用户ID: {}, 已发送: {}", id, lastUserId, campaign.getSentCount());
+
+        while (true) {
+            if (!running) {
+                release(id);
+                log.info("应用关闭，群发活动交由其他节点继续发送，活动ID: {}, 进度: {}", id, lastUserId);
+                return;
+            }
+
+            List<Long> userIds = targets != null ? nextTargets(targets, lastUserId, chunkSize)
+                    : userMapper.selectIdsByStatusAfter(USER_STATUS_NORMAL, lastUserId, chunkSize);
+            if (userIds.isEmpty()) {
+                campaignMapper.finish(id, nodeId, STATUS_COMPLETED, null);
+                log.info("群发活动发送完成，活动ID: {}, 本次发送: {}, 耗时: {}ms", id, sent,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                return;
+            }
+
+            Date now = new Date();
+            List<Message> messages = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                params.put("userId", userId);
+                messages.add(content.toMessage(userId, params, buffer, now));
+            }
+
+            // 先按原进度推进，成功后再写消息；活动已暂停、取消或被接管时整批不写
+            final long fromUserId = lastUserId;
+            final long toUserId = userIds.get(userIds.size() - 1);
+            Boolean advanced = transactionTemplate.execute(status -> {
+                if (campaignMapper.advance(id, nodeId, fromUserId, toUserId, messages.size()) == 0) {
+                    return false;
+                }
+                messageMapper.batchInsert(messages);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(advanced)) {
+                log.info("群发活动已暂停、取消或由其他节点发送，本节点停止发送，活动ID: {}, 进度: {}", id, fromUserId);
+                return;
+            }
+            lastUserId = toUserId;
+            messageCounterService.onInserted(messages);
+            messageOutboxService.pushCoalesced(messages);
+
+            // 按速率上限补足本批应占用的时间
+            sent += messages.size();
+            long waitNanos = sent * TimeUnit.SECONDS.toNanos(1) / rateLimit - (System.nanoTime() - startNanos);
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+    private CampaignContent compile(MessageCampaign campaign) {
+        if (!StringUtils.hasText(campaign.getTemplateCode())) {
+            return new CampaignContent(campaign);
+        }
+        MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(campaign.getTemplateCode());
+        if (template == null || !template.isEnabled()) {
+            return null;
+        }
+        return new CampaignContent(campaign, template);
+    }
+
+    private void release(Long id) {
+        try {
+            campaignMapper.release(id, nodeId);
+        } catch (Exception e) {
+            log.warn("释放群发活动失败，心跳超时后由其他节点接管，活动ID: {}", id, e);
+        }
+    }
+
+    private int effectiveRateLimit(MessageCampaign campaign) {
+        Integer rateLimit = campaign.getRateLimit();
+        return rateLimit != null && rateLimit > 0 ? rateLimit : defaultRateLimit;
+    }
+
+    private Map<String, Object> parseParams(String json) throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        if (StringUtils.hasText(json)) {
+            params.putAll(objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {}));
+        }
+        return params;
+    }
+
+    /**
+     * 解析指定用户ID，为空表示发送给全部正常用户
+     */
+    private static long[] parseTargets(String targetUserIds) {
+        if (!StringUtils.hasText(targetUserIds)) {
+            return null;
+        }
+        String[] parts = StringUtils.commaDelimitedListToStringArray(targetUserIds);
+        long[] targets = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            targets[i] = Long.parseLong(parts[i].trim());
+        }
+        Arrays.sort(targets);
+        return targets;
+    }
+
+    /**
+     * 指定用户中ID大于进度的下一批
+     */
+    private static List<Long> nextTargets(long[] targets, long afterId, int limit) {
+        int index = Arrays.binarySearch(targets, afterId);
+        int from = index >= 0 ? index + 1 : -index - 1;
+        int to = Math.min(targets.length, from + limit);
+        List<Long> userIds = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            userIds.add(targets[i]);
+        }
+        return userIds;
+    }
+
+    private static String getString(Map<String, Object> request, String key) {
+        Object value = request.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Long getLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String && StringUtils.hasText((String) value)) {
+            try {
+                return Long.parseLong(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= ERROR_MESSAGE_MAX_LENGTH) {
+            return message;
+        }
+        return message.substring(0, ERROR_MESSAGE_MAX_LENGTH);
+    }
+
+    /**
+     * 活动的消息内容，使用消息模板或活动自己的标题和内容，编译一次后渲染整个活动
+     */
+    private static final class CampaignContent {
+
+        private final Long campaignId;
+        private final Integer messageType;
+        private final String iconUrl;
+        private final MessageTemplateRenderer.CompiledTemplate template;
+        private final TextTemplate title;
+        private final TextTemplate content;
+        private final TextTemplate link;
+
+        CampaignContent(MessageCampaign campaign) {
+            this.campaignId = campaign.getId();
+            this.messageType = campaign.getMessageType();
+            this.iconUrl = campaign.getIconUrl();
+            this.template = null;
+            this.title = TextTemplate.compile(campaign.getTitle());
+            this.content = TextTemplate.compile(campaign.getContent());
+            this.link = TextTemplate.compile(campaign.getLinkUrl());
+        }
+
+        CampaignContent(MessageCampaign campaign, MessageTemplateRenderer.CompiledTemplate template) {
+            this.campaignId = campaign.getId();
+            this.messageType = template.getMessageType() != null ? template.getMessageType() : campaign.getMessageType();
+            this.iconUrl = StringUtils.hasText(campaign.getIconUrl()) ? campaign.getIconUrl() : template.getIconUrl();
+            this.template = template;
+            this.title = null;
+            this.content = null;
+            this.link = null;
+        }
+
+        Message toMessage(Long userId, Map<String, Object> params, StringBuilder buffer, Date now) {
+            Message message = new Message();
+            message.setUserId(userId);
+            message.setMessageType(messageType);
+            if (template != null) {
+                message.setTitle(template.renderTitle(params, buffer));
+                message.setContent(template.renderContent(params, buffer));
+                message.setLinkUrl(template.renderLink(params, buffer));
+            } else {
+                message.setTitle(title.render(params, buffer));
+                message.setContent(content.render(params, buffer));
+                message.setLinkUrl(link != null ? link.render(params, buffer) : null);
+            }
+            message.setIconUrl(iconUrl);
+            message.setStatus(0); // 0-未读
+            message.setSenderType(1); // 1-系统
+            message.setCreateTime(now);
+            message.setUpdateTime(now);
+            message.setRemark("群发活动ID: " + campaignId);
+            return message;
+        }
+    }
+}
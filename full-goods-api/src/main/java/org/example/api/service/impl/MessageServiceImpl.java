@@ -4,10 +4,11 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.example.common.entity.Message;
-import org.example.common.entity.MessageTemplate;
 import org.example.api.mapper.MessageMapper;
-import org.example.api.mapper.MessageTemplateMapper;
+import org.example.api.service.MessageCounterService;
+import org.example.api.service.MessageOutboxService;
 import org.example.api.service.MessageService;
+import org.example.api.service.MessageTemplateRenderer;
 import org.example.api.service.WebSocketMessageService;
 import org.example.common.response.Result;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,11 +29,17 @@ public class MessageServiceImpl implements MessageService {
     private MessageMapper messageMapper;
 
     @Autowired
-    private MessageTemplateMapper messageTemplateMapper;
+    private MessageTemplateRenderer messageTemplateRenderer;
 
     @Autowired
     private WebSocketMessageService webSocketMessageService;
 
+    @Autowired
+    private MessageOutboxService messageOutboxService;
+
+    @Autowired
+    private MessageCounterService messageCounterService;
+
     @Override
     @Transactional
     public Result<Boolean> sendMessage(Message message) {
@@ -48,6 +55,7 @@ public class MessageServiceImpl implements MessageService {
             
             int result = messageMapper.insert(message);
             if (result > 0) {
+                messageCounterService.onInserted(Collections.singletonList(message));
                 // 发送 WebSocket 推送通知
                 try {
                     Map<String, Object> wsMessage = new HashMap<>();
@@ -92,25 +100,9 @@ public class MessageServiceImpl implements MessageService {
             
             int result = messageMapper.batchInsert(messages);
             if (result > 0) {
-                // 批量发送 WebSocket 推送通知
-                for (Message message : messages) {
-                    try {
-                        Map<String, Object> wsMessage = new HashMap<>();
-                        wsMessage.put("type", "new_message");
-                        wsMessage.put("messageId", message.getId());
-                        wsMessage.put("title", message.getTitle());
-                        wsMessage.put("content", message.getContent());
-                        wsMessage.put("messageType", message.getMessageType());
-                        wsMessage.put("createTime", message.getCreateTime());
-                        wsMessage.put("showNotification", true);
-                        
-                        webSocketMessageService.sendMessageToUser(message.getUserId(), wsMessage);
-                        log.info("批量WebSocket推送消息成功，用户ID: {}, 消息ID: {}", message.getUserId(), message.getId());
-                    } catch (Exception e) {
-                        log.error("批量WebSocket推送消息失败，用户ID: {}, 消息ID: {}", message.getUserId(), message.getId(), e);
-                        // WebSocket推送失败不影响消息发送结果
-                    }
-                }
+                messageCounterService.onInserted(messages);
+                // 批量发送 WebSocket 推送通知，同一用户合并为一次推送
+                messageOutboxService.pushCoalesced(messages);
                 return Result.success(true, "批量消息发送成功");
             } else {
                 return Result.failed("批量消息发送失败");
@@ -122,27 +114,27 @@ public class MessageServiceImpl implements MessageService {
     }
 
     @Override
-    @Transactional
     public Result<Boolean> sendMessageByTemplate(String templateCode, Long userId, Map<String, Object> params) {
         try {
             if (!StringUtils.hasText(templateCode) || userId == null) {
                 return Result.failed("模板编码和用户ID不能为空");
             }
             
-            // 获取模板
-            MessageTemplate template = messageTemplateMapper.selectByCode(templateCode);
+            // 获取编译后的模板
+            MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(templateCode);
             if (template == null) {
                 return Result.failed("消息模板不存在");
             }
             
-            if (template.getStatus() != 1) {
+            if (!template.isEnabled()) {
                 return Result.failed("消息模板未启用");
             }
             
             // 渲染模板内容
-            String title = renderTemplateContent(template.getTitle(), params);
-            String content = renderTemplateContent(template.getContent(), params);
-            String linkUrl = renderTemplateContent(template.getLinkTemplate(), params);
+            StringBuilder buffer = new StringBuilder(256);
+            String title = template.renderTitle(params, buffer);
+            String content = template.renderContent(params, buffer);
+            String linkUrl = template.renderLink(params, buffer);
             
             // 创建消息
             Message message = new Message();
@@ -156,29 +148,9 @@ public class MessageServiceImpl implements MessageService {
             message.setCreateTime(new Date());
             message.setUpdateTime(new Date());
             
-            int result = messageMapper.insert(message);
-            if (result > 0) {
-                // 发送 WebSocket 推送通知
-                try {
-                    Map<String, Object> wsMessage = new HashMap<>();
-                    wsMessage.put("type", "new_message");
-                    wsMessage.put("messageId", message.getId());
-                    wsMessage.put("title", message.getTitle());
-                    wsMessage.put("content", message.getContent());
-                    wsMessage.put("messageType", message.getMessageType());
-                    wsMessage.put("createTime", message.getCreateTime());
-                    wsMessage.put("showNotification", true);
-                    
-                    webSocketMessageService.sendMessageToUser(message.getUserId(), wsMessage);
-                    log.info("模板消息WebSocket推送成功，用户ID: {}, 消息ID: {}", message.getUserId(), message.getId());
-                } catch (Exception e) {
-                    log.error("模板消息WebSocket推送失败，用户ID: {}, 消息ID: {}", message.getUserId(), message.getId(), e);
-                    // WebSocket推送失败不影响消息发送结果
-                }
-                return Result.success(true, "模板消息发送成功");
-            } else {
-                return Result.failed("模板消息发送失败");
-            }
+            // 合并批量写库，写库后推送
+            messageOutboxService.submit(message, true);
+            return Result.success(true, "模板消息发送成功");
         } catch (Exception e) {
             log.error("根据模板发送消息失败", e);
             return Result.failed("模板消息发送失败: " + e.getMessage());
@@ -199,7 +171,7 @@ public class MessageServiceImpl implements MessageService {
             message.setCreateTime(new Date());
             message.setUpdateTime(new Date());
             
-            return sendMessage(message);
+            return submitNotification(message);
         } catch (Exception e) {
             log.error("发送物流通知失败", e);
             return Result.failed("发送物流通知失败: " + e.getMessage());
@@ -220,7 +192,7 @@ public class MessageServiceImpl implements MessageService {
             message.setCreateTime(new Date());
             message.setUpdateTime(new Date());
             
-            return sendMessage(message);
+            return submitNotification(message);
         } catch (Exception e) {
             log.error("发送系统通知失败", e);
             return Result.failed("发送系统通知失败: " + e.getMessage());
@@ -241,7 +213,7 @@ public class MessageServiceImpl implements MessageService {
             message.setCreateTime(new Date());
             message.setUpdateTime(new Date());
             
-            return sendMessage(message);
+            return submitNotification(message);
         } catch (Exception e) {
             log.error("发送优惠活动通知失败", e);
             return Result.failed("发送优惠活动通知失败: " + e.getMessage());
@@ -323,7 +295,7 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("用户ID不能为空");
             }
             
-            int count = messageMapper.countUnreadByUserId(userId);
+            int count = messageCounterService.getCounters(userId).unread();
             return Result.success(count);
         } catch (Exception e) {
             log.error("获取用户未读消息数量失败", e);
@@ -338,7 +310,7 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("用户ID和消息类型不能为空");
             }
             
-            int count = messageMapper.countUnreadByUserIdAndType(userId, messageType);
+            int count = messageCounterService.getCounters(userId).unread(messageType);
             return Result.success(count);
         } catch (Exception e) {
             log.error("根据类型获取用户未读消息数量失败", e);
@@ -369,8 +341,10 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID和用户ID不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(Collections.singletonList(messageId));
             int result = messageMapper.markAsRead(messageId);
             if (result > 0) {
+                messageCounterService.onRead(before);
                 // 发送 WebSocket 推送通知消息状态更新
                 try {
                     Map<String, Object> wsMessage = new HashMap<>();
@@ -403,8 +377,10 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID列表和用户ID不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(messageIds);
             int result = messageMapper.batchMarkAsRead(messageIds);
             if (result > 0) {
+                messageCounterService.onRead(before);
                 // 发送 WebSocket 推送通知批量消息状态更新
                 try {
                     Map<String, Object> wsMessage = new HashMap<>();
@@ -438,6 +414,9 @@ public class MessageServiceImpl implements MessageService {
             }
             
             int result = messageMapper.markAllAsReadByUserId(userId);
+            if (result > 0) {
+                messageCounterService.onAllRead(userId, null);
+            }
             return result > 0 ? Result.success(true, "全部消息已标记为已读") : Result.failed("标记全部消息已读失败");
         } catch (Exception e) {
             log.error("标记全部消息已读失败", e);
@@ -454,6 +433,9 @@ public class MessageServiceImpl implements MessageService {
             }
             
             int result = messageMapper.markAsReadByUserIdAndType(userId, messageType);
+            if (result > 0) {
+                messageCounterService.onAllRead(userId, messageType);
+            }
             return result > 0 ? Result.success(true, "该类型全部消息已标记为已读") : Result.failed("标记该类型全部消息已读失败");
         } catch (Exception e) {
             log.error("根据类型标记全部消息已读失败", e);
@@ -469,7 +451,11 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID和用户ID不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(Collections.singletonList(messageId));
             int result = messageMapper.deleteById(messageId);
+            if (result > 0) {
+                messageCounterService.onDeleted(before);
+            }
             return result > 0 ? Result.success(true, "消息删除成功") : Result.failed("消息删除失败");
         } catch (Exception e) {
             log.error("删除消息失败", e);
@@ -485,7 +471,11 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID列表和用户ID不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(messageIds);
             int result = messageMapper.batchDelete(messageIds);
+            if (result > 0) {
+                messageCounterService.onDeleted(before);
+            }
             return result > 0 ? Result.success(true, "批量删除消息成功") : Result.failed("批量删除消息失败");
         } catch (Exception e) {
             log.error("批量删除消息失败", e);
@@ -536,29 +526,25 @@ public class MessageServiceImpl implements MessageService {
             
             Map<String, Object> statistics = new HashMap<>();
             
-            // 总消息数 - 通过查询所有消息计算
-            List<Message> allMessages = messageMapper.selectByUserId(userId);
-            int totalCount = allMessages.size();
-            statistics.put("totalCount", totalCount);
+            // 计数来自用户消息计数，不查询消息表
+            MessageCounterService.Counters counters = messageCounterService.getCounters(userId);
+            
+            // 总消息数
+            statistics.put("totalCount", counters.total());
             
             // 未读消息数
-            int unreadCount = messageMapper.countUnreadByUserId(userId);
-            statistics.put("unreadCount", unreadCount);
+            statistics.put("unreadCount", counters.unread());
             
-            // 各类型消息数量
+            // 各类型消息数量（与原实现一致，统计的是各类型未读数）
             Map<String, Integer> typeCount = new HashMap<>();
-            typeCount.put("logistics", messageMapper.countUnreadByUserIdAndType(userId, 1)); // 1-物流
-            typeCount.put("system", messageMapper.countUnreadByUserIdAndType(userId, 3)); // 3-系统
-            typeCount.put("promotion", messageMapper.countUnreadByUserIdAndType(userId, 4)); // 4-优惠
-            typeCount.put("service", messageMapper.countUnreadByUserIdAndType(userId, 2)); // 2-客服
+            typeCount.put("logistics", counters.unread(1)); // 1-物流
+            typeCount.put("system", counters.unread(3)); // 3-系统
+            typeCount.put("promotion", counters.unread(4)); // 4-优惠
+            typeCount.put("service", counters.unread(2)); // 2-客服
             statistics.put("typeCount", typeCount);
             
             // 各类型未读消息数量
-            Map<String, Integer> unreadTypeCount = new HashMap<>();
-            unreadTypeCount.put("logistics", messageMapper.countUnreadByUserIdAndType(userId, 1));
-            unreadTypeCount.put("system", messageMapper.countUnreadByUserIdAndType(userId, 3));
-            unreadTypeCount.put("promotion", messageMapper.countUnreadByUserIdAndType(userId, 4));
-            unreadTypeCount.put("service", messageMapper.countUnreadByUserIdAndType(userId, 2));
+            Map<String, Integer> unreadTypeCount = new HashMap<>(typeCount);
             statistics.put("unreadTypeCount", unreadTypeCount);
             
             return Result.success(statistics);
@@ -632,6 +618,7 @@ public class MessageServiceImpl implements MessageService {
             
             int result = messageMapper.insert(replyMessage);
             if (result > 0) {
+                messageCounterService.onInserted(Collections.singletonList(replyMessage));
                 // 发送 WebSocket 推送通知
                 try {
                     Map<String, Object> wsMessage = new HashMap<>();
@@ -665,8 +652,10 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(Collections.singletonList(messageId));
             int result = messageMapper.markAsRead(messageId);
             if (result > 0) {
+                messageCounterService.onRead(before);
                 return Result.success(true, "标记消息已读成功");
             } else {
                 return Result.failed("标记消息已读失败");
@@ -685,8 +674,10 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID列表不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(messageIds);
             int result = messageMapper.batchMarkAsRead(messageIds);
             if (result > 0) {
+                messageCounterService.onRead(before);
                 return Result.success(true, "批量标记消息已读成功");
             } else {
                 return Result.failed("批量标记消息已读失败");
@@ -705,8 +696,10 @@ public class MessageServiceImpl implements MessageService {
                 return Result.failed("消息ID列表不能为空");
             }
             
+            List<Message> before = messageMapper.selectByIds(messageIds);
             int result = messageMapper.batchDelete(messageIds);
             if (result > 0) {
+                messageCounterService.onDeleted(before);
                 return Result.success(true, "批量删除消息成功");
             } else {
                 return Result.failed("批量删除消息失败");
@@ -753,27 +746,6 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
-    /**
-     * 渲染模板内容
-     * @param template 模板字符串
-     * @param params 参数映射
-     * @return 渲染后的内容
-     */
-    private String renderTemplateContent(String template, Map<String, Object> params) {
-        if (!StringUtils.hasText(template) || params == null || params.isEmpty()) {
-            return template;
-        }
-        
-        String result = template;
-        for (Map.Entry<String, Object> entry : params.entrySet()) {
-            String placeholder = "${" + entry.getKey() + "}";
-            String value = entry.getValue() != null ? entry.getValue().toString() : "";
-            result = result.replace(placeholder, value);
-        }
-        
-        return result;
-    }
-
     @Override
     public Result<PageInfo<Map<String, Object>>> getUserChatList(Integer page, Integer size, String keyword) {
         try {
@@ -828,4 +800,12 @@ public class MessageServiceImpl implements MessageService {
             return Result.failed("获取用户聊天记录失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 通知消息与其他请求合并批量写库，写库后推送；客服聊天等需要立即拿到消息ID的场景仍使用sendMessage
+     */
+    private Result<Boolean> submitNotification(Message message) {
+        messageOutboxService.submit(message, true);
+        return Result.success(true, "消息发送成功");
+    }
+}
@@ -4,6 +4,7 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.mapper.MessageTemplateMapper;
+import org.example.api.service.MessageTemplateRenderer;
 import org.example.api.service.MessageTemplateService;
 import org.example.common.entity.MessageTemplate;
 import org.example.common.response.Result;
@@ -12,8 +13,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 消息模板服务实现类
@@ -25,8 +24,8 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
     @Autowired
     private MessageTemplateMapper messageTemplateMapper;
 
-    // 模板变量匹配正则表达式
-    private static final Pattern TEMPLATE_PATTERN = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+    @Autowired
+    private MessageTemplateRenderer messageTemplateRenderer;
 
     @Override
     public Result<Boolean> createTemplate(MessageTemplate template) {
@@ -74,6 +73,10 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
             template.setUpdateTime(new Date());
             int result = messageTemplateMapper.update(template);
             if (result > 0) {
+                messageTemplateRenderer.invalidate(existingTemplate.getTemplateCode());
+                if (template.getTemplateCode() != null && !template.getTemplateCode().equals(existingTemplate.getTemplateCode())) {
+                    messageTemplateRenderer.invalidate(template.getTemplateCode());
+                }
                 log.info("更新消息模板成功，模板ID：{}", template.getId());
                 return Result.success(true);
             } else {
@@ -95,6 +98,7 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
 
             int result = messageTemplateMapper.deleteById(templateId);
             if (result > 0) {
+                messageTemplateRenderer.invalidate(template.getTemplateCode());
                 log.info("删除消息模板成功，模板ID：{}", templateId);
                 return Result.success(true);
             } else {
@@ -115,6 +119,7 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
 
             int result = messageTemplateMapper.batchDelete(templateIds);
             if (result > 0) {
+                messageTemplateRenderer.invalidateAll();
                 log.info("批量删除消息模板成功，删除数量：{}", result);
                 return Result.success(true);
             } else {
@@ -239,6 +244,7 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
 
             int result = messageTemplateMapper.updateStatus(templateId, status);
             if (result > 0) {
+                messageTemplateRenderer.invalidate(template.getTemplateCode());
                 log.info("更新模板状态成功，模板ID：{}，状态：{}", templateId, status);
                 return Result.success(true);
             } else {
@@ -262,6 +268,7 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
                 result += messageTemplateMapper.updateStatus(templateId, status);
             }
             if (result > 0) {
+                messageTemplateRenderer.invalidateAll();
                 log.info("批量更新模板状态成功，更新数量：{}", result);
                 return Result.success(true);
             } else {
@@ -276,42 +283,56 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
     @Override
     public Result<Map<String, String>> renderTemplate(String templateCode, Map<String, Object> params) {
         try {
-            MessageTemplate template = messageTemplateMapper.selectByCode(templateCode);
+            MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(templateCode);
             if (template == null) {
                 return Result.failed("模板不存在");
             }
 
-            if (template.getStatus() != 1) {
+            if (!template.isEnabled()) {
                 return Result.failed("模板已禁用");
             }
 
-            // 渲染标题和内容
-            String renderedTitle = renderTemplateContent(template.getTitle(), params);
-            String renderedContent = renderTemplateContent(template.getContent(), params);
-
-            Map<String, String> result = new HashMap<>();
-            result.put("title", renderedTitle);
-            result.put("content", renderedContent);
-            result.put("iconUrl", template.getIconUrl());
-            result.put("linkTemplate", renderTemplateContent(template.getLinkTemplate(), params));
-
-            return Result.success(result);
+            // 渲染标题、内容和链接
+            return Result.success(template.render(params));
         } catch (Exception e) {
             log.error("渲染模板失败", e);
             return Result.failed("渲染模板失败：" + e.getMessage());
         }
     }
 
+    @Override
+    public Result<List<Map<String, String>>> renderTemplates(String templateCode, List<Map<String, Object>> paramsList) {
+        try {
+            if (paramsList == null || paramsList.isEmpty()) {
+                return Result.failed("参数列表不能为空");
+            }
+
+            MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(templateCode);
+            if (template == null) {
+                return Result.failed("模板不存在");
+            }
+
+            if (!template.isEnabled()) {
+                return Result.failed("模板已禁用");
+            }
+
+            return Result.success(template.renderAll(paramsList));
+        } catch (Exception e) {
+            log.error("批量渲染模板失败", e);
+            return Result.failed("批量渲染模板失败：" + e.getMessage());
+        }
+    }
+
     @Override
     public Result<Boolean> validateTemplateParams(String templateCode, Map<String, Object> params) {
         try {
-            MessageTemplate template = messageTemplateMapper.selectByCode(templateCode);
+            MessageTemplateRenderer.CompiledTemplate template = messageTemplateRenderer.get(templateCode);
             if (template == null) {
                 return Result.failed("模板不存在");
             }
 
-            // 提取模板中的所有变量
-            Set<String> requiredParams = extractTemplateVariables(template.getTitle() + " " + template.getContent());
+            // 模板标题和内容中的所有变量
+            Set<String> requiredParams = template.getRequiredParams();
 
             // 检查是否提供了所有必需的参数
             for (String param : requiredParams) {
@@ -397,45 +418,4 @@ public class MessageTemplateServiceImpl implements MessageTemplateService {
             return Result.failed("复制模板失败：" + e.getMessage());
         }
     }
-
-    /**
-     * 渲染模板内容
-     *
-     * @param template 模板字符串
-     * @param params   参数映射
-     * @return 渲染后的内容
-     */
-    private String renderTemplateContent(String template, Map<String, Object> params) {
-        if (!StringUtils.hasText(template) || params == null) {
-            return template;
-        }
-
-        String result = template;
-        Matcher matcher = TEMPLATE_PATTERN.matcher(template);
-        while (matcher.find()) {
-            String variable = matcher.group(1);
-            Object value = params.get(variable);
-            if (value != null) {
-                result = result.replace("{{" + variable + "}}", value.toString());
-            }
-        }
-        return result;
-    }
-
-    /**
-     * 提取模板中的变量
-     *
-     * @param template 模板字符串
-     * @return 变量集合
-     */
-    private Set<String> extractTemplateVariables(String template) {
-        Set<String> variables = new HashSet<>();
-        if (StringUtils.hasText(template)) {
-            Matcher matcher = TEMPLATE_PATTERN.matcher(template);
-            while (matcher.find()) {
-                variables.add(matcher.group(1));
-            }
-        }
-        return variables;
-    }
-}
\ No newline at end of file
+}
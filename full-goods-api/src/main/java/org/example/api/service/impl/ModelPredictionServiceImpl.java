@@ -1,27 +1,73 @@
 package org.example.api.service.impl;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.service.ModelPredictionService;
 import org.example.common.entity.Fruit;
 import org.example.api.mapper.FruitMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.example.common.utils.LocalExpiringCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 模型预测服务实现类
  */
 @Slf4j
 @Service
-public class ModelPredictionServiceImpl implements ModelPredictionService {
+public class ModelPredictionServiceImpl implements ModelPredictionService, MessageListener {
+
+    /**
+     * 已部署的水果推荐模型（JSON），节点启动时加载
+     */
+    private static final String FRUIT_MODEL_KEY = "model:fruit_recommendation";
+
+    /**
+     * 模型部署广播频道，消息格式为 节点ID:
+     */
+    private static final String FRUIT_MODEL_CHANNEL = "model:fruit_recommendation:deployed";
 
     @Autowired
     private FruitMapper fruitMapper;
 
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
     // 模拟已部署的模型（实际项目中应该从文件系统或数据库加载）
-    private static final Map<String, Object> DEPLOYED_MODELS = new HashMap<>();
+    private static final Map<String, Object> DEPLOYED_MODELS = new ConcurrentHashMap<>();
+
+    private static final String FRUIT_MODEL_NAME = "fruit_recommendation_latest";
+
+    // 推荐分数各部分权重
+    private static final double BASE_WEIGHT = 0.3;
+    private static final double USER_WEIGHT = 0.3;
+    private static final double KEYWORD_WEIGHT = 0.2;
+    private static final double FEATURE_WEIGHT = 0.2;
+
+    // 缺少基础分或用户偏好时的默认分
+    private static final double DEFAULT_SCORE = 3.0;
+
+    // 水果信息本地缓存时间（毫秒）
+    private static final long FRUIT_ROW_TTL = 30_000;
 
     // 模拟水果数据库
     private static final List<Map<String, Object>> FRUIT_DATABASE = Arrays.asList(
@@ -39,11 +85,25 @@ public class ModelPredictionServiceImpl implements ModelPredictionService {
         createFruit("猕猴桃", 5.5, 4.5, "柔软", "绿色", "小", 9.2, 83, "秋季")
     );
 
+    // 水果名称 -> 水果属性
+    private static final Map<String, Map<String, Object>> FRUIT_DETAILS = new HashMap<>();
+
     static {
+        for (Map<String, Object> fruit : FRUIT_DATABASE) {
+            FRUIT_DETAILS.put((String) fruit.get("name"), fruit);
+        }
         // 初始化模拟模型数据
         initializeModelData();
     }
 
+    // 当前生效的水果推荐模型，部署时整体替换
+    @SuppressWarnings("unchecked")
+    private final AtomicReference<CompiledFruitModel> fruitModel = new AtomicReference<>(
+            CompiledFruitModel.compile((Map<String, Object>) DEPLOYED_MODELS.get(FRUIT_MODEL_NAME)));
+
+    // 水果名称 -> 上架水果
+    private final LocalExpiringCache<String, Fruit> fruitRowCache = new LocalExpiringCache<>(1000);
+
     /**
      * 初始化模型数据
      */
@@ -98,7 +158,7 @@ public class ModelPredictionServiceImpl implements ModelPredictionService {
         fruitRecommendationModel.put("fruitFeatures", fruitFeatures);
         fruitRecommendationModel.put("type", "fruit_recommendation");
 
-        DEPLOYED_MODELS.put("fruit_recommendation_latest", fruitRecommendationModel);
+        DEPLOYED_MODELS.put(FRUIT_MODEL_NAME, fruitRecommendationModel);
 
         // 模拟文本分类模型数据
         Map<String, Object> textClassificationModel = new HashMap<>();
@@ -115,42 +175,82 @@ public class ModelPredictionServiceImpl implements ModelPredictionService {
     public List<Fruit> predictFruitRecommendation(String userId, String condition, int limit) {
         log.info("开始水果推荐预测，用户ID: {}, 条件: {}, 限制数量: {}", userId, condition, limit);
 
-        // 获取模型
-        Map<String, Object> model = (Map<String, Object>) DEPLOYED_MODELS.get("fruit_recommendation_latest");
+        // 获取模型，整个请求使用同一个模型版本
+        CompiledFruitModel model = fruitModel.get();
         if (model == null) {
             throw new RuntimeException("水果推荐模型未找到");
         }
 
-        // 获取模型数据
-        Map<String, Double> fruitScores = (Map<String, Double>) model.get("fruitScores");
-        Map<String, Map<String, Double>> userPreferences = (Map<String, Map<String, Double>>) model.get("userPreferences");
-        Map<String, Map<String, Double>> fruitFeatures = (Map<String, Map<String, Double>>) model.get("fruitFeatures");
-
         // 解析条件中的关键词
         List<String> keywords = extractKeywords(condition);
         log.info("解析关键词: {}", keywords);
 
-        // 计算推荐分数
-        Map<String, Double> recommendationScores = new HashMap<>();
+        // 计算推荐分数并取前N个
+        double[] scores = model.score(userId, keywords);
+        int[] top = CompiledFruitModel.topK(scores, limit);
+
+        List<Fruit> recommendations = resolveFruits(model, top);
+        log.info("推荐完成，返回 {} 个结果", recommendations.size());
+        return recommendations;
+    }
 
-        for (String fruitName : fruitScores.keySet()) {
-            double score = calculateRecommendationScore(userId, fruitName, keywords, fruitScores, userPreferences, fruitFeatures);
-            recommendationScores.put(fruitName, score);
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(FRUIT_MODEL_CHANNEL));
+        loadDeployedModel();
+    }
+
+    @Override
+    public void deployFruitRecommendationModel(Map<String, Object> model) {
+        // 先编译再替换，编译失败时继续使用旧模型
+        CompiledFruitModel compiled = CompiledFruitModel.compile(model);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(model);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("水果推荐模型序列化失败", e);
         }
+        apply(model, compiled);
+
+        // 保存到Redis并通知其他节点加载
+        redisTemplate.opsForValue().set(FRUIT_MODEL_KEY, json);
+        try {
+            redisTemplate.convertAndSend(FRUIT_MODEL_CHANNEL, nodeId + ":");
+        } catch (Exception e) {
+            log.error("广播水果推荐模型部署消息失败", e);
+        }
+    }
 
-        // 根据分数排序并返回前N个结果
-        List<Fruit> recommendations = recommendationScores.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-            .limit(limit)
-            .map(entry -> {
-                // 根据水果名称查询数据库中的完整信息
-                return fruitMapper.selectByName(entry.getKey());
-            })
-            .filter(Objects::nonNull) // 过滤掉null值
-            .collect(Collectors.toList());
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator < 0 || nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        loadDeployedModel();
+    }
 
-        log.info("推荐完成，返回 {} 个结果", recommendations.size());
-        return recommendations;
+    /**
+     * 从Redis加载已部署的模型，没有部署过或加载失败时继续使用当前模型
+     */
+    private void loadDeployedModel() {
+        try {
+            String json = redisTemplate.opsForValue().get(FRUIT_MODEL_KEY);
+            if (json == null) {
+                return;
+            }
+            Map<String, Object> model = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            apply(model, CompiledFruitModel.compile(model));
+        } catch (Exception e) {
+            log.error("加载水果推荐模型失败，继续使用当前模型", e);
+        }
+    }
+
+    private void apply(Map<String, Object> model, CompiledFruitModel compiled) {
+        DEPLOYED_MODELS.put(FRUIT_MODEL_NAME, model);
+        fruitModel.set(compiled);
+        log.info("水果推荐模型已部署，水果数: {}", compiled.names.length);
     }
 
     @Override
@@ -196,46 +296,44 @@ public class ModelPredictionServiceImpl implements ModelPredictionService {
     }
 
     /**
-     * 计算推荐分数
+     * 按排名顺序取水果完整信息，缓存未命中的名称合并为一次查询
      */
-    private double calculateRecommendationScore(String userId, String fruitName, List<String> keywords,
-                                             Map<String, Double> fruitScores,
-                                             Map<String, Map<String, Double>> userPreferences,
-                                             Map<String, Map<String, Double>> fruitFeatures) {
-        // 基础分数
-        double baseScore = fruitScores.getOrDefault(fruitName, 3.0);
-
-        // 用户偏好分数
-        double userScore = 3.0;
-        if (userPreferences.containsKey(userId)) {
-            userScore = userPreferences.get(userId).getOrDefault(fruitName, 3.0);
+    private List<Fruit> resolveFruits(CompiledFruitModel model, int[] top) {
+        Map<String, Fruit> resolved = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (int fruit : top) {
+            String name = model.names[fruit];
+            Fruit cached = fruitRowCache.get(name);
+            if (cached != null) {
+                resolved.put(name, cached);
+            } else {
+                misses.add(name);
+            }
         }
-
-        // 关键词匹配分数
-        double keywordScore = 0.0;
-        Map<String, Object> fruitDetail = FRUIT_DATABASE.stream()
-            .filter(fruit -> fruitName.equals(fruit.get("name")))
-            .findFirst()
-            .orElse(new HashMap<>());
-
-        for (String keyword : keywords) {
-            if (fruitName.contains(keyword) ||
-                (fruitDetail.get("taste") != null && fruitDetail.get("taste").toString().contains(keyword)) ||
-                (fruitDetail.get("color") != null && fruitDetail.get("color").toString().contains(keyword)) ||
-                (fruitDetail.get("season") != null && fruitDetail.get("season").toString().contains(keyword))) {
-                keywordScore += 1.0;
+        if (!misses.isEmpty()) {
+            for (Fruit fruit : fruitMapper.selectByNames(misses)) {
+                // 同名商品取ID最小的一个
+                Fruit existing = resolved.get(fruit.getName());
+                if (existing == null || fruit.getId() < existing.getId()) {
+                    resolved.put(fruit.getName(), fruit);
+                }
+            }
+            for (String name : misses) {
+                Fruit fruit = resolved.get(name);
+                if (fruit != null) {
+                    fruitRowCache.put(name, fruit, FRUIT_ROW_TTL);
+                }
             }
         }
 
-        // 特征分数
-        double featureScore = 0.0;
-        if (fruitFeatures.containsKey(fruitName)) {
-            Map<String, Double> features = fruitFeatures.get(fruitName);
-            featureScore = features.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        List<Fruit> recommendations = new ArrayList<>(top.length);
+        for (int fruit : top) {
+            Fruit row = resolved.get(model.names[fruit]);
+            if (row != null) {
+                recommendations.add(row);
+            }
         }
-
-        // 综合计算分数
-        return (baseScore * 0.3 + userScore * 0.3 + keywordScore * 0.2 + featureScore * 0.2);
+        return recommendations;
     }
 
     /**
@@ -287,4 +385,159 @@ public class ModelPredictionServiceImpl implements ModelPredictionService {
         fruit.put("season", season);
         return fruit;
     }
-}
\ No newline at end of file
+
+    /**
+     * 编译后的水果推荐模型
+     * 水果映射为连续的int序号，与用户、关键词无关的分数预先合并为一列，关键词命中用位图表示
+     */
+    private static final class CompiledFruitModel {
+
+        // 序号 -> 水果名称
+        private final String[] names;
+
+        // 基础分和特征分的加权和
+        private final double[] staticScores;
+
+        // 用户ID -> 各水果的加权偏好分
+        private final Map<String, double[]> userScores;
+
+        // 关键词匹配用的文本：名称、口感、颜色、季节
+        private final String[][] matchTexts;
+
+        // 关键词 -> 命中的水果，首次出现时计算
+        private final Map<String, BitSet> keywordMatches = new ConcurrentHashMap<>();
+
+        private CompiledFruitModel(String[] names, double[] staticScores, Map<String, double[]> userScores,
+                                   String[][] matchTexts) {
+            this.names = names;
+            this.staticScores = staticScores;
+            this.userScores = userScores;
+            this.matchTexts = matchTexts;
+        }
+
+        @SuppressWarnings("unchecked")
+        static CompiledFruitModel compile(Map<String, Object> model) {
+            if (model == null || !(model.get("fruitScores") instanceof Map)) {
+                throw new IllegalArgumentException("水果推荐模型缺少fruitScores");
+            }
+            // 通过接口部署时数值可能是Integer等类型，统一按Number读取
+            Map<String, Object> fruitScores = (Map<String, Object>) model.get("fruitScores");
+            Map<String, Object> userPreferences = model.get("userPreferences") instanceof Map
+                    ? (Map<String, Object>) model.get("userPreferences") : Collections.emptyMap();
+            Map<String, Object> fruitFeatures = model.get("fruitFeatures") instanceof Map
+                    ? (Map<String, Object>) model.get("fruitFeatures") : Collections.emptyMap();
+
+            // 按名称排序分配序号，保证同分时结果稳定
+            String[] names = new TreeSet<>(fruitScores.keySet()).toArray(new String[0]);
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                index.put(names[i], i);
+            }
+
+            double[] staticScores = new double[names.length];
+            String[][] matchTexts = new String[names.length][];
+            for (int i = 0; i < names.length; i++) {
+                double baseScore = number(fruitScores.get(names[i]), DEFAULT_SCORE);
+                double featureScore = 0.0;
+                Object features = fruitFeatures.get(names[i]);
+                if (features instanceof Map && !((Map<?, ?>) features).isEmpty()) {
+                    for (Object value : ((Map<?, ?>) features).values()) {
+                        featureScore += number(value, 0.0);
+                    }
+                    featureScore /= ((Map<?, ?>) features).size();
+                }
+                staticScores[i] = baseScore * BASE_WEIGHT + featureScore * FEATURE_WEIGHT;
+
+                Map<String, Object> detail = FRUIT_DETAILS.getOrDefault(names[i], Collections.emptyMap());
+                matchTexts[i] = new String[]{names[i], text(detail.get("taste")),
+                        text(detail.get("color")), text(detail.get("season"))};
+            }
+
+            Map<String, double[]> userScores = new HashMap<>();
+            for (Map.Entry<String, Object> entry : userPreferences.entrySet()) {
+                if (!(entry.getValue() instanceof Map)) {
+                    continue;
+                }
+                double[] column = new double[names.length];
+                Arrays.fill(column, DEFAULT_SCORE * USER_WEIGHT);
+                for (Map.Entry<?, ?> pref : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    Integer fruit = index.get(String.valueOf(pref.getKey()));
+                    if (fruit != null) {
+                        column[fruit] = number(pref.getValue(), DEFAULT_SCORE) * USER_WEIGHT;
+                    }
+                }
+                userScores.put(entry.getKey(), column);
+            }
+            return new CompiledFruitModel(names, staticScores, userScores, matchTexts);
+        }
+
+        private static double number(Object value, double defaultValue) {
+            return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+        }
+
+        /**
+         * 计算所有水果的推荐分数
+         */
+        double[] score(String userId, List<String> keywords) {
+            double[] scores = staticScores.clone();
+            double[] user = userId != null ? userScores.get(userId) : null;
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += user != null ? user[i] : DEFAULT_SCORE * USER_WEIGHT;
+            }
+            for (String keyword : keywords) {
+                BitSet matches = keywordMatches.computeIfAbsent(keyword, this::matchKeyword);
+                for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                    scores[i] += KEYWORD_WEIGHT;
+                }
+            }
+            return scores;
+        }
+
+        private BitSet matchKeyword(String keyword) {
+            BitSet matches = new BitSet(names.length);
+            for (int i = 0; i < names.length; i++) {
+                for (String text : matchTexts[i]) {
+                    if (text != null && text.contains(keyword)) {
+                        matches.set(i);
+                        break;
+                    }
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * 用容量为limit的小顶堆选出分数最高的水果，同分时序号小的优先
+         *
+         * @return 按分数降序的水果序号
+         */
+        static int[] topK(double[] scores, int limit) {
+            int size = Math.min(Math.max(limit, 0), scores.length);
+            if (size == 0) {
+                return new int[0];
+            }
+            Comparator<Integer> worstFirst = (a, b) -> {
+                int cmp = Double.compare(scores[a], scores[b]);
+                return cmp != 0 ? cmp : Integer.compare(b, a);
+            };
+            PriorityQueue<Integer> heap = new PriorityQueue<>(size, worstFirst);
+            for (int i = 0; i < scores.length; i++) {
+                if (heap.size() < size) {
+                    heap.offer(i);
+                } else if (worstFirst.compare(i, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.offer(i);
+                }
+            }
+            int[] top = new int[heap.size()];
+            for (int i = top.length - 1; i >= 0; i--) {
+                top[i] = heap.poll();
+            }
+            return top;
+        }
+
+        private static String text(Object value) {
+            return value != null ? value.toString() : null;
+        }
+    }
+}
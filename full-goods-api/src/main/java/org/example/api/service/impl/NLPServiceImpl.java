@@ -4,8 +4,10 @@ import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.seg.common.Term;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.service.NLPService;
+import org.example.api.util.KeywordMatcher;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,71 +19,81 @@ import java.util.regex.Pattern;
 @Service
 public class NLPServiceImpl implements NLPService {
 
-    // 水果特性关键词映射
-    private static final Map<String, List<String>> FEATURE_KEYWORDS = new HashMap<>();
+    // 停用词
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "个", "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好", "自己", "这"));
     
-    // 口感关键词映射
-    private static final Map<String, List<String>> TASTE_KEYWORDS = new HashMap<>();
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
     
-    // 水果名称关键词
-    private static final List<String> FRUIT_NAMES = new ArrayList<>();
-    
-    // 情感词典
-    private static final Map<String, Integer> SENTIMENT_DICT = new HashMap<>();
-    
-    // 初始化特性关键词和情感词典
-  /*  static {
+    // 由词典编译的关键词匹配器，词典变更后整体替换
+    private volatile KeywordMatcher<DictEntry> keywordMatcher;
+
+    @PostConstruct
+    @Override
+    public void reloadDictionaries() {
+        KeywordMatcher.Builder<DictEntry> builder = KeywordMatcher.builder();
+        addDefaultDictionaries(builder);
+        keywordMatcher = builder.build();
+        log.info("NLP词典已加载，关键词数: {}", keywordMatcher.size());
+    }
+
+    /**
+     * 默认词典：水果名称、口感、特性关键词和情感词，直接加入匹配器
+     */
+    private static void addDefaultDictionaries(KeywordMatcher.Builder<DictEntry> builder) {
+        // 水果名称关键词
+        addWords(builder, DictType.FRUIT, null, "樱桃", "椰青", "哈密瓜", "黄桃", "百香果", "荔枝", "苹果", "香蕉", "橙子", "葡萄", "草莓", "猕猴桃", "芒果", "菠萝", "西瓜", "桃子", "梨", "柚子", "柠檬", "火龙果");
+
         // 口感相关关键词 - 更详细的分类
-        TASTE_KEYWORDS.put("甜", Arrays.asList("甜", "香甜", "清甜", "甜腻", "甜美", "甘甜", "蜜甜", "甜润"));
-        TASTE_KEYWORDS.put("酸", Arrays.asList("酸", "酸甜", "微酸", "酸爽", "酸涩", "酸味"));
-        TASTE_KEYWORDS.put("脆", Arrays.asList("脆", "爽脆", "清脆", "酥脆"));
-        TASTE_KEYWORDS.put("软", Arrays.asList("软", "软糯", "绵软", "柔软"));
-        TASTE_KEYWORDS.put("多汁", Arrays.asList("多汁", "汁多", "水分足", "爽口"));
-        
+        addWords(builder, DictType.TASTE, "甜", "甜", "香甜", "清甜", "甜腻", "甜美", "甘甜", "蜜甜", "甜润");
+        addWords(builder, DictType.TASTE, "酸", "酸", "酸甜", "微酸", "酸爽", "酸涩", "酸味");
+        addWords(builder, DictType.TASTE, "脆", "脆", "爽脆", "清脆", "酥脆");
+        addWords(builder, DictType.TASTE, "软", "软", "软糯", "绵软", "柔软");
+        addWords(builder, DictType.TASTE, "多汁", "多汁", "汁多", "水分足", "爽口");
+
         // 口感相关关键词
-        FEATURE_KEYWORDS.put("口感", Arrays.asList("甜", "酸", "脆", "软", "多汁", "香甜", "酸甜", "爽口", "清甜", "软糯", "微酸", "酸爽", "蜜甜", "绵软"));
-        
+        addWords(builder, DictType.FEATURE, "口感", "甜", "酸", "脆", "软", "多汁", "香甜", "酸甜", "爽口", "清甜", "软糯", "微酸", "酸爽", "蜜甜", "绵软");
         // 适用人群相关关键词
-        FEATURE_KEYWORDS.put("人群", Arrays.asList("孕妇", "儿童", "老人", "糖尿病", "高血压", "减肥", "贫血", "孕期", "小孩", "宝宝", "婴儿"));
-        
+        addWords(builder, DictType.FEATURE, "人群", "孕妇", "儿童", "老人", "糖尿病", "高血压", "减肥", "贫血", "孕期", "小孩", "宝宝", "婴儿");
         // 营养相关关键词
-        FEATURE_KEYWORDS.put("营养", Arrays.asList("维生素", "纤维", "蛋白质", "铁", "钙", "维C", "抗氧化", "胡萝卜素", "膳食纤维", "电解质", "补血", "美容", "养颜"));
-        
+        addWords(builder, DictType.FEATURE, "营养", "维生素", "纤维", "蛋白质", "铁", "钙", "维C", "抗氧化", "胡萝卜素", "膳食纤维", "电解质", "补血", "美容", "养颜");
         // 产地相关关键词
-        FEATURE_KEYWORDS.put("产地", Arrays.asList("国产", "进口", "海南", "新疆", "山东", "泰国", "澳洲", "美国", "广西"));
-        
+        addWords(builder, DictType.FEATURE, "产地", "国产", "进口", "海南", "新疆", "山东", "泰国", "澳洲", "美国", "广西");
         // 分类相关关键词
-        FEATURE_KEYWORDS.put("分类", Arrays.asList("热带", "应季", "水果", "浆果", "柑橘类", "瓜类"));
-        
-        // 水果名称关键词
-        FRUIT_NAMES.addAll(Arrays.asList("樱桃", "椰青", "哈密瓜", "黄桃", "百香果", "荔枝", "苹果", "香蕉", "橙子", "葡萄", "草莓", "猕猴桃", "芒果", "菠萝", "西瓜", "桃子", "梨", "柚子", "柠檬", "火龙果"));
-        
-        // 初始化情感词典
-        SENTIMENT_DICT.put("喜欢", 1);
-        SENTIMENT_DICT.put("爱吃", 1);
-        SENTIMENT_DICT.put("好吃", 1);
-        SENTIMENT_DICT.put("美味", 1);
-        SENTIMENT_DICT.put("想要", 1);
-        SENTIMENT_DICT.put("需要", 1);
-        SENTIMENT_DICT.put("不喜欢", -1);
-        SENTIMENT_DICT.put("讨厌", -1);
-        SENTIMENT_DICT.put("难吃", -1);
+        addWords(builder, DictType.FEATURE, "分类", "热带", "应季", "水果", "浆果", "柑橘类", "瓜类");
+
+        // 情感词典
+        addSentimentWords(builder, 1, "喜欢", "爱吃", "好吃", "美味", "想要", "需要");
+        addSentimentWords(builder, -1, "不喜欢", "讨厌", "难吃");
+    }
+
+    private static void addWords(KeywordMatcher.Builder<DictEntry> builder, DictType type, String group, String... words) {
+        for (String word : words) {
+            builder.add(word, new DictEntry(type, group, word, 0));
+        }
+    }
+
+    private static void addSentimentWords(KeywordMatcher.Builder<DictEntry> builder, int sentiment, String... words) {
+        for (String word : words) {
+            builder.add(word, new DictEntry(DictType.SENTIMENT, null, word, sentiment));
+        }
     }
-*/
+
     @Override
     public Map<String, Object> analyzeInput(String input) {
         Map<String, Object> result = new HashMap<>();
+        // 三项分析共用一次扫描结果
+        List<DictEntry> matches = keywordMatcher.findAll(input);
         
         // 提取关键词
-        List<String> keywords = extractKeywords(input);
+        List<String> keywords = extractKeywords(input, matches);
         result.put("keywords", keywords);
         
         // 匹配特性
-        List<String> features = matchFruitFeatures(input);
+        List<String> features = matchFruitFeatures(matches);
         result.put("features", features);
         
         // 分析情感
-        String sentiment = analyzeSentiment(input);
+        String sentiment = analyzeSentiment(matches);
         result.put("sentiment", sentiment);
         
         // 提取数字（如价格范围）
@@ -95,18 +107,16 @@ public class NLPServiceImpl implements NLPService {
 
     @Override
     public List<String> matchFruitFeatures(String input) {
+        return matchFruitFeatures(keywordMatcher.findAll(input));
+    }
+
+    private List<String> matchFruitFeatures(List<DictEntry> matches) {
         Set<String> features = new HashSet<>();
-        String lowerInput = input.toLowerCase();
         
-        // 遍历所有特性关键词
-        for (Map.Entry<String, List<String>> entry : FEATURE_KEYWORDS.entrySet()) {
-            String featureType = entry.getKey();
-            List<String> keywords = entry.getValue();
-            
-            for (String keyword : keywords) {
-                if (lowerInput.contains(keyword.toLowerCase())) {
-                    features.add(featureType + "-" + keyword);
-                }
+        // 命中的特性关键词
+        for (DictEntry entry : matches) {
+            if (entry.type == DictType.FEATURE) {
+                features.add(entry.group + "-" + entry.word);
             }
         }
         
@@ -115,38 +125,20 @@ public class NLPServiceImpl implements NLPService {
 
     @Override
     public List<String> extractKeywords(String input) {
+        return extractKeywords(input, keywordMatcher.findAll(input));
+    }
+
+    private List<String> extractKeywords(String input, List<DictEntry> matches) {
         Set<String> keywords = new HashSet<>();
-        String lowerInput = input.toLowerCase();
         
-        // 1. 直接匹配水果名称
-        for (String fruitName : FRUIT_NAMES) {
-            if (lowerInput.contains(fruitName.toLowerCase())) {
-                keywords.add(fruitName);
-            }
-        }
-        
-        // 2. 匹配口感关键词
-        for (Map.Entry<String, List<String>> entry : TASTE_KEYWORDS.entrySet()) {
-            String tasteType = entry.getKey();
-            List<String> tasteWords = entry.getValue();
-            
-            for (String tasteWord : tasteWords) {
-                if (lowerInput.contains(tasteWord.toLowerCase())) {
-                    keywords.add(tasteWord);
-                    // 同时添加口感类型作为关键词
-                    keywords.add(tasteType);
-                }
-            }
-        }
-        
-        // 3. 匹配其他特性关键词
-        for (Map.Entry<String, List<String>> entry : FEATURE_KEYWORDS.entrySet()) {
-            List<String> featureWords = entry.getValue();
-            
-            for (String featureWord : featureWords) {
-                if (lowerInput.contains(featureWord.toLowerCase())) {
-                    keywords.add(featureWord);
-                }
+        // 1-3. 词典匹配：水果名称、口感关键词、其他特性关键词
+        for (DictEntry entry : matches) {
+            if (entry.type == DictType.FRUIT || entry.type == DictType.FEATURE) {
+                keywords.add(entry.word);
+            } else if (entry.type == DictType.TASTE) {
+                keywords.add(entry.word);
+                // 同时添加口感类型作为关键词
+                keywords.add(entry.group);
             }
         }
         
@@ -176,22 +168,21 @@ public class NLPServiceImpl implements NLPService {
      * 判断是否为停用词
      */
     private boolean isStopWord(String word) {
-        Set<String> stopWords = new HashSet<>(Arrays.asList("的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "个", "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好", "自己", "这"));
-        return stopWords.contains(word.toLowerCase());
+        return STOP_WORDS.contains(word.toLowerCase());
     }
 
     @Override
     public String analyzeSentiment(String input) {
+        return analyzeSentiment(keywordMatcher.findAll(input));
+    }
+
+    private String analyzeSentiment(List<DictEntry> matches) {
         int score = 0;
-        String lowerInput = input.toLowerCase();
         
-        // 计算情感得分
-        for (Map.Entry<String, Integer> entry : SENTIMENT_DICT.entrySet()) {
-            String word = entry.getKey();
-            Integer value = entry.getValue();
-            
-            if (lowerInput.contains(word.toLowerCase())) {
-                score += value;
+        // 计算情感得分，每个情感词只计一次
+        for (DictEntry entry : matches) {
+            if (entry.type == DictType.SENTIMENT) {
+                score += entry.sentiment;
             }
         }
         
@@ -210,8 +201,7 @@ public class NLPServiceImpl implements NLPService {
      */
     private List<Integer> extractNumbers(String input) {
         List<Integer> numbers = new ArrayList<>();
-        Pattern pattern = Pattern.compile("\\d+");
-        Matcher matcher = pattern.matcher(input);
+        Matcher matcher = NUMBER_PATTERN.matcher(input);
         
         while (matcher.find()) {
             try {
@@ -223,4 +213,26 @@ public class NLPServiceImpl implements NLPService {
         
         return numbers;
     }
-}
\ No newline at end of file
+
+    private enum DictType {
+        FRUIT, TASTE, FEATURE, SENTIMENT
+    }
+
+    /**
+     * 词典中的一个词条，同一个词可能出现在多个词典中
+     */
+    private static final class DictEntry {
+        private final DictType type;
+        // 口感类型或特性类型
+        private final String group;
+        private final String word;
+        private final int sentiment;
+
+        DictEntry(DictType type, String group, String word, int sentiment) {
+            this.type = type;
+            this.group = group;
+            this.word = word;
+            this.sentiment = sentiment;
+        }
+    }
+}
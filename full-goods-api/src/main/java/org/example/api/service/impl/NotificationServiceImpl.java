@@ -4,6 +4,8 @@ import com.github.pagehelper.PageHelper;
 import lombok.extern.slf4j.Slf4j;
 import org.example.api.mapper.MessageMapper;
 import org.example.api.mapper.MessageTemplateMapper;
+import org.example.api.service.MessageCounterService;
+import org.example.api.service.MessageOutboxService;
 import org.example.api.service.NotificationService;
 import org.example.common.entity.Message;
 import org.example.common.entity.MessageTemplate;
@@ -26,6 +28,12 @@ public class NotificationServiceImpl implements NotificationService {
     @Autowired
     private MessageTemplateMapper messageTemplateMapper;
 
+    @Autowired
+    private MessageOutboxService messageOutboxService;
+
+    @Autowired
+    private MessageCounterService messageCounterService;
+
     @Override
     public Result<Boolean> sendLogisticsNotification(Long userId, Long orderId, String status, String description) {
         try {
@@ -33,9 +41,10 @@ public class NotificationServiceImpl implements NotificationService {
             String content = generateLogisticsContent(orderId, status, description);
             
             Message message = createMessage(userId, title, content, "LOGISTICS", orderId.toString());
-            int result = messageMapper.insert(message);
+            // 与其他通知合并批量写库
+            messageOutboxService.submit(message, false);
             
-            return result > 0 ? Result.success(true) : Result.failed("发送物流通知失败");
+            return Result.success(true);
         } catch (Exception e) {
             log.error("发送物流通知失败", e);
             return Result.failed("发送物流通知失败：" + e.getMessage());
@@ -49,9 +58,10 @@ public class NotificationServiceImpl implements NotificationService {
             String content = generateOrderStatusContent(orderId, orderStatus, statusDescription);
             
             Message message = createMessage(userId, title, content, "ORDER", orderId.toString());
-            int result = messageMapper.insert(message);
+            // 与其他通知合并批量写库
+            messageOutboxService.submit(message, false);
             
-            return result > 0 ? Result.success(true) : Result.failed("发送订单通知失败");
+            return Result.success(true);
         } catch (Exception e) {
             log.error("发送订单状态通知失败", e);
             return Result.failed("发送订单通知失败：" + e.getMessage());
@@ -67,9 +77,10 @@ public class NotificationServiceImpl implements NotificationService {
             } else {
                 // 发送给特定用户
                 Message message = createMessage(userId, title, content, "SYSTEM", notificationType);
-                int result = messageMapper.insert(message);
+                // 与其他通知合并批量写库
+                messageOutboxService.submit(message, false);
                 
-                return result > 0 ? Result.success(true) : Result.failed("发送系统通知失败");
+                return Result.success(true);
             }
         } catch (Exception e) {
             log.error("发送系统通知失败", e);
@@ -84,9 +95,10 @@ public class NotificationServiceImpl implements NotificationService {
             String content = "您有新的客服消息：" + messageContent;
             
             Message message = createMessage(userId, title, content, "CUSTOMER_SERVICE", sessionId.toString());
-            int result = messageMapper.insert(message);
+            // 与其他通知合并批量写库
+            messageOutboxService.submit(message, false);
             
-            return result > 0 ? Result.success(true) : Result.failed("发送客服通知失败");
+            return Result.success(true);
         } catch (Exception e) {
             log.error("发送客服消息通知失败", e);
             return Result.failed("发送客服通知失败：" + e.getMessage());
@@ -104,9 +116,10 @@ public class NotificationServiceImpl implements NotificationService {
                 return sendBroadcastNotification(title, content, "PROMOTION");
             } else {
                 Message message = createMessage(userId, title, content, "PROMOTION", activityType);
-                int result = messageMapper.insert(message);
+                // 与其他通知合并批量写库
+                messageOutboxService.submit(message, false);
                 
-                return result > 0 ? Result.success(true) : Result.failed("发送优惠通知失败");
+                return Result.success(true);
             }
         } catch (Exception e) {
             log.error("发送优惠活动通知失败", e);
@@ -121,9 +134,10 @@ public class NotificationServiceImpl implements NotificationService {
             String content = generatePaymentContent(orderId, paymentStatus, amount);
             
             Message message = createMessage(userId, title, content, "PAYMENT", orderId.toString());
-            int result = messageMapper.insert(message);
+            // 与其他通知合并批量写库
+            messageOutboxService.submit(message, false);
             
-            return result > 0 ? Result.success(true) : Result.failed("发送支付通知失败");
+            return Result.success(true);
         } catch (Exception e) {
             log.error("发送支付通知失败", e);
             return Result.failed("发送支付通知失败：" + e.getMessage());
@@ -139,9 +153,10 @@ public class NotificationServiceImpl implements NotificationService {
             
             // 发送给管理员（这里假设管理员用户ID为1）
             Message message = createMessage(1L, title, content, "STOCK_WARNING", productId.toString());
-            int result = messageMapper.insert(message);
+            // 与其他通知合并批量写库
+            messageOutboxService.submit(message, false);
             
-            return result > 0 ? Result.success(true) : Result.failed("发送库存预警失败");
+            return Result.success(true);
         } catch (Exception e) {
             log.error("发送库存预警通知失败", e);
             return Result.failed("发送库存预警失败：" + e.getMessage());
@@ -160,6 +175,9 @@ public class NotificationServiceImpl implements NotificationService {
             }
             
             int result = messageMapper.batchInsert(messages);
+            if (result > 0) {
+                messageCounterService.onInserted(messages);
+            }
             return result > 0 ? Result.success(true) : Result.failed("批量发送通知失败");
         } catch (Exception e) {
             log.error("批量发送通知失败", e);
@@ -184,7 +202,7 @@ public class NotificationServiceImpl implements NotificationService {
     public Result<Integer> getUnreadNotificationCount(Long userId, String messageType) {
         try {
             Integer msgType = convertMessageType(messageType);
-            int count = messageMapper.countUnreadByUserIdAndType(userId, msgType);
+            int count = messageCounterService.getCounters(userId).unread(msgType);
             return Result.success(count);
         } catch (Exception e) {
             log.error("获取未读通知数量失败", e);
@@ -195,7 +213,11 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     public Result<Boolean> markNotificationAsRead(Long userId, Long messageId) {
         try {
+            List<Message> before = messageMapper.selectByIds(Collections.singletonList(messageId));
             int result = messageMapper.markAsRead(messageId);
+            if (result > 0) {
+                messageCounterService.onRead(before);
+            }
             return result > 0 ? Result.success(true) : Result.failed("标记已读失败");
         } catch (Exception e) {
             log.error("标记通知已读失败", e);
@@ -206,7 +228,11 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     public Result<Boolean> markNotificationsAsRead(Long userId, List<Long> messageIds) {
         try {
+            List<Message> before = messageMapper.selectByIds(messageIds);
             int result = messageMapper.batchMarkAsRead(messageIds);
+            if (result > 0) {
+                messageCounterService.onRead(before);
+            }
             return result > 0 ? Result.success(true) : Result.failed("批量标记已读失败");
         } catch (Exception e) {
             log.error("批量标记通知已读失败", e);
@@ -217,7 +243,11 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     public Result<Boolean> deleteNotification(Long userId, Long messageId) {
         try {
+            List<Message> before = messageMapper.selectByIds(Collections.singletonList(messageId));
             int result = messageMapper.deleteById(messageId);
+            if (result > 0) {
+                messageCounterService.onDeleted(before);
+            }
             return result > 0 ? Result.success(true) : Result.failed("删除通知失败");
         } catch (Exception e) {
             log.error("删除通知失败", e);
@@ -230,22 +260,22 @@ public class NotificationServiceImpl implements NotificationService {
         try {
             Map<String, Object> statistics = new HashMap<>();
             
+            MessageCounterService.Counters counters = messageCounterService.getCounters(userId);
+            
             // 总通知数
-            List<Message> allMessages = messageMapper.selectByUserId(userId);
-            statistics.put("totalCount", allMessages.size());
+            statistics.put("totalCount", counters.total());
             
             // 未读通知数
-            int unreadCount = messageMapper.countUnreadByUserId(userId);
-            statistics.put("unreadCount", unreadCount);
+            statistics.put("unreadCount", counters.unread());
             
             // 各类型通知数量
             Map<String, Integer> typeCount = new HashMap<>();
-            typeCount.put("SYSTEM", countMessagesByType(allMessages, 3));
-            typeCount.put("ORDER", countMessagesByType(allMessages, 4));
-            typeCount.put("LOGISTICS", countMessagesByType(allMessages, 1));
-            typeCount.put("PAYMENT", countMessagesByType(allMessages, 5));
-            typeCount.put("PROMOTION", countMessagesByType(allMessages, 6));
-            typeCount.put("CUSTOMER_SERVICE", countMessagesByType(allMessages, 2));
+            typeCount.put("SYSTEM", counters.total(3));
+            typeCount.put("ORDER", counters.total(4));
+            typeCount.put("LOGISTICS", counters.total(1));
+            typeCount.put("PAYMENT", counters.total(5));
+            typeCount.put("PROMOTION", counters.total(6));
+            typeCount.put("CUSTOMER_SERVICE", counters.total(2));
             statistics.put("typeCount", typeCount);
             
             return Result.success(statistics);
@@ -383,13 +413,4 @@ public class NotificationServiceImpl implements NotificationService {
                 return 3; // 默认为系统通知
         }
     }
-
-    /**
-     * 统计指定类型的消息数量
-     */
-    private int countMessagesByType(List<Message> messages, Integer messageType) {
-        return (int) messages.stream()
-                .filter(msg -> messageType.equals(msg.getMessageType()))
-                .count();
-    }
 }
\ No newline at end of file
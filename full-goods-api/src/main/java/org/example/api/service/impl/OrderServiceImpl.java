@@ -2,16 +2,27 @@ package org.example.api.service.impl;
 
 import org.example.api.dto.CreateOrderDTO;
 import org.example.api.mapper.*;
+import org.example.api.service.FlashSaleService;
+import org.example.api.service.FruitCacheService;
+import org.example.api.service.OrderScheduleService;
 import org.example.api.service.OrderService;
+import org.example.api.service.OrderStatisticsService;
 import org.example.common.entity.*;
+import org.example.common.exception.BusinessException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -35,6 +46,18 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressMapper addressMapper;
 
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private FruitCacheService fruitCacheService;
+
+    @Autowired
+    private OrderScheduleService orderScheduleService;
+
+    @Autowired
+    private OrderStatisticsService orderStatisticsService;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Order createOrder(Long userId, Long addressId, List<Long> cartIds) {
@@ -58,11 +81,10 @@ public class OrderServiceImpl implements OrderService {
         if (buyNowItems != null && !buyNowItems.isEmpty()) {
             buyNowOrderItems.addAll(buyNowItems);
         } else {
-            // 处理购物车商品
+            // 处理购物车商品，一次查询所有购物车项
             if (cartIds != null && !cartIds.isEmpty()) {
-                for (Long cartId : cartIds) {
-                    Cart cart = cartMapper.selectById(cartId);
-                    if (cart != null && cart.getUserId().equals(userId)) {
+                for (Cart cart : cartMapper.selectByIds(cartIds)) {
+                    if (cart.getUserId().equals(userId)) {
                         cartList.add(cart);
                     }
                 }
@@ -75,6 +97,40 @@ public class OrderServiceImpl implements OrderService {
             }
         }
 
+        // 汇总每个商品的购买数量，同一商品多行时合并扣减
+        Map<Long, Integer> stockMap = new TreeMap<>();
+        if (!buyNowOrderItems.isEmpty()) {
+            for (CreateOrderDTO.BuyNowItem buyItem : buyNowOrderItems) {
+                stockMap.merge(buyItem.getFruitId(), buyItem.getQuantity(), Integer::sum);
+            }
+        } else {
+            for (Cart cart : cartList) {
+                stockMap.merge(cart.getFruitId(), cart.getQuantity(), Integer::sum);
+            }
+        }
+
+        // 立即购买的商品处于限时特惠中时走Redis预扣库存，不锁定t_fruit行
+        Map<Long, Long> flashSaleIds = buyNowOrderItems.isEmpty()
+                ? Collections.<Long, Long>emptyMap()
+                : flashSaleService.getActiveFlashSaleIds(stockMap.keySet());
+        Map<Long, Integer> flashStockMap = new TreeMap<>();
+        for (Long fruitId : flashSaleIds.keySet()) {
+            flashStockMap.put(fruitId, stockMap.remove(fruitId));
+        }
+
+        // 一次查询并锁定所有商品行
+        Map<Long, Fruit> fruitMap = new HashMap<>();
+        if (!stockMap.isEmpty()) {
+            for (Fruit fruit : fruitMapper.selectByIdsForUpdate(stockMap.keySet())) {
+                fruitMap.put(fruit.getId(), fruit);
+            }
+        }
+        if (!flashStockMap.isEmpty()) {
+            for (Fruit fruit : fruitMapper.selectByIds(flashStockMap.keySet())) {
+                fruitMap.put(fruit.getId(), fruit);
+            }
+        }
+
         // 创建订单
         Order order = new Order();
         order.setOrderNo(generateOrderNo());
@@ -97,22 +153,11 @@ public class OrderServiceImpl implements OrderService {
         if (!buyNowOrderItems.isEmpty()) {
             for (CreateOrderDTO.BuyNowItem buyItem : buyNowOrderItems) {
                 // 验证商品是否存在
-                Fruit fruit = fruitMapper.selectById(buyItem.getFruitId());
+                Fruit fruit = fruitMap.get(buyItem.getFruitId());
                 if (fruit == null) {
                     throw new RuntimeException("商品不存在：" + buyItem.getFruitId());
                 }
 
-                // 检查库存是否充足
-                if (fruit.getStock() < buyItem.getQuantity()) {
-                    throw new RuntimeException("商品库存不足：" + fruit.getName() + "，当前库存：" + fruit.getStock());
-                }
-
-                // 扣减库存
-                int updateResult = fruitMapper.decreaseStock(buyItem.getFruitId(), buyItem.getQuantity());
-                if (updateResult == 0) {
-                    throw new RuntimeException("库存扣减失败，可能库存不足：" + fruit.getName());
-                }
-
                 // 创建订单项
                 OrderItem orderItem = new OrderItem();
                 orderItem.setOrderNo(order.getOrderNo());
@@ -135,22 +180,12 @@ public class OrderServiceImpl implements OrderService {
         } else {
             // 处理购物车商品
             for (Cart cart : cartList) {
-                Fruit fruit = fruitMapper.selectById(cart.getFruitId());
+                Fruit fruit = fruitMap.get(cart.getFruitId());
                 if (fruit == null) {
+                    stockMap.remove(cart.getFruitId());
                     continue; // 跳过不存在的商品
                 }
 
-                // 检查库存是否充足
-                if (fruit.getStock() < cart.getQuantity()) {
-                    throw new RuntimeException("商品库存不足：" + fruit.getName() + "，当前库存：" + fruit.getStock());
-                }
-
-                // 扣减库存
-                int updateResult = fruitMapper.decreaseStock(cart.getFruitId(), cart.getQuantity());
-                if (updateResult == 0) {
-                    throw new RuntimeException("库存扣减失败，可能库存不足：" + fruit.getName());
-                }
-
                 // 创建订单项
                 OrderItem orderItem = new OrderItem();
                 orderItem.setOrderNo(order.getOrderNo());
@@ -168,6 +203,32 @@ public class OrderServiceImpl implements OrderService {
             }
         }
 
+        // 检查库存是否充足，汇总所有库存不足的商品
+        List<String> shortages = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : stockMap.entrySet()) {
+            Fruit fruit = fruitMap.get(entry.getKey());
+            if (fruit.getStock() < entry.getValue()) {
+                shortages.add(fruit.getName() + "，当前库存：" + fruit.getStock());
+            }
+        }
+        if (!shortages.isEmpty()) {
+            throw new RuntimeException("商品库存不足：" + String.join("；", shortages));
+        }
+
+        // 一次批量扣减库存
+        if (!stockMap.isEmpty()) {
+            int updateResult = fruitMapper.batchDecreaseStock(stockMap);
+            if (updateResult < stockMap.size()) {
+                throw new RuntimeException("库存扣减失败，可能库存不足");
+            }
+            fruitCacheService.evictStockAfterCommit(stockMap.keySet());
+        }
+
+        // 预扣限时特惠库存
+        if (!flashStockMap.isEmpty()) {
+            reserveFlashSaleStock(order.getOrderNo(), flashSaleIds, flashStockMap, fruitMap);
+        }
+
         // 设置订单金额
         order.setTotalAmount(totalAmount);
         order.setPayAmount(totalAmount); // 实付金额，可以减去优惠金额
@@ -177,17 +238,31 @@ public class OrderServiceImpl implements OrderService {
         // 保存订单
         orderMapper.insert(order);
 
-        // 保存订单项
-        for (OrderItem orderItem : orderItems) {
-            orderItem.setOrderId(order.getId());
-            orderItemMapper.insert(orderItem);
+        // 批量保存订单项
+        if (!orderItems.isEmpty()) {
+            for (OrderItem orderItem : orderItems) {
+                orderItem.setOrderId(order.getId());
+            }
+            orderItemMapper.insertBatch(orderItems);
         }
 
-        // 清空购物车
-        for (Cart cart : cartList) {
-            cartMapper.deleteById(cart.getId());
+        // 批量清空购物车
+        if (!cartList.isEmpty()) {
+            List<Long> cartIdList = new ArrayList<>(cartList.size());
+            for (Cart cart : cartList) {
+                cartIdList.add(cart.getId());
+            }
+            cartMapper.deleteByIds(cartIdList);
         }
 
+        // 计入订单汇总统计
+        orderStatisticsService.onOrderCreated(order);
+
+        // 登记超时自动取消
+        Long orderId = order.getId();
+        Date createTime = order.getCreateTime();
+        runAfterCommit(() -> orderScheduleService.scheduleExpiry(orderId, createTime));
+
         return order;
     }
 
@@ -205,6 +280,11 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    @Override
+    public List<Order> getOrderPageByStatus(Long userId, Integer status, Long lastId, int size) {
+        return orderMapper.selectByUserIdBeforeId(userId, status, lastId, size);
+    }
+
     @Override
     public Order getOrderDetail(Long orderId) {
         return orderMapper.selectById(orderId);
@@ -213,7 +293,8 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean cancelOrder(Long orderId, Long userId) {
-        Order order = orderMapper.selectById(orderId);
+        // 锁定订单行，避免与超时取消任务并发时按过期状态修改，导致同一订单既支付又取消
+        Order order = orderMapper.selectByIdForUpdate(orderId);
         if (order == null || !order.getUserId().equals(userId)) {
             return false;
         }
@@ -222,22 +303,47 @@ public class OrderServiceImpl implements OrderService {
             return false;
         }
 
+        // 先按原状态修改，状态已被其他操作改变时不回退库存也不计入统计
+        Integer fromStatus = order.getStatus();
+        order.setStatus(4); // 已取消
+        order.setUpdateTime(new Date());
+        if (orderMapper.updateIfStatus(order, fromStatus) == 0) {
+            return false;
+        }
+        orderStatisticsService.onStatusChanged(order, fromStatus, 4);
+
+        // 未付款订单的限时特惠预扣未扣减t_fruit库存，提交后再释放
+        String orderNo = order.getOrderNo();
+        Map<Long, Integer> released = fromStatus == 0
+                ? flashSaleService.getReservation(orderNo)
+                : Collections.<Long, Integer>emptyMap();
+
         // 获取订单项，回退库存
         List<OrderItem> orderItems = orderItemMapper.selectByOrderId(orderId);
+        List<Long> restocked = new ArrayList<>();
         for (OrderItem orderItem : orderItems) {
-            // 回退库存
-            fruitMapper.increaseStock(orderItem.getFruitId(), orderItem.getQuantity());
+            int quantity = orderItem.getQuantity() - released.getOrDefault(orderItem.getFruitId(), 0);
+            if (quantity > 0) {
+                // 回退库存
+                fruitMapper.increaseStock(orderItem.getFruitId(), quantity);
+                restocked.add(orderItem.getFruitId());
+            }
         }
+        fruitCacheService.evictStockAfterCommit(restocked);
 
-        order.setStatus(4); // 已取消
-        order.setUpdateTime(new Date());
-        return orderMapper.update(order) > 0;
+        runAfterCommit(() -> {
+            if (!released.isEmpty()) {
+                flashSaleService.releaseReservation(orderNo);
+            }
+            orderScheduleService.cancelExpiry(orderId);
+        });
+        return true;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean payOrder(Long orderId, Long userId, Integer payType) {
-        Order order = orderMapper.selectById(orderId);
+        Order order = orderMapper.selectByIdForUpdate(orderId);
         if (order == null || !order.getUserId().equals(userId)) {
             return false;
         }
@@ -250,13 +356,23 @@ public class OrderServiceImpl implements OrderService {
         order.setPayType(payType);
         order.setPayTime(new Date());
         order.setUpdateTime(new Date());
-        return orderMapper.update(order) > 0;
+        boolean paid = orderMapper.updateIfStatus(order, 0) > 0;
+        if (paid) {
+            orderStatisticsService.onStatusChanged(order, 0, 1);
+            // 支付提交后确认限时特惠预扣，由对账任务异步同步到数据库
+            String orderNo = order.getOrderNo();
+            runAfterCommit(() -> {
+                flashSaleService.confirmReservation(orderNo);
+                orderScheduleService.cancelExpiry(orderId);
+            });
+        }
+        return paid;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean confirmReceive(Long orderId, Long userId) {
-        Order order = orderMapper.selectById(orderId);
+        Order order = orderMapper.selectByIdForUpdate(orderId);
         if (order == null || !order.getUserId().equals(userId)) {
             return false;
         }
@@ -268,7 +384,106 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus(3); // 已完成
         order.setReceiveTime(new Date());
         order.setUpdateTime(new Date());
-        return orderMapper.update(order) > 0;
+        boolean confirmed = orderMapper.updateIfStatus(order, 2) > 0;
+        if (confirmed) {
+            orderStatisticsService.onStatusChanged(order, 2, 3);
+        }
+        return confirmed;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Order updateOrderStatus(Long orderId, Integer status) {
+        // 加锁读取原状态，避免并发修改时按过期的原状态扣减统计
+        Order order = orderMapper.selectByIdForUpdate(orderId);
+        if (order == null) {
+            return null;
+        }
+
+        Integer fromStatus = order.getStatus();
+        order.setStatus(status);
+        if (orderMapper.updateByPrimaryKey(order) == 0) {
+            throw new BusinessException("更新订单状态失败");
+        }
+        orderStatisticsService.onStatusChanged(order, fromStatus, status);
+        return order;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Order shipOrder(Long orderId, String trackingNumber, String courier) {
+        Order order = orderMapper.selectByIdForUpdate(orderId);
+        if (order == null) {
+            return null;
+        }
+        if (order.getStatus() != 1) {
+            throw new BusinessException("只有待发货订单才能发货");
+        }
+
+        order.setStatus(2); // 已发货
+        order.setTrackingNumber(trackingNumber);
+        order.setCourier(courier);
+        if (orderMapper.updateByPrimaryKey(order) == 0) {
+            throw new BusinessException("发货失败");
+        }
+        orderStatisticsService.onStatusChanged(order, 1, 2);
+        return order;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean deleteOrder(Long orderId) {
+        Order order = orderMapper.selectByIdForUpdate(orderId);
+        if (order == null) {
+            return false;
+        }
+
+        // 汇总统计按订单和订单项计算，需在删除前扣除；删除失败时随事务一起回滚
+        orderStatisticsService.onOrderRemoved(order);
+        orderItemMapper.deleteByOrderId(orderId);
+        if (orderMapper.deleteByPrimaryKey(orderId) == 0) {
+            throw new BusinessException("删除订单失败");
+        }
+        return true;
+    }
+
+    /**
+     * 预扣限时特惠库存，事务回滚时自动释放
+     */
+    private void reserveFlashSaleStock(String orderNo, Map<Long, Long> flashSaleIds,
+                                       Map<Long, Integer> flashStockMap, Map<Long, Fruit> fruitMap) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        flashSaleService.releaseReservation(orderNo);
+                    }
+                }
+            });
+        }
+        for (Map.Entry<Long, Integer> entry : flashStockMap.entrySet()) {
+            Long fruitId = entry.getKey();
+            if (!flashSaleService.reserveStock(flashSaleIds.get(fruitId), fruitId, orderNo, entry.getValue())) {
+                throw new RuntimeException("限时特惠库存不足：" + fruitMap.get(fruitId).getName());
+            }
+        }
+    }
+
+    /**
+     * 事务提交后执行，无事务时立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
     /**
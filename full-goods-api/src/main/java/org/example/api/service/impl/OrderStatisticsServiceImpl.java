@@ -0,0 +1,511 @@
+package org.example.api.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.api.mapper.OrderStatsMapper;
+import org.example.api.service.OrderStatisticsService;
+import org.example.common.entity.Order;
+import org.example.common.entity.OrderDailyStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单汇总统计服务实现类
+ * 汇总表随订单事务增量更新；Redis按天保存热副本，仅在key存在时增量更新，不存在时由读请求从汇总表加载
+ */
+@Slf4j
+@Service
+public class OrderStatisticsServiceImpl implements OrderStatisticsService {
+
+    @Autowired
+    private OrderStatsMapper orderStatsMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 重建使用读已提交，INSERT…SELECT 读取订单表时不加间隙锁，不阻塞下单
+    private TransactionTemplate rebuildTransactionTemplate;
+
+    // 按日热副本，field为 count:{状态} 和 amount:{状态}（金额单位为分）
+    private static final String DAILY_KEY_PREFIX = "order:stats:daily:";
+
+    // 全部订单按状态汇总的热副本
+    private static final String TOTAL_KEY = "order:stats:total";
+
+    // 今天和昨天的订单状态变化频繁，热副本过期时间较短，兜底加载与增量之间的竞争偏差
+    private static final long RECENT_EXPIRE_SECONDS = 600;
+
+    private static final long HISTORY_EXPIRE_SECONDS = 24 * 3600;
+
+    // 订单状态：0-待付款，1-待发货，2-待收货，3-已完成，4-已取消
+    private static final int STATUS_COUNT = 5;
+
+    // 重建时每个事务处理的天数
+    private static final int REBUILD_CHUNK_DAYS = 7;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    /**
+     * 仅在热副本存在时累加，避免在空key上累加出不完整的数据
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "for i = 1, #ARGV, 2 do\n" +
+            "  redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    @PostConstruct
+    public void init() {
+        rebuildTransactionTemplate = new TransactionTemplate(transactionManager);
+        rebuildTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Override
+    public void onOrderCreated(Order order) {
+        onStatusChanged(Collections.singletonList(order), null, order.getStatus());
+    }
+
+    @Override
+    public void onStatusChanged(Order order, Integer fromStatus, Integer toStatus) {
+        onStatusChanged(Collections.singletonList(order), fromStatus, toStatus);
+    }
+
+    @Override
+    public void onStatusChanged(List<Order> orders, Integer fromStatus, Integer toStatus) {
+        if (orders == null || orders.isEmpty() || Objects.equals(fromStatus, toStatus)) {
+            return;
+        }
+
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            orderIds.add(order.getId());
+        }
+        // 金额和分类以数据库中的订单数据为准
+        if (fromStatus != null) {
+            orderStatsMapper.applyOrderDelta(orderIds, fromStatus, -1);
+            orderStatsMapper.applyCategoryDelta(orderIds, fromStatus, -1);
+        }
+        if (toStatus != null) {
+            orderStatsMapper.applyOrderDelta(orderIds, toStatus, 1);
+            orderStatsMapper.applyCategoryDelta(orderIds, toStatus, 1);
+        }
+
+        // 热副本增量：key -> field -> 增量
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        for (Order order : orders) {
+            if (order.getCreateTime() == null) {
+                continue;
+            }
+            String dailyKey = dailyKey(toLocalDate(order.getCreateTime()));
+            long cents = toCents(order.getPayAmount());
+            addDelta(deltas, dailyKey, fromStatus, -1, cents);
+            addDelta(deltas, dailyKey, toStatus, 1, cents);
+            addDelta(deltas, TOTAL_KEY, fromStatus, -1, cents);
+            addDelta(deltas, TOTAL_KEY, toStatus, 1, cents);
+        }
+        runAfterCommit(() -> applyHotDeltas(deltas));
+    }
+
+    @Override
+    public void onOrderRemoved(Order order) {
+        onStatusChanged(Collections.singletonList(order), order.getStatus(), null);
+    }
+
+    @Override
+    public Map<String, Object> getOrderSummary() {
+        LocalDate today = LocalDate.now();
+        LocalDate lastMonthStart = today.withDayOfMonth(1).minusMonths(1);
+        DayStats totals = loadTotals();
+        Map<LocalDate, DayStats> daily = loadDailyStats(lastMonthStart, today);
+        DayStats todayStats = daily.get(today);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("totalOrders", totals.totalCount());
+        summary.put("todayOrders", todayStats.totalCount());
+        summary.put("todayRevenue", BigDecimal.valueOf(todayStats.salesCents(), 2));
+        summary.put("pendingOrders", totals.counts[0]);
+        summary.put("paidOrders", totals.counts[1]);
+        summary.put("shippedOrders", totals.counts[2]);
+        summary.put("completedOrders", totals.counts[3]);
+        summary.put("cancelledOrders", totals.counts[4]);
+
+        // 月增长率：本月与上月订单数对比
+        long thisMonth = 0;
+        long lastMonth = 0;
+        for (Map.Entry<LocalDate, DayStats> entry : daily.entrySet()) {
+            if (entry.getKey().getMonthValue() == today.getMonthValue()) {
+                thisMonth += entry.getValue().totalCount();
+            } else {
+                lastMonth += entry.getValue().totalCount();
+            }
+        }
+        double growth = lastMonth == 0 ? 100.0
+                : Math.round((thisMonth - lastMonth) * 10000.0 / lastMonth) / 100.0;
+        summary.put("monthlyGrowth", growth);
+        return summary;
+    }
+
+    @Override
+    public BigDecimal getTodayRevenue() {
+        LocalDate today = LocalDate.now();
+        return BigDecimal.valueOf(loadDailyStats(today, today).get(today).salesCents(), 2);
+    }
+
+    @Override
+    public Map<String, Object> getSalesTrend(int days) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = endDate.minusDays(Math.max(days, 1) - 1);
+        Map<LocalDate, DayStats> daily = loadDailyStats(startDate, endDate);
+
+        List<String> dates = new ArrayList<>(daily.size());
+        List<BigDecimal> sales = new ArrayList<>(daily.size());
+        List<Integer> orders = new ArrayList<>(daily.size());
+        for (Map.Entry<LocalDate, DayStats> entry : daily.entrySet()) {
+            dates.add(entry.getKey().format(DATE_FORMAT));
+            sales.add(BigDecimal.valueOf(entry.getValue().salesCents(), 2));
+            orders.add((int) entry.getValue().salesCount());
+        }
+
+        Map<String, Object> trendData = new HashMap<>();
+        trendData.put("dates", dates);
+        trendData.put("sales", sales);
+        trendData.put("orders", orders);
+        return trendData;
+    }
+
+    @Override
+    public List<OrderDailyStats> getCategorySales(int days) {
+        LocalDate endDate = LocalDate.now();
+        List<OrderDailyStats> result = orderStatsMapper.selectCategorySales(
+                endDate.minusDays(Math.max(days, 1) - 1), endDate);
+        for (OrderDailyStats stats : result) {
+            if (stats.getCategoryName() == null) {
+                stats.setCategoryName("未分类");
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("重建日期范围无效");
+        }
+
+        long startTime = System.currentTimeMillis();
+        int days = 0;
+        LocalDate chunkStart = startDate;
+        while (!chunkStart.isAfter(endDate)) {
+            LocalDate chunkEnd = chunkStart.plusDays(REBUILD_CHUNK_DAYS - 1);
+            if (chunkEnd.isAfter(endDate)) {
+                chunkEnd = endDate;
+            }
+            LocalDate from = chunkStart;
+            LocalDate to = chunkEnd;
+            rebuildTransactionTemplate.executeWithoutResult(status -> {
+                orderStatsMapper.deleteDailyStats(from, to);
+                orderStatsMapper.deleteCategoryStats(from, to);
+                orderStatsMapper.rebuildDailyStats(from, to);
+                orderStatsMapper.rebuildCategoryStats(from, to);
+            });
+
+            List<String> keys = new ArrayList<>();
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                keys.add(dailyKey(date));
+                days++;
+            }
+            deleteHotKeys(keys);
+            chunkStart = chunkEnd.plusDays(1);
+        }
+        deleteHotKeys(Collections.singletonList(TOTAL_KEY));
+
+        log.info("重建订单汇总统计完成 - 日期: {} ~ {}, 天数: {}, 耗时: {}ms",
+                startDate, endDate, days, System.currentTimeMillis() - startTime);
+        return days;
+    }
+
+    @Override
+    public int rebuildIfMissing(int recentDays) {
+        LocalDate today = LocalDate.now();
+        if (orderStatsMapper.selectEarliestStatDate() == null) {
+            LocalDate earliest = orderStatsMapper.selectEarliestOrderDate();
+            return earliest == null ? 0 : rebuild(earliest, today);
+        }
+        return rebuild(today.minusDays(Math.max(recentDays, 1) - 1), today);
+    }
+
+    @Override
+    public int rebuildAll() {
+        LocalDate earliest = orderStatsMapper.selectEarliestOrderDate();
+        return earliest == null ? 0 : rebuild(earliest, LocalDate.now());
+    }
+
+    /**
+     * 按天读取统计，先批量读Redis热副本，缺失的日期一次查询汇总表后回填
+     *
+     * @return 日期 -> 统计，按日期升序，范围内每天都有值
+     */
+    private Map<LocalDate, DayStats> loadDailyStats(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+
+        Map<LocalDate, DayStats> result = new LinkedHashMap<>();
+        List<Object> cached = readHashes(dates);
+        LocalDate missStart = null;
+        LocalDate missEnd = null;
+        for (int i = 0; i < dates.size(); i++) {
+            Object hash = cached != null ? cached.get(i) : null;
+            if (hash instanceof Map && !((Map<?, ?>) hash).isEmpty()) {
+                result.put(dates.get(i), DayStats.fromHash((Map<?, ?>) hash));
+            } else {
+                result.put(dates.get(i), null);
+                if (missStart == null) {
+                    missStart = dates.get(i);
+                }
+                missEnd = dates.get(i);
+            }
+        }
+        if (missStart == null) {
+            return result;
+        }
+
+        Map<LocalDate, DayStats> loaded = new HashMap<>();
+        for (OrderDailyStats row : orderStatsMapper.selectDailyStats(missStart, missEnd)) {
+            loaded.computeIfAbsent(row.getStatDate(), d -> new DayStats()).add(row);
+        }
+        Map<String, DayStats> refill = new HashMap<>();
+        for (Map.Entry<LocalDate, DayStats> entry : result.entrySet()) {
+            if (entry.getValue() == null) {
+                DayStats stats = loaded.getOrDefault(entry.getKey(), new DayStats());
+                entry.setValue(stats);
+                refill.put(dailyKey(entry.getKey()), stats);
+            }
+        }
+        writeHashes(refill, endDate);
+        return result;
+    }
+
+    private DayStats loadTotals() {
+        try {
+            Map<Object, Object> hash = redisTemplate.opsForHash().entries(TOTAL_KEY);
+            if (!hash.isEmpty()) {
+                return DayStats.fromHash(hash);
+            }
+        } catch (Exception e) {
+            log.warn("读取订单汇总热副本失败，直接查询汇总表", e);
+        }
+        DayStats totals = new DayStats();
+        for (OrderDailyStats row : orderStatsMapper.selectStatusTotals()) {
+            totals.add(row);
+        }
+        try {
+            redisTemplate.opsForHash().putAll(TOTAL_KEY, totals.toHash());
+            redisTemplate.expire(TOTAL_KEY, RECENT_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("回填订单汇总热副本失败", e);
+        }
+        return totals;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> readHashes(List<LocalDate> dates) {
+        try {
+            return redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (LocalDate date : dates) {
+                        ops.opsForHash().entries(dailyKey(date));
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("读取按日统计热副本失败，直接查询汇总表", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeHashes(Map<String, DayStats> refill, LocalDate today) {
+        String recentFrom = dailyKey(today.minusDays(1));
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (Map.Entry<String, DayStats> entry : refill.entrySet()) {
+                        ops.opsForHash().putAll(entry.getKey(), entry.getValue().toHash());
+                        // key按日期格式排列，可直接比较字符串
+                        long expire = entry.getKey().compareTo(recentFrom) >= 0
+                                ? RECENT_EXPIRE_SECONDS : HISTORY_EXPIRE_SECONDS;
+                        ops.expire(entry.getKey(), expire, TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("回填按日统计热副本失败", e);
+        }
+    }
+
+    private void applyHotDeltas(Map<String, Map<String, Long>> deltas) {
+        for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+            List<String> args = new ArrayList<>(entry.getValue().size() * 2);
+            for (Map.Entry<String, Long> field : entry.getValue().entrySet()) {
+                if (field.getValue() != 0) {
+                    args.add(field.getKey());
+                    args.add(String.valueOf(field.getValue()));
+                }
+            }
+            if (args.isEmpty()) {
+                continue;
+            }
+            try {
+                redisTemplate.execute(INCREMENT_SCRIPT, Collections.singletonList(entry.getKey()), args.toArray());
+            } catch (Exception e) {
+                // 增量失败时删除热副本，下次读取从汇总表重新加载
+                log.warn("更新订单统计热副本失败 - key: {}", entry.getKey(), e);
+                deleteHotKeys(Collections.singletonList(entry.getKey()));
+            }
+        }
+    }
+
+    private void deleteHotKeys(List<String> keys) {
+        try {
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.error("删除订单统计热副本失败 - keys: {}", keys, e);
+        }
+    }
+
+    private static void addDelta(Map<String, Map<String, Long>> deltas, String key, Integer status,
+                                 int sign, long cents) {
+        if (status == null) {
+            return;
+        }
+        Map<String, Long> fields = deltas.computeIfAbsent(key, k -> new HashMap<>());
+        fields.merge("count:" + status, (long) sign, Long::sum);
+        fields.merge("amount:" + status, sign * cents, Long::sum);
+    }
+
+    /**
+     * 事务提交后执行，无事务时立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String dailyKey(LocalDate date) {
+        return DAILY_KEY_PREFIX + date.format(DATE_FORMAT);
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+
+    /**
+     * 一天（或全部）各状态的订单数和金额（分）
+     */
+    private static final class DayStats {
+
+        private final long[] counts = new long[STATUS_COUNT];
+
+        private final long[] amounts = new long[STATUS_COUNT];
+
+        void add(OrderDailyStats row) {
+            Integer status = row.getStatus();
+            if (status == null || status < 0 || status >= STATUS_COUNT) {
+                return;
+            }
+            counts[status] += row.getOrderCount() != null ? row.getOrderCount() : 0;
+            amounts[status] += toCents(row.getAmount());
+        }
+
+        long totalCount() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * 有效销售（已支付、已发货、已完成）的订单数
+         */
+        long salesCount() {
+            return counts[1] + counts[2] + counts[3];
+        }
+
+        long salesCents() {
+            return amounts[1] + amounts[2] + amounts[3];
+        }
+
+        Map<String, String> toHash() {
+            Map<String, String> hash = new HashMap<>();
+            for (int i = 0; i < STATUS_COUNT; i++) {
+                hash.put("count:" + i, String.valueOf(counts[i]));
+                hash.put("amount:" + i, String.valueOf(amounts[i]));
+            }
+            return hash;
+        }
+
+        static DayStats fromHash(Map<?, ?> hash) {
+            DayStats stats = new DayStats();
+            for (int i = 0; i < STATUS_COUNT; i++) {
+                stats.counts[i] = parseLong(hash.get("count:" + i));
+                stats.amounts[i] = parseLong(hash.get("amount:" + i));
+            }
+            return stats;
+        }
+
+        private static long parseLong(Object value) {
+            return value == null ? 0 : Long.parseLong(value.toString());
+        }
+    }
+}
@@ -10,15 +10,23 @@ import org.example.api.service.UserService;
 import org.example.common.entity.User;
 import org.example.common.exception.BusinessException;
 import org.example.common.util.SecurityUtil;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import org.example.common.service.AsyncService;
+import org.example.common.utils.LocalExpiringCache;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,7 +34,7 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 @Service
-public class UserServiceImpl implements UserService {
+public class UserServiceImpl implements UserService, MessageListener {
 
     @Autowired
     private UserMapper userMapper;
@@ -36,6 +44,9 @@ public class UserServiceImpl implements UserService {
     
     @Autowired
     private AsyncService asyncService;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
     
     // 验证码Redis前缀
     private static final String VERIFY_CODE_PREFIX = "verify_code:";
@@ -47,6 +58,30 @@ public class UserServiceImpl implements UserService {
     
     // token Redis前缀
     private static final String TOKEN_PREFIX = "user_token:";
+    
+    // token反向索引Redis前缀（token -> userId）
+    private static final String TOKEN_INDEX_PREFIX = "user_token_index:";
+    
+    // 本地token缓存最大条目数
+    private static final int LOCAL_TOKEN_CACHE_SIZE = 100_000;
+    
+    // 本地token缓存存活时间（毫秒），失效广播丢失时其他节点最多延迟这么久
+    private static final long LOCAL_TOKEN_CACHE_TTL = 10_000;
+    
+    /**
+     * token失效广播频道，消息内容为 {节点ID}:t:{token} 或 {节点ID}:u:{用户ID}
+     */
+    private static final String TOKEN_INVALIDATE_CHANNEL = "user:token:invalidate";
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    // 本地token缓存，命中时认证请求不再访问Redis；缓存的是快照，返回给调用方的是副本
+    private final LocalExpiringCache<String, User> localTokenCache = new LocalExpiringCache<>(LOCAL_TOKEN_CACHE_SIZE, User::getId);
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(TOKEN_INVALIDATE_CHANNEL));
+    }
 
     @Override
     public User login(LoginDTO loginDTO) {
@@ -80,7 +115,14 @@ public class UserServiceImpl implements UserService {
         // 生成并保存token
         String token = SecurityUtil.generateToken();
         String tokenKey = TOKEN_PREFIX + user.getId();
+        String oldToken = redisTemplate.opsForValue().get(tokenKey);
         redisTemplate.opsForValue().set(tokenKey, token, TOKEN_EXPIRE, TimeUnit.HOURS);
+        redisTemplate.opsForValue().set(TOKEN_INDEX_PREFIX + token, String.valueOf(user.getId()), TOKEN_EXPIRE, TimeUnit.HOURS);
+        // 同一用户只保留最新token，旧token的反向索引随之失效
+        if (StringUtils.isNotBlank(oldToken) && !oldToken.equals(token)) {
+            redisTemplate.delete(TOKEN_INDEX_PREFIX + oldToken);
+            evictToken(oldToken);
+        }
         log.info("用户登录成功，用户ID: {}, 生成token: {}", user.getId(), token);
 
         return user;
@@ -218,7 +260,7 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException("token不能为空");
         }
         
-        // 根据token获取用户信息
+        // 根据token获取用户信息，返回的是副本，数据库更新失败不会影响缓存
         User user = getByToken(updateUserDTO.getToken());
         if (user == null) {
             throw new BusinessException("用户不存在或token已过期");
@@ -270,6 +312,7 @@ public class UserServiceImpl implements UserService {
         
         // 更新数据库
         userMapper.update(user);
+        evictUser(user.getId());
         
         return user;
     }
@@ -313,36 +356,40 @@ public class UserServiceImpl implements UserService {
     }
     
     @Override
-    @Cacheable(value = "userCache", key = "'token:' + #token", unless = "#result == null")
     public User getByToken(String token) {
         if (StringUtils.isBlank(token)) {
             return null;
         }
         
-        // 根据token从Redis中查找用户信息
+        User cached = localTokenCache.get(token);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+        
+        // 通过反向索引一次查询得到用户ID
         try {
-            // 获取所有token keys
-            Set<String> keys = redisTemplate.keys(TOKEN_PREFIX + "*");
-            if (keys == null || keys.isEmpty()) {
-                log.warn("Redis中没有找到任何token");
+            String indexKey = TOKEN_INDEX_PREFIX + token;
+            String userIdStr = redisTemplate.opsForValue().get(indexKey);
+            if (StringUtils.isBlank(userIdStr)) {
                 return null;
             }
             
-            // 查找匹配的token
-            for (String key : keys) {
-                String savedToken = redisTemplate.opsForValue().get(key);
-                if (token.equals(savedToken)) {
-                    // 从key中提取用户ID
-                    String userIdStr = key.substring(TOKEN_PREFIX.length());
-                    try {
-                        Long userId = Long.parseLong(userIdStr);
-                        return userMapper.selectById(userId);
-                    } catch (NumberFormatException e) {
-                        log.error("无法解析用户ID: {}", userIdStr, e);
-                        break;
-                    }
-                }
+            Long userId;
+            try {
+                userId = Long.parseLong(userIdStr);
+            } catch (NumberFormatException e) {
+                log.error("无法解析用户ID: {}", userIdStr, e);
+                return null;
             }
+            
+            User user = userMapper.selectById(userId);
+            if (user != null) {
+                // 本地缓存不超过token剩余有效期
+                Long ttl = redisTemplate.getExpire(indexKey, TimeUnit.MILLISECONDS);
+                long localTtl = ttl != null && ttl > 0 ? Math.min(ttl, LOCAL_TOKEN_CACHE_TTL) : LOCAL_TOKEN_CACHE_TTL;
+                localTokenCache.put(token, copyOf(user), localTtl);
+            }
+            return user;
         } catch (Exception e) {
             log.error("根据token获取用户信息异常", e);
         }
@@ -351,34 +398,105 @@ public class UserServiceImpl implements UserService {
     }
     
     @Override
-    @CacheEvict(value = "userCache", key = "'token:' + #token")
     public boolean logout(String token) {
         if (StringUtils.isBlank(token)) {
             return false;
         }
         
-        // 从Redis中删除token
+        evictToken(token);
+        
+        // 从Redis中删除token及其反向索引
         try {
-            // 查找匹配的token并删除
-            Set<String> keys = redisTemplate.keys(TOKEN_PREFIX + "*");
-            if (keys != null && !keys.isEmpty()) {
-                for (String key : keys) {
-                    String savedToken = redisTemplate.opsForValue().get(key);
-                    if (token.equals(savedToken)) {
-                        redisTemplate.delete(key);
-                        log.info("用户登出成功，token已删除: {}", token);
-                        return true;
-                    }
-                }
+            String indexKey = TOKEN_INDEX_PREFIX + token;
+            String userIdStr = redisTemplate.opsForValue().get(indexKey);
+            if (StringUtils.isBlank(userIdStr)) {
+                log.warn("未找到匹配的token: {}", token);
+                return false;
             }
-            log.warn("未找到匹配的token: {}", token);
-            return false;
+            
+            redisTemplate.delete(indexKey);
+            String tokenKey = TOKEN_PREFIX + userIdStr;
+            // 仅当该用户当前token仍是本token时才删除，避免误删新登录的token
+            if (token.equals(redisTemplate.opsForValue().get(tokenKey))) {
+                redisTemplate.delete(tokenKey);
+            }
+            log.info("用户登出成功，token已删除: {}", token);
+            return true;
         } catch (Exception e) {
             log.error("用户登出异常", e);
             return false;
         }
     }
+    
+    @Override
+    public void invalidateTokens(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        
+        try {
+            String tokenKey = TOKEN_PREFIX + userId;
+            String token = redisTemplate.opsForValue().get(tokenKey);
+            if (StringUtils.isNotBlank(token)) {
+                redisTemplate.delete(TOKEN_INDEX_PREFIX + token);
+            }
+            redisTemplate.delete(tokenKey);
+        } catch (Exception e) {
+            log.error("删除用户token异常，用户ID: {}", userId, e);
+        }
+        evictUser(userId);
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        if ("t".equals(parts[1])) {
+            localTokenCache.remove(parts[2]);
+        } else if ("u".equals(parts[1])) {
+            evictUserLocal(parts[2]);
+        }
+    }
+    
+    /**
+     * 清除本节点和其他节点缓存的token
+     */
+    private void evictToken(String token) {
+        localTokenCache.remove(token);
+        publish("t", token);
+    }
+    
+    /**
+     * 清除所有节点缓存的该用户的全部token
+     */
+    private void evictUser(Long userId) {
+        evictUserLocal(String.valueOf(userId));
+        publish("u", String.valueOf(userId));
+    }
+    
+    private void evictUserLocal(String userId) {
+        try {
+            // 按用户分组删除，只访问该用户的token
+            localTokenCache.removeGroup(Long.valueOf(userId));
+        } catch (NumberFormatException e) {
+            log.warn("无法解析的用户ID: {}", userId);
+        }
+    }
+    
+    private void publish(String type, String value) {
+        try {
+            redisTemplate.convertAndSend(TOKEN_INVALIDATE_CHANNEL, nodeId + ":" + type + ":" + value);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖本地缓存过期时间兜底
+            log.error("广播token失效消息失败: {}:{}", type, value, e);
+        }
+    }
+    
+    private static User copyOf(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
 }
-
-
-
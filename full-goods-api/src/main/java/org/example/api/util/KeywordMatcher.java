@@ -0,0 +1,185 @@
+package org.example.api.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多关键词匹配器（Aho-Corasick自动机）
+ * 构建后不可修改，可被多个线程同时使用；一次扫描文本即可找出所有出现的关键词，包括互相重叠的关键词。
+ * 匹配不区分大小写，每个关键词可以带多个标签。
+ *
+ * @param <T> 关键词标签类型
+ */
+public final class KeywordMatcher<T> {
+
+    private static final int NONE = -1;
+
+    // 各节点的子节点按字符排序存放在 childChars/childNodes 的 [childStart[n], childStart[n+1]) 区间
+    private final int[] childStart;
+    private final char[] childChars;
+    private final int[] childNodes;
+
+    private final int[] fail;
+
+    // 以该节点结尾的关键词序号
+    private final int[] patternAt;
+
+    // 沿失败链最近的、有关键词结尾的节点
+    private final int[] outputLink;
+
+    private final List<List<T>> tags;
+
+    private KeywordMatcher(Builder<T> builder) {
+        int nodeCount = builder.children.size();
+        childStart = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            childStart[node + 1] = childStart[node] + builder.children.get(node).size();
+        }
+        childChars = new char[childStart[nodeCount]];
+        childNodes = new int[childStart[nodeCount]];
+        for (int node = 0; node < nodeCount; node++) {
+            Map<Character, Integer> children = builder.children.get(node);
+            Character[] chars = children.keySet().toArray(new Character[0]);
+            Arrays.sort(chars);
+            for (int i = 0; i < chars.length; i++) {
+                childChars[childStart[node] + i] = chars[i];
+                childNodes[childStart[node] + i] = children.get(chars[i]);
+            }
+        }
+        patternAt = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            patternAt[node] = builder.patternAt.get(node);
+        }
+        tags = new ArrayList<>(builder.tags.size());
+        for (List<T> patternTags : builder.tags) {
+            tags.add(Collections.unmodifiableList(new ArrayList<>(patternTags)));
+        }
+
+        // 按层遍历计算失败链
+        fail = new int[nodeCount];
+        outputLink = new int[nodeCount];
+        outputLink[0] = NONE;
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = childStart[0]; i < childStart[1]; i++) {
+            fail[childNodes[i]] = 0;
+            outputLink[childNodes[i]] = NONE;
+            queue.add(childNodes[i]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = childStart[node]; i < childStart[node + 1]; i++) {
+                char c = childChars[i];
+                int child = childNodes[i];
+                int state = fail[node];
+                int next;
+                while ((next = step(state, c)) == NONE && state != 0) {
+                    state = fail[state];
+                }
+                fail[child] = next == NONE ? 0 : next;
+                outputLink[child] = patternAt[fail[child]] != NONE ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 关键词数量
+     */
+    public int size() {
+        return tags.size();
+    }
+
+    /**
+     * 找出文本中出现的所有关键词的标签，同一关键词多次出现只返回一次，按首次出现的位置排列
+     */
+    public List<T> findAll(CharSequence text) {
+        List<T> result = new ArrayList<>();
+        if (text == null || tags.isEmpty()) {
+            return result;
+        }
+        BitSet found = new BitSet();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(state, c)) == NONE && state != 0) {
+                state = fail[state];
+            }
+            state = next == NONE ? 0 : next;
+
+            for (int node = patternAt[state] != NONE ? state : outputLink[state]; node != NONE; node = outputLink[node]) {
+                int pattern = patternAt[node];
+                if (!found.get(pattern)) {
+                    found.set(pattern);
+                    result.addAll(tags.get(pattern));
+                }
+            }
+        }
+        return result;
+    }
+
+    private int step(int node, char c) {
+        int index = Arrays.binarySearch(childChars, childStart[node], childStart[node + 1], c);
+        return index >= 0 ? childNodes[index] : NONE;
+    }
+
+    /**
+     * 匹配器构建器
+     */
+    public static final class Builder<T> {
+
+        private final List<Map<Character, Integer>> children = new ArrayList<>();
+        private final List<Integer> patternAt = new ArrayList<>();
+        private final List<List<T>> tags = new ArrayList<>();
+
+        private Builder() {
+            newNode();
+        }
+
+        /**
+         * 添加关键词，同一关键词多次添加时合并标签
+         */
+        public Builder<T> add(String keyword, T tag) {
+            if (keyword == null || keyword.isEmpty()) {
+                return this;
+            }
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer child = children.get(node).get(c);
+                if (child == null) {
+                    child = newNode();
+                    children.get(node).put(c, child);
+                }
+                node = child;
+            }
+            if (patternAt.get(node) == NONE) {
+                patternAt.set(node, tags.size());
+                tags.add(new ArrayList<>());
+            }
+            tags.get(patternAt.get(node)).add(tag);
+            return this;
+        }
+
+        public KeywordMatcher<T> build() {
+            return new KeywordMatcher<>(this);
+        }
+
+        private int newNode() {
+            children.add(new HashMap<>(4));
+            patternAt.add(NONE);
+            return children.size() - 1;
+        }
+    }
+}
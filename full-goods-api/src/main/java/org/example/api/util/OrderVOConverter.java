@@ -0,0 +1,112 @@
+package org.example.api.util;
+
+import org.example.api.vo.OrderItemVO;
+import org.example.api.vo.OrderVO;
+import org.example.common.entity.Order;
+import org.example.common.entity.OrderItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单VO转换工具类
+ * 逐字段赋值，不使用反射拷贝
+ */
+public class OrderVOConverter {
+
+    /**
+     * 订单转换为VO，不含订单项
+     *
+     * @param order 订单
+     * @return 订单VO
+     */
+    public static OrderVO toVO(Order order) {
+        OrderVO vo = new OrderVO();
+        vo.setId(order.getId());
+        vo.setOrderNo(order.getOrderNo());
+        vo.setUserId(order.getUserId());
+        vo.setStatus(order.getStatus());
+        vo.setReceiverName(order.getReceiverName());
+        vo.setReceiverPhone(order.getReceiverPhone());
+        vo.setReceiverProvince(order.getReceiverProvince());
+        vo.setReceiverCity(order.getReceiverCity());
+        vo.setReceiverDistrict(order.getReceiverDistrict());
+        vo.setReceiverAddress(order.getReceiverAddress());
+        vo.setTotalAmount(order.getTotalAmount());
+        vo.setPayAmount(order.getPayAmount());
+        vo.setFreightAmount(order.getFreightAmount());
+        vo.setDiscountAmount(order.getDiscountAmount());
+        vo.setPayType(order.getPayType());
+        vo.setPayTime(order.getPayTime());
+        vo.setReceiveTime(order.getReceiveTime());
+        vo.setCreateTime(order.getCreateTime());
+        vo.setUpdateTime(order.getUpdateTime());
+        vo.setTrackingNumber(order.getTrackingNumber());
+        vo.setCourier(order.getCourier());
+        vo.setStatusDesc(vo.getStatusDesc());
+        return vo;
+    }
+
+    /**
+     * 订单项转换为VO
+     *
+     * @param item 订单项
+     * @return 订单项VO
+     */
+    public static OrderItemVO toItemVO(OrderItem item) {
+        OrderItemVO vo = new OrderItemVO();
+        vo.setId(item.getId());
+        vo.setOrderId(item.getOrderId());
+        vo.setOrderNo(item.getOrderNo());
+        vo.setFruitId(item.getFruitId());
+        vo.setFruitName(item.getFruitName());
+        vo.setFruitImage(item.getFruitImage());
+        vo.setPrice(item.getPrice());
+        vo.setQuantity(item.getQuantity());
+        vo.setTotalPrice(item.getTotalPrice());
+        return vo;
+    }
+
+    /**
+     * 订单转换为VO，并填充订单项和商品总数量
+     *
+     * @param order 订单
+     * @param items 该订单的订单项
+     * @return 订单VO
+     */
+    public static OrderVO toVO(Order order, List<OrderItem> items) {
+        OrderVO vo = toVO(order);
+        List<OrderItemVO> itemVOs = new ArrayList<>(items.size());
+        int totalQuantity = 0;
+        for (OrderItem item : items) {
+            itemVOs.add(toItemVO(item));
+            totalQuantity += item.getQuantity() != null ? item.getQuantity() : 0;
+        }
+        vo.setItems(itemVOs);
+        vo.setTotalQuantity(totalQuantity);
+        return vo;
+    }
+
+    /**
+     * 批量转换订单，订单项按订单ID分组后填充，保持订单原有顺序
+     *
+     * @param orders 订单列表
+     * @param items 这些订单的全部订单项
+     * @return 订单VO列表
+     */
+    public static List<OrderVO> toVOList(List<Order> orders, List<OrderItem> items) {
+        Map<Long, List<OrderItem>> itemsByOrderId = new HashMap<>(orders.size() * 2);
+        for (OrderItem item : items) {
+            itemsByOrderId.computeIfAbsent(item.getOrderId(), k -> new ArrayList<>()).add(item);
+        }
+
+        List<OrderVO> voList = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            voList.add(toVO(order, itemsByOrderId.getOrDefault(order.getId(), Collections.emptyList())));
+        }
+        return voList;
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.api.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的 {{变量}} 文本模板
+ * 编译时把模板拆成文本段和变量段，渲染时按顺序拼接，不再做正则匹配。
+ * 参数中没有的变量或值为null的变量保留原样输出。构建后不可修改，可被多个线程同时使用。
+ */
+public final class TextTemplate {
+
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+
+    // literals[i] 之后是 variables[i]，最后一段文本为 literals[variables.length]
+    private final String[] literals;
+    private final String[] variables;
+
+    private final int literalLength;
+
+    private TextTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板，模板为null时返回null
+     */
+    public static TextTemplate compile(String template) {
+        if (template == null) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(template.substring(last, matcher.start()));
+            variables.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(template.substring(last));
+        return new TextTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    /**
+     * 模板中用到的变量
+     */
+    public Set<String> getVariables() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, variables);
+        return names;
+    }
+
+    /**
+     * 渲染模板
+     */
+    public String render(Map<String, Object> params) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        return render(params, new StringBuilder(literalLength + variables.length * 16));
+    }
+
+    /**
+     * 使用调用方提供的缓冲区渲染模板，批量渲染时可重复使用同一个缓冲区
+     */
+    public String render(Map<String, Object> params, StringBuilder buffer) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        buffer.setLength(0);
+        appendTo(buffer, params);
+        return buffer.toString();
+    }
+
+    /**
+     * 将渲染结果追加到缓冲区
+     */
+    public void appendTo(StringBuilder buffer, Map<String, Object> params) {
+        for (int i = 0; i < variables.length; i++) {
+            buffer.append(literals[i]);
+            Object value = params != null ? params.get(variables[i]) : null;
+            if (value != null) {
+                buffer.append(value);
+            } else {
+                buffer.append("{{").append(variables[i]).append("}}");
+            }
+        }
+        buffer.append(literals[variables.length]);
+    }
+}
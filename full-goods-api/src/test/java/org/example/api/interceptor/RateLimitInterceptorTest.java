@@ -0,0 +1,110 @@
+package org.example.api.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.api.config.RateLimitProperties;
+import org.example.api.service.UserService;
+import org.example.common.ratelimit.LocalRateLimiter;
+import org.example.common.ratelimit.RateLimitRule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 限流拦截器单元测试
+ */
+class RateLimitInterceptorTest {
+
+    private RateLimitProperties properties;
+
+    private RateLimitInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setName("default");
+        policy.setPattern("/**");
+        policy.setDimension(RateLimitProperties.Dimension.IP);
+        policy.setAlgorithm(RateLimitRule.Algorithm.TOKEN_BUCKET);
+        policy.setCapacity(1);
+        policy.setRefillRate(1);
+
+        properties = new RateLimitProperties();
+        properties.setTrustedProxies(Arrays.asList("127.0.0.1", "::1", "172.20.0.0/16"));
+        properties.setPolicies(Collections.singletonList(policy));
+        properties.setInternalToken("internal-secret");
+        properties.init();
+
+        interceptor = new RateLimitInterceptor();
+        ReflectionTestUtils.setField(interceptor, "rateLimiter", new LocalRateLimiter());
+        ReflectionTestUtils.setField(interceptor, "properties", properties);
+        ReflectionTestUtils.setField(interceptor, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(interceptor, "userService", mock(UserService.class));
+    }
+
+    @Test
+    void testTrustedProxyMatchesCidr() {
+        assertTrue(properties.isTrustedProxy("172.20.3.7"));
+        assertTrue(properties.isTrustedProxy("127.0.0.1"));
+        assertTrue(properties.isTrustedProxy("0:0:0:0:0:0:0:1"));
+        assertFalse(properties.isTrustedProxy("172.21.0.1"));
+        assertFalse(properties.isTrustedProxy("203.0.113.9"));
+        // 非IP字面量不做域名解析
+        assertFalse(properties.isTrustedProxy("localhost"));
+        assertFalse(properties.isTrustedProxy("unknown"));
+    }
+
+    @Test
+    void testClientsBehindNonLoopbackProxyCountedSeparately() throws Exception {
+        // nginx在compose网络中，直连地址不是回环地址
+        assertTrue(preHandle(proxied("172.20.0.5", "203.0.113.1")));
+        assertTrue(preHandle(proxied("172.20.0.5", "203.0.113.2")));
+        assertFalse(preHandle(proxied("172.20.0.5", "203.0.113.1")));
+    }
+
+    @Test
+    void testForwardedHeaderIgnoredFromUntrustedAddress() throws Exception {
+        assertTrue(preHandle(proxied("198.51.100.7", "203.0.113.1")));
+        // 伪造的X-Forwarded-For不能换来新的额度
+        assertFalse(preHandle(proxied("198.51.100.7", "203.0.113.2")));
+    }
+
+    @Test
+    void testInternalCallNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = proxied("127.0.0.1", null);
+            request.addHeader(RateLimitInterceptor.INTERNAL_TOKEN_HEADER, "internal-secret");
+            assertTrue(preHandle(request));
+        }
+
+        MockHttpServletRequest wrongToken = proxied("127.0.0.1", null);
+        wrongToken.addHeader(RateLimitInterceptor.INTERNAL_TOKEN_HEADER, "guess");
+        assertTrue(preHandle(wrongToken));
+        MockHttpServletRequest again = proxied("127.0.0.1", null);
+        again.addHeader(RateLimitInterceptor.INTERNAL_TOKEN_HEADER, "guess");
+        assertFalse(preHandle(again));
+    }
+
+    private MockHttpServletRequest proxied(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fruit/list");
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+
+    private boolean preHandle(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean allowed = interceptor.preHandle(request, response, null);
+        assertEquals(allowed ? 200 : 429, response.getStatus());
+        return allowed;
+    }
+}
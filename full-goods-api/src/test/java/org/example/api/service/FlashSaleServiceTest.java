@@ -0,0 +1,354 @@
+package org.example.api.service;
+
+import org.example.api.dto.CreateOrderDTO;
+import org.example.api.mapper.AddressMapper;
+import org.example.api.mapper.CartMapper;
+import org.example.api.mapper.FlashSaleMapper;
+import org.example.api.mapper.FruitMapper;
+import org.example.api.mapper.OrderItemMapper;
+import org.example.api.mapper.OrderMapper;
+import org.example.api.service.impl.FlashSaleServiceImpl;
+import org.example.api.service.impl.OrderServiceImpl;
+import org.example.api.vo.FlashSaleVO;
+import org.example.common.entity.Address;
+import org.example.common.entity.Cart;
+import org.example.common.entity.Fruit;
+import org.example.common.entity.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 限时特惠库存单元测试
+ * Redis脚本和t_fruit库存用内存模拟，验证活动库存与普通库存不会重复售出
+ */
+@ExtendWith(MockitoExtension.class)
+class FlashSaleServiceTest {
+
+    private static final String STOCK_KEY = "flash_sale:stock:7";
+
+    @Mock
+    private FlashSaleMapper flashSaleMapper;
+
+    @Mock
+    private FruitMapper fruitMapper;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private ListOperations<String, String> listOperations;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private FruitCacheService fruitCacheService;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderItemMapper orderItemMapper;
+
+    @Mock
+    private AddressMapper addressMapper;
+
+    @Mock
+    private CartMapper cartMapper;
+
+    @Mock
+    private OrderScheduleService orderScheduleService;
+
+    @Mock
+    private OrderStatisticsService orderStatisticsService;
+
+    @InjectMocks
+    private FlashSaleServiceImpl flashSaleService;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    // 模拟的t_fruit库存和Redis数据
+    private int fruitStock;
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, Double> loaded = new HashMap<>();
+    private final Map<String, List<String>> lists = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderService, "flashSaleService", flashSaleService);
+
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(redisTemplate.opsForList()).thenReturn(listOperations);
+        lenient().when(redisTemplate.hasKey(anyString())).thenAnswer(inv -> values.containsKey(inv.<String>getArgument(0)));
+        lenient().doAnswer(inv -> values.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        lenient().when(valueOperations.multiGet(anyCollection())).thenAnswer(inv -> {
+            List<String> result = new ArrayList<>();
+            for (Object key : inv.<List<?>>getArgument(0)) {
+                result.add(values.get(String.valueOf(key)));
+            }
+            return result;
+        });
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(inv -> values.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        lenient().when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            return runScript(args[0], inv.<List<String>>getArgument(1),
+                    Arrays.copyOfRange(args, 2, args.length));
+        });
+        lenient().when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenAnswer(inv -> {
+                    Set<String> result = new LinkedHashSet<>();
+                    loaded.forEach((member, score) -> {
+                        if (score <= inv.<Double>getArgument(2)) {
+                            result.add(member);
+                        }
+                    });
+                    return result;
+                });
+        lenient().when(zSetOperations.range(anyString(), anyLong(), anyLong()))
+                .thenAnswer(inv -> new LinkedHashSet<>(loaded.keySet()));
+        lenient().when(zSetOperations.add(anyString(), anyString(), anyDouble()))
+                .thenAnswer(inv -> loaded.put(inv.getArgument(1), inv.getArgument(2)) == null);
+        lenient().when(listOperations.range(anyString(), anyLong(), anyLong()))
+                .thenAnswer(inv -> new ArrayList<>(lists.getOrDefault(inv.<String>getArgument(0), Collections.emptyList())));
+        lenient().doAnswer(inv -> {
+            lists.get(inv.<String>getArgument(0)).subList(0, inv.<Long>getArgument(1).intValue()).clear();
+            return null;
+        }).when(listOperations).trim(anyString(), anyLong(), anyLong());
+
+        TransactionStatus status = mock(TransactionStatus.class);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(
+                inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(status));
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(status);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        lenient().when(fruitMapper.selectByIdsForUpdate(anyCollection())).thenAnswer(inv -> Collections.singletonList(fruit()));
+        lenient().when(fruitMapper.selectByIds(anyCollection())).thenAnswer(inv -> Collections.singletonList(fruit()));
+        lenient().when(fruitMapper.decreaseStock(eq(1L), anyInt())).thenAnswer(inv -> {
+            int quantity = inv.getArgument(1);
+            if (fruitStock < quantity) {
+                return 0;
+            }
+            fruitStock -= quantity;
+            return 1;
+        });
+        lenient().when(fruitMapper.batchIncreaseStock(anyMap())).thenAnswer(inv -> {
+            fruitStock += inv.<Map<Long, Integer>>getArgument(0).getOrDefault(1L, 0);
+            return 1;
+        });
+
+        FlashSaleVO flashSale = new FlashSaleVO();
+        flashSale.setId(7L);
+        flashSale.setFruitId(1L);
+        flashSale.setStock(10);
+        flashSale.setSoldCount(0);
+        flashSale.setEndTime(new Date(System.currentTimeMillis() + 3600000));
+        lenient().when(flashSaleMapper.selectActiveFlashSales()).thenReturn(Collections.singletonList(flashSale));
+
+        Address address = new Address();
+        address.setId(1L);
+        address.setUserId(1L);
+        lenient().when(addressMapper.selectById(1L)).thenReturn(address);
+    }
+
+    @Test
+    void testRegularAndFlashOrderCompeteForLastUnit() {
+        fruitStock = 1;
+
+        // 活动开始，最后一件从t_fruit移到Redis
+        assertEquals(1, flashSaleService.preloadActiveFlashSales());
+        assertEquals(0, fruitStock);
+        assertEquals("1", values.get(STOCK_KEY));
+        verify(fruitMapper).decreaseStock(1L, 1);
+
+        // 普通下单看不到这件库存
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.setUserId(1L);
+        cart.setFruitId(1L);
+        cart.setQuantity(1);
+        when(cartMapper.selectByIds(Collections.singletonList(1L))).thenReturn(Collections.singletonList(cart));
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> orderService.createOrder(1L, 1L, Collections.singletonList(1L)));
+        assertTrue(ex.getMessage().contains("库存不足"));
+        verify(fruitMapper, never()).batchDecreaseStock(anyMap());
+
+        // 限时特惠下单买到最后一件，再下单失败
+        Order order = orderService.createOrder(1L, 1L, null, Collections.singletonList(buyNowItem()));
+        assertNotNull(order);
+        assertEquals("0", values.get(STOCK_KEY));
+        assertThrows(RuntimeException.class,
+                () -> orderService.createOrder(1L, 1L, null, Collections.singletonList(buyNowItem())));
+        assertEquals(0, fruitStock);
+    }
+
+    @Test
+    void testPreloadOnlyOnce() {
+        fruitStock = 5;
+
+        assertEquals(1, flashSaleService.preloadActiveFlashSales());
+        assertEquals(0, flashSaleService.preloadActiveFlashSales());
+
+        assertEquals(0, fruitStock);
+        assertEquals("5", values.get(STOCK_KEY));
+        verify(fruitMapper, times(1)).decreaseStock(1L, 5);
+    }
+
+    @Test
+    void testUnsoldStockReturnedAfterSaleEnds() {
+        fruitStock = 3;
+        flashSaleService.preloadActiveFlashSales();
+        assertTrue(flashSaleService.reserveStock(7L, 1L, "A001", 1));
+        assertEquals(0, fruitStock);
+
+        // 活动尚未结束时不退回
+        assertEquals(0, flashSaleService.returnUnsoldStock(500));
+        assertEquals(0, fruitStock);
+
+        // 管理员取消活动后剩余2件退回
+        flashSaleService.removeFruitLedger(1L);
+        assertEquals(1, flashSaleService.returnUnsoldStock(500));
+        assertEquals(2, fruitStock);
+        assertFalse(values.containsKey(STOCK_KEY));
+
+        // 结算后才取消的订单，预扣也退回t_fruit
+        flashSaleService.releaseReservation("A001");
+        assertEquals(1, flashSaleService.returnUnsoldStock(500));
+        assertEquals(3, fruitStock);
+    }
+
+    @Test
+    void testReconcileOnlyUpdatesSoldCount() {
+        fruitStock = 3;
+        flashSaleService.preloadActiveFlashSales();
+        assertTrue(flashSaleService.reserveStock(7L, 1L, "A001", 2));
+        assertEquals(1, flashSaleService.confirmReservation("A001"));
+
+        assertEquals(1, flashSaleService.reconcileConfirmedSales(500));
+
+        verify(flashSaleMapper).updateSoldCount(7L, 2);
+        verify(fruitMapper, never()).batchDecreaseStock(anyMap());
+        assertEquals(0, fruitStock);
+    }
+
+    private Fruit fruit() {
+        Fruit fruit = new Fruit();
+        fruit.setId(1L);
+        fruit.setName("苹果");
+        fruit.setPrice(new BigDecimal("5.00"));
+        fruit.setStock(fruitStock);
+        return fruit;
+    }
+
+    private CreateOrderDTO.BuyNowItem buyNowItem() {
+        CreateOrderDTO.BuyNowItem item = new CreateOrderDTO.BuyNowItem();
+        item.setFruitId(1L);
+        item.setPrice(new BigDecimal("3.00"));
+        item.setQuantity(1);
+        return item;
+    }
+
+    /**
+     * 按脚本语义在内存中执行限时特惠的Lua脚本
+     */
+    private Object runScript(Object script, List<String> keys, Object[] args) {
+        if (script == script("LOAD_SCRIPT")) {
+            if (values.containsKey(keys.get(0))) {
+                return 0L;
+            }
+            values.put(keys.get(0), String.valueOf(args[0]));
+            loaded.put(String.valueOf(args[1]), Double.parseDouble(String.valueOf(args[2])));
+            return 1L;
+        }
+        if (script == script("RESERVE_SCRIPT")) {
+            String stock = values.get(keys.get(0));
+            if (stock == null) {
+                return -1L;
+            }
+            int quantity = Integer.parseInt(String.valueOf(args[0]));
+            if (Integer.parseInt(stock) < quantity) {
+                return 0L;
+            }
+            values.put(keys.get(0), String.valueOf(Integer.parseInt(stock) - quantity));
+            values.put(keys.get(1), args[1] + "=" + quantity);
+            return 1L;
+        }
+        if (script == script("CONFIRM_SCRIPT")) {
+            String entry = values.remove(keys.get(0));
+            lists.computeIfAbsent(keys.get(1), k -> new ArrayList<>()).add(entry.replace('=', ':'));
+            return 1L;
+        }
+        if (script == script("RELEASE_SCRIPT")) {
+            String entry = values.remove(keys.get(0));
+            if (entry == null) {
+                return Collections.emptyList();
+            }
+            String[] parts = entry.split("=");
+            String stockKey = args[0] + parts[0].substring(0, parts[0].indexOf(':'));
+            if (values.containsKey(stockKey)) {
+                values.put(stockKey, String.valueOf(Integer.parseInt(values.get(stockKey)) + Integer.parseInt(parts[1])));
+            } else {
+                lists.computeIfAbsent(keys.get(1), k -> new ArrayList<>()).add(parts[0] + ":" + parts[1]);
+            }
+            return Arrays.<Object>asList(parts[0], parts[1]);
+        }
+        if (script == script("SETTLE_SCRIPT")) {
+            String stock = values.remove(keys.get(0));
+            loaded.remove(String.valueOf(args[0]));
+            long remaining = stock != null ? Long.parseLong(stock) : 0;
+            if (remaining > 0) {
+                lists.computeIfAbsent(keys.get(2), k -> new ArrayList<>()).add(args[0] + ":" + remaining);
+            }
+            return remaining;
+        }
+        if (script == script("UNLOCK_SCRIPT")) {
+            return values.remove(keys.get(0)) != null ? 1L : 0L;
+        }
+        throw new IllegalStateException("未模拟的脚本");
+    }
+
+    private static Object script(String name) {
+        return ReflectionTestUtils.getField(FlashSaleServiceImpl.class, name);
+    }
+}
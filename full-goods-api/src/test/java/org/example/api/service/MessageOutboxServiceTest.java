@@ -0,0 +1,149 @@
+package org.example.api.service;
+
+import org.example.api.mapper.MessageMapper;
+import org.example.common.entity.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 消息批量写入服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageOutboxServiceTest {
+
+    @Mock
+    private MessageMapper messageMapper;
+
+    @Mock
+    private WebSocketMessageService webSocketMessageService;
+
+    @Mock
+    private MessageCounterService messageCounterService;
+
+    @InjectMocks
+    private MessageOutboxService outboxService;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    // 每次batchInsert写入的消息标题
+    private final List<List<String>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outboxService, "capacity", 100);
+        ReflectionTestUtils.setField(outboxService, "batchSize", 10);
+        ReflectionTestUtils.setField(outboxService, "flushIntervalMs", 5L);
+        ReflectionTestUtils.setField(outboxService, "offerTimeoutMs", 20L);
+        ReflectionTestUtils.setField(outboxService, "shutdownTimeoutMs", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxService.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.unbindResourceIfPossible(outboxService);
+    }
+
+    @Test
+    void testSubmitReturnsAfterMessageWritten() {
+        ReflectionTestUtils.setField(outboxService, "enabled", true);
+        outboxService.start();
+        stubBatchInsert();
+
+        Message message = message("发货通知");
+        outboxService.submit(message, true);
+
+        // 返回时消息已写库，不会因进程崩溃丢失
+        assertNotNull(message.getId());
+        assertEquals(1, batches.size());
+        verify(webSocketMessageService, timeout(1000)).sendMessageToUser(eq(1L), any());
+    }
+
+    @Test
+    void testSubmitThrowsWhenWriteFails() {
+        ReflectionTestUtils.setField(outboxService, "enabled", true);
+        outboxService.start();
+        when(messageMapper.batchInsert(anyList())).thenThrow(new IllegalStateException("db down"));
+        when(messageMapper.insert(any(Message.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> outboxService.submit(message("发货通知"), false));
+    }
+
+    @Test
+    void testRequiresNewTransactionUsesOwnBuffer() {
+        ReflectionTestUtils.setField(outboxService, "enabled", false);
+        stubBatchInsert();
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        outboxService.submit(message("外层"), false);
+
+        // 按事务管理器的方式挂起外层事务，开启内层REQUIRES_NEW事务
+        List<TransactionSynchronization> suspended = TransactionSynchronizationManager.getSynchronizations();
+        suspended.forEach(TransactionSynchronization::suspend);
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        outboxService.submit(message("内层"), false);
+        commit();
+
+        // 内层提交后恢复外层事务
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        for (TransactionSynchronization synchronization : suspended) {
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+            synchronization.resume();
+        }
+        outboxService.submit(message("外层2"), false);
+        commit();
+
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("内层"), batches.get(0));
+        assertEquals(Arrays.asList("外层", "外层2"), batches.get(1));
+    }
+
+    private void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.beforeCommit(false));
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    private void stubBatchInsert() {
+        when(messageMapper.batchInsert(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            List<String> titles = new ArrayList<>();
+            for (Message message : messages) {
+                message.setId(ids.incrementAndGet());
+                titles.add(message.getTitle());
+            }
+            batches.add(titles);
+            return messages.size();
+        });
+    }
+
+    private Message message(String title) {
+        Message message = new Message();
+        message.setUserId(1L);
+        message.setTitle(title);
+        return message;
+    }
+}
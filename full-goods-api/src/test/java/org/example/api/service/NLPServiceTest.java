@@ -0,0 +1,53 @@
+package org.example.api.service;
+
+import org.example.api.service.impl.NLPServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NLPService词典匹配单元测试
+ */
+class NLPServiceTest {
+
+    private NLPServiceImpl nlpService;
+
+    @BeforeEach
+    void setUp() {
+        nlpService = new NLPServiceImpl();
+        nlpService.reloadDictionaries();
+    }
+
+    @Test
+    void testMatchFruitFeatures() {
+        List<String> features = nlpService.matchFruitFeatures("适合孕妇吃的进口水果");
+
+        assertTrue(features.contains("人群-孕妇"));
+        assertTrue(features.contains("产地-进口"));
+        assertTrue(features.contains("分类-水果"));
+    }
+
+    @Test
+    void testAnalyzeInputUsesDefaultDictionaries() {
+        Map<String, Object> result = nlpService.analyzeInput("想要香甜的苹果");
+
+        List<?> keywords = (List<?>) result.get("keywords");
+        assertTrue(keywords.contains("苹果"));
+        // 口感词同时带出口感类型
+        assertTrue(keywords.contains("香甜"));
+        assertTrue(keywords.contains("甜"));
+        assertTrue(((List<?>) result.get("features")).contains("口感-香甜"));
+        assertEquals("positive", result.get("sentiment"));
+    }
+
+    @Test
+    void testAnalyzeSentiment() {
+        assertEquals("positive", nlpService.analyzeSentiment("我喜欢吃苹果"));
+        assertEquals("negative", nlpService.analyzeSentiment("榴莲太难吃"));
+        assertEquals("neutral", nlpService.analyzeSentiment("今天天气"));
+    }
+}
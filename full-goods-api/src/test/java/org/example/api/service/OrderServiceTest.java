@@ -48,6 +48,18 @@ class OrderServiceTest {
     
     @Mock
     private FruitMapper fruitMapper;
+    
+    @Mock
+    private FlashSaleService flashSaleService;
+    
+    @Mock
+    private OrderScheduleService orderScheduleService;
+
+    @Mock
+    private OrderStatisticsService orderStatisticsService;
+
+    @Mock
+    private FruitCacheService fruitCacheService;
 
     @InjectMocks
     private OrderServiceImpl orderService;
@@ -93,7 +105,7 @@ class OrderServiceTest {
         cart.setUserId(1L);
         cart.setFruitId(1L);
         cart.setQuantity(2);
-        when(cartMapper.selectById(1L)).thenReturn(cart);
+        when(cartMapper.selectByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(cart));
         
         // Mock fruit
         Fruit fruit = new Fruit();
@@ -101,11 +113,11 @@ class OrderServiceTest {
         fruit.setName("苹果");
         fruit.setPrice(new BigDecimal("49.99"));
         fruit.setStock(10); // 添加库存信息
-        when(fruitMapper.selectById(1L)).thenReturn(fruit);
-        when(fruitMapper.decreaseStock(1L, 2)).thenReturn(1); // 添加decreaseStock方法的mock行为
+        when(fruitMapper.selectByIdsForUpdate(anyCollection())).thenReturn(Arrays.asList(fruit));
+        when(fruitMapper.batchDecreaseStock(anyMap())).thenReturn(1);
         
         when(orderMapper.insert(any(Order.class))).thenReturn(1);
-        when(orderItemMapper.insert(any(OrderItem.class))).thenReturn(1);
+        when(orderItemMapper.insertBatch(anyList())).thenReturn(1);
         
         Order result = orderService.createOrder(1L, 1L, Arrays.asList(1L));
         
@@ -113,6 +125,50 @@ class OrderServiceTest {
         assertEquals(1L, result.getUserId());
         
         verify(orderMapper).insert(any(Order.class));
+        verify(cartMapper).deleteByIds(Arrays.asList(1L));
+        verify(fruitMapper, never()).decreaseStock(anyLong(), anyInt());
+        // 库存变更后清理商品缓存
+        verify(fruitCacheService).evictStockAfterCommit(argThat(ids -> ids.contains(1L)));
+    }
+
+    @Test
+    void testCreateOrderReportsAllShortages() {
+        Address address = new Address();
+        address.setId(1L);
+        address.setUserId(1L);
+        when(addressMapper.selectById(1L)).thenReturn(address);
+        
+        Cart cart1 = new Cart();
+        cart1.setId(1L);
+        cart1.setUserId(1L);
+        cart1.setFruitId(1L);
+        cart1.setQuantity(5);
+        Cart cart2 = new Cart();
+        cart2.setId(2L);
+        cart2.setUserId(1L);
+        cart2.setFruitId(2L);
+        cart2.setQuantity(5);
+        when(cartMapper.selectByIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(cart1, cart2));
+        
+        Fruit apple = new Fruit();
+        apple.setId(1L);
+        apple.setName("苹果");
+        apple.setPrice(new BigDecimal("5.00"));
+        apple.setStock(1);
+        Fruit pear = new Fruit();
+        pear.setId(2L);
+        pear.setName("梨");
+        pear.setPrice(new BigDecimal("4.00"));
+        pear.setStock(2);
+        when(fruitMapper.selectByIdsForUpdate(anyCollection())).thenReturn(Arrays.asList(apple, pear));
+        
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> orderService.createOrder(1L, 1L, Arrays.asList(1L, 2L)));
+        
+        assertTrue(ex.getMessage().contains("苹果"));
+        assertTrue(ex.getMessage().contains("梨"));
+        verify(fruitMapper, never()).batchDecreaseStock(anyMap());
+        verify(orderMapper, never()).insert(any(Order.class));
     }
 
     @Test
@@ -135,11 +191,11 @@ class OrderServiceTest {
         fruit.setName("苹果");
         fruit.setPrice(new BigDecimal("49.99"));
         fruit.setStock(10); // 添加库存信息
-        when(fruitMapper.selectById(1L)).thenReturn(fruit);
-        when(fruitMapper.decreaseStock(1L, 2)).thenReturn(1); // 添加decreaseStock方法的mock行为
+        when(fruitMapper.selectByIdsForUpdate(anyCollection())).thenReturn(Arrays.asList(fruit));
+        when(fruitMapper.batchDecreaseStock(anyMap())).thenReturn(1);
         
         when(orderMapper.insert(any(Order.class))).thenReturn(1);
-        when(orderItemMapper.insert(any(OrderItem.class))).thenReturn(1);
+        when(orderItemMapper.insertBatch(anyList())).thenReturn(1);
         
         CreateOrderDTO.BuyNowItem buyNowItem = new CreateOrderDTO.BuyNowItem();
         buyNowItem.setFruitId(1L);
@@ -206,36 +262,78 @@ class OrderServiceTest {
     @Test
     void testCancelOrderSuccess() {
         testOrder.setStatus(0); // 待付款状态
-        when(orderMapper.selectById(1L)).thenReturn(testOrder);
-        when(orderMapper.update(any(Order.class))).thenReturn(1);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        when(orderMapper.updateIfStatus(any(Order.class), eq(0))).thenReturn(1);
+        when(orderItemMapper.selectByOrderId(1L)).thenReturn(Arrays.asList(testOrderItem));
         
         boolean result = orderService.cancelOrder(1L, 1L);
         
         assertTrue(result);
-        verify(orderMapper).update(any(Order.class));
+        verify(orderMapper).updateIfStatus(any(Order.class), eq(0));
+        verify(orderStatisticsService).onStatusChanged(testOrder, 0, 4);
+        verify(fruitMapper).increaseStock(1L, 2);
+    }
+
+    @Test
+    void testCancelOrderSkippedWhenStatusChanged() {
+        // 读取后订单已被其他操作修改
+        testOrder.setStatus(0);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        when(orderMapper.updateIfStatus(any(Order.class), eq(0))).thenReturn(0);
+        
+        assertFalse(orderService.cancelOrder(1L, 1L));
+        verify(fruitMapper, never()).increaseStock(anyLong(), anyInt());
+        verify(orderStatisticsService, never()).onStatusChanged(any(Order.class), any(), any());
+        verify(orderScheduleService, never()).cancelExpiry(anyLong());
     }
 
     @Test
     void testPayOrderSuccess() {
         testOrder.setStatus(0); // 待付款状态
-        when(orderMapper.selectById(1L)).thenReturn(testOrder);
-        when(orderMapper.update(any(Order.class))).thenReturn(1);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        when(orderMapper.updateIfStatus(any(Order.class), eq(0))).thenReturn(1);
         
         boolean result = orderService.payOrder(1L, 1L, 1);
         
         assertTrue(result);
-        verify(orderMapper).update(any(Order.class));
+        verify(orderMapper).updateIfStatus(any(Order.class), eq(0));
+        verify(orderStatisticsService).onStatusChanged(testOrder, 0, 1);
+        verify(flashSaleService).confirmReservation("ORD20240101001");
+    }
+
+    @Test
+    void testPayOrderAlreadyCanceled() {
+        // 超时取消任务已先取消
+        testOrder.setStatus(4);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        
+        assertFalse(orderService.payOrder(1L, 1L, 1));
+        verify(orderMapper, never()).updateIfStatus(any(Order.class), anyInt());
+        verify(orderStatisticsService, never()).onStatusChanged(any(Order.class), any(), any());
+        verify(flashSaleService, never()).confirmReservation(anyString());
+    }
+
+    @Test
+    void testPayOrderSkippedWhenStatusChanged() {
+        testOrder.setStatus(0);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        when(orderMapper.updateIfStatus(any(Order.class), eq(0))).thenReturn(0);
+        
+        assertFalse(orderService.payOrder(1L, 1L, 1));
+        verify(orderStatisticsService, never()).onStatusChanged(any(Order.class), any(), any());
+        verify(flashSaleService, never()).confirmReservation(anyString());
     }
 
     @Test
     void testConfirmReceiveSuccess() {
         testOrder.setStatus(2); // 待收货状态
-        when(orderMapper.selectById(1L)).thenReturn(testOrder);
-        when(orderMapper.update(any(Order.class))).thenReturn(1);
+        when(orderMapper.selectByIdForUpdate(1L)).thenReturn(testOrder);
+        when(orderMapper.updateIfStatus(any(Order.class), eq(2))).thenReturn(1);
         
         boolean result = orderService.confirmReceive(1L, 1L);
         
         assertTrue(result);
-        verify(orderMapper).update(any(Order.class));
+        verify(orderMapper).updateIfStatus(any(Order.class), eq(2));
+        verify(orderStatisticsService).onStatusChanged(testOrder, 2, 3);
     }
 }
\ No newline at end of file
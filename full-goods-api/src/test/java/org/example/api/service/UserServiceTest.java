@@ -0,0 +1,111 @@
+package org.example.api.service;
+
+import org.example.api.mapper.UserMapper;
+import org.example.api.service.impl.UserServiceImpl;
+import org.example.common.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserService token解析单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks
+    private UserServiceImpl userService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setId(1L);
+        testUser.setMobile("13800138000");
+        testUser.setStatus(1);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void testGetByTokenUsesIndexAndLocalCache() {
+        when(valueOperations.get("user_token_index:abc")).thenReturn("1");
+        when(redisTemplate.getExpire("user_token_index:abc", TimeUnit.MILLISECONDS)).thenReturn(60_000L);
+        when(userMapper.selectById(1L)).thenReturn(testUser);
+
+        User first = userService.getByToken("abc");
+        User second = userService.getByToken("abc");
+
+        assertNotNull(first);
+        // 返回的是缓存快照的副本，调用方修改不会影响缓存
+        assertNotSame(first, second);
+        assertEquals(first.getId(), second.getId());
+        // 第二次命中本地缓存，不再访问Redis和数据库
+        verify(valueOperations, times(1)).get("user_token_index:abc");
+        verify(userMapper, times(1)).selectById(1L);
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void testGetByTokenUnknownToken() {
+        when(valueOperations.get("user_token_index:missing")).thenReturn(null);
+
+        assertNull(userService.getByToken("missing"));
+        verify(userMapper, never()).selectById(anyLong());
+    }
+
+    @Test
+    void testLogoutRemovesIndexAndLocalCache() {
+        when(valueOperations.get("user_token_index:abc")).thenReturn("1");
+        when(redisTemplate.getExpire("user_token_index:abc", TimeUnit.MILLISECONDS)).thenReturn(60_000L);
+        when(valueOperations.get("user_token:1")).thenReturn("abc");
+        when(userMapper.selectById(1L)).thenReturn(testUser);
+        userService.getByToken("abc");
+
+        assertTrue(userService.logout("abc"));
+        verify(redisTemplate).delete("user_token_index:abc");
+        verify(redisTemplate).delete("user_token:1");
+
+        // 登出后本地缓存失效，重新查询反向索引
+        when(valueOperations.get("user_token_index:abc")).thenReturn(null);
+        assertNull(userService.getByToken("abc"));
+    }
+
+    @Test
+    void testInvalidateTokensRemovesLocalCache() {
+        when(valueOperations.get("user_token_index:abc")).thenReturn("1");
+        when(redisTemplate.getExpire("user_token_index:abc", TimeUnit.MILLISECONDS)).thenReturn(60_000L);
+        when(valueOperations.get("user_token:1")).thenReturn("abc");
+        when(userMapper.selectById(1L)).thenReturn(testUser);
+        userService.getByToken("abc");
+
+        userService.invalidateTokens(1L);
+        verify(redisTemplate).delete("user_token_index:abc");
+        verify(redisTemplate).delete("user_token:1");
+        verify(redisTemplate).convertAndSend(eq("user:token:invalidate"), endsWith(":u:1"));
+
+        // 禁用后本地缓存失效，重新查询反向索引
+        when(valueOperations.get("user_token_index:abc")).thenReturn(null);
+        assertNull(userService.getByToken("abc"));
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多关键词匹配器单元测试
+ */
+class KeywordMatcherTest {
+
+    @Test
+    void testFindsOverlappingKeywords() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("he", "he")
+                .add("she", "she")
+                .add("his", "his")
+                .add("hers", "hers")
+                .build();
+
+        // 按关键词结束的位置排列，同一位置先长后短
+        assertEquals(Arrays.asList("she", "he", "hers"), matcher.findAll("ushers"));
+    }
+
+    @Test
+    void testFindsOverlappingChineseKeywords() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("甜", "甜")
+                .add("香甜", "香甜")
+                .add("酸甜", "酸甜")
+                .add("酸", "酸")
+                .build();
+
+        // 同一关键词多次出现只返回一次
+        assertEquals(Arrays.asList("香甜", "甜", "酸", "酸甜"), matcher.findAll("这个香甜又酸甜"));
+    }
+
+    @Test
+    void testCaseInsensitive() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("VitaminC", "vc")
+                .add("ok", "ok")
+                .build();
+
+        assertEquals(Collections.singletonList("vc"), matcher.findAll("rich in vitaminc"));
+        assertEquals(Collections.singletonList("vc"), matcher.findAll("RICH IN VITAMINC"));
+        assertEquals(Collections.singletonList("ok"), matcher.findAll("OK"));
+    }
+
+    @Test
+    void testDuplicateKeywordMergesTags() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("甜", "口感")
+                .add("甜", "特性")
+                .build();
+
+        assertEquals(1, matcher.size());
+        assertEquals(Arrays.asList("口感", "特性"), matcher.findAll("很甜很甜"));
+    }
+
+    @Test
+    void testFailureLinksAfterPartialMatch() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("abcd", "abcd")
+                .add("bc", "bc")
+                .add("cde", "cde")
+                .build();
+
+        // abcd匹配失败后经失败链继续匹配bc、cde
+        assertEquals(Arrays.asList("bc", "cde"), matcher.findAll("abcxcde"));
+    }
+
+    @Test
+    void testNoMatch() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("苹果", "苹果")
+                .add("", "empty")
+                .add(null, "null")
+                .build();
+
+        assertEquals(1, matcher.size());
+        assertTrue(matcher.findAll("香蕉").isEmpty());
+        assertTrue(matcher.findAll("").isEmpty());
+        assertTrue(matcher.findAll(null).isEmpty());
+        assertTrue(KeywordMatcher.<String>builder().build().findAll("苹果").isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 预编译文本模板单元测试
+ */
+class TextTemplateTest {
+
+    @Test
+    void testRenderVariables() {
+        TextTemplate template = TextTemplate.compile("您好{{name}}，订单{{orderNo}}已发货，共{{count}}件");
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", "张三");
+        params.put("orderNo", "A001");
+        params.put("count", 3);
+
+        assertEquals("您好张三，订单A001已发货，共3件", template.render(params));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("name", "orderNo", "count")), template.getVariables());
+    }
+
+    @Test
+    void testMissingVariableKeptAsIs() {
+        TextTemplate template = TextTemplate.compile("{{name}}的优惠券{{coupon}}即将过期");
+
+        assertEquals("张三的优惠券{{coupon}}即将过期",
+                template.render(Collections.singletonMap("name", "张三")));
+        assertEquals("{{name}}的优惠券{{coupon}}即将过期", template.render(Collections.emptyMap()));
+    }
+
+    @Test
+    void testNullValueAndNullParamsKeptAsIs() {
+        TextTemplate template = TextTemplate.compile("您好{{name}}");
+
+        assertEquals("您好{{name}}", template.render(Collections.singletonMap("name", null)));
+        assertEquals("您好{{name}}", template.render(null));
+    }
+
+    @Test
+    void testRepeatedVariableAndAdjacentVariables() {
+        TextTemplate template = TextTemplate.compile("{{a}}{{b}}-{{a}}");
+        Map<String, Object> params = new HashMap<>();
+        params.put("a", "x");
+        params.put("b", "y");
+
+        assertEquals("xy-x", template.render(params));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")), template.getVariables());
+    }
+
+    @Test
+    void testTemplateWithoutVariables() {
+        TextTemplate template = TextTemplate.compile("没有变量，{单括号}和{{ 带空格 }}原样保留");
+
+        assertEquals("没有变量，{单括号}和{{ 带空格 }}原样保留", template.render(null));
+        assertTrue(template.getVariables().isEmpty());
+        assertNull(TextTemplate.compile(null));
+    }
+
+    @Test
+    void testReusedBufferDoesNotLeakPreviousResult() {
+        TextTemplate template = TextTemplate.compile("订单{{orderNo}}");
+        StringBuilder buffer = new StringBuilder();
+
+        assertEquals("订单A0000001", template.render(Collections.singletonMap("orderNo", "A0000001"), buffer));
+        assertEquals("订单B2", template.render(Collections.singletonMap("orderNo", "B2"), buffer));
+    }
+}
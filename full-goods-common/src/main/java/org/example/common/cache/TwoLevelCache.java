@@ -0,0 +1,202 @@
+package org.example.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二级缓存
+ * L1为进程内Caffeine缓存，L2为Redis缓存；写入和删除时通过管理器广播失效消息，清理其他节点的L1。
+ * L1保存与Redis相同的序列化字节，每次读取反序列化出新对象，调用方修改返回值不会影响缓存
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final Cache<Object, Object> localCache;
+
+    private final RedisCache redisCache;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    private final RedisSerializationContext.SerializationPair<Object> valueSerializer;
+
+    // L2命中/未命中计数，L1由Caffeine自行统计
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    public TwoLevelCache(String name, Cache<Object, Object> localCache, RedisCache redisCache,
+                         TwoLevelCacheManager cacheManager) {
+        // 与Redis配置保持一致，不缓存null值
+        super(false);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.cacheManager = cacheManager;
+        this.valueSerializer = redisCache.getCacheConfiguration().getValueSerializationPair();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object localKey = localKey(key);
+        Object snapshot = localCache.getIfPresent(localKey);
+        if (snapshot != null) {
+            return restore(snapshot);
+        }
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            redisHits.increment();
+            // Redis反序列化的对象直接交给调用方，L1另存快照
+            localCache.put(localKey, snapshot(wrapper.get()));
+            return wrapper.get();
+        }
+        redisMisses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // 同一节点同一key只有一个线程回源
+        Object snapshot = localCache.get(localKey(key), k -> {
+            ValueWrapper wrapper = redisCache.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                redisHits.increment();
+                return snapshot(wrapper.get());
+            }
+            redisMisses.increment();
+            Object value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (value == null) {
+                return null;
+            }
+            redisCache.put(key, value);
+            cacheManager.publishEvict(name, localKey(key));
+            return snapshot(value);
+        });
+        return snapshot == null ? null : (T) restore(snapshot);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        redisCache.put(key, value);
+        localCache.put(localKey(key), snapshot(value));
+        cacheManager.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        localCache.invalidate(localKey(key));
+        cacheManager.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        cacheManager.publishClear(name);
+    }
+
+    /**
+     * 仅清理本地缓存，收到其他节点的失效消息时调用
+     */
+    void evictLocal(String key) {
+        localCache.invalidate(key);
+    }
+
+    /**
+     * 仅清空本地缓存，收到其他节点的失效消息时调用
+     */
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    /**
+     * 获取分层统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> l1 = new LinkedHashMap<>();
+        l1.put("size", localCache.estimatedSize());
+        l1.put("hits", stats.hitCount());
+        l1.put("misses", stats.missCount());
+        l1.put("evictions", stats.evictionCount());
+        l1.put("hitRate", stats.hitRate());
+
+        long hits = redisHits.sum();
+        long misses = redisMisses.sum();
+        Map<String, Object> l2 = new LinkedHashMap<>();
+        l2.put("hits", hits);
+        l2.put("misses", misses);
+        l2.put("hitRate", hits + misses == 0 ? 1.0 : (double) hits / (hits + misses));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("l1", l1);
+        result.put("l2", l2);
+        return result;
+    }
+
+    public CacheStats getLocalStats() {
+        return localCache.stats();
+    }
+
+    public long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    public long getRedisHitCount() {
+        return redisHits.sum();
+    }
+
+    public long getRedisMissCount() {
+        return redisMisses.sum();
+    }
+
+    /**
+     * 按Redis的值序列化方式生成不可变的快照
+     */
+    private byte[] snapshot(Object value) {
+        ByteBuffer buffer = valueSerializer.write(value);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private Object restore(Object snapshot) {
+        return valueSerializer.read(ByteBuffer.wrap((byte[]) snapshot));
+    }
+
+    /**
+     * 本地缓存统一使用字符串key，保证与广播消息中的key一致
+     */
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 二级缓存管理器
+ * 配置了本地缓存规格的缓存使用 Caffeine(L1) + Redis(L2)，其余缓存只使用Redis；
+ * 节点间通过Redis发布订阅广播失效消息
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    /**
+     * 缓存失效广播频道
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:invalidation";
+
+    // 消息格式：节点ID|操作|缓存名|key
+    private static final String SEPARATOR = "|";
+    private static final String OP_EVICT = "E";
+    private static final String OP_CLEAR = "C";
+
+    // 当前节点ID，用于忽略自己发出的消息
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final Map<String, LocalCacheSpec> localCacheSpecs;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, Map<String, LocalCacheSpec> localCacheSpecs,
+                                StringRedisTemplate redisTemplate) {
+        this.redisCacheManager = redisCacheManager;
+        this.localCacheSpecs = localCacheSpecs;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    private Cache createCache(String name) {
+        Cache redisCache = redisCacheManager.getCache(name);
+        LocalCacheSpec spec = localCacheSpecs.get(name);
+        if (spec == null || !(redisCache instanceof RedisCache)) {
+            return redisCache;
+        }
+        return new TwoLevelCache(name,
+                Caffeine.newBuilder()
+                        .maximumSize(spec.getMaximumSize())
+                        .expireAfterWrite(spec.getTtl())
+                        .recordStats()
+                        .build(),
+                (RedisCache) redisCache, this);
+    }
+
+    /**
+     * 广播单个key失效
+     */
+    void publishEvict(String cacheName, String key) {
+        publish(OP_EVICT, cacheName, key);
+    }
+
+    /**
+     * 广播整个缓存清空
+     */
+    void publishClear(String cacheName) {
+        publish(OP_CLEAR, cacheName, "");
+    }
+
+    private void publish(String op, String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL,
+                    nodeId + SEPARATOR + op + SEPARATOR + cacheName + SEPARATOR + key);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖L1过期时间兜底
+            log.error("广播缓存失效消息失败: cache={}, key={}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        // key中可能包含分隔符，限制拆分段数
+        String[] parts = body.split(Pattern.quote(SEPARATOR), 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Cache cache = caches.get(parts[2]);
+        if (!(cache instanceof TwoLevelCache)) {
+            return;
+        }
+        if (OP_CLEAR.equals(parts[1])) {
+            ((TwoLevelCache) cache).clearLocal();
+        } else {
+            ((TwoLevelCache) cache).evictLocal(parts[3]);
+        }
+        log.debug("收到缓存失效消息: cache={}, op={}, key={}", parts[2], parts[1], parts[3]);
+    }
+
+    /**
+     * 获取所有二级缓存的分层统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Cache> entry : caches.entrySet()) {
+            if (entry.getValue() instanceof TwoLevelCache) {
+                result.put(entry.getKey(), ((TwoLevelCache) entry.getValue()).getStatistics());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 本地缓存规格
+     */
+    public static class LocalCacheSpec {
+
+        private final long maximumSize;
+
+        private final Duration ttl;
+
+        public LocalCacheSpec(long maximumSize, Duration ttl) {
+            this.maximumSize = maximumSize;
+            this.ttl = ttl;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+    }
+}
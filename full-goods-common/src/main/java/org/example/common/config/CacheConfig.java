@@ -1,13 +1,17 @@
 package org.example.common.config;
 
+import org.example.common.cache.TwoLevelCacheManager;
+import org.example.common.cache.TwoLevelCacheManager.LocalCacheSpec;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -25,7 +29,7 @@ import java.util.Map;
 public class CacheConfig {
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory factory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory factory, StringRedisTemplate stringRedisTemplate) {
         // 默认缓存配置
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(30)) // 默认30分钟过期
@@ -51,9 +55,32 @@ public class CacheConfig {
         // 系统配置缓存 - 24小时过期
         cacheConfigurations.put("configCache", defaultConfig.entryTtl(Duration.ofHours(24)));
 
-        return RedisCacheManager.builder(factory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        // 本地L1缓存规格，过期时间短于Redis，跨节点失效消息丢失时也能较快收敛
+        Map<String, LocalCacheSpec> localCacheSpecs = new HashMap<>();
+        localCacheSpecs.put("userCache", new LocalCacheSpec(10000, Duration.ofMinutes(5)));
+        localCacheSpecs.put("fruitCache", new LocalCacheSpec(2000, Duration.ofMinutes(1)));
+        localCacheSpecs.put("recommendCache", new LocalCacheSpec(1000, Duration.ofMinutes(2)));
+        localCacheSpecs.put("configCache", new LocalCacheSpec(500, Duration.ofMinutes(30)));
+        // 验证码缓存只放Redis，保证多节点读取一致
+
+        return new TwoLevelCacheManager(redisCacheManager, localCacheSpecs, stringRedisTemplate);
+    }
+
+    /**
+     * 订阅缓存失效广播
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory factory,
+                                                                            TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package org.example.common.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.plugin.Interceptor;
+import org.example.common.cache.TwoLevelCache;
+import org.example.common.metrics.DruidDataSourceMetrics;
+import org.example.common.metrics.MapperMetricsInterceptor;
+import org.example.common.metrics.TwoLevelCacheMetrics;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 监控指标配置类
+ * HTTP请求、Redis命令和线程池指标由Spring Boot自动采集，这里补充Mapper、Druid连接池和二级缓存的指标
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Mapper执行耗时，MyBatis自动配置会注册所有Interceptor类型的Bean
+     */
+    @Bean
+    @ConditionalOnClass(Interceptor.class)
+    public MapperMetricsInterceptor mapperMetricsInterceptor(MeterRegistry registry) {
+        return new MapperMetricsInterceptor(registry);
+    }
+
+    @Bean
+    @ConditionalOnClass(DruidDataSource.class)
+    public DruidDataSourceMetrics druidDataSourceMetrics(ListableBeanFactory beanFactory) {
+        return new DruidDataSourceMetrics(beanFactory);
+    }
+
+    /**
+     * 二级缓存不在Spring Boot支持的缓存类型中，需要单独提供指标绑定
+     */
+    @Bean
+    public CacheMeterBinderProvider<TwoLevelCache> twoLevelCacheMeterBinderProvider() {
+        return TwoLevelCacheMetrics::new;
+    }
+}
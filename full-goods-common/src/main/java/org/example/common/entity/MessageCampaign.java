@@ -0,0 +1,136 @@
+package org.example.common.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 消息群发活动实体类
+ * 发送进度按用户ID记录，暂停、恢复或节点重启后从记录的位置继续发送
+ */
+@Data
+public class MessageCampaign implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 活动ID
+     */
+    private Long id;
+
+    /**
+     * 活动名称
+     */
+    private String name;
+
+    /**
+     * 消息模板编码，为空时使用标题和内容
+     */
+    private String templateCode;
+
+    /**
+     * 消息标题，支持{{变量}}
+     */
+    private String title;
+
+    /**
+     * 消息内容，支持{{变量}}
+     */
+    private String content;
+
+    /**
+     * 消息类型：1-物流，2-客服，3-系统，4-优惠
+     */
+    private Integer messageType;
+
+    /**
+     * 图标URL
+     */
+    private String iconUrl;
+
+    /**
+     * 跳转链接，支持{{变量}}
+     */
+    private String linkUrl;
+
+    /**
+     * 模板参数（JSON）
+     */
+    private String params;
+
+    /**
+     * 指定用户ID（逗号分隔），为空时发送给全部正常用户
+     */
+    private String targetUserIds;
+
+    /**
+     * 状态：1-发送中，2-已暂停，3-已完成，4-已取消，5-失败
+     */
+    private Integer status;
+
+    /**
+     * 发送进度，已发送到的用户ID
+     */
+    private Long lastUserId;
+
+    /**
+     * 创建时的目标用户数
+     */
+    private Long totalCount;
+
+    /**
+     * 已发送消息数
+     */
+    private Long sentCount;
+
+    /**
+     * 每批发送的用户数
+     */
+    private Integer chunkSize;
+
+    /**
+     * 每秒最多发送消息数，0表示使用默认上限
+     */
+    private Integer rateLimit;
+
+    /**
+     * 正在发送的节点
+     */
+    private String ownerNode;
+
+    /**
+     * 发送节点最近一次推进进度的时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date heartbeatTime;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 结束时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date finishTime;
+
+    /**
+     * 创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date updateTime;
+
+    /**
+     * 创建者
+     */
+    private String createBy;
+}
@@ -0,0 +1,52 @@
+package org.example.common.entity;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 订单汇总统计实体类
+ * 对应按日汇总表和按日分类汇总表的聚合查询结果
+ */
+@Data
+public class OrderDailyStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 统计日期（下单日期）
+     */
+    private LocalDate statDate;
+
+    /**
+     * 订单状态
+     */
+    private Integer status;
+
+    /**
+     * 分类ID，0表示未分类
+     */
+    private Long categoryId;
+
+    /**
+     * 分类名称
+     */
+    private String categoryName;
+
+    /**
+     * 订单数
+     */
+    private Long orderCount;
+
+    /**
+     * 商品件数
+     */
+    private Long itemQuantity;
+
+    /**
+     * 金额合计
+     */
+    private BigDecimal amount;
+}
@@ -0,0 +1,53 @@
+package org.example.common.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+import java.util.Map;
+
+/**
+ * Druid连接池指标
+ * 连接数、等待线程数等取自连接池自身的统计，按数据源Bean名称打pool标签
+ */
+public class DruidDataSourceMetrics implements MeterBinder {
+
+    private final ListableBeanFactory beanFactory;
+
+    public DruidDataSourceMetrics(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Map<String, DruidDataSource> dataSources = beanFactory.getBeansOfType(DruidDataSource.class, false, false);
+        for (Map.Entry<String, DruidDataSource> entry : dataSources.entrySet()) {
+            bind(registry, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void bind(MeterRegistry registry, String pool, DruidDataSource dataSource) {
+        Gauge.builder("druid.connections.active", dataSource, DruidDataSource::getActiveCount)
+                .description("使用中的连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.connections.idle", dataSource, DruidDataSource::getPoolingCount)
+                .description("空闲连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.connections.max", dataSource, DruidDataSource::getMaxActive)
+                .description("最大连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.connections.active.peak", dataSource, DruidDataSource::getActivePeak)
+                .description("使用中连接数峰值").tag("pool", pool).register(registry);
+        Gauge.builder("druid.connections.pending", dataSource, DruidDataSource::getWaitThreadCount)
+                .description("等待获取连接的线程数").tag("pool", pool).register(registry);
+
+        FunctionCounter.builder("druid.connections.wait", dataSource, DruidDataSource::getNotEmptyWaitCount)
+                .description("获取连接时发生等待的次数").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.connections.created", dataSource, DruidDataSource::getCreateCount)
+                .description("创建的物理连接数").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.connections.destroyed", dataSource, DruidDataSource::getDestroyCount)
+                .description("关闭的物理连接数").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.connections.errors", dataSource, DruidDataSource::getConnectErrorCount)
+                .description("获取连接失败次数").tag("pool", pool).register(registry);
+    }
+}
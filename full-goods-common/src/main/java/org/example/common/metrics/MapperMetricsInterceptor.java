@@ -0,0 +1,111 @@
+package org.example.common.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapper执行耗时统计拦截器
+ * 按Mapper方法记录执行耗时，指标名 mybatis.mapper，标签为方法名、SQL类型和执行结果。
+ * 每个方法的Timer只创建一次，执行时不再分配标签对象。
+ * 分页插件直接调用带BoundSql的查询方法，因此两个查询方法都需要拦截，同一次查询只会经过其中一个。
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+
+    public static final String METRIC_NAME = "mybatis.mapper";
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<String, StatementTimers> timers = new ConcurrentHashMap<>();
+
+    public MapperMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        StatementTimers statementTimers = timers.get(statement.getId());
+        if (statementTimers == null) {
+            statementTimers = timers.computeIfAbsent(statement.getId(), id -> new StatementTimers(statement));
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (success) {
+                statementTimers.success.record(elapsed, TimeUnit.NANOSECONDS);
+            } else {
+                statementTimers.error().record(elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 截取Mapper类名和方法名，如 OrderMapper.selectById
+     */
+    static String shortName(String statementId) {
+        int method = statementId.lastIndexOf('.');
+        int type = method > 0 ? statementId.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? statementId.substring(type + 1) : statementId;
+    }
+
+    /**
+     * 单个Mapper方法的Timer，失败Timer在第一次失败时创建
+     */
+    private final class StatementTimers {
+        private final String statement;
+        private final String command;
+        private final Timer success;
+        private volatile Timer error;
+
+        StatementTimers(MappedStatement mappedStatement) {
+            this.statement = shortName(mappedStatement.getId());
+            this.command = mappedStatement.getSqlCommandType().name();
+            this.success = build("SUCCESS");
+        }
+
+        Timer error() {
+            Timer timer = error;
+            if (timer == null) {
+                timer = build("ERROR");
+                error = timer;
+            }
+            return timer;
+        }
+
+        private Timer build(String outcome) {
+            return Timer.builder(METRIC_NAME)
+                    .description("Mapper方法执行耗时")
+                    .tag("statement", statement)
+                    .tag("command", command)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
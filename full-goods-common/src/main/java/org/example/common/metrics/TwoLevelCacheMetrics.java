@@ -0,0 +1,73 @@
+package org.example.common.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.example.common.cache.TwoLevelCache;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 二级缓存指标
+ * cache.gets 中命中数为L1命中加L2命中，未命中数为两级都未命中；
+ * cache.level.gets 按level标签分别记录L1和L2的命中情况
+ */
+public class TwoLevelCacheMetrics extends CacheMeterBinder<TwoLevelCache> {
+
+    public TwoLevelCacheMetrics(TwoLevelCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalSize() : null;
+    }
+
+    @Override
+    protected long hitCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalStats().hitCount() + cache.getRedisHitCount() : 0;
+    }
+
+    @Override
+    protected Long missCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getRedisMissCount() : null;
+    }
+
+    @Override
+    protected Long evictionCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalStats().evictionCount() : null;
+    }
+
+    @Override
+    protected long putCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalStats().loadCount() : 0;
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        TwoLevelCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        levelCounter(registry, cache, "l1", "hit", c -> c.getLocalStats().hitCount());
+        levelCounter(registry, cache, "l1", "miss", c -> c.getLocalStats().missCount());
+        levelCounter(registry, cache, "l2", "hit", TwoLevelCache::getRedisHitCount);
+        levelCounter(registry, cache, "l2", "miss", TwoLevelCache::getRedisMissCount);
+    }
+
+    private void levelCounter(MeterRegistry registry, TwoLevelCache cache, String level, String result,
+                              ToDoubleFunction<TwoLevelCache> count) {
+        FunctionCounter.builder("cache.level.gets", cache, count)
+                .description("二级缓存各级命中情况")
+                .tags(getTagsWithCacheName())
+                .tag("level", level)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.common.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地限流器
+ * 每个键的状态是不可变对象，通过CAS整体替换，不加锁；
+ * 键的数量有上限，长时间未访问的键自动淘汰
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private static final int DEFAULT_MAX_KEYS = 100_000;
+
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Cache<String, SlidingWindow> windows;
+
+    public LocalRateLimiter() {
+        this(DEFAULT_MAX_KEYS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param maxKeys 每种算法最多保留的键数
+     * @param idleTimeout 键多久未访问后淘汰
+     */
+    public LocalRateLimiter(int maxKeys, Duration idleTimeout) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Override
+    public boolean tryAcquire(String key, RateLimitRule rule, int permits) {
+        if (rule.getAlgorithm() == RateLimitRule.Algorithm.TOKEN_BUCKET) {
+            return buckets.get(key, k -> new TokenBucket(rule)).tryAcquire(permits);
+        }
+        return windows.get(key, k -> new SlidingWindow(rule)).tryAcquire(permits);
+    }
+
+    /**
+     * 令牌桶剩余令牌数，键不存在返回0
+     */
+    public int availableTokens(String key) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        return bucket != null ? bucket.availableTokens() : 0;
+    }
+
+    /**
+     * 滑动窗口当前估计的请求数，键不存在返回0
+     */
+    public int currentCount(String key) {
+        SlidingWindow window = windows.getIfPresent(key);
+        return window != null ? window.currentCount() : 0;
+    }
+
+    /**
+     * 键对应的令牌桶规则，键不存在返回null
+     */
+    public RateLimitRule tokenBucketRule(String key) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        return bucket != null ? bucket.rule : null;
+    }
+
+    /**
+     * 键对应的滑动窗口规则，键不存在返回null
+     */
+    public RateLimitRule slidingWindowRule(String key) {
+        SlidingWindow window = windows.getIfPresent(key);
+        return window != null ? window.rule : null;
+    }
+
+    public void reset(String key) {
+        buckets.invalidate(key);
+        windows.invalidate(key);
+    }
+
+    public void resetAll() {
+        buckets.invalidateAll();
+        windows.invalidateAll();
+    }
+
+    /**
+     * 令牌桶，令牌数按距上次更新的时间惰性补充
+     */
+    private static final class TokenBucket {
+        private final RateLimitRule rule;
+        private final AtomicReference<BucketState> state;
+
+        TokenBucket(RateLimitRule rule) {
+            this.rule = rule;
+            this.state = new AtomicReference<>(new BucketState(rule.getCapacity(), System.currentTimeMillis()));
+        }
+
+        boolean tryAcquire(int permits) {
+            while (true) {
+                BucketState current = state.get();
+                long now = System.currentTimeMillis();
+                double tokens = current.tokensAt(now, rule);
+                if (tokens < permits) {
+                    return false;
+                }
+                BucketState next = new BucketState(tokens - permits, Math.max(now, current.timestamp));
+                if (state.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        int availableTokens() {
+            return (int) state.get().tokensAt(System.currentTimeMillis(), rule);
+        }
+    }
+
+    private static final class BucketState {
+        private final double tokens;
+        private final long timestamp;
+
+        BucketState(double tokens, long timestamp) {
+            this.tokens = tokens;
+            this.timestamp = timestamp;
+        }
+
+        double tokensAt(long now, RateLimitRule rule) {
+            if (now <= timestamp) {
+                return tokens;
+            }
+            return Math.min(rule.getCapacity(), tokens + (now - timestamp) * rule.getRefillRate() / 1000.0);
+        }
+    }
+
+    /**
+     * 滑动窗口计数：保留当前和上一个固定窗口的计数，
+     * 按上一个窗口与滑动窗口重叠的比例加权估算，避免窗口切换时放行两倍请求
+     */
+    private static final class SlidingWindow {
+        private final RateLimitRule rule;
+        private final long windowMillis;
+        private final AtomicReference<WindowState> state;
+
+        SlidingWindow(RateLimitRule rule) {
+            this.rule = rule;
+            this.windowMillis = rule.getWindowSeconds() * 1000L;
+            this.state = new AtomicReference<>(new WindowState(System.currentTimeMillis() / windowMillis, 0, 0));
+        }
+
+        boolean tryAcquire(int permits) {
+            while (true) {
+                WindowState current = state.get();
+                long now = System.currentTimeMillis();
+                WindowState rolled = current.rollTo(now / windowMillis);
+                if (rolled.estimate(now, windowMillis) + permits > rule.getLimit()) {
+                    return false;
+                }
+                WindowState next = new WindowState(rolled.index, rolled.current + permits, rolled.previous);
+                if (state.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        int currentCount() {
+            long now = System.currentTimeMillis();
+            return (int) Math.ceil(state.get().rollTo(now / windowMillis).estimate(now, windowMillis));
+        }
+    }
+
+    private static final class WindowState {
+        private final long index;
+        private final int current;
+        private final int previous;
+
+        WindowState(long index, int current, int previous) {
+            this.index = index;
+            this.current = current;
+            this.previous = previous;
+        }
+
+        WindowState rollTo(long newIndex) {
+            if (newIndex <= index) {
+                return this;
+            }
+            return new WindowState(newIndex, 0, newIndex == index + 1 ? current : 0);
+        }
+
+        double estimate(long now, long windowMillis) {
+            double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+            return previous * previousWeight + current;
+        }
+    }
+}
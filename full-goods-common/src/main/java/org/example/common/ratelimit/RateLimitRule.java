@@ -0,0 +1,108 @@
+package org.example.common.ratelimit;
+
+/**
+ * 限流规则
+ * 令牌桶按容量和每秒生成速率限流，滑动窗口按窗口内的请求数限流
+ */
+public final class RateLimitRule {
+
+    /**
+     * 限流算法
+     */
+    public enum Algorithm {
+        TOKEN_BUCKET,
+        SLIDING_WINDOW
+    }
+
+    private final Algorithm algorithm;
+
+    // 令牌桶容量
+    private final int capacity;
+
+    // 令牌生成速率（每秒）
+    private final int refillRate;
+
+    // 滑动窗口大小（秒）
+    private final int windowSeconds;
+
+    // 滑动窗口内限制次数
+    private final int limit;
+
+    private RateLimitRule(Algorithm algorithm, int capacity, int refillRate, int windowSeconds, int limit) {
+        this.algorithm = algorithm;
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.windowSeconds = windowSeconds;
+        this.limit = limit;
+    }
+
+    /**
+     * 令牌桶规则
+     *
+     * @param capacity 桶容量
+     * @param refillRate 令牌生成速率（每秒）
+     */
+    public static RateLimitRule tokenBucket(int capacity, int refillRate) {
+        if (capacity <= 0 || refillRate <= 0) {
+            throw new IllegalArgumentException("令牌桶容量和生成速率必须大于0");
+        }
+        return new RateLimitRule(Algorithm.TOKEN_BUCKET, capacity, refillRate, 0, 0);
+    }
+
+    /**
+     * 滑动窗口规则
+     *
+     * @param windowSeconds 窗口大小（秒）
+     * @param limit 窗口内限制次数
+     */
+    public static RateLimitRule slidingWindow(int windowSeconds, int limit) {
+        if (windowSeconds <= 0 || limit <= 0) {
+            throw new IllegalArgumentException("滑动窗口大小和限制次数必须大于0");
+        }
+        return new RateLimitRule(Algorithm.SLIDING_WINDOW, 0, 0, windowSeconds, limit);
+    }
+
+    /**
+     * 一段时间内按规则最多可放行的请求数，用于确定本地预取的额度
+     * 不超过总额度的四分之一，保证多个节点之间的分配不会太不均匀
+     */
+    public int permitsWithin(long millis) {
+        long permits;
+        int total;
+        if (algorithm == Algorithm.TOKEN_BUCKET) {
+            permits = refillRate * millis / 1000;
+            total = capacity;
+        } else {
+            permits = limit * millis / (windowSeconds * 1000L);
+            total = limit;
+        }
+        return (int) Math.max(1, Math.min(permits, total / 4));
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRefillRate() {
+        return refillRate;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm == Algorithm.TOKEN_BUCKET
+                ? "TokenBucket{capacity=" + capacity + ", refillRate=" + refillRate + "}"
+                : "SlidingWindow{windowSeconds=" + windowSeconds + ", limit=" + limit + "}";
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.common.ratelimit;
+
+/**
+ * 限流器
+ * 本地实现只在当前节点生效，Redis实现在所有节点之间共享额度
+ */
+public interface RateLimiter {
+
+    /**
+     * 尝试获取许可
+     *
+     * @param key 限流键
+     * @param rule 限流规则，同一个键应始终使用同一规则
+     * @param permits 需要的许可数
+     * @return 是否允许通过
+     */
+    boolean tryAcquire(String key, RateLimitRule rule, int permits);
+
+    /**
+     * 尝试获取一个许可
+     *
+     * @param key 限流键
+     * @param rule 限流规则
+     * @return 是否允许通过
+     */
+    default boolean tryAcquire(String key, RateLimitRule rule) {
+        return tryAcquire(key, rule, 1);
+    }
+}
@@ -0,0 +1,258 @@
+package org.example.common.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis限流器
+ * 额度保存在Redis中，所有节点共享；请求频繁的键从Redis预取一小批额度放在本地租约里，
+ * 租约内的请求不访问Redis，被拒绝后短时间内也直接在本地拒绝。
+ * 预取数量按上一个租约期内的实际请求数估算，低频的键每次只取本次需要的数量；
+ * 租约过期或被替换时未用完的额度归还Redis，不会因为预取而拒绝其他节点的请求。
+ * Redis不可用时退化为本地限流。
+ */
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String TOKEN_BUCKET_PREFIX = "rate:limit:tb:";
+
+    private static final String SLIDING_WINDOW_PREFIX = "rate:limit:sw:";
+
+    // 本地租约有效期（毫秒）
+    private static final long LEASE_MILLIS = 1000;
+
+    // 被拒绝后在本地直接拒绝的最长时间（毫秒）
+    private static final long MAX_DENY_MILLIS = 1000;
+
+    // Redis异常日志的最小间隔（毫秒）
+    private static final long ERROR_LOG_INTERVAL = 10_000;
+
+    /**
+     * 令牌桶：按Redis服务器时间补充令牌，余量不少于期望数量时发放期望数量，
+     * 否则余量够本次请求时只发放本次需要的数量，返回{发放数, 建议重试毫秒数, 0}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "redis.replicate_commands()\n" +
+            "local capacity = tonumber(ARGV[1])\n" +
+            "local rate = tonumber(ARGV[2])\n" +
+            "local need = tonumber(ARGV[3])\n" +
+            "local want = tonumber(ARGV[4])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(state[1])\n" +
+            "local ts = tonumber(state[2])\n" +
+            "if tokens == nil or ts == nil then tokens = capacity ts = now end\n" +
+            "if now > ts then\n" +
+            "  tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)\n" +
+            "  ts = now\n" +
+            "end\n" +
+            "local granted = 0\n" +
+            "if tokens >= want then granted = want elseif tokens >= need then granted = need end\n" +
+            "tokens = tokens - granted\n" +
+            "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(ts))\n" +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)\n" +
+            "local retry = 0\n" +
+            "if granted == 0 then retry = math.ceil((need - tokens) * 1000 / rate) end\n" +
+            "return {granted, retry, 0}", List.class);
+
+    /**
+     * 滑动窗口：哈希中按窗口序号保存当前和上一个固定窗口的计数，
+     * 上一个窗口按重叠比例加权，余量不足期望数量时只发放本次需要的数量，
+     * 返回{发放数, 建议重试毫秒数, 计数所在的窗口序号}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(
+            "redis.replicate_commands()\n" +
+            "local window = tonumber(ARGV[1])\n" +
+            "local limit = tonumber(ARGV[2])\n" +
+            "local need = tonumber(ARGV[3])\n" +
+            "local want = tonumber(ARGV[4])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local index = math.floor(now / window)\n" +
+            "local current = tonumber(redis.call('HGET', KEYS[1], tostring(index)) or '0')\n" +
+            "local previous = tonumber(redis.call('HGET', KEYS[1], tostring(index - 1)) or '0')\n" +
+            "local elapsed = now - index * window\n" +
+            "local available = limit - (previous * (1 - elapsed / window) + current)\n" +
+            "local granted = 0\n" +
+            "if available >= want then granted = want elseif available >= need then granted = need end\n" +
+            "if granted > 0 then redis.call('HINCRBY', KEYS[1], tostring(index), granted) end\n" +
+            "redis.call('HDEL', KEYS[1], tostring(index - 2))\n" +
+            "redis.call('PEXPIRE', KEYS[1], window * 2)\n" +
+            "local retry = 0\n" +
+            "if granted == 0 then retry = window - elapsed end\n" +
+            "return {granted, retry, index}", List.class);
+
+    /**
+     * 归还令牌桶中未用完的预取额度，不超过容量
+     */
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_RETURN_SCRIPT = new DefaultRedisScript<>(
+            "local tokens = tonumber(redis.call('HGET', KEYS[1], 'tokens'))\n" +
+            "if tokens == nil then return 0 end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(math.min(tonumber(ARGV[2]), tokens + tonumber(ARGV[1]))))\n" +
+            "return 1", Long.class);
+
+    /**
+     * 归还滑动窗口中未用完的预取额度，从预取时的窗口计数中扣除，不低于0
+     */
+    private static final DefaultRedisScript<Long> SLIDING_WINDOW_RETURN_SCRIPT = new DefaultRedisScript<>(
+            "local count = tonumber(redis.call('HGET', KEYS[1], ARGV[2]) or '0')\n" +
+            "if count <= 0 then return 0 end\n" +
+            "redis.call('HINCRBY', KEYS[1], ARGV[2], -math.min(count, tonumber(ARGV[1])))\n" +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final RateLimiter fallback;
+
+    private final Cache<String, Lease> leases;
+
+    private final AtomicLong lastErrorLogTime = new AtomicLong();
+
+    /**
+     * @param redisTemplate Redis模板
+     * @param fallback Redis不可用时使用的限流器
+     */
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, RateLimiter fallback) {
+        this.redisTemplate = redisTemplate;
+        this.fallback = fallback;
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(LEASE_MILLIS, TimeUnit.MILLISECONDS)
+                .removalListener((String redisKey, Lease lease, RemovalCause cause) -> giveBack(redisKey, lease))
+                .build();
+    }
+
+    @Override
+    public boolean tryAcquire(String key, RateLimitRule rule, int permits) {
+        boolean tokenBucket = rule.getAlgorithm() == RateLimitRule.Algorithm.TOKEN_BUCKET;
+        String redisKey = (tokenBucket ? TOKEN_BUCKET_PREFIX : SLIDING_WINDOW_PREFIX) + key;
+
+        // 本地租约
+        long now = System.currentTimeMillis();
+        Lease lease = leases.getIfPresent(redisKey);
+        if (lease != null) {
+            if (now < lease.deniedUntil) {
+                return false;
+            }
+            if (lease.tryTake(permits)) {
+                return true;
+            }
+        }
+
+        // 按上一个租约期内的请求数预取，不超过规则允许的预取额度
+        long recent = lease != null ? lease.requests.get() : 0;
+        int want = (int) Math.max(permits, Math.min(recent, rule.permitsWithin(LEASE_MILLIS)));
+        List<?> result;
+        try {
+            if (tokenBucket) {
+                result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(rule.getCapacity()), String.valueOf(rule.getRefillRate()),
+                        String.valueOf(permits), String.valueOf(want));
+            } else {
+                result = redisTemplate.execute(SLIDING_WINDOW_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(rule.getWindowSeconds() * 1000L), String.valueOf(rule.getLimit()),
+                        String.valueOf(permits), String.valueOf(want));
+            }
+        } catch (Exception e) {
+            logRedisFailure(e);
+            return fallback.tryAcquire(key, rule, permits);
+        }
+        if (result == null || result.size() < 3) {
+            return fallback.tryAcquire(key, rule, permits);
+        }
+
+        long granted = ((Number) result.get(0)).longValue();
+        if (granted < permits) {
+            long retryMillis = ((Number) result.get(1)).longValue();
+            leases.put(redisKey, Lease.denied(now + Math.min(Math.max(retryMillis, 1), MAX_DENY_MILLIS)));
+            return false;
+        }
+        // 记录新租约，即使没有剩余额度也用于统计请求频率
+        leases.put(redisKey, new Lease(rule, granted - permits, ((Number) result.get(2)).longValue()));
+        return true;
+    }
+
+    /**
+     * 租约过期、被替换或淘汰时归还未用完的额度
+     */
+    private void giveBack(String redisKey, Lease lease) {
+        if (redisKey == null || lease == null || lease.rule == null) {
+            return;
+        }
+        long unused = lease.remaining.getAndSet(0);
+        if (unused <= 0) {
+            return;
+        }
+        try {
+            if (lease.rule.getAlgorithm() == RateLimitRule.Algorithm.TOKEN_BUCKET) {
+                redisTemplate.execute(TOKEN_BUCKET_RETURN_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(unused), String.valueOf(lease.rule.getCapacity()));
+            } else {
+                redisTemplate.execute(SLIDING_WINDOW_RETURN_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(unused), String.valueOf(lease.windowIndex));
+            }
+        } catch (Exception e) {
+            logRedisFailure(e);
+        }
+    }
+
+    private void logRedisFailure(Exception e) {
+        long now = System.currentTimeMillis();
+        long last = lastErrorLogTime.get();
+        if (now - last >= ERROR_LOG_INTERVAL && lastErrorLogTime.compareAndSet(last, now)) {
+            log.warn("Redis限流不可用，退化为本地限流: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 本地租约：预取的剩余额度，或者被拒绝后直接拒绝的截止时间
+     */
+    private static final class Lease {
+        private final RateLimitRule rule;
+        private final AtomicLong remaining;
+        private final long windowIndex;
+        private final long deniedUntil;
+        // 租约期内的请求数，包括取得租约的那次请求
+        private final AtomicLong requests = new AtomicLong(1);
+
+        Lease(RateLimitRule rule, long remaining, long windowIndex) {
+            this(rule, remaining, windowIndex, 0);
+        }
+
+        private Lease(RateLimitRule rule, long remaining, long windowIndex, long deniedUntil) {
+            this.rule = rule;
+            this.remaining = new AtomicLong(remaining);
+            this.windowIndex = windowIndex;
+            this.deniedUntil = deniedUntil;
+        }
+
+        static Lease denied(long until) {
+            return new Lease(null, 0, 0, until);
+        }
+
+        boolean tryTake(int permits) {
+            requests.incrementAndGet();
+            while (true) {
+                long current = remaining.get();
+                if (current < permits) {
+                    return false;
+                }
+                if (remaining.compareAndSet(current, current - permits)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,13 @@
 package org.example.common.security;
 
+import org.example.common.ratelimit.LocalRateLimiter;
+import org.example.common.ratelimit.RateLimitRule;
 import org.springframework.util.StringUtils;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.Map;
-
 /**
  * API限流工具类
- * 提供基于令牌桶和滑动窗口的限流功能
+ * 提供基于令牌桶和滑动窗口的单节点限流功能，状态由{@link LocalRateLimiter}保存，键数量有上限；
+ * 需要多节点共享额度时使用{@link org.example.common.ratelimit.RedisRateLimiter}
  * 
  * @author system
  * @since 1.0.0
@@ -17,14 +15,9 @@ import java.util.Map;
 public class RateLimitUtils {
     
     /**
-     * 令牌桶存储
+     * 本地限流器
      */
-    private static final Map<String, TokenBucket> TOKEN_BUCKETS = new ConcurrentHashMap<>();
-    
-    /**
-     * 滑动窗口存储
-     */
-    private static final Map<String, SlidingWindow> SLIDING_WINDOWS = new ConcurrentHashMap<>();
+    private static final LocalRateLimiter LIMITER = new LocalRateLimiter();
     
     /**
      * 默认令牌桶容量
@@ -46,16 +39,6 @@ public class RateLimitUtils {
      */
     private static final int DEFAULT_WINDOW_LIMIT = 1000;
     
-    /**
-     * 清理过期数据的间隔（毫秒）
-     */
-    private static final long CLEANUP_INTERVAL = 5 * 60 * 1000L; // 5分钟
-    
-    /**
-     * 上次清理时间
-     */
-    private static volatile long lastCleanupTime = System.currentTimeMillis();
-    
     /**
      * 令牌桶算法限流
      * 
@@ -70,10 +53,7 @@ public class RateLimitUtils {
             return false;
         }
         
-        cleanupIfNeeded();
-        
-        TokenBucket bucket = TOKEN_BUCKETS.computeIfAbsent(key, k -> new TokenBucket(capacity, refillRate));
-        return bucket.tryAcquire(tokens);
+        return LIMITER.tryAcquire(key, RateLimitRule.tokenBucket(capacity, refillRate), tokens);
     }
     
     /**
@@ -110,10 +90,7 @@ public class RateLimitUtils {
             return false;
         }
         
-        cleanupIfNeeded();
-        
-        SlidingWindow window = SLIDING_WINDOWS.computeIfAbsent(key, k -> new SlidingWindow(windowSize, limit));
-        return window.tryAcquire();
+        return LIMITER.tryAcquire(key, RateLimitRule.slidingWindow(windowSize, limit));
     }
     
     /**
@@ -137,8 +114,7 @@ public class RateLimitUtils {
             return 0;
         }
         
-        TokenBucket bucket = TOKEN_BUCKETS.get(key);
-        return bucket != null ? bucket.getAvailableTokens() : 0;
+        return LIMITER.availableTokens(key);
     }
     
     /**
@@ -152,8 +128,7 @@ public class RateLimitUtils {
             return 0;
         }
         
-        SlidingWindow window = SLIDING_WINDOWS.get(key);
-        return window != null ? window.getCurrentCount() : 0;
+        return LIMITER.currentCount(key);
     }
     
     /**
@@ -163,8 +138,7 @@ public class RateLimitUtils {
      */
     public static void reset(String key) {
         if (StringUtils.hasText(key)) {
-            TOKEN_BUCKETS.remove(key);
-            SLIDING_WINDOWS.remove(key);
+            LIMITER.reset(key);
         }
     }
     
@@ -172,8 +146,7 @@ public class RateLimitUtils {
      * 清理所有限流器
      */
     public static void resetAll() {
-        TOKEN_BUCKETS.clear();
-        SLIDING_WINDOWS.clear();
+        LIMITER.resetAll();
     }
     
     /**
@@ -187,189 +160,20 @@ public class RateLimitUtils {
             return null;
         }
         
-        TokenBucket bucket = TOKEN_BUCKETS.get(key);
-        SlidingWindow window = SLIDING_WINDOWS.get(key);
+        RateLimitRule bucket = LIMITER.tokenBucketRule(key);
+        RateLimitRule window = LIMITER.slidingWindowRule(key);
         
         return new RateLimitInfo(
             key,
-            bucket != null ? bucket.getAvailableTokens() : 0,
+            LIMITER.availableTokens(key),
             bucket != null ? bucket.getCapacity() : 0,
             bucket != null ? bucket.getRefillRate() : 0,
-            window != null ? window.getCurrentCount() : 0,
+            LIMITER.currentCount(key),
             window != null ? window.getLimit() : 0,
-            window != null ? window.getWindowSize() : 0
+            window != null ? window.getWindowSeconds() : 0
         );
     }
     
-    /**
-     * 如果需要则清理过期数据
-     */
-    private static void cleanupIfNeeded() {
-        long now = System.currentTimeMillis();
-        if (now - lastCleanupTime > CLEANUP_INTERVAL) {
-            synchronized (RateLimitUtils.class) {
-                if (now - lastCleanupTime > CLEANUP_INTERVAL) {
-                    cleanup();
-                    lastCleanupTime = now;
-                }
-            }
-        }
-    }
-    
-    /**
-     * 清理过期数据
-     */
-    private static void cleanup() {
-        long now = System.currentTimeMillis();
-        
-        // 清理长时间未使用的令牌桶
-        TOKEN_BUCKETS.entrySet().removeIf(entry -> {
-            TokenBucket bucket = entry.getValue();
-            return now - bucket.getLastAccessTime() > CLEANUP_INTERVAL;
-        });
-        
-        // 清理长时间未使用的滑动窗口
-        SLIDING_WINDOWS.entrySet().removeIf(entry -> {
-            SlidingWindow window = entry.getValue();
-            return now - window.getLastAccessTime() > CLEANUP_INTERVAL;
-        });
-    }
-    
-    /**
-     * 令牌桶实现
-     */
-    private static class TokenBucket {
-        private final int capacity;
-        private final int refillRate;
-        private final AtomicInteger tokens;
-        private final AtomicLong lastRefillTime;
-        private volatile long lastAccessTime;
-        
-        public TokenBucket(int capacity, int refillRate) {
-            this.capacity = capacity;
-            this.refillRate = refillRate;
-            this.tokens = new AtomicInteger(capacity);
-            this.lastRefillTime = new AtomicLong(System.currentTimeMillis());
-            this.lastAccessTime = System.currentTimeMillis();
-        }
-        
-        public boolean tryAcquire(int tokensToAcquire) {
-            refill();
-            this.lastAccessTime = System.currentTimeMillis();
-            
-            while (true) {
-                int currentTokens = tokens.get();
-                if (currentTokens < tokensToAcquire) {
-                    return false;
-                }
-                
-                if (tokens.compareAndSet(currentTokens, currentTokens - tokensToAcquire)) {
-                    return true;
-                }
-            }
-        }
-        
-        private void refill() {
-            long now = System.currentTimeMillis();
-            long lastRefill = lastRefillTime.get();
-            
-            if (now > lastRefill) {
-                long timePassed = now - lastRefill;
-                int tokensToAdd = (int) (timePassed * refillRate / 1000);
-                
-                if (tokensToAdd > 0 && lastRefillTime.compareAndSet(lastRefill, now)) {
-                    while (true) {
-                        int currentTokens = tokens.get();
-                        int newTokens = Math.min(capacity, currentTokens + tokensToAdd);
-                        
-                        if (tokens.compareAndSet(currentTokens, newTokens)) {
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-        
-        public int getAvailableTokens() {
-            refill();
-            return tokens.get();
-        }
-        
-        public int getCapacity() {
-            return capacity;
-        }
-        
-        public int getRefillRate() {
-            return refillRate;
-        }
-        
-        public long getLastAccessTime() {
-            return lastAccessTime;
-        }
-    }
-    
-    /**
-     * 滑动窗口实现
-     */
-    private static class SlidingWindow {
-        private final int windowSize; // 窗口大小（秒）
-        private final int limit; // 限制次数
-        private final AtomicInteger count;
-        private final AtomicLong windowStart;
-        private volatile long lastAccessTime;
-        
-        public SlidingWindow(int windowSize, int limit) {
-            this.windowSize = windowSize;
-            this.limit = limit;
-            this.count = new AtomicInteger(0);
-            this.windowStart = new AtomicLong(System.currentTimeMillis());
-            this.lastAccessTime = System.currentTimeMillis();
-        }
-        
-        public boolean tryAcquire() {
-            long now = System.currentTimeMillis();
-            this.lastAccessTime = now;
-            
-            // 检查是否需要重置窗口
-            long windowStartTime = windowStart.get();
-            if (now - windowStartTime >= windowSize * 1000L) {
-                // 尝试重置窗口
-                if (windowStart.compareAndSet(windowStartTime, now)) {
-                    count.set(1);
-                    return true;
-                }
-            }
-            
-            // 在当前窗口内增加计数
-            int currentCount = count.incrementAndGet();
-            return currentCount <= limit;
-        }
-        
-        public int getCurrentCount() {
-            long now = System.currentTimeMillis();
-            long windowStartTime = windowStart.get();
-            
-            // 如果窗口已过期，返回0
-            if (now - windowStartTime >= windowSize * 1000L) {
-                return 0;
-            }
-            
-            return count.get();
-        }
-        
-        public int getLimit() {
-            return limit;
-        }
-        
-        public int getWindowSize() {
-            return windowSize;
-        }
-        
-        public long getLastAccessTime() {
-            return lastAccessTime;
-        }
-    }
-    
     /**
      * 限流信息
      */
@@ -0,0 +1,191 @@
+package org.example.common.utils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 进程内带过期时间的本地缓存
+ * 每个条目单独指定过期时间，容量超限时先清理过期条目，再淘汰任意条目。
+ * 指定分组函数时维护分组到key的索引，可按分组删除而不遍历整个缓存
+ */
+public class LocalExpiringCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> store = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    // 值 -> 分组，为null时不维护分组索引
+    private final Function<? super V, ?> groupBy;
+
+    // 分组 -> 该分组的key
+    private final ConcurrentHashMap<Object, Set<K>> groups = new ConcurrentHashMap<>();
+
+    // 最近一次全量清理时间，避免每次写入都遍历
+    private final AtomicLong lastSweepTime = new AtomicLong(0);
+
+    // 全量清理最小间隔（毫秒）
+    private static final long SWEEP_INTERVAL = 10_000;
+
+    public LocalExpiringCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param groupBy 从值取分组，返回null的值不加入分组
+     */
+    public LocalExpiringCache(int maxSize, Function<? super V, ?> groupBy) {
+        this.maxSize = maxSize;
+        this.groupBy = groupBy;
+    }
+
+    /**
+     * 获取缓存，过期返回null
+     */
+    public V get(K key) {
+        Entry<V> entry = store.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            if (store.remove(key, entry)) {
+                unindex(key, entry);
+            }
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param ttlMillis 存活时间（毫秒），小于等于0时不缓存
+     */
+    public void put(K key, V value, long ttlMillis) {
+        if (key == null || value == null || ttlMillis <= 0) {
+            return;
+        }
+        if (store.size() >= maxSize) {
+            evict();
+        }
+        Entry<V> entry = new Entry<>(value, System.currentTimeMillis() + ttlMillis);
+        Entry<V> previous = store.put(key, entry);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        index(key, entry);
+    }
+
+    /**
+     * 删除缓存
+     */
+    public void remove(K key) {
+        if (key != null) {
+            Entry<V> removed = store.remove(key);
+            if (removed != null) {
+                unindex(key, removed);
+            }
+        }
+    }
+
+    /**
+     * 删除值满足条件的缓存，需要遍历整个缓存
+     */
+    public void removeIf(Predicate<V> predicate) {
+        removeEntriesIf(e -> predicate.test(e.value));
+    }
+
+    /**
+     * 删除一个分组的全部缓存，只访问该分组的key
+     */
+    public void removeGroup(Object group) {
+        if (groupBy == null || group == null) {
+            return;
+        }
+        Set<K> keys = groups.remove(group);
+        if (keys == null) {
+            return;
+        }
+        for (K key : keys) {
+            // 期间被改写到其他分组的key保留
+            store.computeIfPresent(key, (k, entry) -> group.equals(groupBy.apply(entry.value)) ? null : entry);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        store.clear();
+        groups.clear();
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        long last = lastSweepTime.get();
+        if (now - last >= SWEEP_INTERVAL && lastSweepTime.compareAndSet(last, now)) {
+            removeEntriesIf(e -> e.expireAt <= now);
+        }
+        // 仍然超限则淘汰任意条目，保证内存有界
+        Iterator<Map.Entry<K, Entry<V>>> it = store.entrySet().iterator();
+        while (store.size() >= maxSize && it.hasNext()) {
+            Map.Entry<K, Entry<V>> e = it.next();
+            it.remove();
+            unindex(e.getKey(), e.getValue());
+        }
+    }
+
+    private void removeEntriesIf(Predicate<Entry<V>> predicate) {
+        Iterator<Map.Entry<K, Entry<V>>> it = store.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> e = it.next();
+            if (predicate.test(e.getValue())) {
+                it.remove();
+                unindex(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private void index(K key, Entry<V> entry) {
+        Object group = groupOf(entry);
+        if (group != null) {
+            groups.compute(group, (g, keys) -> {
+                Set<K> result = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                result.add(key);
+                return result;
+            });
+        }
+    }
+
+    private void unindex(K key, Entry<V> entry) {
+        Object group = groupOf(entry);
+        if (group != null) {
+            groups.computeIfPresent(group, (g, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private Object groupOf(Entry<V> entry) {
+        return groupBy == null ? null : groupBy.apply(entry.value);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
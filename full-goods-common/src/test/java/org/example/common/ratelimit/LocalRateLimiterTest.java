@@ -0,0 +1,118 @@
+package org.example.common.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地限流器单元测试
+ */
+class LocalRateLimiterTest {
+
+    @Test
+    void testTokenBucketRejectsWhenEmpty() {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.tokenBucket(3, 1);
+
+        assertTrue(limiter.tryAcquire("user:1", rule));
+        assertTrue(limiter.tryAcquire("user:1", rule));
+        assertTrue(limiter.tryAcquire("user:1", rule));
+        assertFalse(limiter.tryAcquire("user:1", rule));
+        // 不同的键各自计数
+        assertTrue(limiter.tryAcquire("user:2", rule));
+        assertEquals(rule, limiter.tokenBucketRule("user:1"));
+    }
+
+    @Test
+    void testTokenBucketRefills() throws InterruptedException {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.tokenBucket(1, 50);
+
+        assertTrue(limiter.tryAcquire("user:1", rule));
+        assertFalse(limiter.tryAcquire("user:1", rule));
+        // 每20毫秒补充一个令牌
+        Thread.sleep(60);
+        assertTrue(limiter.tryAcquire("user:1", rule));
+    }
+
+    @Test
+    void testPermitsLargerThanCapacityRejected() {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.tokenBucket(5, 1);
+
+        assertFalse(limiter.tryAcquire("user:1", rule, 6));
+        // 失败的请求不消耗令牌
+        assertTrue(limiter.tryAcquire("user:1", rule, 5));
+        assertEquals(0, limiter.availableTokens("user:1"));
+    }
+
+    @Test
+    void testSlidingWindowLimit() {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.slidingWindow(3600, 2);
+
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", rule));
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", rule));
+        assertFalse(limiter.tryAcquire("ip:1.1.1.1", rule));
+        assertEquals(2, limiter.currentCount("ip:1.1.1.1"));
+        assertEquals(0, limiter.currentCount("ip:2.2.2.2"));
+    }
+
+    @Test
+    void testResetClearsState() {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.slidingWindow(3600, 1);
+
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", rule));
+        assertFalse(limiter.tryAcquire("ip:1.1.1.1", rule));
+        limiter.reset("ip:1.1.1.1");
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", rule));
+        assertNotNull(limiter.slidingWindowRule("ip:1.1.1.1"));
+        limiter.resetAll();
+        assertNull(limiter.slidingWindowRule("ip:1.1.1.1"));
+    }
+
+    @Test
+    void testConcurrentAcquireDoesNotOverGrant() throws Exception {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = RateLimitRule.tokenBucket(50, 1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long begin = System.currentTimeMillis();
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int granted = 0;
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.tryAcquire("global", rule)) {
+                            granted++;
+                        }
+                    }
+                    return granted;
+                }));
+            }
+            start.countDown();
+            int granted = 0;
+            for (Future<Integer> future : futures) {
+                granted += future.get(10, TimeUnit.SECONDS);
+            }
+            // 容量50，测试期间每秒最多补充1个
+            long elapsedSeconds = (System.currentTimeMillis() - begin) / 1000 + 1;
+            assertTrue(granted >= 50);
+            assertTrue(granted <= 50 + elapsedSeconds);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
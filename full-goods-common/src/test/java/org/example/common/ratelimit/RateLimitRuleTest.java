@@ -0,0 +1,45 @@
+package org.example.common.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限流规则单元测试
+ */
+class RateLimitRuleTest {
+
+    @Test
+    void testTokenBucketPermitsWithinFollowsRefillRate() {
+        // 每秒20个，容量的四分之一是25
+        assertEquals(20, RateLimitRule.tokenBucket(100, 20).permitsWithin(1000));
+        assertEquals(10, RateLimitRule.tokenBucket(100, 20).permitsWithin(500));
+    }
+
+    @Test
+    void testPermitsWithinCappedAtQuarterOfTotal() {
+        assertEquals(25, RateLimitRule.tokenBucket(100, 200).permitsWithin(1000));
+        assertEquals(250, RateLimitRule.slidingWindow(1, 1000).permitsWithin(1000));
+    }
+
+    @Test
+    void testSlidingWindowPermitsWithin() {
+        // 60秒600次，每秒10次
+        assertEquals(10, RateLimitRule.slidingWindow(60, 600).permitsWithin(1000));
+    }
+
+    @Test
+    void testPermitsWithinAtLeastOne() {
+        assertEquals(1, RateLimitRule.tokenBucket(2, 1).permitsWithin(1000));
+        assertEquals(1, RateLimitRule.slidingWindow(60, 5).permitsWithin(1000));
+        assertEquals(1, RateLimitRule.tokenBucket(100, 20).permitsWithin(0));
+    }
+
+    @Test
+    void testInvalidRuleRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RateLimitRule.tokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitRule.tokenBucket(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitRule.slidingWindow(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitRule.slidingWindow(1, 0));
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地过期缓存单元测试
+ */
+class LocalExpiringCacheTest {
+
+    @Test
+    void testRemoveGroupOnlyRemovesThatGroup() {
+        LocalExpiringCache<String, String> cache = new LocalExpiringCache<>(100, value -> value.split(":")[0]);
+        cache.put("token-a", "1:alice", 60_000);
+        cache.put("token-b", "1:alice", 60_000);
+        cache.put("token-c", "2:bob", 60_000);
+
+        cache.removeGroup("1");
+
+        assertNull(cache.get("token-a"));
+        assertNull(cache.get("token-b"));
+        assertEquals("2:bob", cache.get("token-c"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testOverwrittenKeyMovesToNewGroup() {
+        LocalExpiringCache<String, String> cache = new LocalExpiringCache<>(100, value -> value.split(":")[0]);
+        cache.put("token-a", "1:alice", 60_000);
+        cache.put("token-a", "2:bob", 60_000);
+
+        cache.removeGroup("1");
+        assertEquals("2:bob", cache.get("token-a"));
+
+        cache.removeGroup("2");
+        assertNull(cache.get("token-a"));
+    }
+
+    @Test
+    void testRemovedKeyNotRemovedAgainByGroup() {
+        LocalExpiringCache<String, String> cache = new LocalExpiringCache<>(100, value -> value.split(":")[0]);
+        cache.put("token-a", "1:alice", 60_000);
+        cache.remove("token-a");
+        // 删除后以同一key写入其他分组，不受原分组删除影响
+        cache.put("token-a", "2:bob", 60_000);
+
+        cache.removeGroup("1");
+        assertEquals("2:bob", cache.get("token-a"));
+    }
+
+    @Test
+    void testRemoveGroupWithoutGroupFunction() {
+        LocalExpiringCache<String, String> cache = new LocalExpiringCache<>(100);
+        cache.put("token-a", "1:alice", 60_000);
+
+        cache.removeGroup("1");
+        assertEquals("1:alice", cache.get("token-a"));
+        cache.removeIf(value -> value.startsWith("1:"));
+        assertNull(cache.get("token-a"));
+    }
+}
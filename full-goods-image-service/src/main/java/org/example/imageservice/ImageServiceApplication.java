@@ -3,6 +3,7 @@ package org.example.imageservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.mybatis.spring.boot.autoconfigure.MybatisAutoConfiguration;
 import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceAutoConfigure;
 
@@ -14,6 +15,7 @@ import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceAutoConfigure;
     MybatisAutoConfiguration.class,
     DruidDataSourceAutoConfigure.class
 })
+@EnableScheduling
 public class ImageServiceApplication {
     
     public static void main(String[] args) {
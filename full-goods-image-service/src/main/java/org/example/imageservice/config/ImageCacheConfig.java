@@ -0,0 +1,51 @@
+package org.example.imageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 图片本地磁盘缓存配置
+ */
+@Component
+@ConfigurationProperties(prefix = "image.cache")
+public class ImageCacheConfig {
+
+    private boolean enabled = true;
+    private String path = "./cache/images/";
+    // 缓存占用磁盘上限(MB)
+    private long maxSize = 1024;
+    // 浏览器缓存时间(秒)，图片文件名唯一，内容不会变化
+    private long maxAge = 30L * 24 * 60 * 60;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.imageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 图片缩略图配置
+ */
+@Component
+@ConfigurationProperties(prefix = "image.variant")
+public class ImageVariantConfig {
+
+    private boolean enabled = true;
+    // 生成的缩略图宽度(像素)，请求的宽度向上取到最近的一档
+    private List<Integer> widths = new ArrayList<>(Arrays.asList(100, 200, 400, 800));
+    // JPEG编码质量，0-1
+    private float quality = 0.8f;
+    // 上传后生成缩略图的线程数
+    private int workerThreads = 2;
+    // 等待生成的任务数上限，超出后不再预生成，访问时再生成
+    private int queueCapacity = 200;
+    // 访问时生成缩略图的最长等待时间(毫秒)，超时返回原图，生成在后台继续
+    private long generateTimeoutMs = 3000;
+    // 允许解码的原图最大像素数，超过时不生成缩略图
+    private long maxPixels = 40_000_000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Integer> getWidths() {
+        return widths;
+    }
+
+    public void setWidths(List<Integer> widths) {
+        this.widths = widths;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public void setQuality(float quality) {
+        this.quality = quality;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getGenerateTimeoutMs() {
+        return generateTimeoutMs;
+    }
+
+    public void setGenerateTimeoutMs(long generateTimeoutMs) {
+        this.generateTimeoutMs = generateTimeoutMs;
+    }
+
+    public long getMaxPixels() {
+        return maxPixels;
+    }
+
+    public void setMaxPixels(long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+}
@@ -1,25 +1,34 @@
 package org.example.imageservice.controller;
 
-import io.minio.errors.*;
+import org.example.imageservice.config.ImageCacheConfig;
+import org.example.imageservice.service.ImageCacheService;
 import org.example.imageservice.service.ImageService;
+import org.example.imageservice.service.ImageVariantService;
 import org.example.imageservice.service.MinioService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 图片服务控制器
@@ -27,19 +36,39 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api")
 public class ImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+
+    // Tomcat sendfile相关的请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小的图片直接写出，sendfile的额外开销不划算
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
     
     @Autowired
     private ImageService imageService;
     
     @Autowired
     private MinioService minioService;
+
+    @Autowired
+    private ImageCacheService imageCacheService;
+
+    @Autowired
+    private ImageCacheConfig imageCacheConfig;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
     
     /**
-     * 上传图片
+     * 上传图片，文件字段名为file
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> uploadImage(@RequestParam("file") MultipartFile file) {
-        Map<String, Object> result = imageService.uploadImage(file);
+    public ResponseEntity<Map<String, Object>> uploadImage(HttpServletRequest request) {
+        Map<String, Object> result = imageService.uploadImage(request);
         return ResponseEntity.ok(result);
     }
     
@@ -53,45 +82,151 @@ public class ImageController {
     }
     
     /**
-     * 访问图片 - 直接从MinIO获取并返回图片内容
+     * 访问图片 - 优先从本地磁盘缓存读取，未缓存时从MinIO下载后缓存
+     * 支持ETag条件请求和单段Range请求；传入w时返回不小于该宽度的缩略图
      */
     @GetMapping(value = "/images/{fileName}")
-    public void getImage(@PathVariable String fileName, HttpServletResponse response) {
-        InputStream inputStream = null;
+    public void getImage(@PathVariable String fileName, @RequestParam(value = "w", required = false) Integer width,
+                         HttpServletRequest request, HttpServletResponse response) {
+        if (!ImageCacheService.isValidFileName(fileName)) {
+            notFound(response, "invalid file name");
+            return;
+        }
+        if (!imageCacheService.isEnabled()) {
+            streamFromMinio(fileName, response);
+            return;
+        }
+
+        ImageCacheService.CachedImage image;
         try {
-            // 从MinIO获取文件输入流
-            inputStream = minioService.getObject(fileName);
-            
-            // 设置响应头
-            response.setContentType("image/jpeg"); // 默认类型
-            response.setHeader("Cache-Control", "max-age=3600"); // 缓存1小时
-            
-            // 将图片内容写入响应
-            java.io.OutputStream outputStream = response.getOutputStream();
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-            outputStream.flush();
+            Integer variantWidth = imageVariantService.resolveWidth(width);
+            image = variantWidth != null ? loadVariant(fileName, variantWidth) : imageCacheService.getOrLoad(fileName);
         } catch (Exception e) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            try {
-                response.getWriter().write("Image not found: " + e.getMessage());
-            } catch (IOException ioException) {
-                // 忽略
+            notFound(response, e.getMessage());
+            return;
+        }
+        try {
+            writeImage(image, request, response);
+        } catch (IOException e) {
+            // 客户端断开连接
+            logger.debug("图片发送中断: {}, 原因: {}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取缩略图，生成失败（如原图格式无法解码）时返回原图
+     */
+    private ImageCacheService.CachedImage loadVariant(String fileName, int width) throws Exception {
+        try {
+            return imageVariantService.getVariant(fileName, width);
+        } catch (Exception e) {
+            logger.debug("获取缩略图失败，返回原图: {}, 宽度: {}, 原因: {}", fileName, width, e.getMessage());
+            return imageCacheService.getOrLoad(fileName);
+        }
+    }
+
+    private void writeImage(ImageCacheService.CachedImage image, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        String etag = "\"" + image.getEtag() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(imageCacheConfig.getMaxAge(), TimeUnit.SECONDS).cachePublic().getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 处理If-None-Match/If-Match，命中时已设置304或412
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        response.setContentType(image.getContentType());
+
+        long length = image.getLength();
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = resolveRange(request, etag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = Math.min(range.getRangeEnd(length), length - 1);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
             }
-        } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    // 忽略
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由Tomcat在请求处理结束后通过sendfile直接从文件发送
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
                 }
+                position += written;
+                remaining -= written;
             }
         }
     }
-    
+
+    /**
+     * 解析单段Range请求；格式错误、多段或If-Range不匹配时返回null，按完整内容响应
+     */
+    private HttpRange resolveRange(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 未启用本地缓存时直接转发MinIO的内容
+     */
+    private void streamFromMinio(String fileName, HttpServletResponse response) {
+        try (InputStream inputStream = minioService.getObject(fileName)) {
+            response.setContentType(ImageCacheService.contentTypeOf(fileName));
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    CacheControl.maxAge(imageCacheConfig.getMaxAge(), TimeUnit.SECONDS).cachePublic().getHeaderValue());
+            StreamUtils.copy(inputStream, response.getOutputStream());
+        } catch (Exception e) {
+            notFound(response, e.getMessage());
+        }
+    }
+
+    private void notFound(HttpServletResponse response, String message) {
+        if (response.isCommitted()) {
+            return;
+        }
+        response.reset();
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        try {
+            response.getWriter().write("Image not found: " + message);
+        } catch (IOException ioException) {
+            // 忽略
+        }
+    }
+
     /**
      * 健康检查
      */
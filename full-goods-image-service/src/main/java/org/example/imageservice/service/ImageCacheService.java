@@ -0,0 +1,319 @@
+package org.example.imageservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.imageservice.config.ImageCacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 图片本地磁盘缓存
+ * 热点图片从MinIO下载一次后保存在本地磁盘，按占用字节数做LRU淘汰。
+ * 缓存文件名为 {内容MD5}-{图片文件名}，重启后可直接恢复索引，MD5同时作为ETag。
+ * 同一图片同时只有一个请求回源MinIO，其他请求等待下载完成。
+ */
+@Service
+public class ImageCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageCacheService.class);
+
+    private static final int ETAG_LENGTH = 32;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Autowired
+    private ImageCacheConfig cacheConfig;
+
+    @Autowired
+    private MinioService minioService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Path cacheDir;
+
+    private long maxBytes;
+
+    // 按访问顺序排列，最久未访问的在最前，访问需持有锁
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long totalBytes;
+
+    private final ConcurrentMap<String, CompletableFuture<CachedImage>> loading = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!cacheConfig.isEnabled()) {
+            logger.info("图片本地缓存已关闭，图片直接从MinIO读取");
+            return;
+        }
+        cacheDir = Paths.get(cacheConfig.getPath()).toAbsolutePath().normalize();
+        Files.createDirectories(cacheDir);
+        maxBytes = cacheConfig.getMaxSize() * 1024 * 1024;
+        restore();
+
+        hitCounter = Counter.builder("image.cache.requests").tag("result", "hit")
+                .description("图片缓存命中次数").register(meterRegistry);
+        missCounter = Counter.builder("image.cache.requests").tag("result", "miss")
+                .description("图片缓存未命中、回源MinIO的次数").register(meterRegistry);
+        Gauge.builder("image.cache.size", this, ImageCacheService::getTotalBytes)
+                .description("图片缓存占用字节数").baseUnit("bytes").register(meterRegistry);
+        logger.info("图片本地缓存目录: {}, 上限: {}MB, 已缓存: {}个", cacheDir, cacheConfig.getMaxSize(), entries.size());
+    }
+
+    public boolean isEnabled() {
+        return cacheDir != null;
+    }
+
+    /**
+     * 获取缓存的图片，未缓存时从MinIO下载
+     */
+    public CachedImage getOrLoad(String fileName) throws Exception {
+        CachedImage cached = get(fileName);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+
+        CompletableFuture<CachedImage> future = new CompletableFuture<>();
+        CompletableFuture<CachedImage> inFlight = loading.putIfAbsent(fileName, future);
+        if (inFlight != null) {
+            // 其他请求正在下载同一图片
+            hitCounter.increment();
+            return await(inFlight);
+        }
+        try {
+            CachedImage image = get(fileName);
+            if (image == null) {
+                missCounter.increment();
+                image = download(fileName);
+            }
+            future.complete(image);
+            return image;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(fileName, future);
+        }
+    }
+
+    /**
+     * 删除缓存的图片
+     */
+    public void evict(String fileName) {
+        if (!isEnabled()) {
+            return;
+        }
+        CachedImage removed;
+        synchronized (entries) {
+            removed = entries.remove(fileName);
+            if (removed != null) {
+                totalBytes -= removed.getLength();
+            }
+        }
+        if (removed != null) {
+            deleteQuietly(removed.getPath());
+        }
+    }
+
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * 图片文件名只允许单层文件名，防止写出缓存目录
+     */
+    public static boolean isValidFileName(String fileName) {
+        return fileName != null && !fileName.isEmpty() && !fileName.startsWith(".")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0 && !fileName.contains("..");
+    }
+
+    /**
+     * 根据扩展名判断图片类型，无法判断时按jpeg处理
+     */
+    public static String contentTypeOf(String fileName) {
+        return MediaTypeFactory.getMediaType(fileName).orElse(MediaType.IMAGE_JPEG).toString();
+    }
+
+    private CachedImage get(String fileName) {
+        CachedImage image;
+        synchronized (entries) {
+            image = entries.get(fileName);
+        }
+        if (image != null && !Files.isRegularFile(image.getPath())) {
+            // 缓存文件被外部删除
+            evict(fileName);
+            return null;
+        }
+        return image;
+    }
+
+    private CachedImage download(String fileName) throws Exception {
+        Path temp = Files.createTempFile(cacheDir, "download-", TEMP_SUFFIX);
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        try (InputStream in = new DigestInputStream(minioService.getObject(fileName), md5)) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+
+        String etag = String.format("%0" + ETAG_LENGTH + "x", new BigInteger(1, md5.digest()));
+        Path target = cacheDir.resolve(etag + "-" + fileName);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        CachedImage image = new CachedImage(fileName, target, Files.size(target), etag);
+        put(image);
+        logger.debug("图片已缓存: {}, 大小: {} bytes", fileName, image.getLength());
+        return image;
+    }
+
+    private void put(CachedImage image) {
+        List<Path> toDelete = new ArrayList<>();
+        synchronized (entries) {
+            CachedImage previous = entries.put(image.getFileName(), image);
+            if (previous != null) {
+                totalBytes -= previous.getLength();
+                if (!previous.getPath().equals(image.getPath())) {
+                    toDelete.add(previous.getPath());
+                }
+            }
+            totalBytes += image.getLength();
+
+            // 淘汰最久未访问的图片，至少保留刚写入的一张
+            Iterator<Map.Entry<String, CachedImage>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+                CachedImage eldest = iterator.next().getValue();
+                if (eldest == image) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.getLength();
+                toDelete.add(eldest.getPath());
+            }
+        }
+        for (Path path : toDelete) {
+            deleteQuietly(path);
+        }
+    }
+
+    /**
+     * 启动时按修改时间恢复已有缓存，清理未下载完的临时文件
+     */
+    private void restore() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(cacheDir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        List<CachedImage> restored = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMP_SUFFIX) || name.length() <= ETAG_LENGTH + 1 || name.charAt(ETAG_LENGTH) != '-') {
+                deleteQuietly(file);
+                continue;
+            }
+            restored.add(new CachedImage(name.substring(ETAG_LENGTH + 1), file, Files.size(file), name.substring(0, ETAG_LENGTH)));
+        }
+        restored.sort(Comparator.comparingLong(image -> lastModified(image.getPath())));
+        for (CachedImage image : restored) {
+            put(image);
+        }
+    }
+
+    private static CachedImage await(CompletableFuture<CachedImage> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除缓存文件失败: {}, 原因: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 已缓存的图片
+     */
+    public static class CachedImage {
+
+        private final String fileName;
+        private final Path path;
+        private final long length;
+        private final String etag;
+
+        CachedImage(String fileName, Path path, long length, String etag) {
+            this.fileName = fileName;
+            this.path = path;
+            this.length = length;
+            this.etag = etag;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getContentType() {
+            return contentTypeOf(fileName);
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package org.example.imageservice.service;
 
 import io.minio.errors.*;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.example.imageservice.config.ImageUploadConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -23,23 +29,33 @@ public class ImageService {
     
     private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
     
+    private static final String FILE_FIELD = "file";
+    
     @Autowired
     private ImageUploadConfig uploadConfig;
     
     @Autowired
     private MinioService minioService;
     
+    @Autowired
+    private ImageCacheService imageCacheService;
+    
+    @Autowired
+    private ImageVariantService imageVariantService;
+    
     /**
      * 上传图片
+     * 直接读取请求体中名为file的文件流写入MinIO，不在内存或临时文件中缓存整个文件
      */
-    public Map<String, Object> uploadImage(MultipartFile file) {
+    public Map<String, Object> uploadImage(HttpServletRequest request) {
         Map<String, Object> result = new HashMap<>();
         
         try {
             logger.debug("开始处理图片上传请求");
             
+            FileItemStream item = ServletFileUpload.isMultipartContent(request) ? findFileItem(request) : null;
             // 验证文件
-            String validationError = validateFile(file);
+            String validationError = item == null ? "请选择要上传的文件" : validateFileName(item.getName());
             if (validationError != null) {
                 result.put("success", false);
                 result.put("message", validationError);
@@ -49,7 +65,13 @@ public class ImageService {
             
             // 上传到MinIO
             logger.debug("文件验证通过，开始上传到MinIO");
-            String fileName = minioService.uploadFile(file);
+            String extension = "." + getFileExtension(item.getName()).toLowerCase();
+            String fileName;
+            try (InputStream inputStream = item.openStream()) {
+                fileName = minioService.uploadStream(inputStream, extension, ImageCacheService.contentTypeOf(extension));
+            }
+            // 后台生成缩略图
+            imageVariantService.submitAll(fileName);
             
             // 生成访问URL
             String url = "/api/images/" + fileName;
@@ -73,9 +95,22 @@ public class ImageService {
             result.put("success", false);
             result.put("message", errorMsg);
         } catch (IOException e) {
-            logger.error("IO错误: {}", e.getMessage(), e);
             result.put("success", false);
-            result.put("message", "文件上传失败: " + e.getMessage());
+            if (isSizeLimitExceeded(e)) {
+                result.put("message", "文件大小不能超过" + uploadConfig.getMaxSize() + "MB");
+                logger.warn("文件验证失败: 文件大小超过{}MB", uploadConfig.getMaxSize());
+            } else {
+                logger.error("IO错误: {}", e.getMessage(), e);
+                result.put("message", "文件上传失败: " + e.getMessage());
+            }
+        } catch (FileUploadException e) {
+            result.put("success", false);
+            if (isSizeLimitExceeded(e)) {
+                result.put("message", "文件大小不能超过" + uploadConfig.getMaxSize() + "MB");
+            } else {
+                logger.error("解析上传请求失败: {}", e.getMessage(), e);
+                result.put("message", "文件上传失败: " + e.getMessage());
+            }
         } catch (RuntimeException e) {
             logger.error("运行时错误: {}", e.getMessage(), e);
             result.put("success", false);
@@ -91,13 +126,24 @@ public class ImageService {
     
     /**
      * 删除图片
+     * 按内容命名的文件可能被多次上传共享，没有引用计数，只清理本地缓存，保留存储中的原图和缩略图；
+     * 旧的随机命名文件只属于一次上传，直接删除
      */
     public Map<String, Object> deleteImage(String fileName) {
         Map<String, Object> result = new HashMap<>();
         
         try {
             logger.debug("开始删除图片: {}", fileName);
+            if (MinioService.isContentAddressed(fileName)) {
+                imageCacheService.evict(fileName);
+                result.put("success", true);
+                result.put("message", "图片内容可能被其他引用共享，已保留存储对象");
+                logger.info("图片按内容命名，保留存储对象: {}", fileName);
+                return result;
+            }
             minioService.deleteFile(fileName);
+            imageCacheService.evict(fileName);
+            imageVariantService.deleteVariants(fileName);
             result.put("success", true);
             result.put("message", "图片删除成功");
             logger.info("图片删除成功: {}", fileName);
@@ -116,21 +162,27 @@ public class ImageService {
     }
     
     /**
-     * 验证文件
+     * 找到名为file的文件字段，之前的表单字段直接跳过
      */
-    private String validateFile(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            return "请选择要上传的文件";
-        }
-        
-        // 检查文件大小
-        long maxSize = uploadConfig.getMaxSize() * 1024 * 1024; // MB转字节
-        if (file.getSize() > maxSize) {
-            return "文件大小不能超过" + uploadConfig.getMaxSize() + "MB";
+    private FileItemStream findFileItem(HttpServletRequest request) throws FileUploadException, IOException {
+        ServletFileUpload upload = new ServletFileUpload();
+        // 读取时超过大小限制会抛出异常，不必先收完整个文件
+        upload.setFileSizeMax(uploadConfig.getMaxSize() * 1024L * 1024L);
+        FileItemIterator iterator = upload.getItemIterator(request);
+        while (iterator.hasNext()) {
+            FileItemStream item = iterator.next();
+            if (!item.isFormField() && FILE_FIELD.equals(item.getFieldName())) {
+                return item;
+            }
         }
-        
+        return null;
+    }
+    
+    /**
+     * 验证文件名
+     */
+    private String validateFileName(String fileName) {
         // 检查文件类型
-        String fileName = file.getOriginalFilename();
         if (fileName == null || fileName.trim().isEmpty()) {
             return "文件名不能为空";
         }
@@ -147,6 +199,18 @@ public class ImageService {
         return null;
     }
     
+    /**
+     * 是否因文件超过大小限制而中断
+     */
+    private static boolean isSizeLimitExceeded(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileUploadBase.FileSizeLimitExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * 获取文件扩展名
      */
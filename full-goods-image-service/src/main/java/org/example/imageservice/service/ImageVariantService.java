@@ -0,0 +1,325 @@
+package org.example.imageservice.service;
+
+import org.example.imageservice.config.ImageVariantConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 图片缩略图服务
+ * 上传后由后台线程按配置的宽度预生成缩略图，与原图存放在同一个bucket中，
+ * 文件名为 {原文件名}_w{宽度}.{jpg|png}；访问时缩略图不存在则提交到同一个线程池生成并限时等待，
+ * 超时或线程池已满时由调用方返回原图，同一缩略图同时只生成一次。
+ * 解码前先读取图片头中的尺寸，超过像素上限的原图不解码。
+ * JPEG、BMP原图生成压缩后的JPEG，其他格式可能带透明通道，生成PNG。
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    @Autowired
+    private ImageVariantConfig variantConfig;
+
+    @Autowired
+    private MinioService minioService;
+
+    @Autowired
+    private ImageCacheService imageCacheService;
+
+    private List<Integer> widths;
+
+    private ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> generating = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        widths = variantConfig.getWidths().stream()
+                .filter(width -> width != null && width > 0)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        // 不使用磁盘临时文件
+        ImageIO.setUseCache(false);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列已满时抛出RejectedExecutionException，由提交方处理
+        executor = new ThreadPoolExecutor(variantConfig.getWorkerThreads(), variantConfig.getWorkerThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(variantConfig.getQueueCapacity()),
+                r -> new Thread(r, "image-variant-" + threadIndex.incrementAndGet()));
+        logger.info("图片缩略图宽度: {}", widths);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return variantConfig.isEnabled() && !widths.isEmpty();
+    }
+
+    /**
+     * 将请求的宽度取到最近的较大一档，超过最大一档时返回null，表示使用原图
+     */
+    public Integer resolveWidth(Integer requested) {
+        if (requested == null || requested <= 0 || !isEnabled()) {
+            return null;
+        }
+        for (Integer width : widths) {
+            if (width >= requested) {
+                return width;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 上传后在后台生成所有宽度的缩略图，原图只读取一次
+     */
+    public void submitAll(String fileName) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            executor.execute(() -> preGenerate(fileName));
+        } catch (RejectedExecutionException e) {
+            logger.warn("缩略图生成任务过多，跳过预生成，访问时再生成: {}", fileName);
+        }
+    }
+
+    private void preGenerate(String fileName) {
+        BufferedImage source;
+        try {
+            source = readOriginal(fileName);
+        } catch (Exception e) {
+            logger.warn("读取原图失败，跳过缩略图生成: {}, 原因: {}", fileName, e.getMessage());
+            return;
+        }
+        for (Integer width : widths) {
+            try {
+                generateOnce(fileName, width, source);
+            } catch (Exception e) {
+                logger.warn("生成缩略图失败: {}, 宽度: {}, 原因: {}", fileName, width, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取缩略图，不存在时在线程池中生成并限时等待
+     * 超时、线程池已满或原图过大时抛出异常，由调用方返回原图
+     */
+    public ImageCacheService.CachedImage getVariant(String fileName, int width) throws Exception {
+        String name = variantName(fileName, width);
+        try {
+            return imageCacheService.getOrLoad(name);
+        } catch (Exception e) {
+            if (!MinioService.isNotFound(e)) {
+                throw e;
+            }
+        }
+
+        CompletableFuture<Void> task;
+        try {
+            task = CompletableFuture.runAsync(() -> {
+                try {
+                    generateOnce(fileName, width, null);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("缩略图生成任务过多: " + name);
+        }
+        try {
+            task.get(variantConfig.getGenerateTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 生成在后台继续，下次访问直接读取
+            throw new IOException("缩略图生成超时: " + name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+        return imageCacheService.getOrLoad(name);
+    }
+
+    /**
+     * 删除原图的所有缩略图
+     */
+    public void deleteVariants(String fileName) {
+        for (Integer width : widths) {
+            String name = variantName(fileName, width);
+            try {
+                minioService.deleteFile(name);
+            } catch (Exception e) {
+                logger.warn("删除缩略图失败: {}, 原因: {}", name, e.getMessage());
+            }
+            imageCacheService.evict(name);
+        }
+    }
+
+    public static String variantName(String fileName, int width) {
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return stem + "_w" + width + (isOpaqueFormat(fileName) ? ".jpg" : ".png");
+    }
+
+    private void generateOnce(String fileName, int width, BufferedImage source) throws Exception {
+        String name = variantName(fileName, width);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = generating.putIfAbsent(name, future);
+        if (inFlight != null) {
+            try {
+                inFlight.get();
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+        try {
+            BufferedImage original = source != null ? source : readOriginal(fileName);
+            boolean opaque = isOpaqueFormat(fileName);
+            byte[] data = encode(resize(original, width, opaque), opaque);
+            minioService.uploadBytes(name, data, ImageCacheService.contentTypeOf(name));
+            logger.debug("缩略图已生成: {}, 大小: {} bytes", name, data.length);
+            future.complete(null);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            generating.remove(name, future);
+        }
+    }
+
+    /**
+     * 读取原图，启用本地缓存时从缓存读取
+     */
+    private BufferedImage readOriginal(String fileName) throws Exception {
+        if (imageCacheService.isEnabled()) {
+            try (InputStream in = Files.newInputStream(imageCacheService.getOrLoad(fileName).getPath())) {
+                return decode(fileName, in);
+            }
+        }
+        try (InputStream in = minioService.getObject(fileName)) {
+            return decode(fileName, in);
+        }
+    }
+
+    /**
+     * 先读取图片头中的尺寸，像素数不超过上限时才解码
+     */
+    private BufferedImage decode(String fileName, InputStream in) throws IOException {
+        try (ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageIn != null ? ImageIO.getImageReaders(imageIn) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("不支持的图片格式: " + fileName);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > variantConfig.getMaxPixels()) {
+                    throw new IOException("图片尺寸过大: " + fileName + ", 像素数: " + pixels);
+                }
+                BufferedImage image = reader.read(0);
+                if (image == null) {
+                    throw new IOException("不支持的图片格式: " + fileName);
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到指定宽度，不放大；每次最多缩小一半，避免一次缩小过多产生锯齿
+     */
+    private static BufferedImage resize(BufferedImage source, int width, boolean opaque) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = currentWidth == targetWidth ? targetHeight : Math.max(targetHeight, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if (opaque) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, boolean opaque) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!opaque) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(variantConfig.getQuality());
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isOpaqueFormat(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".bmp");
+    }
+}
@@ -3,19 +3,28 @@ package org.example.imageservice.service;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.http.Method;
+import io.minio.messages.Item;
 // 移除有问题的GetObjectResponse导入，因为它会在方法返回类型中直接使用
+import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.DigestInputStream;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Service
 public class MinioService {
@@ -28,25 +37,61 @@ public class MinioService {
     @Value("${minio.bucket-name}")
     private String bucketName;
     
+    // 分片大小，MinIO要求不小于5MB
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+    
+    // 上传中的临时对象前缀，包含斜杠，不能通过图片访问接口读取
+    private static final String TEMP_PREFIX = "upload-tmp/";
+    
+    // 按内容SHA-256命名的文件
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]+");
+    
+    // 临时对象超过该时间（分钟）仍未删除，视为上传中途进程退出遗留
+    @Value("${image.upload.temp-max-age-minutes:60}")
+    private long tempMaxAgeMinutes;
+    
+    private volatile boolean bucketReady;
+    
+    @PostConstruct
+    public void init() {
+        try {
+            ensureBucket();
+        } catch (Exception e) {
+            // MinIO暂不可用时不阻止启动，首次上传时再检查
+            logger.warn("启动时检查bucket失败，将在首次上传时重试: {}", e.getMessage());
+        }
+    }
+    
     /**
-     * 上传文件
+     * 流式上传文件，按内容SHA-256命名，相同内容只保存一份
+     * 先以临时名称分片上传并同时计算摘要，内存中最多缓存一个分片；
+     * 同名对象已存在时删除临时对象，否则在MinIO服务端复制为正式名称
+     *
+     * @param inputStream 文件内容
+     * @param extension 扩展名，包含点号
+     * @param contentType 内容类型
+     * @return 保存的文件名
      */
-    public String uploadFile(MultipartFile file) throws IOException, InvalidKeyException, InvalidResponseException,
-            InsufficientDataException, NoSuchAlgorithmException, ServerException, InternalException,
-            XmlParserException, ErrorResponseException {
-        
-        logger.debug("开始上传文件到MinIO: {}", file.getOriginalFilename());
+    public String uploadStream(InputStream inputStream, String extension, String contentType) throws IOException,
+            InvalidKeyException, InvalidResponseException, InsufficientDataException, NoSuchAlgorithmException,
+            ServerException, InternalException, XmlParserException, ErrorResponseException {
         
+        ensureBucket();
+        String tempName = TEMP_PREFIX + UUID.randomUUID();
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        CountingInputStream counting = new CountingInputStream(new DigestInputStream(inputStream, sha256));
         try {
-            // 检查bucket是否存在，不存在则创建
-            logger.debug("检查bucket是否存在: {}", bucketName);
-            boolean exists = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-            if (!exists) {
-                logger.debug("创建bucket: {}", bucketName);
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-            }
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(tempName)
+                            .stream(counting, -1, PART_SIZE)
+                            .contentType(contentType)
+                            .build()
+            );
         } catch (Exception e) {
-            logger.error("检查或创建bucket时出错: {}", e.getMessage(), e);
+            removeQuietly(tempName);
+            logger.error("上传文件到MinIO时出错: {}", e.getMessage());
             // 如果是MinIO服务器端口错误，给出更明确的提示
             if (e.getMessage() != null && e.getMessage().contains("API port")) {
                 throw new RuntimeException("MinIO服务器端口配置错误，请检查MinIO服务是否在正确的端口运行", e);
@@ -54,37 +99,92 @@ public class MinioService {
             throw e;
         }
         
-        // 生成唯一文件名
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        try {
+            if (counting.getByteCount() == 0) {
+                throw new IllegalArgumentException("请选择要上传的文件");
+            }
+            String fileName = String.format("%064x", new BigInteger(1, sha256.digest())) + extension;
+            if (exists(fileName)) {
+                logger.debug("相同内容的文件已存在: {}", fileName);
+            } else {
+                minioClient.copyObject(
+                        CopyObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(fileName)
+                                .source(CopySource.builder().bucket(bucketName).object(tempName).build())
+                                .build()
+                );
+                logger.debug("文件上传成功: {}, 大小: {} bytes", fileName, counting.getByteCount());
+            }
+            return fileName;
+        } finally {
+            removeQuietly(tempName);
         }
-        String fileName = UUID.randomUUID().toString() + extension;
-        logger.debug("生成文件名: {}", fileName);
+    }
+    
+    /**
+     * 上传生成的文件内容
+     */
+    public void uploadBytes(String objectName, byte[] data, String contentType) throws IOException, InvalidKeyException,
+            InvalidResponseException, InsufficientDataException, NoSuchAlgorithmException, ServerException,
+            InternalException, XmlParserException, ErrorResponseException {
         
-        // 上传文件
-        try (InputStream inputStream = file.getInputStream()) {
-            logger.debug("开始上传文件流，大小: {} bytes", file.getSize());
+        try (InputStream inputStream = new ByteArrayInputStream(data)) {
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
-                            .object(fileName)
-                            .stream(inputStream, file.getSize(), -1)
-                            .contentType(file.getContentType())
+                            .object(objectName)
+                            .stream(inputStream, data.length, -1)
+                            .contentType(contentType)
                             .build()
             );
-            logger.debug("文件上传成功: {}", fileName);
-        } catch (Exception e) {
-            logger.error("上传文件到MinIO时出错: {}", e.getMessage(), e);
-            // 如果是MinIO服务器端口错误，给出更明确的提示
-            if (e.getMessage() != null && e.getMessage().contains("API port")) {
-                throw new RuntimeException("MinIO服务器端口配置错误，请检查MinIO服务是否在正确的端口运行", e);
+            logger.debug("文件上传成功: {}, 大小: {} bytes", objectName, data.length);
+        }
+    }
+    
+    /**
+     * 是否为按内容命名的文件，相同内容的多次上传共享同一个对象
+     */
+    public static boolean isContentAddressed(String fileName) {
+        return fileName != null && CONTENT_ADDRESSED.matcher(fileName).matches();
+    }
+    
+    /**
+     * 清理遗留的临时对象
+     * 正常上传结束时会删除临时对象，进程在上传中途退出时由这里清理
+     */
+    @Scheduled(initialDelayString = "${image.upload.temp-cleanup-interval-ms:600000}",
+            fixedDelayString = "${image.upload.temp-cleanup-interval-ms:600000}")
+    public void cleanupTempObjects() {
+        if (!bucketReady) {
+            return;
+        }
+        ZonedDateTime cutoff = ZonedDateTime.now().minusMinutes(tempMaxAgeMinutes);
+        int removed = 0;
+        try {
+            Iterable<Result<Item>> objects = minioClient.listObjects(
+                    ListObjectsArgs.builder().bucket(bucketName).prefix(TEMP_PREFIX).recursive(true).build());
+            for (Result<Item> result : objects) {
+                Item item = result.get();
+                if (item.lastModified() != null && item.lastModified().isBefore(cutoff)) {
+                    removeQuietly(item.objectName());
+                    removed++;
+                }
             }
-            throw e;
+        } catch (Exception e) {
+            logger.warn("清理临时上传对象失败: {}", e.getMessage());
         }
-        
-        return fileName;
+        if (removed > 0) {
+            logger.info("清理遗留的临时上传对象 {} 个", removed);
+        }
+    }
+    
+    /**
+     * 判断是否为对象不存在的错误
+     */
+    public static boolean isNotFound(Exception e) {
+        return e instanceof ErrorResponseException
+                && "NoSuchKey".equals(((ErrorResponseException) e).errorResponse().code());
     }
     
     /**
@@ -160,6 +260,11 @@ public class MinioService {
             logger.debug("获取文件成功: {}", fileName);
             return response;
         } catch (Exception e) {
+            if (isNotFound(e)) {
+                // 缩略图首次访问时尚未生成，属于正常情况
+                logger.debug("MinIO中不存在文件: {}", fileName);
+                throw e;
+            }
             logger.error("从MinIO获取文件时出错: {}", e.getMessage(), e);
             // 如果是MinIO服务器端口错误，给出更明确的提示
             if (e.getMessage() != null && e.getMessage().contains("API port")) {
@@ -168,4 +273,50 @@ public class MinioService {
             throw e;
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 检查bucket是否存在，不存在则创建；成功一次后不再检查
+     */
+    private void ensureBucket() throws IOException, InvalidKeyException, InvalidResponseException,
+            InsufficientDataException, NoSuchAlgorithmException, ServerException, InternalException,
+            XmlParserException, ErrorResponseException {
+        
+        if (bucketReady) {
+            return;
+        }
+        synchronized (this) {
+            if (bucketReady) {
+                return;
+            }
+            logger.debug("检查bucket是否存在: {}", bucketName);
+            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+                logger.info("创建bucket: {}", bucketName);
+                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+            }
+            bucketReady = true;
+        }
+    }
+    
+    private boolean exists(String objectName) throws IOException, InvalidKeyException, InvalidResponseException,
+            InsufficientDataException, NoSuchAlgorithmException, ServerException, InternalException,
+            XmlParserException, ErrorResponseException {
+        
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            if (isNotFound(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+    
+    private void removeQuietly(String objectName) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+        } catch (Exception e) {
+            logger.warn("删除临时文件失败: {}, 原因: {}", objectName, e.getMessage());
+        }
+    }
+}
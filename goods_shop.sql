@@ -247,6 +247,33 @@ CREATE TABLE `t_customer_service_session`  (
 -- Records of t_customer_service_session
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for t_customer_statistics
+-- ----------------------------
+DROP TABLE IF EXISTS `t_customer_statistics`;
+CREATE TABLE `t_customer_statistics`  (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '统计ID',
+  `statistics_date` date NOT NULL COMMENT '统计日期',
+  `service_id` bigint NOT NULL COMMENT '客服ID',
+  `service_name` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '客服名称',
+  `dialog_count` int NOT NULL DEFAULT 0 COMMENT '接待对话数（按会话开始日期）',
+  `message_count` int NOT NULL DEFAULT 0 COMMENT '处理消息数',
+  `avg_response_time` int NULL DEFAULT NULL COMMENT '平均响应时间（秒），会话开始到客服首次回复',
+  `avg_satisfaction` double NULL DEFAULT NULL COMMENT '平均满意度评分',
+  `resolved_count` int NOT NULL DEFAULT 0 COMMENT '解决问题数（按会话结束日期）',
+  `online_minutes` int NULL DEFAULT NULL COMMENT '在线时长（分钟）',
+  `efficiency_score` double NULL DEFAULT NULL COMMENT '工作效率评分',
+  `note` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '备注说明',
+  `create_time` datetime NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  `create_by` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '创建者',
+  `update_by` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '更新者',
+  `remark` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '备注',
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_date_service`(`statistics_date` ASC, `service_id` ASC) USING BTREE,
+  INDEX `idx_service_id`(`service_id` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '客服按日统计表' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for t_flash_sale
 -- ----------------------------
@@ -437,6 +464,7 @@ CREATE TABLE `t_message`  (
   `remark` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '备注',
   PRIMARY KEY (`id`) USING BTREE,
   INDEX `idx_user_id`(`user_id` ASC) USING BTREE,
+  INDEX `idx_user_type_status`(`user_id` ASC, `message_type` ASC, `status` ASC) USING BTREE,
   INDEX `idx_message_type`(`message_type` ASC) USING BTREE,
   INDEX `idx_status`(`status` ASC) USING BTREE,
   INDEX `idx_order_no`(`order_no` ASC) USING BTREE,
@@ -494,6 +522,38 @@ INSERT INTO `t_message` VALUES (45, 2, '系统维护通知', '尊敬的用户，
 INSERT INTO `t_message` VALUES (46, 2, '新功能上线通知', '好消息！我们的积分商城功能已正式上线，您可以使用积分兑换精美礼品。快去积分商城看看吧！首次使用还有额外积分奖励哦~', 3, 1, NULL, NULL, '/home', NULL, NULL, NULL, NULL, '2025-08-19 00:03:56', '2025-08-19 00:03:56', NULL, NULL, NULL);
 INSERT INTO `t_message` VALUES (47, 2, '优惠活动通知', '限时特惠！精选水果5折起，满99元免邮费！活动时间：12月25日-12月31日，数量有限，先到先得。点击查看活动详情。', 3, 0, NULL, NULL, '/home', NULL, NULL, NULL, NULL, '2025-08-19 18:03:56', '2025-08-19 18:03:56', NULL, NULL, NULL);
 
+-- ----------------------------
+-- Table structure for t_message_campaign
+-- ----------------------------
+DROP TABLE IF EXISTS `t_message_campaign`;
+CREATE TABLE `t_message_campaign`  (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '活动ID',
+  `name` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '活动名称',
+  `template_code` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '消息模板编码，为空时使用标题和内容',
+  `title` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '消息标题，支持{{变量}}',
+  `content` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '消息内容，支持{{变量}}',
+  `message_type` int NOT NULL DEFAULT 4 COMMENT '消息类型：1-物流，2-客服，3-系统，4-优惠',
+  `icon_url` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '图标URL',
+  `link_url` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '跳转链接，支持{{变量}}',
+  `params` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '模板参数（JSON）',
+  `target_user_ids` mediumtext CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '指定用户ID（逗号分隔），为空时发送给全部正常用户',
+  `status` tinyint NOT NULL DEFAULT 1 COMMENT '状态：1-发送中，2-已暂停，3-已完成，4-已取消，5-失败',
+  `last_user_id` bigint NOT NULL DEFAULT 0 COMMENT '发送进度，已发送到的用户ID',
+  `total_count` bigint NOT NULL DEFAULT 0 COMMENT '创建时的目标用户数',
+  `sent_count` bigint NOT NULL DEFAULT 0 COMMENT '已发送消息数',
+  `chunk_size` int NOT NULL DEFAULT 500 COMMENT '每批发送的用户数',
+  `rate_limit` int NOT NULL DEFAULT 0 COMMENT '每秒最多发送消息数，0表示使用默认上限',
+  `owner_node` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '正在发送的节点',
+  `heartbeat_time` datetime NULL DEFAULT NULL COMMENT '发送节点最近一次推进进度的时间',
+  `error_message` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '失败原因',
+  `finish_time` datetime NULL DEFAULT NULL COMMENT '结束时间',
+  `create_time` datetime NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  `create_by` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '创建者',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_status_heartbeat`(`status` ASC, `heartbeat_time` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '消息群发活动表' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for t_message_template
 -- ----------------------------
@@ -564,7 +624,9 @@ CREATE TABLE `t_order`  (
   `courier` varchar(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '快递公司',
   PRIMARY KEY (`id`) USING BTREE,
   UNIQUE INDEX `idx_order_no`(`order_no` ASC) USING BTREE,
-  INDEX `idx_user_id`(`user_id` ASC) USING BTREE
+  INDEX `idx_user_id`(`user_id` ASC) USING BTREE,
+  INDEX `idx_user_status`(`user_id` ASC, `status` ASC) USING BTREE,
+  INDEX `idx_create_time`(`create_time` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 24 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -591,6 +653,36 @@ INSERT INTO `t_order` VALUES (21, '17559474476280a55c9', 3, 0.03, 0.03, 0.00, 0.
 INSERT INTO `t_order` VALUES (22, '1755954737010303165', 3, 10.70, 10.70, 0.00, 0.00, 2, 1, '2025-08-23 21:12:24', NULL, NULL, NULL, 'huang', '12876544567', '广西壮族自治区', '南宁市', '县级市', '1234565', NULL, '2025-08-23 21:12:17', '2025-08-23 21:12:24', NULL, NULL, NULL, NULL, NULL);
 INSERT INTO `t_order` VALUES (23, '1755956655735a83481', 3, 106.93, 106.93, 0.00, 0.00, 2, 1, '2025-08-23 21:44:22', NULL, NULL, NULL, 'huang', '12876544567', '广西壮族自治区', '南宁市', '县级市', '1234565', NULL, '2025-08-23 21:44:16', '2025-08-23 21:44:22', NULL, NULL, NULL, NULL, NULL);
 
+-- ----------------------------
+-- Table structure for t_order_daily_stats
+-- ----------------------------
+DROP TABLE IF EXISTS `t_order_daily_stats`;
+CREATE TABLE `t_order_daily_stats`  (
+  `stat_date` date NOT NULL COMMENT '统计日期（下单日期）',
+  `status` tinyint NOT NULL COMMENT '订单状态：0-待付款，1-待发货，2-待收货，3-已完成，4-已取消',
+  `slot` tinyint NOT NULL DEFAULT 0 COMMENT '计数分片，按订单ID取模，分散热点行',
+  `order_count` bigint NOT NULL DEFAULT 0 COMMENT '订单数',
+  `order_amount` decimal(16, 2) NOT NULL DEFAULT 0.00 COMMENT '实付金额合计',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`stat_date`, `status`, `slot`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单按日汇总表' ROW_FORMAT = Dynamic;
+
+-- ----------------------------
+-- Table structure for t_order_category_daily_stats
+-- ----------------------------
+DROP TABLE IF EXISTS `t_order_category_daily_stats`;
+CREATE TABLE `t_order_category_daily_stats`  (
+  `stat_date` date NOT NULL COMMENT '统计日期（下单日期）',
+  `category_id` bigint NOT NULL COMMENT '分类ID，0表示未分类',
+  `status` tinyint NOT NULL COMMENT '订单状态',
+  `slot` tinyint NOT NULL DEFAULT 0 COMMENT '计数分片，按订单ID取模，分散热点行',
+  `order_count` bigint NOT NULL DEFAULT 0 COMMENT '包含该分类商品的订单数',
+  `item_quantity` bigint NOT NULL DEFAULT 0 COMMENT '商品件数',
+  `sales_amount` decimal(16, 2) NOT NULL DEFAULT 0.00 COMMENT '商品金额合计',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`stat_date`, `category_id`, `status`, `slot`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单按日分类汇总表' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for t_order_item
 -- ----------------------------